@@ -0,0 +1,73 @@
+CREATE SCHEMA recycler AUTHORIZATION postgres;
+CREATE TABLE recycler.recycle_job (
+    id varchar(36) PRIMARY KEY,
+    table_name text NOT NULL,
+    field_name text NOT NULL,
+    older_than timestamptz NOT NULL,
+    batch_size int NOT NULL,
+    shards int NOT NULL,
+    priority int NOT NULL DEFAULT 0,
+    weight int NOT NULL DEFAULT 1,
+    purge_mode varchar(8) NOT NULL DEFAULT 'BATCH',
+    maintenance_window text,
+    finish_within_windows int,
+    status varchar(16) NOT NULL,
+    deleted_count bigint NOT NULL DEFAULT 0,
+    cursor_datetime timestamptz,
+    cursor_id bigint,
+    current_batch_size int NOT NULL,
+    dropped_partitions bigint NOT NULL DEFAULT 0,
+    throttled_millis bigint NOT NULL DEFAULT 0,
+    batches bigint NOT NULL DEFAULT 0,
+    bytes_freed_estimate bigint NOT NULL DEFAULT 0,
+    last_batch_time timestamptz,
+    started_at timestamptz,
+    estimated_total bigint,
+    rows_per_second double precision NOT NULL DEFAULT 0,
+    last_batch_latency_millis bigint NOT NULL DEFAULT 0,
+    dead_tuple_ratio double precision,
+    vacuums bigint NOT NULL DEFAULT 0,
+    bytes_reclaimed_estimate bigint NOT NULL DEFAULT 0,
+    retries bigint NOT NULL DEFAULT 0,
+    lock_timeouts bigint NOT NULL DEFAULT 0,
+    version bigint NOT NULL DEFAULT 0,
+    owner varchar(64),
+    lease_until timestamptz,
+    created_at timestamptz NOT NULL DEFAULT now(),
+    updated_at timestamptz NOT NULL DEFAULT now()
+);
+CREATE UNIQUE INDEX recycle_job_active_table_idx ON recycler.recycle_job (table_name)
+    WHERE status IN ('PENDING', 'RUNNING', 'PAUSED');
+CREATE INDEX recycle_job_active_priority_idx ON recycler.recycle_job (priority DESC, created_at)
+    WHERE status IN ('PENDING', 'RUNNING', 'PAUSED');
+CREATE TABLE recycler.retention_policy (
+    id varchar(36) PRIMARY KEY,
+    table_name text NOT NULL UNIQUE,
+    field_name text NOT NULL,
+    retention_millis bigint NOT NULL,
+    cron text,
+    interval_millis bigint,
+    max_window_millis bigint,
+    watermark timestamptz,
+    run_job_id varchar(36),
+    run_older_than timestamptz,
+    created_at timestamptz NOT NULL DEFAULT now()
+);
+CREATE TABLE recycler.bulk_job (
+    id varchar(36) PRIMARY KEY,
+    field_name text NOT NULL,
+    older_than timestamptz NOT NULL,
+    max_concurrency int NOT NULL,
+    cancelled boolean NOT NULL DEFAULT false,
+    created_at timestamptz NOT NULL DEFAULT now()
+);
+CREATE TABLE recycler.bulk_job_child (
+    bulk_job_id varchar(36) NOT NULL REFERENCES recycler.bulk_job (id) ON DELETE CASCADE,
+    table_name text NOT NULL,
+    ordinal int NOT NULL,
+    job_id varchar(36),
+    status varchar(16) NOT NULL,
+    deleted_count bigint NOT NULL DEFAULT 0,
+    PRIMARY KEY (bulk_job_id, table_name)
+);
+CREATE INDEX bulk_job_child_job_idx ON recycler.bulk_job_child (job_id);
@@ -1 +1,2 @@
-CREATE TABLE "data".big_table (id serial8 NOT NULL, ts timestamp NOT NULL);
\ No newline at end of file
+CREATE TABLE "data".big_table (id serial8 NOT NULL, ts timestamp NOT NULL);
+CREATE INDEX big_table_ts_id_idx ON "data".big_table (ts, id);
\ No newline at end of file
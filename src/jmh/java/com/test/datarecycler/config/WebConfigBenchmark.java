@@ -0,0 +1,48 @@
+package com.test.datarecycler.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.test.datarecycler.dto.RecycleJobStateDto;
+import com.test.datarecycler.entity.RecycleJob;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JSON serialization of the job state through the application {@link ObjectMapper}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WebConfigBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter stateWriter;
+    private RecycleJobStateDto state;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new WebConfig().objectMapper();
+        stateWriter = objectMapper.writerFor(RecycleJobStateDto.class);
+        state = new RecycleJobStateDto(RecycleJob.Status.RUNNING, 123456789L, 2000, 3, 1500, 61728, 12345678900L,
+                Instant.now(), Instant.now(), 246913578L, 50.0, 41152.6, 3000L, 48, 0.05, 2, 6172839450L, 3, 1);
+    }
+
+    @Benchmark
+    public byte[] serializeState() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(state);
+    }
+
+    @Benchmark
+    public byte[] serializeStateWithWriter() throws JsonProcessingException {
+        return stateWriter.writeValueAsBytes(state);
+    }
+}
@@ -0,0 +1,160 @@
+package com.test.datarecycler.db;
+
+import com.test.datarecycler.entity.RecycleJob;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single batch deletion of {@link PostgresDatabase} at several batch sizes. Requires running database, e.g.
+ * the one from docker-compose.yml, configured by APP_JDBC_URL, APP_DB_USER and APP_DB_PASS environment variables
+ * like the application itself. Excluded from the default jmh run, use {@code ./gradlew jmh -Pjmh.postgres}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = PostgresDatabaseBenchmark.BATCHES_PER_ITERATION)
+@Measurement(iterations = 5, batchSize = PostgresDatabaseBenchmark.BATCHES_PER_ITERATION)
+public class PostgresDatabaseBenchmark {
+
+    static final int BATCHES_PER_ITERATION = 20;
+
+    private static final String TABLE_NAME = "jmh_recycle_table";
+
+    @Param({"100", "1000", "10000"})
+    private int batchSize;
+
+    private HikariDataSource dataSource;
+    private PostgresDatabase database;
+    private ExecutorService prefetchExecutorService;
+    private DatabaseSession session;
+    private DatabaseSession pipelinedSession;
+    private Instant olderThan;
+    private RecycleJob.Cursor cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        final HikariConfig config = new HikariConfig();
+        config.setMaximumPoolSize(4);
+        config.setJdbcUrl(getEnv("APP_JDBC_URL", "jdbc:postgresql://localhost:5432/postgres"));
+        config.setUsername(getEnv("APP_DB_USER", "postgres"));
+        config.setPassword(getEnv("APP_DB_PASS", "postgres"));
+        config.setAutoCommit(false);
+        dataSource = new HikariDataSource(config);
+        prefetchExecutorService = Executors.newCachedThreadPool();
+        database = new PostgresDatabase(dataSource, Duration.ofMinutes(10), new SimpleMeterRegistry(),
+                prefetchExecutorService, null, null);
+        olderThan = Instant.now();
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(String.format("DROP TABLE IF EXISTS %s", TABLE_NAME));
+            statement.execute(String.format("CREATE TABLE %s (id serial8 NOT NULL, ts timestamp NOT NULL)",
+                    TABLE_NAME));
+            statement.execute(String.format("CREATE INDEX %1$s_ts_id_idx ON %1$s (ts, id)", TABLE_NAME));
+            connection.commit();
+        }
+    }
+
+    /**
+     * Refills the table with exactly enough expired rows for the iteration and resets cursor
+     */
+    @Setup(Level.Iteration)
+    public void fillTable() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             PreparedStatement insertStatement = connection.prepareStatement(String.format(
+                     "INSERT INTO %s (ts) SELECT ? - make_interval(secs => g) FROM generate_series(1, ?) g",
+                     TABLE_NAME))) {
+            statement.execute(String.format("TRUNCATE %s", TABLE_NAME));
+            insertStatement.setTimestamp(1, Timestamp.from(olderThan));
+            insertStatement.setInt(2, batchSize * BATCHES_PER_ITERATION);
+            insertStatement.executeUpdate();
+            statement.execute(String.format("ANALYZE %s", TABLE_NAME));
+            connection.commit();
+        }
+        cursor = null;
+    }
+
+    @Setup(Level.Iteration)
+    public void openSession() {
+        session = database.openSession(TABLE_NAME, "ts");
+        pipelinedSession = database.openPipelinedSession(TABLE_NAME, "ts", 1);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSession() {
+        session.close();
+        pipelinedSession.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(String.format("DROP TABLE IF EXISTS %s", TABLE_NAME));
+            connection.commit();
+        } finally {
+            dataSource.close();
+            prefetchExecutorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Stateless deletion, which acquires connection and prepares statement for each batch
+     */
+    @Benchmark
+    public int deleteBatch() {
+        final DeleteResult result = database.deleteData(TABLE_NAME, "ts", olderThan, cursor, batchSize);
+        cursor = result.getCursor();
+        return result.getDeletedCount();
+    }
+
+    /**
+     * Deletion within the session, which reuses connection and prepared statement across batches
+     */
+    @Benchmark
+    public int deleteBatchInSession() {
+        final DeleteResult result = session.deleteData(olderThan, cursor, batchSize);
+        cursor = result.getCursor();
+        return result.getDeletedCount();
+    }
+
+    /**
+     * Deletion within the pipelined session, which selects keys of the next batch while the current one is deleted
+     */
+    @Benchmark
+    public int deleteBatchPipelined() {
+        final DeleteResult result = pipelinedSession.deleteData(olderThan, cursor, batchSize);
+        cursor = result.getCursor();
+        return result.getDeletedCount();
+    }
+
+    private static String getEnv(String name, String defaultValue) {
+        final String value = System.getenv(name);
+        return value == null ? defaultValue : value;
+    }
+}
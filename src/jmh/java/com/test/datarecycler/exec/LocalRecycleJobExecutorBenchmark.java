@@ -0,0 +1,206 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.db.DatabaseLoad;
+import com.test.datarecycler.db.DatabaseSession;
+import com.test.datarecycler.db.DeleteEstimate;
+import com.test.datarecycler.db.DeleteResult;
+import com.test.datarecycler.db.DeletedRowsSink;
+import com.test.datarecycler.db.TableStats;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.repository.InMemoryJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tomcat.util.threads.InlineExecutorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures per-batch overhead of the executor loop: progress tracking, status checks and batch sizing. Database is
+ * replaced by the stub which pretends to delete full batches with the configured latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LocalRecycleJobExecutorBenchmark {
+
+    private static final int BATCHES_PER_JOB = 1000;
+
+    /**
+     * Stub latency of a single batch deletion, zero to measure the pure executor overhead
+     */
+    @Param({"0", "50"})
+    private long batchLatencyMicros;
+
+    @Param({"true", "false"})
+    private boolean adaptiveBatch;
+
+    private ScheduledExecutorService scheduler;
+    private InMemoryJobRepository jobRepository;
+    private LocalRecycleJobExecutor jobExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        jobRepository = new InMemoryJobRepository(scheduler, Duration.ZERO);
+        jobExecutor = new LocalRecycleJobExecutor(new StubDatabase(TimeUnit.MICROSECONDS.toNanos(batchLatencyMicros)),
+                jobRepository, new InlineExecutorService(), new InlineExecutorService(), 1,
+                job -> adaptiveBatch
+                        ? new AdaptiveBatchSizer(job.getBatchSize(), job.getBatchSize(), job.getBatchSize(),
+                                Duration.ofMillis(200))
+                        : AdaptiveBatchSizer.fixed(job.getBatchSize()), 0,
+                PartitionRecycleMode.DISABLED, 1, BatchThrottle.NONE, new TableThroughput(), null,
+                null, scheduler, null, BatchRetryPolicy.NONE, new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Executes the whole job of {@link #BATCHES_PER_JOB} batches inline, so the score is the average batch time
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCHES_PER_JOB)
+    public RecycleJob.State executeJob() {
+        final RecycleJob job = jobRepository.newRecycleJob("table", "ts", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
+        jobExecutor.submitJob(job);
+        return jobRepository.getJobStateById(job.getId());
+    }
+
+    /**
+     * Database stub deleting {@link #BATCHES_PER_JOB} full batches per table followed by the empty one. The rest of
+     * operations are no-ops, so the benchmark keeps running whatever executor options are enabled.
+     */
+    private static class StubDatabase implements Database {
+
+        private final long latencyNanos;
+        private int remainingBatches = BATCHES_PER_JOB;
+
+        StubDatabase(long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public DeleteResult deleteData(String tableName, String fieldName, Instant olderThan,
+                                       RecycleJob.Cursor after, int count) {
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+            if (remainingBatches == 0) {
+                remainingBatches = BATCHES_PER_JOB;
+                return new DeleteResult(0, after);
+            }
+            remainingBatches--;
+            final long lastId = after == null ? count : after.getId() + count;
+            return new DeleteResult(count, new RecycleJob.Cursor(olderThan, lastId));
+        }
+
+        @Override
+        public DatabaseSession openSession(String tableName, String fieldName) {
+            return new DatabaseSession() {
+                @Override
+                public DeleteResult deleteData(Instant olderThan, RecycleJob.Cursor after, int count) {
+                    return StubDatabase.this.deleteData(tableName, fieldName, olderThan, after, count);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public DatabaseSession openArchivingSession(String tableName, String fieldName, DeletedRowsSink sink) {
+            return openSession(tableName, fieldName);
+        }
+
+        @Override
+        public DatabaseSession openPipelinedSession(String tableName, String fieldName, int prefetchBatches) {
+            return openSession(tableName, fieldName);
+        }
+
+        @Override
+        public Optional<Instant> findMinDatetime(String tableName, String fieldName) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<String> findExpiredPartitions(String tableName, String fieldName, Instant olderThan) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<String> findTables(String schemaName, String tableNamePattern) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void dropPartition(String tableName, String partitionName, boolean detachOnly) {
+        }
+
+        @Override
+        public DatabaseLoad getLoad() {
+            return new DatabaseLoad(0, 0, 0);
+        }
+
+        @Override
+        public long estimateRowSize(String tableName) {
+            return 100;
+        }
+
+        @Override
+        public TableStats getTableStats(String tableName) {
+            return new TableStats(0, 0, false);
+        }
+
+        @Override
+        public void vacuumAnalyze(String tableName) {
+        }
+
+        @Override
+        public long estimateExpiredCount(String tableName, String fieldName, Instant olderThan) {
+            return 0;
+        }
+
+        @Override
+        public double estimateExpiredFraction(String tableName, String fieldName, Instant olderThan) {
+            return 0;
+        }
+
+        @Override
+        public DeleteEstimate estimateDelete(String tableName, String fieldName, Instant olderThan, int batchSize) {
+            return new DeleteEstimate(0, true, "");
+        }
+
+        @Override
+        public boolean isSwappable(String tableName) {
+            return false;
+        }
+
+        @Override
+        public long copyAndSwap(String tableName, String fieldName, Instant olderThan) {
+            return 0;
+        }
+    }
+}
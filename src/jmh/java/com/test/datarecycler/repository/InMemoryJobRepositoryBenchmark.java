@@ -0,0 +1,114 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.RecycleJob;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link InMemoryJobRepository} under contention of executor threads updating progress of the jobs and
+ * clients polling their state. Run {@link #main(String[])} to scale threads count from 1 to 64.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InMemoryJobRepositoryBenchmark {
+
+    private static final int JOBS_COUNT = 16;
+
+    private ScheduledExecutorService scheduler;
+    private InMemoryJobRepository jobRepository;
+    private String[] jobIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        jobRepository = new InMemoryJobRepository(scheduler, Duration.ofMinutes(10));
+        jobIds = new String[JOBS_COUNT];
+        for (int i = 0; i < JOBS_COUNT; i++) {
+            jobIds[i] = jobRepository.newRecycleJob("table_" + i, "ts", Instant.now(),
+                    1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null).getId();
+            jobRepository.updateJobStatus(jobIds[i], RecycleJob.Status.RUNNING);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Status check done by the executor after each batch
+     */
+    @Benchmark
+    public RecycleJob.Status getJobStatus() {
+        return jobRepository.getJobStatus(randomJobId());
+    }
+
+    /**
+     * Progress update done by the executor after each batch
+     */
+    @Benchmark
+    public void recordBatch() {
+        jobRepository.getJobProgress(randomJobId()).recordBatch(1000, 100000, 0, 1000, null);
+    }
+
+    /**
+     * State request of the client
+     */
+    @Benchmark
+    public RecycleJob.State getJobState() {
+        return jobRepository.getJobStateById(randomJobId());
+    }
+
+    /**
+     * Executor threads and clients mix: status checks and progress updates with occasional state requests
+     */
+    @Benchmark
+    public Object mixed() {
+        final String jobId = randomJobId();
+        final int operation = ThreadLocalRandom.current().nextInt(100);
+        if (operation < 45) {
+            return jobRepository.getJobStatus(jobId);
+        } else if (operation < 90) {
+            jobRepository.getJobProgress(jobId).recordBatch(1000, 100000, 0, 1000, null);
+            return null;
+        } else {
+            return jobRepository.getJobStateById(jobId);
+        }
+    }
+
+    private String randomJobId() {
+        return jobIds[ThreadLocalRandom.current().nextInt(JOBS_COUNT)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            final Options options = new OptionsBuilder()
+                    .include(InMemoryJobRepositoryBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .forks(1)
+                    .warmupIterations(3)
+                    .measurementIterations(5)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.test.datarecycler.archive;
+
+import com.test.datarecycler.db.DeletedRowsSink;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archives deleted rows of the single job into the rolling gzip compressed CSV files
+ * {@code <directory>/<jobId>-<number>.csv.gz}, each one starting with the header row. File is written as
+ * {@code .part} and renamed once completed, so only complete files have the final name.
+ * <p>
+ * Rows are written asynchronously by the writer loop, so the delete loop waits only while the bounded buffer of
+ * batches is full. Buffered rows are already deleted once their batch is committed, so they are lost if the
+ * application crashes before they are written. Writer failure fails the next accepted batch and the close.
+ * <p>
+ * NULL is written as the empty unquoted value, the empty string as the quoted one.
+ */
+@Slf4j
+public class CsvArchiveWriter implements DeletedRowsSink, AutoCloseable {
+
+    static final String FILE_SUFFIX = ".csv.gz";
+    private static final String PART_SUFFIX = ".part";
+    private static final Batch END = new Batch(new String[0], List.of());
+
+    private final Path directory;
+    private final String jobId;
+    private final long maxFileRows;
+    private final BlockingQueue<Batch> buffer;
+    private final Future<?> writerLoop;
+    private volatile Exception failure;
+    private boolean closed;
+
+    //state of the writer loop
+    private Writer writer;
+    private Path file;
+    private String[] fileColumns;
+    private long fileRows;
+    private int fileNumber;
+
+    /**
+     * Create new instance and start its writer loop
+     * @param directory       directory to write files to, created if missing
+     * @param jobId           id of the archived job, prefix of the files
+     * @param maxFileRows     max count of rows in the single file
+     * @param bufferBatches   max count of batches buffered until written
+     * @param executorService executor of the writer loop, which takes its thread until the writer is closed
+     */
+    public CsvArchiveWriter(@NonNull Path directory,
+                            @NonNull String jobId,
+                            long maxFileRows,
+                            int bufferBatches,
+                            @NonNull ExecutorService executorService) {
+        if (maxFileRows <= 0 || bufferBatches <= 0) {
+            throw new IllegalArgumentException("Max file rows and buffer batches must be positive");
+        }
+        this.directory = directory;
+        this.jobId = jobId;
+        this.maxFileRows = maxFileRows;
+        this.buffer = new ArrayBlockingQueue<>(bufferBatches);
+        this.writerLoop = executorService.submit(this::writeBatches);
+    }
+
+    @Override
+    public void accept(@NonNull String[] columns, @NonNull List<String[]> rows)
+            throws IOException, InterruptedException {
+        checkFailure();
+        buffer.put(new Batch(columns, rows));
+    }
+
+    /**
+     * Wait until all buffered rows are written and the last file is completed
+     * @throws IOException if any rows could not be written
+     */
+    @Override
+    public synchronized void close() throws IOException, InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.put(END);
+        try {
+            writerLoop.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Archive writer of the job " + jobId + " failed", e.getCause());
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Archive writer of the job " + jobId + " failed", failure);
+        }
+    }
+
+    /**
+     * Writer loop. Failed writer keeps draining the buffer, so the delete loop is not blocked by the full buffer.
+     */
+    private Void writeBatches() throws InterruptedException {
+        Batch batch;
+        while ((batch = buffer.take()) != END) {
+            if (failure != null) {
+                continue;
+            }
+            try {
+                write(batch);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to archive rows of the job '{}'", jobId, e);
+                failure = e;
+            }
+        }
+        try {
+            closeFile(failure == null);
+        } catch (IOException e) {
+            log.error("Failed to complete archive file '{}'", file, e);
+            failure = e;
+        }
+        return null;
+    }
+
+    private void write(Batch batch) throws IOException {
+        //table could be altered while the job is running, then the new file with the new header is started
+        if (writer != null && !Arrays.equals(fileColumns, batch.getColumns())) {
+            closeFile(true);
+        }
+        for (String[] row : batch.getRows()) {
+            if (writer == null) {
+                openFile(batch.getColumns());
+            }
+            writeRow(row);
+            if (++fileRows >= maxFileRows) {
+                closeFile(true);
+            }
+        }
+    }
+
+    private void openFile(String[] columns) throws IOException {
+        Files.createDirectories(directory);
+        //resumed job continues numbering after the files written before
+        do {
+            file = directory.resolve(String.format("%s-%05d%s", jobId, ++fileNumber, FILE_SUFFIX));
+        } while (Files.exists(file) || Files.exists(getPartFile(file)));
+        writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(getPartFile(file))), StandardCharsets.UTF_8));
+        fileColumns = columns;
+        fileRows = 0;
+        writeRow(columns);
+    }
+
+    /**
+     * Close current file if any
+     * @param complete whether the file should be renamed to the final name, otherwise it is left as {@code .part}
+     */
+    private void closeFile(boolean complete) throws IOException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } finally {
+            writer = null;
+        }
+        if (complete) {
+            Files.move(getPartFile(file), file, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Job '{}' has archived {} records into '{}'", jobId, fileRows, file);
+        }
+    }
+
+    private void writeRow(String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            final String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static Path getPartFile(Path file) {
+        return file.resolveSibling(file.getFileName() + PART_SUFFIX);
+    }
+
+    @Value
+    private static class Batch {
+        private String[] columns;
+        private List<String[]> rows;
+    }
+}
@@ -1,18 +1,50 @@
 package com.test.datarecycler.config;
 
+import com.test.datarecycler.archive.CsvArchiveWriter;
 import com.test.datarecycler.db.Database;
 import com.test.datarecycler.db.PostgresDatabase;
+import com.test.datarecycler.entity.MaintenanceWindow;
+import com.test.datarecycler.exec.AdaptiveBatchSizer;
+import com.test.datarecycler.exec.BatchRetryPolicy;
+import com.test.datarecycler.exec.BatchThrottle;
+import com.test.datarecycler.exec.BoundedConcurrencyExecutorService;
+import com.test.datarecycler.exec.FairBatchScheduler;
+import com.test.datarecycler.exec.LeasedRecycleJobExecutor;
+import com.test.datarecycler.exec.LoadAwareBatchThrottle;
 import com.test.datarecycler.exec.LocalRecycleJobExecutor;
 import com.test.datarecycler.exec.RecycleJobExecutor;
+import com.test.datarecycler.exec.TableThroughput;
+import com.test.datarecycler.exec.TableVacuum;
+import com.test.datarecycler.exec.VirtualThreads;
+import com.test.datarecycler.repository.BulkJobRepository;
+import com.test.datarecycler.repository.InMemoryBulkJobRepository;
 import com.test.datarecycler.repository.InMemoryJobRepository;
+import com.test.datarecycler.repository.InMemoryRetentionPolicyRepository;
+import com.test.datarecycler.repository.JdbcBulkJobRepository;
+import com.test.datarecycler.repository.JdbcJobRepository;
+import com.test.datarecycler.repository.JdbcRetentionPolicyRepository;
+import com.test.datarecycler.repository.JobQueue;
 import com.test.datarecycler.repository.RecycleJobRepository;
+import com.test.datarecycler.repository.RetentionPolicyRepository;
+import com.test.datarecycler.service.BulkRecycleJobService;
+import com.test.datarecycler.service.JobStateNotifier;
 import com.test.datarecycler.service.RecycleJobService;
+import com.test.datarecycler.service.RetentionPolicyService;
 import com.zaxxer.hikari.HikariConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
+import java.nio.file.Paths;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -20,25 +52,184 @@ import java.util.concurrent.ScheduledExecutorService;
 @Configuration
 public class AppConfig {
 
+    private static final String JOBS_WAITING_METRIC = "recycler.jobs.waiting";
+
+    /**
+     * Connections used for the load sampling, lookups and job repository, so none of them waits for the pool
+     */
+    private static final int RESERVED_CONNECTIONS = 2;
+
     @Bean
     public RecycleJobService recycleJobService(RecycleJobRepository jobRepository,
                                                RecycleJobExecutor jobExecutor,
+                                               Database database,
+                                               TableThroughput tableThroughput,
                                                AppProperties properties) {
-        return new RecycleJobService(jobRepository, jobExecutor, properties.getBatchSize());
+        return new RecycleJobService(jobRepository, jobExecutor, database, tableThroughput,
+                properties.getBatchSize());
+    }
+
+    @Bean
+    public JobStateNotifier jobStateNotifier(RecycleJobRepository jobRepository,
+                                             @Qualifier("notifierScheduler") ScheduledExecutorService notifierScheduler,
+                                             AppProperties appProperties) {
+        return new JobStateNotifier(jobRepository, notifierScheduler,
+                appProperties.getStream().getPublishInterval());
+    }
+
+    @Bean
+    public RetentionPolicyService retentionPolicyService(RetentionPolicyRepository policyRepository,
+                                                         RecycleJobService recycleJobService,
+                                                         RecycleJobRepository jobRepository,
+                                                         Database database,
+                                                         @Qualifier("scheduler") ScheduledExecutorService scheduler,
+                                                         AppProperties appProperties) {
+        final AppProperties.Retention retention = appProperties.getRetention();
+        return new RetentionPolicyService(policyRepository, recycleJobService, jobRepository, database, scheduler,
+                retention.getMaxJitter(), retention.getRefreshInterval());
+    }
+
+    @Bean
+    public BulkRecycleJobService bulkRecycleJobService(BulkJobRepository bulkJobRepository,
+                                                       RecycleJobService recycleJobService,
+                                                       RecycleJobRepository jobRepository,
+                                                       Database database,
+                                                       @Qualifier("scheduler") ScheduledExecutorService scheduler,
+                                                       AppProperties appProperties) {
+        final AppProperties.Bulk bulk = appProperties.getBulk();
+        return new BulkRecycleJobService(bulkJobRepository, recycleJobService, jobRepository, database, scheduler,
+                bulk.getMaxConcurrency(), bulk.getReconcileInterval());
+    }
+
+    /**
+     * Pushes job states to the subscribers, so slow clients delay neither progress flush nor lease renewal
+     */
+    @Bean
+    public ScheduledExecutorService notifierScheduler() {
+        return Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @Bean
+    public TableThroughput tableThroughput() {
+        return new TableThroughput();
     }
 
     @Bean
     public RecycleJobExecutor recycleJobExecutor(Database database,
                                                  RecycleJobRepository jobRepository,
-                                                 ExecutorService jobsExecutorsService) {
-        return new LocalRecycleJobExecutor(database, jobRepository, jobsExecutorsService);
+                                                 @Qualifier("jobsExecutorsService") ExecutorService jobsExecutorsService,
+                                                 @Qualifier("shardsExecutorService") ExecutorService shardsExecutorService,
+                                                 BatchThrottle batchThrottle,
+                                                 TableThroughput tableThroughput,
+                                                 @Qualifier("archiveExecutorService") ExecutorService archiveExecutorService,
+                                                 MeterRegistry meterRegistry,
+                                                 @Qualifier("scheduler") ScheduledExecutorService scheduler,
+                                                 AppProperties appProperties) {
+        final AppProperties.AdaptiveBatch adaptiveBatch = appProperties.getAdaptiveBatch();
+        final AppProperties.Archive archive = appProperties.getArchive();
+        final AppProperties.Vacuum vacuum = appProperties.getVacuum();
+        final AppProperties.Retry retry = appProperties.getRetry();
+        final LocalRecycleJobExecutor localExecutor = new LocalRecycleJobExecutor(database, jobRepository,
+                jobsExecutorsService, shardsExecutorService,
+                appProperties.getExecutor().getMaxShardsPerJob(), job ->
+                adaptiveBatch.isEnabled()
+                        ? new AdaptiveBatchSizer(job.getBatchSize(), adaptiveBatch.getMinSize(),
+                                adaptiveBatch.getMaxSize(), adaptiveBatch.getTargetLatency())
+                        : AdaptiveBatchSizer.fixed(job.getBatchSize()),
+                appProperties.getExecutor().getPrefetchBatches(),
+                appProperties.getPartitionRecycleMode(),
+                appProperties.getSwapThreshold(),
+                batchThrottle,
+                tableThroughput,
+                !archive.isEnabled() ? null : job -> new CsvArchiveWriter(
+                        Paths.get(archive.getDirectory(), job.getTableName()), job.getId(),
+                        archive.getMaxFileRows(), archive.getBufferBatches(), archiveExecutorService),
+                StringUtils.hasText(appProperties.getMaintenanceWindow())
+                        ? MaintenanceWindow.parse(appProperties.getMaintenanceWindow()) : null,
+                scheduler,
+                !vacuum.isEnabled() ? null : new TableVacuum(database, vacuum.getEveryRows(),
+                        vacuum.getMinDeadTupleRatio()),
+                new BatchRetryPolicy(retry.getMaxRetries(), retry.getInitialBackoff(), retry.getMaxBackoff()),
+                meterRegistry);
+
+        final AppProperties.Executor executor = appProperties.getExecutor();
+        if (executor.getType() != AppProperties.Executor.Type.LEASED) {
+            //each local instance would resume the jobs still executed by the other ones
+            if (appProperties.getRepository().getType() == AppProperties.Repository.Type.JDBC
+                    && !executor.isSingleInstance()) {
+                throw new IllegalStateException("Local executor with jdbc repository requires single instance, "
+                        + "set app.executor.single-instance or use leased executor");
+            }
+            return localExecutor;
+        }
+        if (!(jobRepository instanceof JobQueue)) {
+            throw new IllegalStateException("Leased executor requires jdbc repository");
+        }
+        return new LeasedRecycleJobExecutor(localExecutor, (JobQueue) jobRepository, jobsExecutorsService, scheduler,
+                getMaxConcurrentJobs(appProperties), executor.getLeaseDuration(), executor.getPollInterval());
     }
 
     @Bean
-    public RecycleJobRepository recycleJobRepository(ScheduledExecutorService scheduler, AppProperties appProperties) {
+    public BatchThrottle batchThrottle(Database database, MeterRegistry meterRegistry, AppProperties appProperties) {
+        final AppProperties.Throttle throttle = appProperties.getThrottle();
+        final BatchThrottle loadThrottle = !throttle.isEnabled()
+                ? BatchThrottle.NONE
+                : new LoadAwareBatchThrottle(database,
+                        throttle.getMaxReplicationLagBytes(),
+                        throttle.getMaxActiveBackends(),
+                        throttle.getMaxWalBytesPerSecond(),
+                        throttle.getCheckInterval(),
+                        throttle.getMaxPause());
+        final AppProperties.Scheduler scheduler = appProperties.getScheduler();
+        if (!scheduler.isEnabled()) {
+            return loadThrottle;
+        }
+        return new FairBatchScheduler(loadThrottle, scheduler.getMaxBatchesInFlight(),
+                scheduler.getMaxRowsPerSecond(), meterRegistry);
+    }
+
+    @Bean
+    public RecycleJobRepository recycleJobRepository(DataSource dataSource,
+                                                     @Qualifier("scheduler") ScheduledExecutorService scheduler,
+                                                     AppProperties appProperties) {
+        final AppProperties.Repository repository = appProperties.getRepository();
+        if (repository.getType() == AppProperties.Repository.Type.JDBC) {
+            return new JdbcJobRepository(dataSource, scheduler, appProperties.getCompleteJobsRetentionPeriod(),
+                    repository.getProgressFlushInterval(), appProperties.getNodeId());
+        }
         return new InMemoryJobRepository(scheduler, appProperties.getCompleteJobsRetentionPeriod());
     }
 
+    @Bean
+    public RetentionPolicyRepository retentionPolicyRepository(DataSource dataSource, AppProperties appProperties) {
+        if (appProperties.getRepository().getType() == AppProperties.Repository.Type.JDBC) {
+            return new JdbcRetentionPolicyRepository(dataSource);
+        }
+        return new InMemoryRetentionPolicyRepository();
+    }
+
+    @Bean
+    public BulkJobRepository bulkJobRepository(DataSource dataSource, AppProperties appProperties) {
+        if (appProperties.getRepository().getType() == AppProperties.Repository.Type.JDBC) {
+            return new JdbcBulkJobRepository(dataSource);
+        }
+        return new InMemoryBulkJobRepository();
+    }
+
+    /**
+     * Resumes jobs and bulk jobs interrupted by the previous shutdown. Leased executor claims jobs from the queue by
+     * itself, while their bulk jobs are picked up by the periodic reconciliation.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.executor.type", havingValue = "local", matchIfMissing = true)
+    public ApplicationRunner jobsResumeRunner(RecycleJobService recycleJobService,
+                                              BulkRecycleJobService bulkRecycleJobService) {
+        return args -> {
+            recycleJobService.resumeActiveJobs();
+            bulkRecycleJobService.resumeBulkJobs();
+        };
+    }
+
     @Bean
     public ScheduledExecutorService scheduler() {
         return Executors.newSingleThreadScheduledExecutor();
@@ -46,23 +237,92 @@ public class AppConfig {
 
 
     @Bean
-    public ExecutorService jobsExecutorsService(AppProperties appProperties) {
-        return Executors.newFixedThreadPool(appProperties.getExecutor().getThreadsCount());
+    public ExecutorService jobsExecutorsService(AppProperties appProperties, MeterRegistry meterRegistry) {
+        if (appProperties.getExecutor().isVirtualThreads()) {
+            final BoundedConcurrencyExecutorService executorService = new BoundedConcurrencyExecutorService(
+                    VirtualThreads.newThreadPerTaskExecutor(), getMaxConcurrentJobs(appProperties));
+            meterRegistry.gauge(JOBS_WAITING_METRIC, executorService,
+                    BoundedConcurrencyExecutorService::getWaitingCount);
+            return ExecutorServiceMetrics.monitor(meterRegistry, executorService, "jobs", Tags.empty());
+        }
+        //exposes queue depth and active jobs count
+        return ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newFixedThreadPool(appProperties.getExecutor().getThreadsCount()), "jobs", Tags.empty());
+    }
+
+    @Bean
+    public ExecutorService shardsExecutorService(AppProperties appProperties, MeterRegistry meterRegistry) {
+        return ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newFixedThreadPool(appProperties.getExecutor().getShardThreadsCount()), "shards",
+                Tags.empty());
     }
 
+    /**
+     * Runs archive writer loops, one per job or none if archiving is disabled
+     */
     @Bean
-    public Database database(DataSource dataSource) {
-        return new PostgresDatabase(dataSource);
+    public ExecutorService archiveExecutorService() {
+        return Executors.newCachedThreadPool();
     }
 
+    /**
+     * Runs keys readers of the pipelined sessions, one per job or shard worker
+     */
     @Bean
-    public DataSource dataSource(AppProperties properties) {
+    public ExecutorService prefetchExecutorService() {
+        return Executors.newCachedThreadPool();
+    }
+
+    @Bean
+    public Database database(DataSource dataSource,
+                             AppProperties properties,
+                             MeterRegistry meterRegistry,
+                             @Qualifier("prefetchExecutorService") ExecutorService prefetchExecutorService) {
+        return new PostgresDatabase(dataSource, properties.getDatabase().getSessionConnectionMaxLifetime(),
+                meterRegistry, prefetchExecutorService, properties.getDatabase().getLockTimeout(),
+                properties.getDatabase().getStatementTimeout());
+    }
+
+    @Bean
+    public DataSource dataSource(AppProperties properties, MeterRegistry meterRegistry) {
         final HikariConfig config = new HikariConfig();
+        config.setMaximumPoolSize(getPoolSize(properties));
         config.setJdbcUrl(properties.getDatabase().getUrl());
         config.setUsername(properties.getDatabase().getUser());
         config.setPassword(properties.getDatabase().getPass());
         config.setAutoCommit(false);
+        //exposes pool wait time as hikaricp.connections.acquire
+        config.setPoolName("recycler");
+        config.setMetricRegistry(meterRegistry);
         return new HikariDataSource(config);
     }
 
+    private static int getPoolSize(AppProperties properties) {
+        final AppProperties.Executor executor = properties.getExecutor();
+        //enough connections to pin them for every job and shard thread, plus reserved ones
+        return Optional.ofNullable(properties.getDatabase().getPoolSize())
+                .orElse((executor.getThreadsCount() + executor.getShardThreadsCount())
+                        * getConnectionsPerThread(executor) + RESERVED_CONNECTIONS);
+    }
+
+    /**
+     * Jobs running on virtual threads are limited by the connections left after shard threads and reserved ones
+     */
+    private static int getMaxConcurrentJobs(AppProperties properties) {
+        final AppProperties.Executor executor = properties.getExecutor();
+        if (!executor.isVirtualThreads()) {
+            return executor.getThreadsCount();
+        }
+        final int connectionsPerThread = getConnectionsPerThread(executor);
+        return Math.max(1, (getPoolSize(properties) - executor.getShardThreadsCount() * connectionsPerThread
+                - RESERVED_CONNECTIONS) / connectionsPerThread);
+    }
+
+    /**
+     * Pipelined session pins the second connection for its keys reader
+     */
+    private static int getConnectionsPerThread(AppProperties.Executor executor) {
+        return executor.getPrefetchBatches() > 0 ? 2 : 1;
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.test.datarecycler.config;
 
+import com.test.datarecycler.exec.PartitionRecycleMode;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -12,20 +13,189 @@ import java.time.Duration;
 public class AppProperties {
 
     private Integer batchSize;
+    private AdaptiveBatch adaptiveBatch;
+    private PartitionRecycleMode partitionRecycleMode;
+    /**
+     * Min estimated fraction of expired rows to purge the table by copy-and-swap in the auto purge mode
+     */
+    private double swapThreshold;
+    /**
+     * Daily UTC window of the {@code HH:mm-HH:mm} form jobs delete rows within, empty to delete rows at any time
+     */
+    private String maintenanceWindow;
+    private Throttle throttle;
+    private Scheduler scheduler;
     private Database database;
+    private Repository repository;
     private Executor executor;
+    private Stream stream;
+    private Archive archive;
+    private Retention retention;
+    private Bulk bulk;
+    private Vacuum vacuum;
+    private Retry retry;
     private Duration completeJobsRetentionPeriod;
+    /**
+     * Unique id of this instance among all instances sharing the jobs
+     */
+    private String nodeId;
 
     @Data
     public static class Database {
         private String url;
         private String user;
         private String pass;
+        private Duration sessionConnectionMaxLifetime;
+        /**
+         * Max period of time the batch waits for a lock, zero if not limited
+         */
+        private Duration lockTimeout;
+        /**
+         * Max execution time of the batch statement, zero if not limited
+         */
+        private Duration statementTimeout;
+        /**
+         * Connections pool size, by default enough to pin a connection for every job and shard thread
+         */
+        private Integer poolSize;
+    }
+
+    @Data
+    public static class Repository {
+        private Type type;
+        private Duration progressFlushInterval;
+
+        public enum Type {
+            MEMORY, JDBC
+        }
+    }
+
+    @Data
+    public static class AdaptiveBatch {
+        private boolean enabled;
+        private Duration targetLatency;
+        private Integer minSize;
+        private Integer maxSize;
+    }
+
+    @Data
+    public static class Throttle {
+        private boolean enabled;
+        private Long maxReplicationLagBytes;
+        private Integer maxActiveBackends;
+        private Long maxWalBytesPerSecond;
+        private Duration checkInterval;
+        private Duration maxPause;
+    }
+
+    @Data
+    public static class Scheduler {
+        private boolean enabled;
+        private Integer maxBatchesInFlight;
+        private Long maxRowsPerSecond;
+    }
+
+    @Data
+    public static class Stream {
+        /**
+         * How often progress of the watched jobs is pushed to the subscribers
+         */
+        private Duration publishInterval;
+        /**
+         * Max time the job state stream or wait request is kept open
+         */
+        private Duration timeout;
+    }
+
+    @Data
+    public static class Archive {
+        /**
+         * Whether deleted rows are written into the compressed CSV files
+         */
+        private boolean enabled;
+        /**
+         * Root directory of the archive, files of each table are written into its own subdirectory
+         */
+        private String directory;
+        private Long maxFileRows;
+        /**
+         * Max count of deleted batches buffered by each job until written
+         */
+        private Integer bufferBatches;
+    }
+
+    @Data
+    public static class Retention {
+        /**
+         * Max shift of the retention policy runs, so the policies sharing the same schedule don't start together
+         */
+        private Duration maxJitter;
+        /**
+         * How often policies added or removed by other instances are picked up
+         */
+        private Duration refreshInterval;
+    }
+
+    @Data
+    public static class Bulk {
+        /**
+         * Max count of the concurrently running children of the bulk job, unless specified by the request
+         */
+        private Integer maxConcurrency;
+        /**
+         * How often complete children, whose completion has been missed, are looked up
+         */
+        private Duration reconcileInterval;
     }
 
     @Data
     public static class Executor {
         private Integer threadsCount;
+        private Integer shardThreadsCount;
+        private Integer maxShardsPerJob;
+        /**
+         * Whether jobs run on virtual threads, limited by the connections pool size rather than threads count
+         */
+        private boolean virtualThreads;
+        /**
+         * Count of key sets selected ahead of the deleted batch, zero disables pipelining. Pipelined session takes
+         * two connections.
+         */
+        private int prefetchBatches;
+        private Type type;
+        /**
+         * Whether the only instance executes jobs of the jdbc repository, required by the local executor, since it
+         * resumes all active jobs at startup
+         */
+        private boolean singleInstance;
+        private Duration leaseDuration;
+        private Duration pollInterval;
+
+        public enum Type {
+            LOCAL, LEASED
+        }
     }
 
+    @Data
+    public static class Vacuum {
+        private boolean enabled;
+        /**
+         * Count of rows deleted by the job between vacuums, zero to vacuum only once the job is completed
+         */
+        private long everyRows;
+        /**
+         * Min fraction of the dead tuples the table is vacuumed at
+         */
+        private double minDeadTupleRatio;
+    }
+
+    @Data
+    public static class Retry {
+        /**
+         * Max count of consecutive retries of the batch failed by a transient error, zero disables retries
+         */
+        private int maxRetries;
+        private Duration initialBackoff;
+        private Duration maxBackoff;
+    }
 }
@@ -0,0 +1,89 @@
+package com.test.datarecycler.db;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.sql.SQLException;
+
+/**
+ * Failure of the batch deletion classified by the SQLState of the underlying database error. The batch is rolled back
+ * entirely, so transient failures could be retried from the same cursor.
+ */
+@Getter
+public class BatchFailedException extends RuntimeException {
+
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+    private static final String QUERY_CANCELED = "57014";
+    private static final String SERIALIZATION_FAILURE = "40001";
+    private static final String DEADLOCK_DETECTED = "40P01";
+    private static final String CONNECTION_EXCEPTION_CLASS = "08";
+    /**
+     * Server is shutting down or restarting, e.g. on failover
+     */
+    private static final String OPERATOR_INTERVENTION_CLASS = "57P";
+
+    private final Kind kind;
+
+    public BatchFailedException(@NonNull Kind kind, Throwable cause) {
+        super(String.format("Batch failed: %s", kind), cause);
+        this.kind = kind;
+    }
+
+    /**
+     * Classify the failure by the first database error found in the causes chain
+     * @param failure failure of the batch
+     * @return classified failure
+     */
+    public static BatchFailedException of(@NonNull Throwable failure) {
+        if (failure instanceof BatchFailedException) {
+            return (BatchFailedException) failure;
+        }
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                return new BatchFailedException(classify(((SQLException) cause).getSQLState()), failure);
+            }
+        }
+        return new BatchFailedException(Kind.FATAL, failure);
+    }
+
+    private static Kind classify(String sqlState) {
+        if (sqlState == null) {
+            return Kind.FATAL;
+        }
+        switch (sqlState) {
+            case LOCK_NOT_AVAILABLE:
+                return Kind.LOCK_TIMEOUT;
+            case QUERY_CANCELED:
+                return Kind.STATEMENT_TIMEOUT;
+            case SERIALIZATION_FAILURE:
+                return Kind.SERIALIZATION_FAILURE;
+            case DEADLOCK_DETECTED:
+                return Kind.DEADLOCK;
+            default:
+                return sqlState.startsWith(CONNECTION_EXCEPTION_CLASS)
+                        || sqlState.startsWith(OPERATOR_INTERVENTION_CLASS) ? Kind.CONNECTION_LOST : Kind.FATAL;
+        }
+    }
+
+    public boolean isTransient() {
+        return kind != Kind.FATAL;
+    }
+
+    public enum Kind {
+        /**
+         * Batch has waited for the row or table lock longer than the lock timeout
+         */
+        LOCK_TIMEOUT,
+        /**
+         * Batch has taken longer than the statement timeout
+         */
+        STATEMENT_TIMEOUT,
+        SERIALIZATION_FAILURE,
+        DEADLOCK,
+        CONNECTION_LOST,
+        /**
+         * Failure, which is not going to disappear on retry, e.g. missing table or malformed data
+         */
+        FATAL
+    }
+}
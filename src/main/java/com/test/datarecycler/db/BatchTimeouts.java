@@ -0,0 +1,64 @@
+package com.test.datarecycler.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lock and statement timeouts of the session batches. They are set once per pinned connection by the session level
+ * settings rather than before each batch transaction, so they don't cost a round trip per batch, and are reset before
+ * the connection is returned to the pool shared with the other queries.
+ */
+class BatchTimeouts {
+
+    private final String setQuery;
+    private final String resetQuery;
+
+    private BatchTimeouts(String setQuery, String resetQuery) {
+        this.setQuery = setQuery;
+        this.resetQuery = resetQuery;
+    }
+
+    /**
+     * @param lockTimeout      max lock wait of the single statement, null or zero to wait without limit
+     * @param statementTimeout max execution time of the single statement, null or zero to execute without limit
+     * @return timeouts or null if batches are not limited
+     */
+    static BatchTimeouts of(Duration lockTimeout, Duration statementTimeout) {
+        final List<String> settings = new ArrayList<>();
+        final List<String> resets = new ArrayList<>();
+        if (lockTimeout != null && !lockTimeout.isZero()) {
+            settings.add(String.format("SET lock_timeout = %d", lockTimeout.toMillis()));
+            resets.add("RESET lock_timeout");
+        }
+        if (statementTimeout != null && !statementTimeout.isZero()) {
+            settings.add(String.format("SET statement_timeout = %d", statementTimeout.toMillis()));
+            resets.add("RESET statement_timeout");
+        }
+        return settings.isEmpty() ? null : new BatchTimeouts(String.join("; ", settings), String.join("; ", resets));
+    }
+
+    /**
+     * Set timeouts of the connection within its current transaction, so they are kept once it is committed
+     */
+    void apply(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(setQuery);
+        }
+    }
+
+    /**
+     * Roll back the unfinished transaction, then reset timeouts of the connection and commit, since the pool rolls
+     * back uncommitted changes
+     */
+    void reset(Connection connection) throws SQLException {
+        connection.rollback();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(resetQuery);
+        }
+        connection.commit();
+    }
+}
@@ -1,6 +1,10 @@
 package com.test.datarecycler.db;
 
+import com.test.datarecycler.entity.RecycleJob;
+
 import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Represents access point to the database
@@ -8,12 +12,153 @@ import java.time.Instant;
 public interface Database {
 
     /**
-     * Delete data older than specified datetime
+     * Delete data older than specified datetime. Rows are deleted in (datetime, id) order starting strictly after
+     * the specified cursor.
      * @param tableName destination table
      * @param fieldName datetime field name to query old row
      * @param olderThan how old data should be deleted
+     * @param after position of the last deleted row, null to start from the very beginning
      * @param count count of rows to be deleted
-     * @return actually deleted rows count. Zero means there is not more records to delete.
+     * @return actually deleted rows count and new cursor. Selected count less than requested means there are no
+     * more records to delete.
+     * @throws BatchFailedException if the batch has failed and nothing has been deleted
+     */
+    DeleteResult deleteData(String tableName, String fieldName, Instant olderThan, RecycleJob.Cursor after, int count);
+
+    /**
+     * Open session to delete data of the table by many batches, which is cheaper than
+     * {@link #deleteData(String, String, Instant, RecycleJob.Cursor, int)} calls
+     * @param tableName destination table
+     * @param fieldName datetime field name to query old row
+     * @return new session, should be closed by the caller
+     */
+    DatabaseSession openSession(String tableName, String fieldName);
+
+    /**
+     * Open session, which reads and deletes rows in one pass and passes every deleted row to the sink before the
+     * batch is committed
+     * @param tableName destination table
+     * @param fieldName datetime field name to query old row
+     * @param sink receiver of the deleted rows
+     * @return new session, should be closed by the caller
+     */
+    DatabaseSession openArchivingSession(String tableName, String fieldName, DeletedRowsSink sink);
+
+    /**
+     * Open session, which selects keys of the next batches ahead while the current batch is deleted
+     * @param tableName destination table
+     * @param fieldName datetime field name to query old row
+     * @param prefetchBatches max count of key sets selected ahead, positive
+     * @return new session, should be closed by the caller
+     */
+    DatabaseSession openPipelinedSession(String tableName, String fieldName, int prefetchBatches);
+
+    /**
+     * Find the oldest datetime in the table
+     * @param tableName destination table
+     * @param fieldName datetime field name
+     * @return min value of the datetime field, empty when table is empty
+     */
+    Optional<Instant> findMinDatetime(String tableName, String fieldName);
+
+    /**
+     * Find tables of the schema by the name pattern. Partitions are skipped, since they are recycled along with their
+     * partitioned table.
+     * @param schemaName       schema to look up tables in
+     * @param tableNamePattern SQL LIKE pattern of the table name
+     * @return schema qualified names of the matching tables ordered by name
+     */
+    List<String> findTables(String schemaName, String tableNamePattern);
+
+    /**
+     * Find partitions of the table range partitioned by the datetime field, which contain only rows older than
+     * specified datetime, i.e. their upper bound is less or equal to it.
+     * @param tableName partitioned table
+     * @param fieldName datetime field name the table is partitioned by
+     * @param olderThan how old data should be deleted
+     * @return names of the expired partitions, empty when table is not partitioned by the specified field
+     */
+    List<String> findExpiredPartitions(String tableName, String fieldName, Instant olderThan);
+
+    /**
+     * Detach partition from the partitioned table and drop it
+     * @param tableName partitioned table
+     * @param partitionName partition to remove
+     * @param detachOnly whether partition should be kept as a standalone table after detach
+     */
+    void dropPartition(String tableName, String partitionName, boolean detachOnly);
+
+    /**
+     * Get current database load indicators
+     * @return load snapshot
+     */
+    DatabaseLoad getLoad();
+
+    /**
+     * Estimate average row size of the table including its share of indexes and TOAST, based on planner statistics
+     * @param tableName destination table
+     * @return estimated row size in bytes, zero when table statistics are not collected yet
+     */
+    long estimateRowSize(String tableName);
+
+    /**
+     * Get tuples statistics of the table collected by the statistics system, which is cheap as opposed to scanning
+     * @param tableName destination table
+     * @return table statistics, zeros when they are not collected yet
+     */
+    TableStats getTableStats(String tableName);
+
+    /**
+     * Vacuum the table, so the space of the deleted rows could be reused, and update its planner statistics. Neither
+     * reads nor writes of the table are blocked. Partitioned table is vacuumed along with all its partitions.
+     * @param tableName destination table
+     */
+    void vacuumAnalyze(String tableName);
+
+    /**
+     * Estimate count of the table rows older than specified datetime, based on planner statistics
+     * @param tableName destination table
+     * @param fieldName datetime field name to query old rows
+     * @param olderThan how old data should be deleted
+     * @return estimated rows count
+     */
+    long estimateExpiredCount(String tableName, String fieldName, Instant olderThan);
+
+    /**
+     * Estimate fraction of the table rows older than specified datetime, based on planner statistics
+     * @param tableName destination table
+     * @param fieldName datetime field name to query old rows
+     * @param olderThan how old data should be deleted
+     * @return estimated fraction from 0 to 1, zero when table statistics are not collected yet
+     */
+    double estimateExpiredFraction(String tableName, String fieldName, Instant olderThan);
+
+    /**
+     * Estimate deletion of data older than specified datetime by the planner, without deleting anything
+     * @param tableName destination table
+     * @param fieldName datetime field name to query old rows
+     * @param olderThan how old data should be deleted
+     * @param batchSize size of the batch to plan the batch query for
+     * @return estimated rows count and plan of the batch query
+     */
+    DeleteEstimate estimateDelete(String tableName, String fieldName, Instant olderThan, int batchSize);
+
+    /**
+     * Check whether the table could be replaced by its copy, i.e. it is a plain table, which is neither inherited nor
+     * referenced by foreign keys or views, and has no triggers, identity columns or row level security
+     * @param tableName destination table
+     * @return true if {@link #copyAndSwap(String, String, Instant)} is applicable to the table
+     */
+    boolean isSwappable(String tableName);
+
+    /**
+     * Delete data older than specified datetime by copying the rest of rows into the new table with the same columns,
+     * indexes, constraints and grants, which then replaces the original table. Writes to the table are blocked until
+     * the swap is completed. Either the table is swapped or nothing is changed.
+     * @param tableName destination table
+     * @param fieldName datetime field name to query old rows
+     * @param olderThan how old data should be deleted
+     * @return count of deleted rows
      */
-    int deleteData(String tableName, String fieldName, Instant olderThan, int count);
+    long copyAndSwap(String tableName, String fieldName, Instant olderThan);
 }
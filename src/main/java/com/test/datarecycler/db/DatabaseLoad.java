@@ -0,0 +1,22 @@
+package com.test.datarecycler.db;
+
+import lombok.Value;
+
+/**
+ * Snapshot of the database load indicators
+ */
+@Value
+public class DatabaseLoad {
+    /**
+     * Max lag of the streaming replicas and logical consumers behind the primary in bytes
+     */
+    private long replicationLagBytes;
+    /**
+     * Count of client backends executing queries right now
+     */
+    private int activeBackends;
+    /**
+     * Current WAL write position in bytes, allows to estimate WAL generation rate by two snapshots
+     */
+    private long walPositionBytes;
+}
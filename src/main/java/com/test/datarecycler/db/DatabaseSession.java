@@ -0,0 +1,31 @@
+package com.test.datarecycler.db;
+
+import com.test.datarecycler.entity.RecycleJob;
+
+import java.time.Instant;
+
+/**
+ * Stateful access point to the single table, which keeps database resources such as connection and prepared
+ * statements between batches of the job. Not threadsafe, should be confined to the single thread and closed when the
+ * job is completed, cancelled or failed.
+ */
+public interface DatabaseSession extends AutoCloseable {
+
+    /**
+     * Delete data older than specified datetime, the same as
+     * {@link Database#deleteData(String, String, Instant, RecycleJob.Cursor, int)} for the session table.
+     * @param olderThan how old data should be deleted
+     * @param after position of the last deleted row, null to start from the very beginning
+     * @param count count of rows to be deleted
+     * @return actually deleted rows count and new cursor. Selected count less than requested means there are no
+     * more records to delete.
+     * @throws BatchFailedException if the batch has failed and nothing has been deleted
+     */
+    DeleteResult deleteData(Instant olderThan, RecycleJob.Cursor after, int count);
+
+    /**
+     * Release all resources held by the session
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,22 @@
+package com.test.datarecycler.db;
+
+import lombok.Value;
+
+/**
+ * Planner estimates of the data deletion, obtained without executing the queries
+ */
+@Value
+public class DeleteEstimate {
+    /**
+     * Estimated count of rows to delete
+     */
+    private long rows;
+    /**
+     * Whether the batch query looks up rows by the index, rather than by the sequential scan
+     */
+    private boolean indexScan;
+    /**
+     * Textual plan of the batch query
+     */
+    private String plan;
+}
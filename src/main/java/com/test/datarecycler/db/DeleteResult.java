@@ -0,0 +1,36 @@
+package com.test.datarecycler.db;
+
+import com.test.datarecycler.entity.RecycleJob;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Result of the single batch deletion
+ */
+@Value
+@AllArgsConstructor
+public class DeleteResult {
+    /**
+     * Actually deleted rows count
+     */
+    private int deletedCount;
+    /**
+     * Count of rows selected to be deleted. Rows deleted or updated by someone else after selection are skipped, so it
+     * could exceed the deleted count. Selected count less than requested means there are no more rows to delete.
+     */
+    private int selectedCount;
+    /**
+     * Position of the last selected row, which the next batch continues after. Equals to the passed cursor when nothing
+     * was selected.
+     */
+    private RecycleJob.Cursor cursor;
+
+    /**
+     * Create result of the batch, which has deleted all selected rows
+     * @param deletedCount actually deleted rows count
+     * @param cursor       position of the last deleted row
+     */
+    public DeleteResult(int deletedCount, RecycleJob.Cursor cursor) {
+        this(deletedCount, deletedCount, cursor);
+    }
+}
@@ -0,0 +1,21 @@
+package com.test.datarecycler.db;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receiver of the rows deleted by the batch. Called before the batch is committed, so the batch is rolled back and
+ * the job is failed if the rows could not be accepted.
+ */
+@FunctionalInterface
+public interface DeletedRowsSink {
+
+    /**
+     * Accept deleted rows
+     * @param columns names of the table columns
+     * @param rows    deleted rows, values are in the text representation of the database, null for NULL
+     * @throws IOException          when rows could not be stored
+     * @throws InterruptedException when interrupted while waiting for the space to store rows
+     */
+    void accept(String[] columns, List<String[]> rows) throws IOException, InterruptedException;
+}
@@ -0,0 +1,392 @@
+package com.test.datarecycler.db;
+
+import com.test.datarecycler.entity.RecycleJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.Value;
+import org.postgresql.PGStatement;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Postgres {@link DatabaseSession}, which overlaps selection of the next batch keys with deletion of the current one.
+ * Keys reader walks the (datetime, id) index on its own connection and hands key sets over to the session through the
+ * bounded queue, while the session deletes the current key set by {@code id = ANY(?)} on the pinned connection. So
+ * neither connection waits for the other one's round trip, and delete locks are held no longer than before.
+ * <p>
+ * Prefetched keys are used only if they start right after the requested cursor, otherwise the reader is restarted
+ * from the requested cursor. Key sets selected before the batch size has changed are split or joined to the requested
+ * size, so the rest of keys is deleted by the next batch. Uses two pooled connections per session. Failure of either
+ * connection fails the batch with {@link BatchFailedException}.
+ */
+@RequiredArgsConstructor
+class PipelinedDatabaseSession implements DatabaseSession {
+
+    private static final String SELECT_KEYS_QUERY =
+            "SELECT %2$s AS cursor_ts, id FROM %1$s WHERE %2$s < ? %3$s ORDER BY %2$s, id LIMIT ?";
+
+    private static final String AFTER_CURSOR_CONDITION = "AND (%s, id) > (?, ?)";
+
+    /**
+     * Rows updated since their keys were selected could be not expired anymore, so the condition is checked again
+     */
+    private static final String DELETE_KEYS_QUERY = "DELETE FROM %1$s WHERE id = ANY(?) AND %2$s < ?";
+
+    /**
+     * How often the session waiting for the keys checks whether the reader is still alive
+     */
+    private static final long READER_CHECK_MILLIS = 100;
+
+    private final DataSource dataSource;
+    private final String tableName;
+    private final String fieldName;
+    /**
+     * Max period of time the connection is pinned to the session
+     */
+    private final Duration connectionMaxLifetime;
+    /**
+     * Delete query execution and commit time
+     */
+    private final Timer deleteTimer;
+    private final Counter errorsCounter;
+    /**
+     * Executes keys readers, each one takes its thread until the session is closed or the keys are exhausted
+     */
+    private final ExecutorService readerExecutorService;
+    /**
+     * Max count of key sets selected ahead of the deleted one
+     */
+    private final int prefetchBatches;
+    /**
+     * Lock and statement timeouts of the batches and key sets, null if they are not limited
+     */
+    private final BatchTimeouts timeouts;
+
+    private Connection connection;
+    private long connectionAcquiredNanos;
+    private PreparedStatement deleteStatement;
+    private KeysReader reader;
+
+    @Override
+    @SneakyThrows
+    public DeleteResult deleteData(@NonNull Instant olderThan, RecycleJob.Cursor after, int count) {
+        try {
+            final List<RecycleJob.Cursor> keys = takeKeys(olderThan, after, count);
+            if (keys.isEmpty()) {
+                return new DeleteResult(0, after);
+            }
+
+            final PreparedStatement preparedStatement = getDeleteStatement();
+            final Long[] keyIds = new Long[keys.size()];
+            for (int i = 0; i < keyIds.length; i++) {
+                keyIds[i] = keys.get(i).getId();
+            }
+            final Array ids = connection.createArrayOf("bigint", keyIds);
+            preparedStatement.setArray(1, ids);
+            preparedStatement.setTimestamp(2, Timestamp.from(olderThan));
+
+            final long start = System.nanoTime();
+            final int deletedCount = preparedStatement.executeUpdate();
+            connection.commit();
+            deleteTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            ids.free();
+            if (System.nanoTime() - connectionAcquiredNanos >= connectionMaxLifetime.toNanos()) {
+                releaseConnection();
+            }
+            //rows skipped by the delete are either deleted by someone else or not expired anymore, so the end of rows
+            //is signalled by the short key set rather than by the deleted count
+            return new DeleteResult(deletedCount, keys.size(), keys.get(keys.size() - 1));
+        } catch (Exception e) {
+            errorsCounter.increment();
+            //keys prefetched after the failed batch are useless
+            stopReader();
+            try {
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            try {
+                //connection could be broken, so the next batch should acquire another one
+                releaseConnection();
+            } catch (SQLException releaseError) {
+                e.addSuppressed(releaseError);
+            }
+            if (e instanceof InterruptedException) {
+                throw e;
+            }
+            throw BatchFailedException.of(e);
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void close() {
+        stopReader();
+        releaseConnection();
+    }
+
+    /**
+     * Take the next keys prefetched by the reader, restarting it if they don't start right after the cursor
+     * @return keys of the batch, fewer than requested only if there are no more expired rows
+     */
+    private List<RecycleJob.Cursor> takeKeys(Instant olderThan, RecycleJob.Cursor after, int count)
+            throws InterruptedException, ExecutionException {
+        //keys are selected once again after the reader has been exhausted, since more rows could expire since then
+        if (reader == null || !reader.olderThan.equals(olderThan) || !Objects.equals(reader.nextCursor, after)
+                || reader.isDrained()) {
+            startReader(olderThan, after, count);
+        }
+        reader.batchSize = count;
+        final List<RecycleJob.Cursor> keys = reader.take(count);
+        reader.nextCursor = keys.isEmpty() ? after : keys.get(keys.size() - 1);
+        return keys;
+    }
+
+    private void startReader(Instant olderThan, RecycleJob.Cursor after, int count) {
+        stopReader();
+        reader = new KeysReader(olderThan, after, count);
+        reader.future = readerExecutorService.submit(reader);
+    }
+
+    private void stopReader() {
+        if (reader != null) {
+            reader.future.cancel(true);
+            reader = null;
+        }
+    }
+
+    private PreparedStatement getDeleteStatement() throws SQLException {
+        if (connection == null) {
+            connection = dataSource.getConnection();
+            if (connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+            }
+            connectionAcquiredNanos = System.nanoTime();
+            if (timeouts != null) {
+                timeouts.apply(connection);
+            }
+        }
+        if (deleteStatement == null) {
+            deleteStatement = prepareStatement(connection, String.format(DELETE_KEYS_QUERY, tableName, fieldName));
+        }
+        return deleteStatement;
+    }
+
+    private static PreparedStatement prepareStatement(Connection connection, String query) throws SQLException {
+        final PreparedStatement preparedStatement = connection.prepareStatement(query);
+        //statement is executed many times, so it is worth to prepare it on the server side right away
+        if (preparedStatement.isWrapperFor(PGStatement.class)) {
+            preparedStatement.unwrap(PGStatement.class).setPrepareThreshold(1);
+        }
+        return preparedStatement;
+    }
+
+    private void releaseConnection() throws SQLException {
+        if (connection == null) {
+            return;
+        }
+        try {
+            //settings must not leak to the other users of the pooled connection
+            if (timeouts != null) {
+                timeouts.reset(connection);
+            }
+        } finally {
+            try {
+                //closes prepared statement as well and returns connection to the pool
+                connection.close();
+            } finally {
+                connection = null;
+                deleteStatement = null;
+            }
+        }
+    }
+
+    /**
+     * Selects key sets one after another starting from the given cursor, until the short key set is selected
+     */
+    private class KeysReader implements Runnable {
+        private final Instant olderThan;
+        private final RecycleJob.Cursor startCursor;
+        private final BlockingQueue<Keys> queue = new ArrayBlockingQueue<>(prefetchBatches);
+        /**
+         * Keys of the taken key sets left after the previous batches, accessed by the session only
+         */
+        private final List<RecycleJob.Cursor> takenKeys = new ArrayList<>();
+        /**
+         * Batch size of the next selected key set, the latest one requested by the session
+         */
+        private volatile int batchSize;
+        private Future<?> future;
+        /**
+         * Cursor the next taken keys start after, accessed by the session only
+         */
+        private RecycleJob.Cursor nextCursor;
+        /**
+         * Whether the last key set has been taken, accessed by the session only
+         */
+        private boolean exhausted;
+
+        KeysReader(Instant olderThan, RecycleJob.Cursor startCursor, int batchSize) {
+            this.olderThan = olderThan;
+            this.startCursor = startCursor;
+            this.nextCursor = startCursor;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        @SneakyThrows
+        public void run() {
+            try (Connection readerConnection = dataSource.getConnection()) {
+                if (timeouts != null) {
+                    timeouts.apply(readerConnection);
+                }
+                try {
+                    selectKeySets(readerConnection);
+                } finally {
+                    //settings must not leak to the other users of the pooled connection
+                    if (timeouts != null) {
+                        timeouts.reset(readerConnection);
+                    }
+                }
+            }
+        }
+
+        private void selectKeySets(Connection readerConnection) throws SQLException, InterruptedException {
+            PreparedStatement firstBatchStatement = null;
+            PreparedStatement nextBatchStatement = null;
+            RecycleJob.Cursor cursor = startCursor;
+            while (!Thread.currentThread().isInterrupted()) {
+                final PreparedStatement preparedStatement;
+                if (cursor == null) {
+                    if (firstBatchStatement == null) {
+                        firstBatchStatement = prepareStatement(readerConnection,
+                                String.format(SELECT_KEYS_QUERY, tableName, fieldName, ""));
+                    }
+                    preparedStatement = firstBatchStatement;
+                } else {
+                    if (nextBatchStatement == null) {
+                        nextBatchStatement = prepareStatement(readerConnection, String.format(SELECT_KEYS_QUERY,
+                                tableName, fieldName, String.format(AFTER_CURSOR_CONDITION, fieldName)));
+                    }
+                    preparedStatement = nextBatchStatement;
+                }
+                final int limit = batchSize;
+                final Keys keys = selectKeys(preparedStatement, cursor, limit);
+                //doesn't hold the snapshot between key sets
+                readerConnection.commit();
+                queue.put(keys);
+                if (keys.isLast()) {
+                    return;
+                }
+                cursor = keys.getRows().get(keys.getRows().size() - 1);
+            }
+        }
+
+        private Keys selectKeys(PreparedStatement preparedStatement, RecycleJob.Cursor cursor, int limit)
+                throws SQLException {
+            int paramIndex = 1;
+            preparedStatement.setTimestamp(paramIndex++, Timestamp.from(olderThan));
+            if (cursor != null) {
+                preparedStatement.setTimestamp(paramIndex++, Timestamp.from(cursor.getDatetime()));
+                preparedStatement.setLong(paramIndex++, cursor.getId());
+            }
+            preparedStatement.setInt(paramIndex, limit);
+            final List<RecycleJob.Cursor> rows = new ArrayList<>(limit);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows.add(new RecycleJob.Cursor(resultSet.getTimestamp("cursor_ts").toInstant(),
+                            resultSet.getLong("id")));
+                }
+            }
+            return new Keys(rows, rows.size() < limit);
+        }
+
+        /**
+         * Take the next keys, splitting or joining prefetched key sets to the requested count
+         * @return keys in the (datetime, id) order, fewer than requested only if the reader has been exhausted
+         * @throws ExecutionException if the reader has failed
+         */
+        List<RecycleJob.Cursor> take(int count) throws InterruptedException, ExecutionException {
+            while (takenKeys.size() < count && !exhausted) {
+                final Keys keys = poll();
+                if (keys == null) {
+                    exhausted = true;
+                } else {
+                    takenKeys.addAll(keys.getRows());
+                    exhausted = keys.isLast();
+                }
+            }
+            final List<RecycleJob.Cursor> batchKeys = takenKeys.subList(0, Math.min(count, takenKeys.size()));
+            final List<RecycleJob.Cursor> keys = new ArrayList<>(batchKeys);
+            batchKeys.clear();
+            return keys;
+        }
+
+        /**
+         * @return true if all selected keys have been taken
+         */
+        boolean isDrained() {
+            return exhausted && takenKeys.isEmpty();
+        }
+
+        /**
+         * Wait for the next key set
+         * @return key set or null if the reader has completed
+         * @throws ExecutionException if the reader has failed
+         */
+        private Keys poll() throws InterruptedException, ExecutionException {
+            while (true) {
+                final Keys keys = queue.poll(READER_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                if (keys != null) {
+                    return keys;
+                }
+                if (future.isDone()) {
+                    //key set could be put right before completion
+                    final Keys lastKeys = queue.poll();
+                    if (lastKeys != null) {
+                        return lastKeys;
+                    }
+                    future.get();
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Key set selected by the single query
+     */
+    @Value
+    private static class Keys {
+        /**
+         * Datetime and id of the selected rows
+         */
+        private List<RecycleJob.Cursor> rows;
+        /**
+         * Whether fewer rows than requested have been selected, so there are no more expired rows
+         */
+        private boolean last;
+    }
+}
@@ -1,53 +1,543 @@
 package com.test.datarecycler.db;
 
+import com.test.datarecycler.entity.RecycleJob;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.SneakyThrows;
-import lombok.extern.slf4j.Slf4j;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Simple postgres {@link Database} implementation based on raw JDBC.
  */
-@Slf4j
 @AllArgsConstructor
 public class PostgresDatabase implements Database {
 
+    static final String DELETE_METRIC = "recycler.db.delete";
+    static final String ERRORS_METRIC = "recycler.db.errors";
+
+    /**
+     * Looks up declarative partitions of the table range partitioned by the single datetime column, whose upper
+     * bound is less or equal to the specified datetime. MAXVALUE and DEFAULT partitions never match. Bound and datetime
+     * are compared in the type of the column, the same way the batches compare it, so bounds of the columns without
+     * time zone are not shifted by the session time zone.
+     */
+    private static final String EXPIRED_PARTITIONS_QUERY =
+            "SELECT c.oid::regclass::text AS partition_name " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "  JOIN pg_attribute a ON a.attrelid = i.inhparent AND a.attname = ? " +
+            "  CROSS JOIN LATERAL (SELECT substring(pg_get_expr(c.relpartbound, c.oid) " +
+            "    FROM 'TO \\(''([^'']+)''\\)') AS upper_bound) b " +
+            "WHERE i.inhparent = ?::regclass " +
+            "  AND pg_get_partkeydef(i.inhparent) = 'RANGE (' || quote_ident(a.attname) || ')' " +
+            "  AND CASE WHEN a.atttypid IN ('timestamp'::regtype, 'date'::regtype) " +
+            "    THEN b.upper_bound::timestamp <= ?::timestamp " +
+            "    ELSE b.upper_bound::timestamptz <= ?::timestamptz END " +
+            "ORDER BY partition_name";
+
+    private static final String TABLES_QUERY =
+            "SELECT format('%I.%I', t.table_schema, t.table_name) AS table_name " +
+            "FROM information_schema.tables t " +
+            "WHERE t.table_schema = ? AND t.table_name LIKE ? AND t.table_type = 'BASE TABLE' " +
+            "  AND NOT EXISTS (SELECT 1 FROM pg_inherits i " +
+            "    WHERE i.inhrelid = format('%I.%I', t.table_schema, t.table_name)::regclass) " +
+            "ORDER BY t.table_name";
+
+    private static final String LOAD_QUERY =
+            "SELECT " +
+            "  (SELECT coalesce(max(pg_wal_lsn_diff(pg_current_wal_lsn(), replay_lsn)), 0) " +
+            "   FROM pg_stat_replication) AS replication_lag_bytes, " +
+            "  (SELECT count(*) FROM pg_stat_activity " +
+            "   WHERE state = 'active' AND backend_type = 'client backend') AS active_backends, " +
+            "  pg_wal_lsn_diff(pg_current_wal_lsn(), '0/0') AS wal_position_bytes";
+
+    /**
+     * Divides total relation size by the planner row count estimate, which is cheap as opposed to count(*)
+     */
+    private static final String ROW_SIZE_QUERY =
+            "SELECT CASE WHEN c.reltuples > 0 " +
+            "  THEN (pg_total_relation_size(c.oid) / c.reltuples)::bigint ELSE 0 END AS row_size " +
+            "FROM pg_class c WHERE c.oid = ?::regclass";
+
+    /**
+     * Sums up statistics of the table itself or of all its partitions. Vacuum progress is reported for the leaf tables
+     * being vacuumed, including the ones vacuumed by the autovacuum workers.
+     */
+    private static final String TABLE_STATS_QUERY =
+            "SELECT coalesce(sum(s.n_live_tup), 0) AS live_tuples, coalesce(sum(s.n_dead_tup), 0) AS dead_tuples, " +
+            "  EXISTS (SELECT 1 FROM pg_stat_progress_vacuum p " +
+            "    WHERE p.relid IN (SELECT relid FROM pg_partition_tree(?::regclass)) " +
+            "      AND p.datname = current_database()) AS vacuum_running " +
+            "FROM pg_partition_tree(?::regclass) t JOIN pg_stat_user_tables s ON s.relid = t.relid";
+
+    private static final String ROW_COUNT_QUERY = "SELECT reltuples FROM pg_class WHERE oid = ?::regclass";
+
+    /**
+     * Planner estimates rows count by the column histogram without touching the table
+     */
+    private static final String EXPLAIN_EXPIRED_QUERY = "EXPLAIN SELECT 1 FROM %s WHERE %s < ?";
+
+    /**
+     * Plans the lookup of the very first batch, the same way the delete batch query does
+     */
+    private static final String EXPLAIN_BATCH_QUERY =
+            "EXPLAIN SELECT id FROM %1$s WHERE %2$s < ? ORDER BY %2$s, id LIMIT ?";
+
+    private static final Pattern PLAN_ROWS_PATTERN = Pattern.compile("rows=(\\d+)");
+
+    private static final String SWAPPABLE_QUERY =
+            "SELECT c.relkind = 'r' AND NOT c.relispartition AND NOT c.relrowsecurity " +
+            "  AND NOT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = c.oid OR inhparent = c.oid) " +
+            "  AND NOT EXISTS (SELECT 1 FROM pg_constraint WHERE confrelid = c.oid) " +
+            "  AND NOT EXISTS (SELECT 1 FROM pg_trigger WHERE tgrelid = c.oid AND NOT tgisinternal) " +
+            "  AND NOT EXISTS (SELECT 1 FROM pg_attribute " +
+            "    WHERE attrelid = c.oid AND attidentity <> '' AND NOT attisdropped) " +
+            "  AND NOT EXISTS (SELECT 1 FROM pg_depend d JOIN pg_rewrite r ON r.oid = d.objid " +
+            "    WHERE d.classid = 'pg_rewrite'::regclass AND d.refobjid = c.oid AND r.ev_class <> c.oid) " +
+            "  AS swappable " +
+            "FROM pg_class c WHERE c.oid = ?::regclass";
+
+    private static final String SWAP_TABLE_SUFFIX = "_recycler_swap";
+
+    /**
+     * Swap never waits for the table lock longer, so it doesn't block queries queued behind it for long
+     */
+    private static final String SWAP_LOCK_TIMEOUT = "10s";
+
+    /**
+     * Foreign keys are not copied by CREATE TABLE LIKE
+     */
+    private static final String FOREIGN_KEYS_QUERY =
+            "SELECT quote_ident(conname) AS name, pg_get_constraintdef(oid) AS definition " +
+            "FROM pg_constraint WHERE conrelid = ?::regclass AND contype = 'f'";
+
+    private static final String GRANTS_QUERY =
+            "SELECT CASE WHEN a.grantee = 0 THEN 'PUBLIC' ELSE quote_ident(r.rolname) END AS grantee, " +
+            "  a.privilege_type " +
+            "FROM pg_class c CROSS JOIN aclexplode(c.relacl) a LEFT JOIN pg_roles r ON r.oid = a.grantee " +
+            "WHERE c.oid = ?::regclass";
+
+    /**
+     * Sequences of the serial columns are dropped along with the owning table, so the new table should own them
+     */
+    private static final String OWNED_SEQUENCES_QUERY =
+            "SELECT quote_ident(attname) AS column_name, " +
+            "  pg_get_serial_sequence(?, quote_ident(attname)) AS sequence_name " +
+            "FROM pg_attribute " +
+            "WHERE attrelid = ?::regclass AND attnum > 0 AND NOT attisdropped " +
+            "  AND pg_get_serial_sequence(?, quote_ident(attname)) IS NOT NULL";
+
     private final DataSource dataSource;
+    /**
+     * Max period of time the connection is pinned to the single {@link DatabaseSession}
+     */
+    private final Duration sessionConnectionMaxLifetime;
+    private final MeterRegistry meterRegistry;
+    /**
+     * Executes keys readers of the pipelined sessions
+     */
+    private final ExecutorService prefetchExecutorService;
+    /**
+     * Max period of time the batch waits for a lock, null or zero if not limited
+     */
+    private final Duration lockTimeout;
+    /**
+     * Max execution time of the batch statement, null or zero if not limited
+     */
+    private final Duration statementTimeout;
+
+    @Override
+    public DeleteResult deleteData(@NonNull String tableName,
+                                   @NonNull String fieldName,
+                                   @NonNull Instant olderThan,
+                                   RecycleJob.Cursor after,
+                                   int count) {
+        try (DatabaseSession session = openSession(tableName, fieldName)) {
+            return session.deleteData(olderThan, after, count);
+        }
+    }
+
+    @Override
+    public DatabaseSession openSession(@NonNull String tableName, @NonNull String fieldName) {
+        return createSession(tableName, fieldName, null);
+    }
+
+    @Override
+    public DatabaseSession openArchivingSession(@NonNull String tableName,
+                                                @NonNull String fieldName,
+                                                @NonNull DeletedRowsSink sink) {
+        return createSession(tableName, fieldName, sink);
+    }
+
+    @Override
+    @SneakyThrows
+    public Optional<Instant> findMinDatetime(@NonNull String tableName, @NonNull String fieldName) {
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement()) {
+            final Timestamp minDatetime;
+            try (ResultSet resultSet = statement
+                    .executeQuery(String.format("SELECT min(%s) AS min_datetime FROM %s", fieldName, tableName))) {
+                resultSet.next();
+                minDatetime = resultSet.getTimestamp("min_datetime");
+            }
+            connection.commit();
+            return Optional.ofNullable(minDatetime).map(Timestamp::toInstant);
+        }
+    }
 
     @Override
     @SneakyThrows
-    public int deleteData(@NonNull String tableName,
-                          @NonNull String fieldName,
-                          @NonNull Instant olderThan,
-                          int count) {
+    public List<String> findExpiredPartitions(@NonNull String tableName,
+                                              @NonNull String fieldName,
+                                              @NonNull Instant olderThan) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(EXPIRED_PARTITIONS_QUERY)) {
+            preparedStatement.setString(1, fieldName);
+            preparedStatement.setString(2, tableName);
+            preparedStatement.setTimestamp(3, Timestamp.from(olderThan));
+            preparedStatement.setTimestamp(4, Timestamp.from(olderThan));
+
+            final List<String> partitions = new ArrayList<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    partitions.add(resultSet.getString("partition_name"));
+                }
+            }
+            connection.commit();
+            return partitions;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public List<String> findTables(@NonNull String schemaName, @NonNull String tableNamePattern) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(TABLES_QUERY)) {
+            preparedStatement.setString(1, schemaName);
+            preparedStatement.setString(2, tableNamePattern);
+
+            final List<String> tables = new ArrayList<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    tables.add(resultSet.getString("table_name"));
+                }
+            }
+            connection.commit();
+            return tables;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void dropPartition(@NonNull String tableName, @NonNull String partitionName, boolean detachOnly) {
         final Connection connection = getConnection();
-        try {
-            final String query = String.format("DELETE FROM %s WHERE id IN (SELECT id FROM %s WHERE %s < ? LIMIT ?)",
-                    tableName, tableName, fieldName);
-            final PreparedStatement preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setTimestamp(1, new Timestamp(olderThan.toEpochMilli()));
-            preparedStatement.setInt(2, count);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", tableName, partitionName));
+            if (!detachOnly) {
+                statement.execute(String.format("DROP TABLE %s", partitionName));
+            }
+            connection.commit();
+        } catch (Exception e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            //release connection to the pool
+            connection.close();
+        }
+    }
 
-            final int deletedCount = preparedStatement.executeUpdate();
+    @Override
+    @SneakyThrows
+    public DatabaseLoad getLoad() {
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement()) {
+            final DatabaseLoad load;
+            try (ResultSet resultSet = statement.executeQuery(LOAD_QUERY)) {
+                resultSet.next();
+                load = new DatabaseLoad(resultSet.getLong("replication_lag_bytes"),
+                        resultSet.getInt("active_backends"),
+                        resultSet.getLong("wal_position_bytes"));
+            }
+            connection.commit();
+            return load;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public long estimateRowSize(@NonNull String tableName) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(ROW_SIZE_QUERY)) {
+            preparedStatement.setString(1, tableName);
+            final long rowSize;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                rowSize = resultSet.next() ? resultSet.getLong("row_size") : 0;
+            }
+            connection.commit();
+            return rowSize;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public TableStats getTableStats(@NonNull String tableName) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(TABLE_STATS_QUERY)) {
+            preparedStatement.setString(1, tableName);
+            preparedStatement.setString(2, tableName);
+            final TableStats stats;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                stats = new TableStats(resultSet.getLong("live_tuples"), resultSet.getLong("dead_tuples"),
+                        resultSet.getBoolean("vacuum_running"));
+            }
+            connection.commit();
+            return stats;
+        }
+    }
+
+    /**
+     * VACUUM can't be executed inside the transaction block, so it is executed in the autocommit mode
+     */
+    @Override
+    @SneakyThrows
+    public void vacuumAnalyze(@NonNull String tableName) {
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            try {
+                statement.execute(String.format("VACUUM (ANALYZE) %s", tableName));
+            } finally {
+                connection.setAutoCommit(false);
+            }
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public double estimateExpiredFraction(@NonNull String tableName,
+                                          @NonNull String fieldName,
+                                          @NonNull Instant olderThan) {
+        try (Connection connection = getConnection();
+             PreparedStatement rowCountStatement = connection.prepareStatement(ROW_COUNT_QUERY);
+             PreparedStatement explainStatement = connection
+                     .prepareStatement(String.format(EXPLAIN_EXPIRED_QUERY, tableName, fieldName))) {
+            rowCountStatement.setString(1, tableName);
+            final double rowCount;
+            try (ResultSet resultSet = rowCountStatement.executeQuery()) {
+                rowCount = resultSet.next() ? resultSet.getDouble("reltuples") : 0;
+            }
+            final long expiredCount = explainExpiredCount(explainStatement, olderThan);
+            connection.commit();
+            return rowCount > 0 ? Math.min(1, expiredCount / rowCount) : 0;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public long estimateExpiredCount(@NonNull String tableName,
+                                     @NonNull String fieldName,
+                                     @NonNull Instant olderThan) {
+        try (Connection connection = getConnection();
+             PreparedStatement explainStatement = connection
+                     .prepareStatement(String.format(EXPLAIN_EXPIRED_QUERY, tableName, fieldName))) {
+            final long expiredCount = explainExpiredCount(explainStatement, olderThan);
+            connection.commit();
+            return expiredCount;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public DeleteEstimate estimateDelete(@NonNull String tableName,
+                                         @NonNull String fieldName,
+                                         @NonNull Instant olderThan,
+                                         int batchSize) {
+        try (Connection connection = getConnection();
+             PreparedStatement explainStatement = connection
+                     .prepareStatement(String.format(EXPLAIN_EXPIRED_QUERY, tableName, fieldName));
+             PreparedStatement explainBatchStatement = connection
+                     .prepareStatement(String.format(EXPLAIN_BATCH_QUERY, tableName, fieldName))) {
+            final long expiredCount = explainExpiredCount(explainStatement, olderThan);
+            explainBatchStatement.setTimestamp(1, Timestamp.from(olderThan));
+            explainBatchStatement.setInt(2, batchSize);
+            final StringBuilder plan = new StringBuilder();
+            try (ResultSet resultSet = explainBatchStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(plan.length() == 0 ? "" : "\n").append(resultSet.getString(1));
+                }
+            }
+            connection.commit();
+            final boolean indexScan = plan.indexOf("Index Scan") >= 0 || plan.indexOf("Index Only Scan") >= 0;
+            return new DeleteEstimate(expiredCount, indexScan, plan.toString());
+        }
+    }
+
+    /**
+     * @return planner estimate of the rows count by the top plan node, which holds the total estimate
+     */
+    private long explainExpiredCount(PreparedStatement explainStatement, Instant olderThan) throws SQLException {
+        explainStatement.setTimestamp(1, Timestamp.from(olderThan));
+        try (ResultSet resultSet = explainStatement.executeQuery()) {
+            if (!resultSet.next()) {
+                return 0;
+            }
+            final Matcher matcher = PLAN_ROWS_PATTERN.matcher(resultSet.getString(1));
+            return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public boolean isSwappable(@NonNull String tableName) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SWAPPABLE_QUERY)) {
+            preparedStatement.setString(1, tableName);
+            final boolean swappable;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                swappable = resultSet.next() && resultSet.getBoolean("swappable");
+            }
+            connection.commit();
+            return swappable;
+        }
+    }
+
+    /**
+     * Copies the rest of rows under the SHARE lock, which blocks writes but not reads, then takes the ACCESS EXCLUSIVE
+     * lock just to drop the original table and rename the copy. DDL is transactional, so any failure leaves the
+     * original table untouched.
+     */
+    @Override
+    @SneakyThrows
+    public long copyAndSwap(@NonNull String tableName, @NonNull String fieldName, @NonNull Instant olderThan) {
+        final String swapTableName = tableName + SWAP_TABLE_SUFFIX;
+        //the new name can't be qualified by the schema
+        final String unqualifiedTableName = tableName.substring(tableName.lastIndexOf('.') + 1);
+        final Connection connection = getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(String.format("SET LOCAL lock_timeout = '%s'", SWAP_LOCK_TIMEOUT));
+            statement.execute(String.format("LOCK TABLE %s IN SHARE MODE", tableName));
+
+            final long deletedCount;
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    String.format("SELECT count(*) AS expired_count FROM %s WHERE %s < ?", tableName, fieldName))) {
+                preparedStatement.setTimestamp(1, Timestamp.from(olderThan));
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    resultSet.next();
+                    deletedCount = resultSet.getLong("expired_count");
+                }
+            }
+            final List<String> swapStatements = prepareSwapStatements(connection, tableName, swapTableName);
+
+            statement.execute(String.format("CREATE TABLE %s (LIKE %s INCLUDING ALL)", swapTableName, tableName));
+            try (PreparedStatement preparedStatement = connection.prepareStatement(String.format(
+                    "INSERT INTO %1$s SELECT * FROM %2$s WHERE %3$s >= ? OR %3$s IS NULL",
+                    swapTableName, tableName, fieldName))) {
+                preparedStatement.setTimestamp(1, Timestamp.from(olderThan));
+                preparedStatement.executeUpdate();
+            }
+            for (String swapStatement : swapStatements) {
+                statement.execute(swapStatement);
+            }
+
+            statement.execute(String.format("LOCK TABLE %s IN ACCESS EXCLUSIVE MODE", tableName));
+            statement.execute(String.format("DROP TABLE %s", tableName));
+            statement.execute(String.format("ALTER TABLE %s RENAME TO %s", swapTableName, unqualifiedTableName));
+            connection.commit();
+
+            //statistics of the new table are empty
+            statement.execute(String.format("ANALYZE %s", tableName));
             connection.commit();
             return deletedCount;
         } catch (Exception e) {
-            log.error("Unexpected error", e);
             connection.rollback();
-            return 0;
+            throw e;
         } finally {
             //release connection to the pool
             connection.close();
         }
     }
 
+    /**
+     * Prepare statements recreating the table properties not copied by CREATE TABLE LIKE: foreign keys, grants and
+     * ownership of the serial sequences
+     */
+    private List<String> prepareSwapStatements(Connection connection, String tableName, String swapTableName)
+            throws SQLException {
+        final List<String> statements = new ArrayList<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(FOREIGN_KEYS_QUERY)) {
+            preparedStatement.setString(1, tableName);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    statements.add(String.format("ALTER TABLE %s ADD CONSTRAINT %s %s",
+                            swapTableName, resultSet.getString("name"), resultSet.getString("definition")));
+                }
+            }
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(GRANTS_QUERY)) {
+            preparedStatement.setString(1, tableName);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    statements.add(String.format("GRANT %s ON %s TO %s",
+                            resultSet.getString("privilege_type"), swapTableName, resultSet.getString("grantee")));
+                }
+            }
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(OWNED_SEQUENCES_QUERY)) {
+            preparedStatement.setString(1, tableName);
+            preparedStatement.setString(2, tableName);
+            preparedStatement.setString(3, tableName);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    statements.add(String.format("ALTER SEQUENCE %s OWNED BY %s.%s",
+                            resultSet.getString("sequence_name"), swapTableName,
+                            resultSet.getString("column_name")));
+                }
+            }
+        }
+        return statements;
+    }
+
+    @Override
+    public DatabaseSession openPipelinedSession(@NonNull String tableName, @NonNull String fieldName,
+                                                int prefetchBatches) {
+        if (prefetchBatches <= 0) {
+            throw new IllegalArgumentException("Prefetch batches count must be positive");
+        }
+        return new PipelinedDatabaseSession(dataSource, tableName, fieldName, sessionConnectionMaxLifetime,
+                getDeleteTimer(tableName), meterRegistry.counter(ERRORS_METRIC, "table", tableName),
+                prefetchExecutorService, prefetchBatches, BatchTimeouts.of(lockTimeout, statementTimeout));
+    }
+
+    private DatabaseSession createSession(String tableName, String fieldName, DeletedRowsSink sink) {
+        return new PostgresDatabaseSession(dataSource, tableName, fieldName, sessionConnectionMaxLifetime,
+                getDeleteTimer(tableName), meterRegistry.counter(ERRORS_METRIC, "table", tableName), sink,
+                BatchTimeouts.of(lockTimeout, statementTimeout));
+    }
+
+    private Timer getDeleteTimer(String tableName) {
+        return Timer.builder(DELETE_METRIC)
+                .tag("table", tableName)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
     private Connection getConnection() throws SQLException {
         final Connection connection = dataSource.getConnection();
         if (!connection.getAutoCommit()) {
@@ -0,0 +1,252 @@
+package com.test.datarecycler.db;
+
+import com.test.datarecycler.entity.RecycleJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.postgresql.PGStatement;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Postgres {@link DatabaseSession}, which pins the pooled connection and reuses server-side prepared delete
+ * statements across batches, so each batch skips pool round trip, parsing and planning. Connection is returned to the
+ * pool once its max lifetime is exceeded, on any error and on close, then it is acquired again by the next batch.
+ * Failed batch is rolled back and thrown as {@link BatchFailedException}, so nothing is deleted by it.
+ */
+@RequiredArgsConstructor
+class PostgresDatabaseSession implements DatabaseSession {
+
+    /**
+     * Selects the next batch by the keyset index range scan over (datetime, id) and deletes it in a single statement.
+     * Rows updated since they were selected could be not expired anymore, so the condition is checked again. Returns
+     * selected and deleted rows counts along with the greatest selected (datetime, id) pair, which is the next cursor,
+     * so neither skipped rows finish the job nor updated ones move the cursor past the expiration bound.
+     */
+    private static final String DELETE_BATCH_QUERY =
+            "WITH batch AS (" +
+            "  SELECT %2$s AS cursor_ts, id FROM %1$s WHERE %2$s < ? %3$s ORDER BY %2$s, id LIMIT ?" +
+            "), deleted AS (" +
+            "  DELETE FROM %1$s t USING batch WHERE t.id = batch.id AND t.%2$s < ? RETURNING t.id" +
+            ") " +
+            "SELECT count(*) OVER () AS selected_count, (SELECT count(*) FROM deleted) AS deleted_count, " +
+            "cursor_ts, id AS cursor_id FROM batch ORDER BY cursor_ts DESC, id DESC LIMIT 1";
+
+    /**
+     * Deletes the next batch the same way, but returns all deleted rows, so they are read and deleted in one pass.
+     * Deleted flag, cursor and selected count columns of the batch are appended to the table columns. Batch, which has
+     * nothing deleted, returns the single row of nulls carrying them.
+     */
+    private static final String ARCHIVE_BATCH_QUERY =
+            "WITH batch AS (" +
+            "  SELECT %2$s AS cursor_ts, id FROM %1$s WHERE %2$s < ? %3$s ORDER BY %2$s, id LIMIT ?" +
+            "), deleted AS (" +
+            "  DELETE FROM %1$s t USING batch WHERE t.id = batch.id AND t.%2$s < ? " +
+            "  RETURNING t.*, true AS recycler_deleted" +
+            "), batch_end AS (" +
+            "  SELECT cursor_ts, id, count(*) OVER () AS selected_count FROM batch " +
+            "  ORDER BY cursor_ts DESC, id DESC LIMIT 1" +
+            ") " +
+            "SELECT deleted.*, batch_end.cursor_ts AS recycler_cursor_ts, batch_end.id AS recycler_cursor_id, " +
+            "batch_end.selected_count AS recycler_selected_count FROM batch_end LEFT JOIN deleted ON true";
+
+    /**
+     * Deleted flag, cursor datetime, cursor id and selected count
+     */
+    private static final int SERVICE_COLUMNS_COUNT = 4;
+
+    private static final String AFTER_CURSOR_CONDITION = "AND (%s, id) > (?, ?)";
+
+    private final DataSource dataSource;
+    private final String tableName;
+    private final String fieldName;
+    /**
+     * Max period of time the connection is pinned to the session
+     */
+    private final Duration connectionMaxLifetime;
+    /**
+     * Batch query execution and commit time
+     */
+    private final Timer deleteTimer;
+    private final Counter errorsCounter;
+    /**
+     * Receiver of the deleted rows, null if rows are not archived
+     */
+    private final DeletedRowsSink sink;
+    /**
+     * Lock and statement timeouts of the batches, null if batches are not limited
+     */
+    private final BatchTimeouts timeouts;
+
+    private Connection connection;
+    private long connectionAcquiredNanos;
+    /**
+     * Statement of the very first batch, which has no cursor yet
+     */
+    private PreparedStatement firstBatchStatement;
+    private PreparedStatement nextBatchStatement;
+
+    @Override
+    @SneakyThrows
+    public DeleteResult deleteData(@NonNull Instant olderThan, RecycleJob.Cursor after, int count) {
+        try {
+            final PreparedStatement preparedStatement = getStatement(after != null);
+            int paramIndex = 1;
+            preparedStatement.setTimestamp(paramIndex++, Timestamp.from(olderThan));
+            if (after != null) {
+                preparedStatement.setTimestamp(paramIndex++, Timestamp.from(after.getDatetime()));
+                preparedStatement.setLong(paramIndex++, after.getId());
+            }
+            preparedStatement.setInt(paramIndex++, count);
+            preparedStatement.setTimestamp(paramIndex, Timestamp.from(olderThan));
+
+            final long start = System.nanoTime();
+            final DeleteResult result;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (sink != null) {
+                    result = archiveRows(resultSet, after);
+                } else {
+                    result = resultSet.next()
+                            ? new DeleteResult(resultSet.getInt("deleted_count"), resultSet.getInt("selected_count"),
+                                    new RecycleJob.Cursor(resultSet.getTimestamp("cursor_ts").toInstant(),
+                                            resultSet.getLong("cursor_id")))
+                            : new DeleteResult(0, after);
+                }
+            }
+            connection.commit();
+            deleteTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (System.nanoTime() - connectionAcquiredNanos >= connectionMaxLifetime.toNanos()) {
+                releaseConnection();
+            }
+            return result;
+        } catch (Exception e) {
+            errorsCounter.increment();
+            try {
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            try {
+                //connection could be broken, so the next batch should acquire another one
+                releaseConnection();
+            } catch (SQLException releaseError) {
+                e.addSuppressed(releaseError);
+            }
+            if (e instanceof IOException || e instanceof InterruptedException) {
+                //rows could not be archived, so the job can't go on
+                throw e;
+            }
+            throw BatchFailedException.of(e);
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void close() {
+        releaseConnection();
+    }
+
+    private PreparedStatement getStatement(boolean afterCursor) throws SQLException {
+        if (connection == null) {
+            connection = dataSource.getConnection();
+            if (connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+            }
+            connectionAcquiredNanos = System.nanoTime();
+            if (timeouts != null) {
+                timeouts.apply(connection);
+            }
+        }
+        if (afterCursor) {
+            if (nextBatchStatement == null) {
+                nextBatchStatement = prepareStatement(String.format(AFTER_CURSOR_CONDITION, fieldName));
+            }
+            return nextBatchStatement;
+        }
+        if (firstBatchStatement == null) {
+            firstBatchStatement = prepareStatement("");
+        }
+        return firstBatchStatement;
+    }
+
+    /**
+     * Pass deleted rows to the sink and take the cursor and selected count of the batch repeated by every row
+     */
+    private DeleteResult archiveRows(ResultSet resultSet, RecycleJob.Cursor after)
+            throws SQLException, IOException, InterruptedException {
+        final ResultSetMetaData metaData = resultSet.getMetaData();
+        final String[] columns = new String[metaData.getColumnCount() - SERVICE_COLUMNS_COUNT];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = metaData.getColumnName(i + 1);
+        }
+        final List<String[]> rows = new ArrayList<>();
+        RecycleJob.Cursor cursor = after;
+        int selectedCount = 0;
+        while (resultSet.next()) {
+            if (selectedCount == 0) {
+                cursor = new RecycleJob.Cursor(resultSet.getTimestamp(columns.length + 2).toInstant(),
+                        resultSet.getLong(columns.length + 3));
+                selectedCount = resultSet.getInt(columns.length + 4);
+            }
+            if (resultSet.getObject(columns.length + 1) == null) {
+                continue;
+            }
+            final String[] row = new String[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                row[i] = resultSet.getString(i + 1);
+            }
+            rows.add(row);
+        }
+        if (!rows.isEmpty()) {
+            sink.accept(columns, rows);
+        }
+        return new DeleteResult(rows.size(), selectedCount, cursor);
+    }
+
+    private PreparedStatement prepareStatement(String afterCondition) throws SQLException {
+        final PreparedStatement preparedStatement = connection.prepareStatement(String.format(
+                sink == null ? DELETE_BATCH_QUERY : ARCHIVE_BATCH_QUERY, tableName, fieldName, afterCondition));
+        //statement is executed many times, so it is worth to prepare it on the server side right away
+        if (preparedStatement.isWrapperFor(PGStatement.class)) {
+            preparedStatement.unwrap(PGStatement.class).setPrepareThreshold(1);
+        }
+        return preparedStatement;
+    }
+
+    private void releaseConnection() throws SQLException {
+        if (connection == null) {
+            return;
+        }
+        try {
+            //settings must not leak to the other users of the pooled connection
+            if (timeouts != null) {
+                timeouts.reset(connection);
+            }
+        } finally {
+            try {
+                //closes prepared statements as well and returns connection to the pool
+                connection.close();
+            } finally {
+                connection = null;
+                firstBatchStatement = null;
+                nextBatchStatement = null;
+            }
+        }
+    }
+}
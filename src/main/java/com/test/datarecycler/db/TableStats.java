@@ -0,0 +1,27 @@
+package com.test.datarecycler.db;
+
+import lombok.Value;
+
+/**
+ * Snapshot of the table tuples statistics, summed up over all partitions of the partitioned table
+ */
+@Value
+public class TableStats {
+    private long liveTuples;
+    /**
+     * Tuples deleted or updated, whose space is not reclaimed by the vacuum yet
+     */
+    private long deadTuples;
+    /**
+     * Whether the table is being vacuumed right now, either by the autovacuum or by someone else
+     */
+    private boolean vacuumRunning;
+
+    /**
+     * @return fraction of the dead tuples from 0 to 1, zero when the table is empty
+     */
+    public double getDeadTupleRatio() {
+        final long totalTuples = liveTuples + deadTuples;
+        return totalTuples > 0 ? (double) deadTuples / totalTuples : 0;
+    }
+}
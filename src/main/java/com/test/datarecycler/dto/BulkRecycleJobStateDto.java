@@ -0,0 +1,27 @@
+package com.test.datarecycler.dto;
+
+import com.test.datarecycler.entity.RecycleJob;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class BulkRecycleJobStateDto {
+    private RecycleJob.Status state;
+    private long deletedCount;
+    private int tables;
+    private long pending;
+    private long running;
+    private long finished;
+    private long failed;
+    private long cancelled;
+    private List<Child> children;
+
+    @Value
+    public static class Child {
+        private String tableName;
+        private String jobId;
+        private RecycleJob.Status state;
+        private long deletedCount;
+    }
+}
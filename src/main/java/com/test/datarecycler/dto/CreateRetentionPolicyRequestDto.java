@@ -0,0 +1,38 @@
+package com.test.datarecycler.dto;
+
+import lombok.Data;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+@Data
+public class CreateRetentionPolicyRequestDto {
+    @NotNull
+    private String tableName;
+    @NotNull
+    private String datetimeFieldName;
+    /**
+     * ISO-8601 duration, e.g. P30D
+     */
+    @NotNull
+    private Duration retention;
+    /**
+     * Cron expression in UTC with seconds, e.g. "0 0 3 * * *"
+     */
+    private String cron;
+    private Duration interval;
+    private Duration maxWindow;
+
+    @AssertTrue(message = "must be set along with positive retention and either valid cron or positive interval")
+    public boolean isSchedule() {
+        return isPositive(retention) && (maxWindow == null || isPositive(maxWindow)) && (cron == null
+                ? isPositive(interval)
+                : interval == null && CronSequenceGenerator.isValidExpression(cron));
+    }
+
+    private static boolean isPositive(Duration duration) {
+        return duration != null && !duration.isNegative() && !duration.isZero();
+    }
+}
@@ -0,0 +1,14 @@
+package com.test.datarecycler.dto;
+
+import lombok.Value;
+
+@Value
+public class RecycleJobEstimateDto {
+    private long estimatedRows;
+    private boolean indexScan;
+    private String plan;
+    private int batchSize;
+    private long estimatedBatches;
+    private Double rowsPerSecond;
+    private Long etaSeconds;
+}
@@ -3,8 +3,27 @@ package com.test.datarecycler.dto;
 import com.test.datarecycler.entity.RecycleJob;
 import lombok.Value;
 
+import java.time.Instant;
+
 @Value
 public class RecycleJobStateDto {
     private RecycleJob.Status state;
-    private int deletedCount;
+    private long deletedCount;
+    private int batchSize;
+    private long droppedPartitions;
+    private long throttledMillis;
+    private long batches;
+    private long bytesFreedEstimate;
+    private Instant lastBatchTime;
+    private Instant startTime;
+    private Long estimatedTotal;
+    private Double percentComplete;
+    private double rowsPerSecond;
+    private Long etaSeconds;
+    private long lastBatchLatencyMillis;
+    private Double deadTupleRatio;
+    private long vacuums;
+    private long bytesReclaimedEstimate;
+    private long retries;
+    private long lockTimeouts;
 }
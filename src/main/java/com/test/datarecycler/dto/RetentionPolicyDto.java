@@ -0,0 +1,18 @@
+package com.test.datarecycler.dto;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+public class RetentionPolicyDto {
+    private String policyId;
+    private String tableName;
+    private String datetimeFieldName;
+    private long retentionSeconds;
+    private String cron;
+    private Long intervalSeconds;
+    private Long maxWindowSeconds;
+    private Instant watermark;
+    private String runJobId;
+}
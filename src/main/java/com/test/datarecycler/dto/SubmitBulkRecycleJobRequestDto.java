@@ -0,0 +1,32 @@
+package com.test.datarecycler.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.util.List;
+
+@Data
+public class SubmitBulkRecycleJobRequestDto {
+    private List<String> tableNames;
+    private String schemaName;
+    /**
+     * SQL LIKE pattern of the table names in the schema, e.g. tenant\_%
+     */
+    private String tableNamePattern;
+    @NotNull
+    private String datetimeFieldName;
+    @NotNull
+    private Instant olderThan;
+    @Min(1)
+    private Integer maxConcurrency;
+
+    @AssertTrue(message = "must be either non empty table names or schema name along with table name pattern")
+    public boolean isTables() {
+        return tableNames != null
+                ? !tableNames.isEmpty() && schemaName == null && tableNamePattern == null
+                : schemaName != null && tableNamePattern != null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.test.datarecycler.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class SubmitBulkRecycleJobResponseDto {
+    private String bulkJobId;
+    private List<String> tableNames;
+}
@@ -1,7 +1,9 @@
 package com.test.datarecycler.dto;
 
+import com.test.datarecycler.entity.RecycleJob;
 import lombok.Data;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.time.Instant;
 
@@ -13,4 +15,13 @@ public class SubmitRecycleJobRequestDto {
     private String datetimeFieldName;
     @NotNull
     private Instant olderThan;
+    @Min(1)
+    private Integer shards;
+    private Integer priority;
+    @Min(1)
+    private Integer weight;
+    private RecycleJob.PurgeMode purgeMode;
+    private String maintenanceWindow;
+    @Min(1)
+    private Integer finishWithinWindows;
 }
@@ -0,0 +1,70 @@
+package com.test.datarecycler.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Parent job recycling many tables of the same structure, one child recycle job per table. Children are started no
+ * more than the concurrency cap at a time, the next one as soon as any of the running ones is complete.
+ */
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class BulkRecycleJob {
+
+    private final String id;
+    private final String fieldName;
+    private final Instant olderThan;
+    /**
+     * Max count of the concurrently running children
+     */
+    private final int maxConcurrency;
+    /**
+     * Whether the job is cancelled, so no more children are started
+     */
+    private final boolean cancelled;
+    private final List<Child> children;
+
+    /**
+     * Child of the bulk job. Status is PENDING until the child job is created, RUNNING until it is complete, then the
+     * final status of the child job.
+     */
+    @Value
+    public static class Child {
+        private String tableName;
+        /**
+         * Id of the child job, null until it is created
+         */
+        private String jobId;
+        private RecycleJob.Status status;
+        /**
+         * Count of rows deleted by the complete child job
+         */
+        private long deletedCount;
+    }
+
+    /**
+     * Bulk job state aggregated over its children
+     */
+    @Value
+    public static class State {
+        private RecycleJob.Status status;
+        private long deletedCount;
+        /**
+         * Children along with the actual deleted count of the running ones
+         */
+        private List<Child> children;
+
+        /**
+         * @return count of children in the given status
+         */
+        public long getChildrenCount(RecycleJob.Status childStatus) {
+            return children.stream().filter(child -> child.getStatus() == childStatus).count();
+        }
+    }
+}
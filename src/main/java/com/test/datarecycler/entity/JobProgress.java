@@ -0,0 +1,297 @@
+package com.test.datarecycler.entity;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mutable threadsafe progress counters of the running job. Executor updates them on every batch without any
+ * allocation, while consistent immutable {@link RecycleJob.State} snapshots are produced only on demand. Neither
+ * updates nor snapshots block each other.
+ */
+public class JobProgress {
+
+    /**
+     * Time constant of the exponentially weighted deletion rate
+     */
+    private static final long RATE_DECAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Count of busy spins before the snapshot yields the processor to the updaters it waits for
+     */
+    private static final int MAX_SPINS = 100;
+
+    /**
+     * Seqlock counters of the started and finished updates. Snapshot is consistent if all updates started before it
+     * have finished and no update has started while it has been taken, so it never observes a half-recorded batch and
+     * never blocks updaters.
+     */
+    private final AtomicLong updatesStarted = new AtomicLong();
+    private final AtomicLong updatesFinished = new AtomicLong();
+
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong bytesFreedEstimate = new AtomicLong();
+    private final AtomicLong droppedPartitions = new AtomicLong();
+    private final AtomicLong throttledMillis = new AtomicLong();
+    private final AtomicLong vacuums = new AtomicLong();
+    private final AtomicLong bytesReclaimedEstimate = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong lockTimeouts = new AtomicLong();
+    /**
+     * Dead tuples ratio of the table measured by the last vacuum check stored as double bits, NaN until then
+     */
+    private final AtomicLong deadTupleRatioBits = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+    private volatile long lastBatchTimeMillis;
+    private volatile int batchSize;
+    private volatile RecycleJob.Cursor cursor;
+    private volatile long startTimeMillis;
+    /**
+     * Estimated count of rows to delete, negative when unknown
+     */
+    private volatile long estimatedTotal = -1;
+    private volatile long lastBatchLatencyMillis;
+    /**
+     * Exponentially weighted rate of deleted rows per second stored as double bits, NaN until the first batch
+     */
+    private final AtomicLong rowsPerSecondBits = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+    /**
+     * Time of the last rate update, so each batch is accounted along with the time passed since the previous batch
+     * of any shard
+     */
+    private final AtomicLong rateUpdateNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Create new instance
+     * @param batchSize initial batch size
+     */
+    public JobProgress(int batchSize) {
+        this(batchSize, null);
+    }
+
+    /**
+     * Create new instance of the job, which starts deleting after the given position
+     * @param batchSize   initial batch size
+     * @param startCursor position the job starts deleting after, null to start from the very beginning
+     */
+    public JobProgress(int batchSize, RecycleJob.Cursor startCursor) {
+        this.batchSize = batchSize;
+        this.cursor = startCursor;
+    }
+
+    /**
+     * Restore progress of the resumed job
+     * @param state last persisted job state
+     */
+    public JobProgress(RecycleJob.State state) {
+        this.deletedCount.set(state.getDeletedCount());
+        this.batches.set(state.getBatches());
+        this.bytesFreedEstimate.set(state.getBytesFreedEstimate());
+        this.droppedPartitions.set(state.getDroppedPartitions());
+        this.throttledMillis.set(state.getThrottledMillis());
+        this.lastBatchTimeMillis = state.getLastBatchTime() == null ? 0 : state.getLastBatchTime().toEpochMilli();
+        this.batchSize = state.getBatchSize();
+        this.cursor = state.getCursor();
+        this.startTimeMillis = state.getStartTime() == null ? 0 : state.getStartTime().toEpochMilli();
+        this.estimatedTotal = state.getEstimatedTotal() == null ? -1 : state.getEstimatedTotal();
+        this.lastBatchLatencyMillis = state.getLastBatchLatencyMillis();
+        if (state.getRowsPerSecond() > 0) {
+            this.rowsPerSecondBits.set(Double.doubleToLongBits(state.getRowsPerSecond()));
+        }
+        this.vacuums.set(state.getVacuums());
+        this.bytesReclaimedEstimate.set(state.getBytesReclaimedEstimate());
+        if (state.getDeadTupleRatio() != null) {
+            this.deadTupleRatioBits.set(Double.doubleToLongBits(state.getDeadTupleRatio()));
+        }
+        this.retries.set(state.getRetries());
+        this.lockTimeouts.set(state.getLockTimeouts());
+    }
+
+    /**
+     * @return true if the job has been started, either by this executor or before it has been resumed
+     */
+    public boolean isStarted() {
+        return startTimeMillis != 0;
+    }
+
+    /**
+     * Mark job started right now
+     * @param estimatedTotal estimated count of rows to delete, negative when unknown
+     */
+    public void start(long estimatedTotal) {
+        this.estimatedTotal = estimatedTotal;
+        this.startTimeMillis = System.currentTimeMillis();
+        this.rateUpdateNanos.set(System.nanoTime());
+    }
+
+    /**
+     * Mark resumed job continued right now, so the time it has been suspended doesn't drag the rate down
+     */
+    public void resume() {
+        this.rateUpdateNanos.set(System.nanoTime());
+    }
+
+    /**
+     * Record completed batch
+     * @param deleted       deleted rows count
+     * @param bytesFreed    estimated size of deleted rows
+     * @param latencyNanos  batch execution time
+     * @param nextBatchSize batch size chosen for the next batch
+     * @param cursor        position of the last deleted row, null when job cursor is not tracked
+     */
+    public void recordBatch(long deleted,
+                            long bytesFreed,
+                            long latencyNanos,
+                            int nextBatchSize,
+                            RecycleJob.Cursor cursor) {
+        updatesStarted.incrementAndGet();
+        try {
+            deletedCount.addAndGet(deleted);
+            bytesFreedEstimate.addAndGet(bytesFreed);
+            batches.incrementAndGet();
+            batchSize = nextBatchSize;
+            lastBatchTimeMillis = System.currentTimeMillis();
+            lastBatchLatencyMillis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            if (cursor != null) {
+                this.cursor = cursor;
+            }
+            final long now = System.nanoTime();
+            updateRate(deleted, now - rateUpdateNanos.getAndSet(now));
+        } finally {
+            updatesFinished.incrementAndGet();
+        }
+    }
+
+    public void incrementDroppedPartitions() {
+        droppedPartitions.incrementAndGet();
+    }
+
+    public void addThrottledMillis(long millis) {
+        throttledMillis.addAndGet(millis);
+    }
+
+    /**
+     * Record vacuum check of the table
+     * @param vacuumed       whether the table has been vacuumed, false if it has been skipped
+     * @param deadTupleRatio fraction of the dead tuples left in the table
+     * @param bytesReclaimed estimated size of the dead tuples reclaimed by the vacuum
+     */
+    public void recordVacuum(boolean vacuumed, double deadTupleRatio, long bytesReclaimed) {
+        updatesStarted.incrementAndGet();
+        try {
+            if (vacuumed) {
+                vacuums.incrementAndGet();
+            }
+            bytesReclaimedEstimate.addAndGet(bytesReclaimed);
+            deadTupleRatioBits.set(Double.doubleToLongBits(deadTupleRatio));
+        } finally {
+            updatesFinished.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record retry of the failed batch
+     * @param lockTimeout whether the batch has failed to take its locks in time
+     */
+    public void recordRetry(boolean lockTimeout) {
+        updatesStarted.incrementAndGet();
+        try {
+            retries.incrementAndGet();
+            if (lockTimeout) {
+                lockTimeouts.incrementAndGet();
+            }
+        } finally {
+            updatesFinished.incrementAndGet();
+        }
+    }
+
+    public RecycleJob.Cursor getCursor() {
+        return cursor;
+    }
+
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+
+    /**
+     * @return time the job has started deleting rows, null until then
+     */
+    public Instant getStartTime() {
+        final long startTime = startTimeMillis;
+        return startTime == 0 ? null : Instant.ofEpochMilli(startTime);
+    }
+
+    /**
+     * @return estimated count of rows to delete, negative when unknown
+     */
+    public long getEstimatedTotal() {
+        return estimatedTotal;
+    }
+
+    /**
+     * Blend the rate of the batch into the weighted rate, the longer the batch took the greater its weight
+     */
+    private void updateRate(long deleted, long elapsedNanos) {
+        if (elapsedNanos <= 0) {
+            return;
+        }
+        final double batchRate = (double) deleted * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        final double alpha = 1 - Math.exp(-(double) elapsedNanos / RATE_DECAY_NANOS);
+        long bits;
+        double nextRate;
+        do {
+            bits = rowsPerSecondBits.get();
+            final double rate = Double.longBitsToDouble(bits);
+            nextRate = Double.isNaN(rate) ? batchRate : rate + alpha * (batchRate - rate);
+        } while (!rowsPerSecondBits.compareAndSet(bits, Double.doubleToLongBits(nextRate)));
+    }
+
+    /**
+     * Produce immutable state snapshot. Retries while updates interleave with it rather than blocking them.
+     * @param status actual job status
+     * @return job state
+     */
+    public RecycleJob.State snapshot(RecycleJob.Status status) {
+        for (int attempt = 1; ; attempt++) {
+            final long started = updatesStarted.get();
+            if (updatesFinished.get() == started) {
+                final RecycleJob.State state = readState(status);
+                if (updatesStarted.get() == started) {
+                    return state;
+                }
+            }
+            //some update is in progress, it takes nanoseconds, while batches are recorded milliseconds apart
+            if (attempt % MAX_SPINS == 0) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private RecycleJob.State readState(RecycleJob.Status status) {
+        final long lastBatchTime = lastBatchTimeMillis;
+        final long startTime = startTimeMillis;
+        final double rowsPerSecond = Double.longBitsToDouble(rowsPerSecondBits.get());
+        final double deadTupleRatio = Double.longBitsToDouble(deadTupleRatioBits.get());
+        return new RecycleJob.State(
+                status,
+                deletedCount.get(),
+                cursor,
+                batchSize,
+                droppedPartitions.get(),
+                throttledMillis.get(),
+                batches.get(),
+                bytesFreedEstimate.get(),
+                lastBatchTime == 0 ? null : Instant.ofEpochMilli(lastBatchTime),
+                startTime == 0 ? null : Instant.ofEpochMilli(startTime),
+                estimatedTotal < 0 ? null : estimatedTotal,
+                Double.isNaN(rowsPerSecond) ? 0 : rowsPerSecond,
+                lastBatchLatencyMillis,
+                Double.isNaN(deadTupleRatio) ? null : deadTupleRatio,
+                vacuums.get(),
+                bytesReclaimedEstimate.get(),
+                retries.get(),
+                lockTimeouts.get());
+    }
+}
@@ -0,0 +1,106 @@
+package com.test.datarecycler.entity;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Daily period of time in UTC, e.g. {@code 01:00-05:00}, during which jobs are allowed to delete rows. Window ending
+ * before its start wraps midnight, e.g. {@code 22:00-02:00}. Start is inclusive, end is exclusive.
+ */
+@Value
+public class MaintenanceWindow {
+
+    private static final Duration DAY = Duration.ofDays(1);
+
+    private LocalTime start;
+    private LocalTime end;
+
+    public MaintenanceWindow(@NonNull LocalTime start, @NonNull LocalTime end) {
+        if (start.equals(end)) throw new IllegalArgumentException("Maintenance window must not be empty");
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Parse the window of the {@code HH:mm-HH:mm} form
+     * @throws IllegalArgumentException if the window is malformed or empty
+     */
+    public static MaintenanceWindow parse(@NonNull String window) {
+        final String[] bounds = window.split("-");
+        if (bounds.length != 2) {
+            throw new IllegalArgumentException("Maintenance window must be of HH:mm-HH:mm form: " + window);
+        }
+        try {
+            return new MaintenanceWindow(LocalTime.parse(bounds[0].trim()), LocalTime.parse(bounds[1].trim()));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Maintenance window must be of HH:mm-HH:mm form: " + window, e);
+        }
+    }
+
+    public Duration getDuration() {
+        final Duration duration = Duration.between(start, end);
+        return duration.isNegative() ? duration.plus(DAY) : duration;
+    }
+
+    public boolean contains(@NonNull Instant instant) {
+        return instant.isBefore(getLatestStart(instant).plus(getDuration()));
+    }
+
+    /**
+     * @return the given instant if it is within the window, otherwise start of the next window
+     */
+    public Instant getNextOpening(@NonNull Instant instant) {
+        final Instant latestStart = getLatestStart(instant);
+        return instant.isBefore(latestStart.plus(getDuration())) ? instant : latestStart.plus(DAY);
+    }
+
+    /**
+     * @param from  instant to count windows since
+     * @param count count of windows, the window open at the given instant is the first one
+     * @return end of the last window
+     */
+    public Instant getEndOfWindows(@NonNull Instant from, int count) {
+        if (count <= 0) throw new IllegalArgumentException("windows count must be positive");
+        final Instant firstStart = getLatestStart(getNextOpening(from));
+        return firstStart.plus(getDuration()).plus(DAY.multipliedBy(count - 1));
+    }
+
+    /**
+     * @return total time the window is open within [from, to)
+     */
+    public Duration getOpenTime(@NonNull Instant from, @NonNull Instant to) {
+        Duration openTime = Duration.ZERO;
+        Instant windowStart = getLatestStart(from);
+        while (windowStart.isBefore(to)) {
+            final Instant openFrom = windowStart.isAfter(from) ? windowStart : from;
+            final Instant windowEnd = windowStart.plus(getDuration());
+            final Instant openTo = windowEnd.isBefore(to) ? windowEnd : to;
+            if (openFrom.isBefore(openTo)) {
+                openTime = openTime.plus(Duration.between(openFrom, openTo));
+            }
+            windowStart = windowStart.plus(DAY);
+        }
+        return openTime;
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+
+    /**
+     * @return start of the latest window started at or before the given instant
+     */
+    private Instant getLatestStart(Instant instant) {
+        final LocalDateTime dateTime = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+        final Instant todayStart = start.atDate(dateTime.toLocalDate()).toInstant(ZoneOffset.UTC);
+        return todayStart.isAfter(instant) ? todayStart.minus(DAY) : todayStart;
+    }
+}
@@ -3,7 +3,9 @@ package com.test.datarecycler.entity;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Value;
 
+import java.time.Duration;
 import java.time.Instant;
 
 /**
@@ -19,21 +21,193 @@ public class RecycleJob {
     private final String fieldName;
     private final Instant olderThan;
     private final int batchSize;
+    /**
+     * Count of disjoint datetime ranges deleted concurrently, 1 for sequential deletion
+     */
+    private final int shards;
+    /**
+     * Jobs of the higher priority get batch slots first
+     */
+    private final int priority;
+    /**
+     * Share of the batch slots relative to the other jobs of the same priority
+     */
+    private final int weight;
+    private final PurgeMode purgeMode;
+    /**
+     * Window the job deletes rows within, null to fall back to the global one
+     */
+    private final MaintenanceWindow maintenanceWindow;
+    /**
+     * Count of maintenance windows the job is paced to finish within, null to delete at full speed
+     */
+    private final Integer finishWithinWindows;
+
+    public RecycleJob(String id, String tableName, String fieldName, Instant olderThan, int batchSize, int shards,
+                      int priority, int weight, PurgeMode purgeMode) {
+        this(id, tableName, fieldName, olderThan, batchSize, shards, priority, weight, purgeMode, null, null);
+    }
 
+    /**
+     * Job status, PAUSED job waits for its maintenance window to open
+     */
     public enum Status {
-        PENDING, RUNNING, FINISHED, CANCELLED, FAILED;
+        PENDING, RUNNING, PAUSED, FINISHED, CANCELLED, FAILED;
         public boolean isCancellable() {
-            return this == PENDING || this == RUNNING;
+            return this == PENDING || this == RUNNING || this == PAUSED;
         }
     }
 
     /**
-     * Data recycle job operational state
+     * How expired rows are removed from the table. Copying blocks writes to the table until it is swapped, so it is
+     * never chosen unless requested.
+     */
+    public enum PurgeMode {
+        /**
+         * Copy and swap if most of the table rows are expired, delete by batches otherwise
+         */
+        AUTO,
+        /**
+         * Delete by batches, the default
+         */
+        BATCH,
+        /**
+         * Copy the rest of rows into the new table, which replaces the original one
+         */
+        SWAP
+    }
+
+    /**
+     * Data recycle job operational state snapshot
      */
     @Getter
+    @EqualsAndHashCode
     @AllArgsConstructor
     public static class State {
         private Status status;
-        private int deletedCount;
+        private long deletedCount;
+        /**
+         * Position of the last deleted row, null until the first batch is deleted
+         */
+        private Cursor cursor;
+        /**
+         * Batch size chosen for the next batch
+         */
+        private int batchSize;
+        /**
+         * Count of expired partitions dropped or detached as a whole
+         */
+        private long droppedPartitions;
+        /**
+         * Total time batches were delayed by the throttle because of the database load
+         */
+        private long throttledMillis;
+        /**
+         * Count of executed batches
+         */
+        private long batches;
+        /**
+         * Estimated size of deleted rows, including their share of indexes
+         */
+        private long bytesFreedEstimate;
+        /**
+         * Completion time of the last batch, null until the first batch is deleted
+         */
+        private Instant lastBatchTime;
+        /**
+         * Time the job has started deleting rows, null until then
+         */
+        private Instant startTime;
+        /**
+         * Count of rows to delete estimated at the job start, null if unknown
+         */
+        private Long estimatedTotal;
+        /**
+         * Exponentially weighted rate of deleted rows per second
+         */
+        private double rowsPerSecond;
+        private long lastBatchLatencyMillis;
+        /**
+         * Fraction of the dead tuples in the table measured by the last vacuum check, null until then
+         */
+        private Double deadTupleRatio;
+        /**
+         * Count of the table vacuums triggered by the job
+         */
+        private long vacuums;
+        /**
+         * Estimated size of the dead tuples reclaimed by the vacuums triggered by the job
+         */
+        private long bytesReclaimedEstimate;
+        /**
+         * Count of the retries of the failed batches
+         */
+        private long retries;
+        /**
+         * Count of the batches retried after they have failed to take their locks in time
+         */
+        private long lockTimeouts;
+
+        /**
+         * @return percent of the estimated total deleted so far, null if total is unknown
+         */
+        public Double getPercentComplete() {
+            if (status == Status.FINISHED) {
+                return 100.0;
+            }
+            if (estimatedTotal == null) {
+                return null;
+            }
+            return estimatedTotal == 0 ? 0 : Math.min(100, deletedCount * 100.0 / estimatedTotal);
+        }
+
+        /**
+         * @return estimated time left at the current rate, null if either total or rate is unknown
+         */
+        public Duration getEta() {
+            if (status == Status.FINISHED) {
+                return Duration.ZERO;
+            }
+            if (estimatedTotal == null || rowsPerSecond <= 0) {
+                return null;
+            }
+            return Duration.ofMillis((long) (Math.max(0, estimatedTotal - deletedCount) * 1000 / rowsPerSecond));
+        }
+    }
+
+    /**
+     * Pre-flight estimate of the job, which has not been submitted
+     */
+    @Value
+    public static class Estimate {
+        private long estimatedRows;
+        /**
+         * Whether batches look up rows by the index, rather than by the sequential scan
+         */
+        private boolean indexScan;
+        /**
+         * Textual plan of the batch query
+         */
+        private String plan;
+        private int batchSize;
+        private long estimatedBatches;
+        /**
+         * Recent deletion rate of the table, null if it has not been measured yet
+         */
+        private Double rowsPerSecond;
+        /**
+         * Estimated job duration at the recent deletion rate, null if it has not been measured yet
+         */
+        private Duration estimatedDuration;
+    }
+
+    /**
+     * Keyset position of the last deleted row. Next batch is looked up strictly after it in (datetime, id) order,
+     * so already processed index range is never scanned again.
+     */
+    @Value
+    public static class Cursor {
+        private Instant datetime;
+        private long id;
     }
 }
@@ -0,0 +1,50 @@
+package com.test.datarecycler.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Recurring retention of the table, materialized into the recycle job on every scheduled run. Each run deletes only
+ * the slice expired since the watermark left by the previous finished run.
+ */
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class RetentionPolicy {
+
+    private final String id;
+    private final String tableName;
+    private final String fieldName;
+    /**
+     * Rows older than the run time minus retention are expired
+     */
+    private final Duration retention;
+    /**
+     * Cron expression evaluated in UTC, null for the interval schedule
+     */
+    private final String cron;
+    /**
+     * Period of the runs, null for the cron schedule
+     */
+    private final Duration interval;
+    /**
+     * Max datetime range deleted by the single run, null for unbounded one
+     */
+    private final Duration maxWindow;
+    /**
+     * Datetime all older rows were deleted before by the finished runs, null if none of runs has finished yet
+     */
+    private final Instant watermark;
+    /**
+     * Id of the job materialized by the latest run, which has not finished yet
+     */
+    private final String runJobId;
+    /**
+     * Older than datetime of the latest run job, the watermark once it is finished
+     */
+    private final Instant runOlderThan;
+}
@@ -0,0 +1,14 @@
+package com.test.datarecycler.exception;
+
+import lombok.Getter;
+
+@Getter
+public class BulkJobNotFoundException extends RuntimeException {
+
+    private final String bulkJobId;
+
+    public BulkJobNotFoundException(String bulkJobId) {
+        super(String.format("Bulk job with id '%s' not found", bulkJobId));
+        this.bulkJobId = bulkJobId;
+    }
+}
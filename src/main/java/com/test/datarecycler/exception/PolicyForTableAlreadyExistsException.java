@@ -0,0 +1,13 @@
+package com.test.datarecycler.exception;
+
+import lombok.Getter;
+
+@Getter
+public class PolicyForTableAlreadyExistsException extends RuntimeException {
+    private final String tableName;
+
+    public PolicyForTableAlreadyExistsException(String tableName) {
+        super(String.format("Retention policy for table '%s' already exists", tableName));
+        this.tableName = tableName;
+    }
+}
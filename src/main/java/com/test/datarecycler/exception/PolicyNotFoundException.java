@@ -0,0 +1,14 @@
+package com.test.datarecycler.exception;
+
+import lombok.Getter;
+
+@Getter
+public class PolicyNotFoundException extends RuntimeException {
+
+    private final String policyId;
+
+    public PolicyNotFoundException(String policyId) {
+        super(String.format("Retention policy with id '%s' not found", policyId));
+        this.policyId = policyId;
+    }
+}
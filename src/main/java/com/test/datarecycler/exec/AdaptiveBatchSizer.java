@@ -0,0 +1,90 @@
+package com.test.datarecycler.exec;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Per-job batch size controller. Grows or shrinks batch size toward the target per-batch latency within configured
+ * bounds. Slow batches caused by lock waits or wide heavily indexed rows lead to smaller batches, fast ones to larger.
+ * Not threadsafe, supposed to be used by the single job execution thread.
+ */
+public class AdaptiveBatchSizer {
+
+    /**
+     * Max factor batch size could be changed by after a single batch, prevents oscillation on latency spikes
+     */
+    private static final double MAX_STEP = 2.0;
+    private static final double MIN_STEP = 1 / MAX_STEP;
+    /**
+     * Latency deviation from the target which doesn't lead to batch size change
+     */
+    private static final double TOLERANCE = 0.1;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetLatencyNanos;
+
+    @Getter
+    private int batchSize;
+
+    /**
+     * Create new instance
+     * @param initialSize   batch size to start with
+     * @param minSize       min batch size
+     * @param maxSize       max batch size
+     * @param targetLatency desired single batch latency
+     */
+    public AdaptiveBatchSizer(int initialSize, int minSize, int maxSize, @NonNull Duration targetLatency) {
+        if (minSize <= 0) throw new IllegalArgumentException("min batch size must be positive");
+        if (maxSize < minSize) throw new IllegalArgumentException("max batch size must not be less than min size");
+        if (targetLatency.isNegative() || targetLatency.isZero()) {
+            throw new IllegalArgumentException("target latency must be positive");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.batchSize = clamp(initialSize);
+    }
+
+    /**
+     * Create controller which never changes batch size
+     * @param batchSize constant batch size
+     * @return new instance
+     */
+    public static AdaptiveBatchSizer fixed(int batchSize) {
+        return new AdaptiveBatchSizer(batchSize, batchSize, batchSize, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Adjust batch size according to the latency of the just completed batch
+     * @param latencyNanos completed batch latency
+     * @return batch size for the next batch
+     */
+    public int onBatchCompleted(long latencyNanos) {
+        if (minSize == maxSize) {
+            return batchSize;
+        }
+        final double ratio = latencyNanos <= 0 ? MAX_STEP : (double) targetLatencyNanos / latencyNanos;
+        if (Math.abs(ratio - 1) > TOLERANCE) {
+            final double step = Math.max(MIN_STEP, Math.min(MAX_STEP, ratio));
+            batchSize = clamp((int) Math.round(batchSize * step));
+        }
+        return batchSize;
+    }
+
+    /**
+     * Shrink batch size after the batch has timed out waiting for locks or executing, so the retried batch holds
+     * fewer locks for less time
+     * @return batch size for the retried batch
+     */
+    public int onBatchTimedOut() {
+        batchSize = clamp((int) Math.round(batchSize * MIN_STEP));
+        return batchSize;
+    }
+
+    private int clamp(int size) {
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+}
@@ -0,0 +1,68 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.db.BatchFailedException;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether the failed batch is retried and how long to back off before the retry. Backoff grows exponentially
+ * with the count of consecutive failures up to the max backoff, and is randomized within its upper half, so the jobs
+ * failed by the same lock or failover don't retry all at once. Threadsafe.
+ */
+public class BatchRetryPolicy {
+
+    /**
+     * Policy, which never retries failed batches
+     */
+    public static final BatchRetryPolicy NONE = new BatchRetryPolicy(0, Duration.ZERO, Duration.ZERO);
+
+    /**
+     * Max count of consecutive retries of the batch
+     */
+    @Getter
+    private final int maxRetries;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    /**
+     * Create new instance
+     * @param maxRetries     max count of consecutive retries of the batch
+     * @param initialBackoff backoff before the first retry
+     * @param maxBackoff     max backoff before the retry
+     */
+    public BatchRetryPolicy(int maxRetries, @NonNull Duration initialBackoff, @NonNull Duration maxBackoff) {
+        if (maxRetries < 0) throw new IllegalArgumentException("max retries must not be negative");
+        if (initialBackoff.isNegative()) throw new IllegalArgumentException("initial backoff must not be negative");
+        if (maxBackoff.compareTo(initialBackoff) < 0) {
+            throw new IllegalArgumentException("max backoff must not be less than initial backoff");
+        }
+        this.maxRetries = maxRetries;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    /**
+     * @param failure batch failure
+     * @param retry   number of the retry starting from 1
+     * @return true if the failure is transient and the batch has not been retried too many times yet
+     */
+    public boolean isRetryable(@NonNull BatchFailedException failure, int retry) {
+        return failure.isTransient() && retry <= maxRetries;
+    }
+
+    /**
+     * @param retry number of the retry starting from 1
+     * @return randomized backoff before the retry
+     */
+    public long getBackoffNanos(int retry) {
+        if (maxBackoffNanos == 0) {
+            return 0;
+        }
+        //computed in doubles, so the backoff doesn't overflow after many retries
+        final long backoff = (long) Math.min(maxBackoffNanos, initialBackoffNanos * Math.pow(2, retry - 1));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+}
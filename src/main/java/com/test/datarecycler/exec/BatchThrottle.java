@@ -0,0 +1,30 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.entity.RecycleJob;
+
+/**
+ * Hooks executed around each batch, allow to pause or slow down recycling when the database is overloaded
+ */
+public interface BatchThrottle {
+
+    /**
+     * Throttle which never delays batches
+     */
+    BatchThrottle NONE = job -> 0;
+
+    /**
+     * Block the caller until the next batch of the job is allowed to be executed
+     * @param job job about to delete the next batch
+     * @return time spent waiting in nanoseconds, zero when batch was not delayed
+     * @throws InterruptedException when waiting thread has been interrupted
+     */
+    long awaitBatch(RecycleJob job) throws InterruptedException;
+
+    /**
+     * Notify that the batch allowed by {@link #awaitBatch(RecycleJob)} has been completed, successfully or not
+     * @param job job which has deleted the batch
+     * @param deletedCount count of deleted rows, zero if batch has failed
+     */
+    default void onBatchCompleted(RecycleJob job, int deletedCount) {
+    }
+}
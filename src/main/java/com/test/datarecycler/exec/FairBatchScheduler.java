@@ -0,0 +1,267 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.entity.RecycleJob;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Batch throttle interleaving batches of all active jobs by the weighted fair queuing within the budget shared by all
+ * jobs: no more than the given count of batches in flight and, optionally, no more than the given count of deleted
+ * rows per second. Batches of the higher priority jobs are always granted first. Within the same priority, each job
+ * gets the share of deleted rows proportional to its weight: job virtual time advances by the deleted rows divided by
+ * the job weight, and the waiting batch with the least virtual time is granted next. Current share of the deleted rows
+ * received by each table job is exposed as the gauge.
+ * <p>
+ * Delegate throttle is awaited before the batch takes its place in the queue, so the batch paused because of the
+ * database load doesn't hold the slot.
+ */
+public class FairBatchScheduler implements BatchThrottle {
+
+    static final String SHARE_METRIC = "recycler.scheduler.share";
+    static final String IN_FLIGHT_METRIC = "recycler.scheduler.in.flight";
+
+    /**
+     * Deleted rows count towards the job share with the weight decaying exponentially with this time constant
+     */
+    private static final long SHARE_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /**
+     * Flows of the jobs not executing batches for this period of time are forgotten
+     */
+    private static final long FLOW_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final BatchThrottle delegate;
+    private final int maxBatchesInFlight;
+    private final long maxRowsPerSecond;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Request> waiting = new PriorityQueue<>();
+    /**
+     * Scheduling state of the jobs by their tables, there is a single active job per table
+     */
+    private final Map<String, Flow> flows = new HashMap<>();
+    private long sequence;
+    /**
+     * Virtual time of the last granted batch
+     */
+    private double virtualTime;
+    private int inFlight;
+    /**
+     * Rows allowed to be deleted right away, negative when the budget is overdrawn by the large batch
+     */
+    private double rowTokens;
+    private long rowTokensTime;
+
+    /**
+     * Create new instance
+     * @param delegate           throttle awaited before the batch is queued
+     * @param maxBatchesInFlight max count of batches executed concurrently by all jobs
+     * @param maxRowsPerSecond   max rate of rows deleted by all jobs, zero disables the limit
+     * @param meterRegistry      registry to publish the jobs shares to
+     */
+    public FairBatchScheduler(@NonNull BatchThrottle delegate,
+                              int maxBatchesInFlight,
+                              long maxRowsPerSecond,
+                              @NonNull MeterRegistry meterRegistry) {
+        if (maxBatchesInFlight <= 0) {
+            throw new IllegalArgumentException("Max batches in flight must be positive");
+        }
+        this.delegate = delegate;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.meterRegistry = meterRegistry;
+        this.rowTokens = maxRowsPerSecond;
+        this.rowTokensTime = System.nanoTime();
+        Gauge.builder(IN_FLIGHT_METRIC, this, FairBatchScheduler::getInFlight).register(meterRegistry);
+    }
+
+    @Override
+    public long awaitBatch(RecycleJob job) throws InterruptedException {
+        final long throttled = delegate.awaitBatch(job);
+        final long start = System.nanoTime();
+        lock.lockInterruptibly();
+        try {
+            final Flow flow = getFlow(job);
+            final Request request = new Request(job.getPriority(), Math.max(virtualTime, flow.virtualTime),
+                    sequence++);
+            waiting.add(request);
+            flow.waiting++;
+            try {
+                long delay;
+                while ((delay = getGrantDelay(request)) != 0) {
+                    if (delay < 0) {
+                        changed.await();
+                    } else {
+                        changed.awaitNanos(delay);
+                    }
+                }
+            } catch (InterruptedException e) {
+                waiting.remove(request);
+                changed.signalAll();
+                throw e;
+            } finally {
+                flow.waiting--;
+            }
+            waiting.poll();
+            inFlight++;
+            flow.inFlight++;
+            virtualTime = request.getTag();
+            //the next batch could be granted as well
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return throttled + System.nanoTime() - start;
+    }
+
+    @Override
+    public void onBatchCompleted(RecycleJob job, int deletedCount) {
+        delegate.onBatchCompleted(job, deletedCount);
+        lock.lock();
+        try {
+            final long now = System.nanoTime();
+            final Flow flow = getFlow(job);
+            inFlight--;
+            flow.inFlight--;
+            //empty batch still costs the database a query
+            flow.virtualTime = Math.max(flow.virtualTime, virtualTime)
+                    + (double) Math.max(deletedCount, 1) / job.getWeight();
+            flow.decayedRows = flow.getDecayedRows(now) + deletedCount;
+            flow.lastBatchTime = now;
+            if (maxRowsPerSecond > 0) {
+                refillRowTokens(now);
+                rowTokens -= deletedCount;
+            }
+            removeIdleFlows(now);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getWaitingCount() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return zero if the request could be granted right away, nanoseconds until the rows budget is refilled, or -1
+     * if the request has to wait for the other batches
+     */
+    private long getGrantDelay(Request request) {
+        if (waiting.peek() != request || inFlight >= maxBatchesInFlight) {
+            return -1;
+        }
+        if (maxRowsPerSecond <= 0) {
+            return 0;
+        }
+        refillRowTokens(System.nanoTime());
+        return rowTokens >= 0 ? 0 : Math.max(1, (long) (-rowTokens * TimeUnit.SECONDS.toNanos(1) / maxRowsPerSecond));
+    }
+
+    private void refillRowTokens(long now) {
+        rowTokens = Math.min(maxRowsPerSecond,
+                rowTokens + (double) (now - rowTokensTime) * maxRowsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        rowTokensTime = now;
+    }
+
+    private Flow getFlow(RecycleJob job) {
+        return flows.computeIfAbsent(job.getTableName(), tableName -> {
+            final Flow flow = new Flow(tableName);
+            flow.lastBatchTime = System.nanoTime();
+            flow.shareGauge = Gauge.builder(SHARE_METRIC, flow, this::getShare)
+                    .tag("table", tableName)
+                    .register(meterRegistry);
+            return flow;
+        });
+    }
+
+    private void removeIdleFlows(long now) {
+        final Iterator<Flow> iterator = flows.values().iterator();
+        while (iterator.hasNext()) {
+            final Flow flow = iterator.next();
+            if (flow.inFlight == 0 && flow.waiting == 0 && now - flow.lastBatchTime > FLOW_IDLE_NANOS) {
+                iterator.remove();
+                meterRegistry.remove(flow.shareGauge);
+            }
+        }
+    }
+
+    private double getShare(Flow flow) {
+        lock.lock();
+        try {
+            final long now = System.nanoTime();
+            double totalRows = 0;
+            for (Flow anyFlow : flows.values()) {
+                totalRows += anyFlow.getDecayedRows(now);
+            }
+            return totalRows == 0 ? 0 : flow.getDecayedRows(now) / totalRows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Scheduling state of the single job, guarded by the scheduler lock
+     */
+    @RequiredArgsConstructor
+    private static class Flow {
+        private final String tableName;
+        private double virtualTime;
+        private int inFlight;
+        private int waiting;
+        private double decayedRows;
+        private long lastBatchTime;
+        private Gauge shareGauge;
+
+        double getDecayedRows(long now) {
+            return decayedRows * Math.exp(-(double) (now - lastBatchTime) / SHARE_DECAY_NANOS);
+        }
+    }
+
+    /**
+     * Batch waiting for the slot. Ordered by priority first, then by the virtual time and the arrival order.
+     */
+    @Value
+    private static class Request implements Comparable<Request> {
+        private int priority;
+        private double tag;
+        private long sequence;
+
+        @Override
+        public int compareTo(Request other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            if (tag != other.tag) {
+                return Double.compare(tag, other.tag);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
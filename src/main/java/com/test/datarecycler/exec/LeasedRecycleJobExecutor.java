@@ -0,0 +1,157 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.repository.JobQueue;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Distributed recycle job executor. Submitted jobs are not executed right away, instead every instance of the service
+ * claims jobs from the shared {@link JobQueue} as long as it has free executor threads, so jobs are spread across all
+ * instances regardless of which one has received them. Leases of the executed jobs are renewed by the heartbeat. Job
+ * whose lease is lost is abandoned, since it could be claimed by another instance already. Job paused outside of its
+ * maintenance window keeps its lease, but frees its executor thread for the other jobs until the window opens.
+ */
+@Slf4j
+public class LeasedRecycleJobExecutor implements RecycleJobExecutor {
+
+    private final LocalRecycleJobExecutor localExecutor;
+    private final JobQueue jobQueue;
+    private final ExecutorService executorService;
+    /**
+     * Single threaded scheduler, which claims jobs and renews leases
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Max count of jobs executed by this instance concurrently
+     */
+    private final int maxJobs;
+    private final Duration leaseDuration;
+    /**
+     * Jobs executed by this instance along with their abandon flags
+     */
+    private final ConcurrentMap<String, AtomicBoolean> heldJobs = new ConcurrentHashMap<>();
+    /**
+     * Held jobs paused until their maintenance windows open, they don't take executor threads
+     */
+    private final Set<String> pausedJobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create new instance and schedule periodic jobs claiming and leases renewal
+     * @param localExecutor executor of the claimed jobs
+     * @param jobQueue shared queue of the active jobs
+     * @param executorService executor of the claimed jobs
+     * @param scheduler single threaded scheduler to execute periodic tasks
+     * @param maxJobs max count of jobs executed by this instance concurrently
+     * @param leaseDuration period of time the claimed jobs are leased for, leases are renewed 3 times per period
+     * @param pollInterval how often the queue is checked for the new or abandoned jobs
+     */
+    public LeasedRecycleJobExecutor(@NonNull LocalRecycleJobExecutor localExecutor,
+                                    @NonNull JobQueue jobQueue,
+                                    @NonNull ExecutorService executorService,
+                                    @NonNull ScheduledExecutorService scheduler,
+                                    int maxJobs,
+                                    @NonNull Duration leaseDuration,
+                                    @NonNull Duration pollInterval) {
+        this.localExecutor = localExecutor;
+        this.jobQueue = jobQueue;
+        this.executorService = executorService;
+        this.scheduler = scheduler;
+        this.maxJobs = maxJobs;
+        this.leaseDuration = leaseDuration;
+        scheduler.scheduleWithFixedDelay(this::claimJobs,
+                0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::renewLeases,
+                leaseDuration.toMillis() / 3, leaseDuration.toMillis() / 3, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Job is already in the queue, so just let this instance try to claim it without waiting for the next poll
+     */
+    @Override
+    public void submitJob(RecycleJob recycleJob) {
+        scheduler.execute(this::claimJobs);
+    }
+
+    /**
+     * Claim as many jobs as there are free executor threads
+     */
+    void claimJobs() {
+        final int capacity = maxJobs - heldJobs.size() + pausedJobs.size();
+        if (capacity <= 0) {
+            return;
+        }
+        try {
+            for (RecycleJob job : jobQueue.claimJobs(capacity, leaseDuration)) {
+                final AtomicBoolean abandoned = new AtomicBoolean();
+                //job could be claimed again if its lease has expired while it is still executed by this instance
+                if (heldJobs.putIfAbsent(job.getId(), abandoned) == null) {
+                    log.info("Job '{}' has been claimed", job.getId());
+                    executorService.submit(() -> executeJob(job, abandoned));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to claim jobs", e);
+        }
+    }
+
+    /**
+     * Renew leases of the executed jobs, abandon ones whose leases are lost
+     */
+    void renewLeases() {
+        final List<String> jobIds = new ArrayList<>(heldJobs.keySet());
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        try {
+            final Set<String> renewedJobIds = jobQueue.renewLeases(jobIds, leaseDuration);
+            for (String jobId : jobIds) {
+                final AtomicBoolean abandoned = heldJobs.get(jobId);
+                if (abandoned != null && !renewedJobIds.contains(jobId)) {
+                    log.warn("Lease of the job '{}' has been lost, abandon it", jobId);
+                    abandoned.set(true);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to renew leases", e);
+        }
+    }
+
+    private void executeJob(RecycleJob job, AtomicBoolean abandoned) {
+        boolean paused = false;
+        try {
+            paused = localExecutor.executeJob(job, abandoned);
+        } finally {
+            if (paused) {
+                //resumed job could briefly exceed max jobs, then it waits for the free executor thread
+                pausedJobs.add(job.getId());
+                localExecutor.resumeInMaintenanceWindow(job, abandoned::get, () -> {
+                    pausedJobs.remove(job.getId());
+                    executorService.submit(() -> executeJob(job, abandoned));
+                });
+            } else {
+                heldJobs.remove(job.getId());
+                if (!abandoned.get()) {
+                    try {
+                        jobQueue.releaseJob(job.getId());
+                    } catch (Exception e) {
+                        log.error("Failed to release job {}", job.getId(), e);
+                    }
+                }
+            }
+            //freed thread could take the next job right away
+            scheduler.execute(this::claimJobs);
+        }
+    }
+}
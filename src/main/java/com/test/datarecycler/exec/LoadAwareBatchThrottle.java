@@ -0,0 +1,96 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.db.DatabaseLoad;
+import com.test.datarecycler.entity.RecycleJob;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * Throttle pausing batches while replication lag, active backends count or WAL generation rate exceed configured
+ * thresholds. Load is sampled not more often than once per check interval and the sample is shared by all jobs.
+ * Single batch is never delayed longer than the max pause, so an overloaded database slows jobs down but doesn't
+ * stall them forever. The throttle is advisory: when the load can't be sampled, the previous sample is kept and
+ * sampling is retried at the next check interval.
+ */
+@Slf4j
+public class LoadAwareBatchThrottle implements BatchThrottle {
+
+    private final Database database;
+    private final long maxReplicationLagBytes;
+    private final int maxActiveBackends;
+    private final long maxWalBytesPerSecond;
+    private final long checkIntervalNanos;
+    private final long maxPauseNanos;
+
+    private DatabaseLoad lastLoad;
+    private long lastLoadTime;
+    private long lastCheckTime;
+    private double walBytesPerSecond;
+
+    /**
+     * Create new instance
+     * @param database               database to sample load of
+     * @param maxReplicationLagBytes max allowed replication lag in bytes
+     * @param maxActiveBackends      max allowed count of active backends
+     * @param maxWalBytesPerSecond   max allowed WAL generation rate, zero disables the check
+     * @param checkInterval          interval between load samples
+     * @param maxPause               max delay of the single batch
+     */
+    public LoadAwareBatchThrottle(@NonNull Database database,
+                                  long maxReplicationLagBytes,
+                                  int maxActiveBackends,
+                                  long maxWalBytesPerSecond,
+                                  @NonNull Duration checkInterval,
+                                  @NonNull Duration maxPause) {
+        this.database = database;
+        this.maxReplicationLagBytes = maxReplicationLagBytes;
+        this.maxActiveBackends = maxActiveBackends;
+        this.maxWalBytesPerSecond = maxWalBytesPerSecond;
+        this.checkIntervalNanos = checkInterval.toNanos();
+        this.maxPauseNanos = maxPause.toNanos();
+        this.lastCheckTime = System.nanoTime() - checkIntervalNanos;
+    }
+
+    @Override
+    public long awaitBatch(RecycleJob job) throws InterruptedException {
+        final long start = System.nanoTime();
+        long waited = 0;
+        while (waited < maxPauseNanos && isOverloaded()) {
+            log.debug("Database is overloaded, job '{}' is paused", job.getId());
+            Thread.sleep(Math.min(checkIntervalNanos, maxPauseNanos - waited) / 1_000_000);
+            waited = System.nanoTime() - start;
+        }
+        return waited;
+    }
+
+    private synchronized boolean isOverloaded() {
+        final long now = System.nanoTime();
+        if (now - lastCheckTime >= checkIntervalNanos) {
+            lastCheckTime = now;
+            sampleLoad(now);
+        }
+        return lastLoad != null
+                && (lastLoad.getReplicationLagBytes() > maxReplicationLagBytes
+                || lastLoad.getActiveBackends() > maxActiveBackends
+                || (maxWalBytesPerSecond > 0 && walBytesPerSecond > maxWalBytesPerSecond));
+    }
+
+    private void sampleLoad(long now) {
+        final DatabaseLoad load;
+        try {
+            load = database.getLoad();
+        } catch (Exception e) {
+            log.warn("Failed to sample database load, previous sample is kept", e);
+            return;
+        }
+        if (lastLoad != null) {
+            walBytesPerSecond = (load.getWalPositionBytes() - lastLoad.getWalPositionBytes())
+                    * 1_000_000_000.0 / (now - lastLoadTime);
+        }
+        lastLoad = load;
+        lastLoadTime = now;
+    }
+}
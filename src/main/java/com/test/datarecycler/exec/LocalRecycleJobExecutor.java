@@ -1,23 +1,108 @@
 package com.test.datarecycler.exec;
 
+import com.test.datarecycler.archive.CsvArchiveWriter;
+import com.test.datarecycler.db.BatchFailedException;
 import com.test.datarecycler.db.Database;
+import com.test.datarecycler.db.DatabaseSession;
+import com.test.datarecycler.db.DeleteResult;
+import com.test.datarecycler.entity.JobProgress;
+import com.test.datarecycler.entity.MaintenanceWindow;
 import com.test.datarecycler.entity.RecycleJob;
 import com.test.datarecycler.repository.RecycleJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.AllArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 /**
- * Local recycle job executor based on {@link ExecutorService}.
+ * Local recycle job executor based on {@link ExecutorService}. Reports deleted rows, batch latency and job duration
+ * to the {@link MeterRegistry}.
  */
 @Slf4j
 @AllArgsConstructor
 public class LocalRecycleJobExecutor implements RecycleJobExecutor {
 
+    static final String ROWS_DELETED_METRIC = "recycler.rows.deleted";
+    static final String BATCH_LATENCY_METRIC = "recycler.batch.latency";
+    static final String JOB_DURATION_METRIC = "recycler.job.duration";
+
+    /**
+     * How often the waiting job checks whether it has been cancelled or stopped
+     */
+    private static final long WAIT_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final Database database;
     private final RecycleJobRepository jobRepository;
     private final ExecutorService executorService;
+    /**
+     * Executes shards of the sharded jobs. Its pool size limits shards concurrency across all jobs.
+     */
+    private final ExecutorService shardsExecutorService;
+    /**
+     * Max count of concurrently deleted shards of a single job
+     */
+    private final int maxShardsPerJob;
+    /**
+     * Creates batch size controller for each executed job or shard worker
+     */
+    private final Function<RecycleJob, AdaptiveBatchSizer> batchSizerFactory;
+    /**
+     * Count of key sets selected ahead of the deleted batch by the pipelined session, zero disables pipelining
+     */
+    private final int prefetchBatches;
+    private final PartitionRecycleMode partitionRecycleMode;
+    /**
+     * Min estimated fraction of expired rows, starting from which {@link RecycleJob.PurgeMode#AUTO} job copies the
+     * rest of rows into the new table instead of deleting expired ones by batches
+     */
+    private final double swapThreshold;
+    /**
+     * Delays batches while the database is overloaded
+     */
+    private final BatchThrottle batchThrottle;
+    /**
+     * Collects recent deletion rate of the tables
+     */
+    private final TableThroughput tableThroughput;
+    /**
+     * Creates writer archiving deleted rows of each executed job, null if archiving is disabled
+     */
+    private final Function<RecycleJob, CsvArchiveWriter> archiveWriterFactory;
+    /**
+     * Window jobs delete rows within unless they have their own one, null to delete rows at any time
+     */
+    private final MaintenanceWindow maintenanceWindow;
+    /**
+     * Checks paused jobs and resubmits them once their maintenance window opens
+     */
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Vacuums the table after every N deleted rows and once the job is completed, null if disabled
+     */
+    private final TableVacuum tableVacuum;
+    /**
+     * Decides whether the failed batch is retried and how long to back off before the retry
+     */
+    private final BatchRetryPolicy batchRetryPolicy;
+    private final MeterRegistry meterRegistry;
 
     @Override
     public void submitJob(RecycleJob recycleJob) {
@@ -25,49 +110,645 @@ public class LocalRecycleJobExecutor implements RecycleJobExecutor {
     }
 
     /**
-     * Removes specified data in the loop, according to the specified batch size. On each iteration, ensures
-     * that task has not been cancelled. Updates job status and deleted-count after each loop.
+     * Drops expired partitions of the partitioned table if enabled, then removes the rest of specified data in the
+     * loop, according to the batch size chosen by {@link AdaptiveBatchSizer}. Each batch continues right after the
+     * cursor of the previous one, so rows already deleted are not re-scanned. Job status is checked before each batch
+     * and progress counters are updated after it.
+     * <p>
+     * Batches are deleted within the {@link DatabaseSession}, which is closed on completion, cancellation and failure,
+     * see {@link #openSession}. Sharded job deletes disjoint datetime ranges concurrently, see
+     * {@link #executeShards}. Mostly expired table is purged by the copy-and-swap instead, see {@link #swapTable}.
+     * <p>
+     * Job touches the table only within its {@link MaintenanceWindow}. Outside of it the job is paused and resubmitted
+     * once the next window opens, see {@link #resumeInMaintenanceWindow}.
      *
      * @param job job to executed
      */
     private void executeJob(RecycleJob job) {
+        final AtomicBoolean abandoned = new AtomicBoolean();
+        if (executeJob(job, abandoned)) {
+            resumeInMaintenanceWindow(job, abandoned::get, () -> submitJob(job));
+        }
+    }
+
+    /**
+     * Execute job, which could be abandoned by the caller at any time. Abandoned job is stopped after the current
+     * batch and left as is, neither its status nor its progress is updated anymore. Job paused outside of its
+     * maintenance window is handed back to the caller, see {@link #resumeInMaintenanceWindow}.
+     *
+     * @param job       job to executed
+     * @param abandoned raised when the job is not owned by this executor anymore
+     * @return true if the job has been paused until its maintenance window opens
+     */
+    boolean executeJob(RecycleJob job, AtomicBoolean abandoned) {
+        if (abandoned.get()) {
+            log.warn("Job '{}' has been abandoned while paused, skip execution", job.getId());
+            return false;
+        }
         log.info("Start executing job '{}' to delete records older than '{}' from the '{}' table",
                 job.getId(), job.getOlderThan(), job.getTableName());
+        final long executionStart = System.currentTimeMillis();
+        RecycleJob.Status finalStatus = RecycleJob.Status.CANCELLED;
+        JobProgress progress = null;
         try {
-            while (true) {
-                //check actual state on each iteration
-                final RecycleJob.State jobCurrentState = jobRepository.getJobStateById(job.getId());
-                if (jobCurrentState.getStatus() == RecycleJob.Status.CANCELLED) {
-                    log.info("Job '{}' has been cancelled, stop execution. Deleted records in total: {}",
-                            job.getId(), jobCurrentState.getDeletedCount());
-                    jobRepository.removeJob(job.getId());
-                    return;
-                } else if (jobCurrentState.getStatus() == RecycleJob.Status.PENDING) {
-                    jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.RUNNING);
+            progress = jobRepository.getJobProgress(job.getId());
+            //paused job is not toggled to the running status until its window opens
+            if (!isWithinMaintenanceWindow(job)) {
+                finalStatus = pauseJob(job, progress);
+                return finalStatus == RecycleJob.Status.PAUSED;
+            }
+            if (!checkJobStatus(job, progress)) {
+                return false;
+            }
+            final boolean completed;
+            //writer is closed before the job is finished, so all archived rows are written by then
+            try (CsvArchiveWriter archive = archiveWriterFactory == null ? null : archiveWriterFactory.apply(job)) {
+                final boolean recyclePartitions = partitionRecycleMode == PartitionRecycleMode.DETACH
+                        || partitionRecycleMode == PartitionRecycleMode.DROP && archive == null;
+                if (recyclePartitions && !recycleExpiredPartitions(job, progress)) {
+                    return false;
+                }
+                //neither estimates nor swap are started once the window has closed
+                if (!isWithinMaintenanceWindow(job)) {
+                    finalStatus = pauseJob(job, progress);
+                    return finalStatus == RecycleJob.Status.PAUSED;
+                }
+                if (progress.isStarted()) {
+                    progress.resume();
+                } else {
+                    //the only query for the progress estimates, the rest of them are derived from the batches
+                    progress.start(database.estimateExpiredCount(job.getTableName(), job.getFieldName(),
+                            job.getOlderThan()));
                 }
 
-                //try to delete batch
-                log.info("Job '{}' attempts to delete {} records from the '{}' table",
-                        job.getId(), job.getBatchSize(), job.getTableName());
-                final int deletedCount = database
-                        .deleteData(job.getTableName(), job.getFieldName(), job.getOlderThan(), job.getBatchSize());
-
-                //handle batch delete result
-                log.info("Job '{}' has deleted {} records from the table '{}'",
-                        job.getId(), deletedCount, job.getTableName());
-                jobRepository.incrementJobDeletedCount(job.getId(), deletedCount);
-
-                if (deletedCount < job.getBatchSize()) {
-                    log.info("Job '{}' no more records to remove, finish. Deleted records in total: {}",
-                            job.getId(), jobCurrentState.getDeletedCount());
-                    jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
-                    jobRepository.removeJob(job.getId());
-                    return;
+                final JobExecution execution = new JobExecution(job, progress,
+                        database.estimateRowSize(job.getTableName()), new AtomicBoolean(), abandoned,
+                        meterRegistry.counter(ROWS_DELETED_METRIC, "table", job.getTableName()),
+                        Timer.builder(BATCH_LATENCY_METRIC)
+                                .tag("table", job.getTableName())
+                                .publishPercentiles(0.5, 0.95, 0.99)
+                                .publishPercentileHistogram()
+                                .register(meterRegistry),
+                        archive, getPaceDeadline(job, progress), new AtomicLong(System.nanoTime()),
+                        new AtomicLong(progress.getDeletedCount()));
+                if (swapTable(execution)) {
+                    completed = true;
+                } else if (job.getShards() > 1) {
+                    completed = executeShards(execution);
+                } else {
+                    try (DatabaseSession session = openSession(execution)) {
+                        completed = deleteRange(execution, session,
+                                new ShardRange(progress.getCursor(), job.getOlderThan()),
+                                batchSizerFactory.apply(job), true);
+                    }
                 }
+                if (completed && tableVacuum != null && !abandoned.get()) {
+                    if (isWithinMaintenanceWindow(job)) {
+                        vacuumTable(execution);
+                    } else {
+                        //rows are deleted anyway, so the autovacuum reclaims their space sooner or later
+                        log.info("Job '{}' skips vacuum of the table '{}' outside of the maintenance window",
+                                job.getId(), job.getTableName());
+                    }
+                }
+            }
+
+            if (abandoned.get()) {
+                log.warn("Job '{}' has been abandoned, stop execution. Deleted records: {}",
+                        job.getId(), progress.getDeletedCount());
+                return false;
             }
+            if (!completed && !isWithinMaintenanceWindow(job)) {
+                finalStatus = pauseJob(job, progress);
+                return finalStatus == RecycleJob.Status.PAUSED;
+            }
+            if (completed) {
+                log.info("Job '{}' no more records to remove, finish. Deleted records in total: {}",
+                        job.getId(), progress.getDeletedCount());
+                jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+                finalStatus = RecycleJob.Status.FINISHED;
+            }
+            jobRepository.removeJob(job.getId());
+            return false;
         } catch (Exception e) {
-            log.error("Unexpected error on job {} execution", job.getId());
+            log.error("Unexpected error on job {} execution", job.getId(), e);
+            if (abandoned.get()) {
+                return false;
+            }
             jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.FAILED);
+            finalStatus = RecycleJob.Status.FAILED;
+            return false;
+        } finally {
+            //paused job is not done yet, and abandoned one is done by its new owner
+            if (finalStatus != RecycleJob.Status.PAUSED && !abandoned.get()) {
+                recordJobDuration(finalStatus, progress, executionStart);
+            }
         }
     }
+
+    /**
+     * Record duration of the done job. Resumed job is measured from its first start, so the time it has been paused
+     * or waiting for the restart is included.
+     *
+     * @param status         final job status
+     * @param progress       job progress, null if it has not been read
+     * @param executionStart start of the current execution in epoch millis
+     */
+    private void recordJobDuration(RecycleJob.Status status, JobProgress progress, long executionStart) {
+        final Instant startTime = progress == null ? null : progress.getStartTime();
+        final long jobStart = startTime == null ? executionStart : Math.min(startTime.toEpochMilli(), executionStart);
+        meterRegistry.timer(JOB_DURATION_METRIC, "status", status.name())
+                .record(System.currentTimeMillis() - jobStart, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replaces the table by the copy of its non expired rows, if requested by the job purge mode or, in the auto mode,
+     * if the job has not started deleting batches yet and most of the table rows are expired. Failed auto swap leaves
+     * the table intact, so the job falls back to the batch deletion. Table is never swapped while archiving.
+     *
+     * @param execution job execution
+     * @return true if the table has been swapped
+     */
+    private boolean swapTable(JobExecution execution) {
+        final RecycleJob job = execution.getJob();
+        if (job.getPurgeMode() == RecycleJob.PurgeMode.BATCH) {
+            return false;
+        }
+        if (job.getPurgeMode() == RecycleJob.PurgeMode.SWAP) {
+            if (execution.getArchive() != null) {
+                throw new IllegalStateException("Table " + job.getTableName() + " can't be swapped while archiving");
+            }
+            if (!database.isSwappable(job.getTableName())) {
+                throw new IllegalStateException("Table " + job.getTableName() + " can't be swapped");
+            }
+            copyAndSwap(execution);
+            return true;
+        }
+
+        if (execution.getProgress().getCursor() != null || execution.getArchive() != null) {
+            return false;
+        }
+        final double expiredFraction = database
+                .estimateExpiredFraction(job.getTableName(), job.getFieldName(), job.getOlderThan());
+        if (expiredFraction < swapThreshold || !database.isSwappable(job.getTableName())) {
+            return false;
+        }
+        try {
+            copyAndSwap(execution);
+            return true;
+        } catch (Exception e) {
+            log.warn("Job '{}' failed to swap the table '{}', fall back to the batch deletion",
+                    job.getId(), job.getTableName(), e);
+            return false;
+        }
+    }
+
+    private void copyAndSwap(JobExecution execution) {
+        final RecycleJob job = execution.getJob();
+        log.info("Job '{}' copies non expired records of the table '{}' into the new table",
+                job.getId(), job.getTableName());
+        final long start = System.nanoTime();
+        final long deletedCount = database.copyAndSwap(job.getTableName(), job.getFieldName(), job.getOlderThan());
+        execution.getDeletedRows().increment(deletedCount);
+        execution.getProgress().recordBatch(deletedCount, deletedCount * execution.getRowSizeEstimate(),
+                System.nanoTime() - start, job.getBatchSize(), null);
+    }
+
+    /**
+     * Splits [min(datetime), olderThan) interval into the job shards and deletes them concurrently by no more than
+     * {@link #maxShardsPerJob} workers, each one taking the next shard when the previous one is exhausted. Stops all
+     * workers as soon as any of them fails or detects job cancellation.
+     *
+     * @param execution job execution
+     * @return false if job has been cancelled
+     */
+    private boolean executeShards(JobExecution execution) throws Exception {
+        final RecycleJob job = execution.getJob();
+        final Optional<Instant> minDatetime = database.findMinDatetime(job.getTableName(), job.getFieldName());
+        if (!minDatetime.isPresent() || !minDatetime.get().isBefore(job.getOlderThan())) {
+            return true;
+        }
+
+        final Queue<ShardRange> ranges = new ConcurrentLinkedQueue<>(
+                ShardRange.split(minDatetime.get(), job.getOlderThan(), job.getShards()));
+        final int workersCount = Math.min(job.getShards(), maxShardsPerJob);
+        log.info("Job '{}' splits the range since '{}' into {} shards deleted by {} workers",
+                job.getId(), minDatetime.get(), job.getShards(), workersCount);
+
+        final List<Future<Boolean>> workers = new ArrayList<>(workersCount);
+        for (int i = 0; i < workersCount; i++) {
+            workers.add(shardsExecutorService.submit(() -> deleteShards(execution, ranges)));
+        }
+
+        boolean completed = true;
+        Exception failure = null;
+        for (Future<Boolean> worker : workers) {
+            try {
+                completed &= worker.get();
+            } catch (ExecutionException e) {
+                execution.getStopped().set(true);
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return completed;
+    }
+
+    /**
+     * Shard worker loop, takes shards one by one until there are no more shards left. Worker deletes all its shards
+     * within the single database session.
+     *
+     * @return false if job has been stopped
+     */
+    private boolean deleteShards(JobExecution execution, Queue<ShardRange> ranges) throws InterruptedException {
+        final RecycleJob job = execution.getJob();
+        final AdaptiveBatchSizer batchSizer = batchSizerFactory.apply(job);
+        try (DatabaseSession session = openSession(execution)) {
+            ShardRange range;
+            while ((range = ranges.poll()) != null) {
+                if (!deleteRange(execution, session, range, batchSizer, false)) {
+                    execution.getStopped().set(true);
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Open session of the job or shard worker. Pipelined session selects keys of the next batch while the current one
+     * is deleted, see {@link Database#openPipelinedSession(String, String, int)}. Archiving session returns the deleted
+     * rows, so it is never pipelined.
+     */
+    private DatabaseSession openSession(JobExecution execution) {
+        final RecycleJob job = execution.getJob();
+        if (execution.getArchive() != null) {
+            return database.openArchivingSession(job.getTableName(), job.getFieldName(), execution.getArchive());
+        }
+        return prefetchBatches > 0
+                ? database.openPipelinedSession(job.getTableName(), job.getFieldName(), prefetchBatches)
+                : database.openSession(job.getTableName(), job.getFieldName());
+    }
+
+    /**
+     * Deletes rows of the range by batches in the loop until there are no more rows in the range. Transient batch
+     * failures are retried from the same cursor according to the {@link BatchRetryPolicy}, see {@link #backOff}.
+     * Bloated table is vacuumed after every N deleted rows, see {@link #vacuumTableIfDue}.
+     *
+     * @param execution   job execution
+     * @param session     database session to delete rows by
+     * @param range       range to delete rows from
+     * @param batchSizer  batch size controller
+     * @param trackCursor whether job cursor should be updated, which is meaningful only for the not sharded jobs
+     * @return false if job has been cancelled or stopped
+     */
+    private boolean deleteRange(JobExecution execution,
+                                DatabaseSession session,
+                                ShardRange range,
+                                AdaptiveBatchSizer batchSizer,
+                                boolean trackCursor) throws InterruptedException {
+        final RecycleJob job = execution.getJob();
+        final JobProgress progress = execution.getProgress();
+        RecycleJob.Cursor cursor = range.getStartCursor();
+        final BooleanSupplier stopped = () -> execution.getStopped().get() || execution.getAbandoned().get();
+        //count of consecutive retries of the failed batch
+        int retry = 0;
+        while (true) {
+            //wait for the batch slot of the job pace
+            if (!awaitPace(execution, batchSizer.getBatchSize(), stopped)) {
+                return false;
+            }
+            //stop all shards once the window has closed, so their sessions are closed while the job is paused
+            if (!isWithinMaintenanceWindow(job)) {
+                execution.getStopped().set(true);
+                return false;
+            }
+
+            //wait while database is overloaded
+            final long throttledNanos = batchThrottle.awaitBatch(job);
+            if (throttledNanos > 0) {
+                progress.addThrottledMillis(TimeUnit.NANOSECONDS.toMillis(throttledNanos));
+            }
+
+            //try to delete batch
+            final int batchSize = batchSizer.getBatchSize();
+            log.debug("Job '{}' attempts to delete {} records from the '{}' table",
+                    job.getId(), batchSize, job.getTableName());
+            final long batchStart = System.nanoTime();
+            DeleteResult result = null;
+            BatchFailedException failure = null;
+            try {
+                result = session.deleteData(range.getUpperBound(), cursor, batchSize);
+            } catch (BatchFailedException e) {
+                failure = e;
+            } finally {
+                //slot is released before backing off, so the other jobs keep deleting meanwhile
+                batchThrottle.onBatchCompleted(job, result == null ? 0 : result.getDeletedCount());
+            }
+            if (failure != null) {
+                //failed batch is rolled back, so it is retried from the same cursor once the slot is granted again
+                if (!batchRetryPolicy.isRetryable(failure, ++retry)) {
+                    throw failure;
+                }
+                if (!backOff(execution, batchSizer, failure, retry, stopped)) {
+                    return false;
+                }
+                continue;
+            }
+            retry = 0;
+            final long batchLatency = System.nanoTime() - batchStart;
+            final int deletedCount = result.getDeletedCount();
+            cursor = result.getCursor();
+
+            //handle batch delete result
+            log.debug("Job '{}' has deleted {} records from the table '{}'",
+                    job.getId(), deletedCount, job.getTableName());
+            execution.getDeletedRows().increment(deletedCount);
+            execution.getBatchLatency().record(batchLatency, TimeUnit.NANOSECONDS);
+            final int nextBatchSize = batchSizer.onBatchCompleted(batchLatency);
+            progress.recordBatch(deletedCount, deletedCount * execution.getRowSizeEstimate(), batchLatency,
+                    nextBatchSize, trackCursor ? cursor : null);
+            tableThroughput.record(job.getTableName(), deletedCount, batchLatency + throttledNanos, nextBatchSize);
+            vacuumTableIfDue(execution);
+
+            if (result.getSelectedCount() < batchSize) {
+                return true;
+            }
+
+            //check actual status before the next iteration
+            if (execution.getStopped().get() || execution.getAbandoned().get()) {
+                return false;
+            }
+            if (jobRepository.getJobStatus(job.getId()) == RecycleJob.Status.CANCELLED) {
+                log.info("Job '{}' has been cancelled, stop execution. Deleted records in total: {}",
+                        job.getId(), progress.getDeletedCount());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Back off before the retry of the failed batch. Timed out batch is retried with the smaller size, so it holds
+     * fewer locks for less time.
+     *
+     * @return false if job has been cancelled or stopped while backing off
+     */
+    private boolean backOff(JobExecution execution,
+                            AdaptiveBatchSizer batchSizer,
+                            BatchFailedException failure,
+                            int retry,
+                            BooleanSupplier stopped) throws InterruptedException {
+        final RecycleJob job = execution.getJob();
+        final BatchFailedException.Kind kind = failure.getKind();
+        execution.getProgress().recordRetry(kind == BatchFailedException.Kind.LOCK_TIMEOUT);
+        if (kind == BatchFailedException.Kind.LOCK_TIMEOUT || kind == BatchFailedException.Kind.STATEMENT_TIMEOUT) {
+            batchSizer.onBatchTimedOut();
+        }
+        final long backoffNanos = batchRetryPolicy.getBackoffNanos(retry);
+        log.warn("Job '{}' failed to delete batch from the table '{}' due to {}, retry {} of {} in {} ms",
+                job.getId(), job.getTableName(), kind, retry, batchRetryPolicy.getMaxRetries(),
+                TimeUnit.NANOSECONDS.toMillis(backoffNanos), failure.getCause());
+        return sleepUntil(job, System.nanoTime() + backoffNanos, stopped);
+    }
+
+    /**
+     * Vacuum the table once the job has deleted N more rows since the previous vacuum. Only one of the shards crossing
+     * the threshold vacuums the table, the rest of them keep deleting rows.
+     */
+    private void vacuumTableIfDue(JobExecution execution) {
+        if (tableVacuum == null || tableVacuum.getEveryRows() <= 0) {
+            return;
+        }
+        final long deletedCount = execution.getProgress().getDeletedCount();
+        final long vacuumedCount = execution.getVacuumedCount().get();
+        if (deletedCount - vacuumedCount >= tableVacuum.getEveryRows()
+                && execution.getVacuumedCount().compareAndSet(vacuumedCount, deletedCount)) {
+            vacuumTable(execution);
+        }
+    }
+
+    /**
+     * Vacuum the table and record the outcome into the job progress. Failed vacuum doesn't fail the job, since the
+     * rows are deleted anyway and the autovacuum reclaims their space sooner or later.
+     */
+    private void vacuumTable(JobExecution execution) {
+        final RecycleJob job = execution.getJob();
+        try {
+            final TableVacuum.Result result = tableVacuum.vacuum(job.getTableName());
+            execution.getProgress().recordVacuum(result.isVacuumed(), result.getDeadTupleRatio(),
+                    result.getReclaimedTuples() * execution.getRowSizeEstimate());
+        } catch (Exception e) {
+            log.warn("Job '{}' failed to vacuum the table '{}'", job.getId(), job.getTableName(), e);
+        }
+    }
+
+    /**
+     * Drops or detaches partitions which contain expired rows only. Boundary partition is left to the batch deletion.
+     * Partitions left once the maintenance window has closed are recycled by the resumed job. Partitions are never
+     * dropped while archiving, since their rows would not be archived.
+     *
+     * @param job      job to executed
+     * @param progress job progress
+     * @return false if job has been cancelled
+     */
+    private boolean recycleExpiredPartitions(RecycleJob job, JobProgress progress) {
+        final List<String> partitions = database
+                .findExpiredPartitions(job.getTableName(), job.getFieldName(), job.getOlderThan());
+        for (String partition : partitions) {
+            if (!isWithinMaintenanceWindow(job)) {
+                return true;
+            }
+            if (!checkJobStatus(job, progress)) {
+                return false;
+            }
+            log.info("Job '{}' removes expired partition '{}' of the table '{}'",
+                    job.getId(), partition, job.getTableName());
+            database.dropPartition(job.getTableName(), partition, partitionRecycleMode == PartitionRecycleMode.DETACH);
+            progress.incrementDroppedPartitions();
+        }
+        return true;
+    }
+
+    /**
+     * Check actual job status. Removes cancelled job, toggles pending job to the running status.
+     *
+     * @param job      job to executed
+     * @param progress job progress
+     * @return false if job has been cancelled and execution should be stopped
+     */
+    private boolean checkJobStatus(RecycleJob job, JobProgress progress) {
+        final RecycleJob.Status status = jobRepository.getJobStatus(job.getId());
+        if (status == RecycleJob.Status.CANCELLED) {
+            log.info("Job '{}' has been cancelled, stop execution. Deleted records in total: {}",
+                    job.getId(), progress.getDeletedCount());
+            jobRepository.removeJob(job.getId());
+            return false;
+        } else if (status == RecycleJob.Status.PENDING || status == RecycleJob.Status.PAUSED) {
+            jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.RUNNING);
+        }
+        return true;
+    }
+
+    /**
+     * Pause the job outside of its maintenance window, unless it has been cancelled meanwhile
+     *
+     * @param job      job to executed
+     * @param progress job progress
+     * @return {@link RecycleJob.Status#PAUSED} if job has been paused, {@link RecycleJob.Status#CANCELLED} if it has
+     * been cancelled and removed
+     */
+    private RecycleJob.Status pauseJob(RecycleJob job, JobProgress progress) {
+        if (jobRepository.getJobStatus(job.getId()) == RecycleJob.Status.CANCELLED) {
+            log.info("Job '{}' has been cancelled, stop execution. Deleted records in total: {}",
+                    job.getId(), progress.getDeletedCount());
+            jobRepository.removeJob(job.getId());
+            return RecycleJob.Status.CANCELLED;
+        }
+        final MaintenanceWindow window = getMaintenanceWindow(job);
+        log.info("Job '{}' is outside of the maintenance window '{}', pause until '{}'. Deleted records: {}",
+                job.getId(), window, window.getNextOpening(Instant.now()), progress.getDeletedCount());
+        jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.PAUSED);
+        return RecycleJob.Status.PAUSED;
+    }
+
+    /**
+     * Wait for the maintenance window of the paused job without taking executor thread or database connection. Job is
+     * checked every second, so it is resubmitted right away once cancelled or abandoned, and removed by its execution.
+     *
+     * @param job       paused job
+     * @param abandoned whether the job is not owned by the caller anymore
+     * @param resume    resubmits the job once its window opens or it has been cancelled or abandoned
+     */
+    void resumeInMaintenanceWindow(RecycleJob job, BooleanSupplier abandoned, Runnable resume) {
+        scheduler.schedule(() -> {
+            boolean resumed = true;
+            try {
+                resumed = abandoned.getAsBoolean() || isWithinMaintenanceWindow(job)
+                        || jobRepository.getJobStatus(job.getId()) == RecycleJob.Status.CANCELLED;
+            } catch (Exception e) {
+                //execution of the job decides what to do with it
+                log.error("Failed to check paused job {}", job.getId(), e);
+            }
+            if (resumed) {
+                log.info("Job '{}' is resubmitted after the pause", job.getId());
+                resume.run();
+            } else {
+                resumeInMaintenanceWindow(job, abandoned, resume);
+            }
+        }, WAIT_CHECK_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Delay the batch to keep the pace, at which the rows left are deleted by the end of the last window the job
+     * should finish within. Pace is recomputed before every batch by the rows left and the window time left, so the
+     * job catches up after slow batches and runs at full speed once the deadline has passed. Batches of all shards
+     * reserve their slots one after another, so the shards share the pace.
+     *
+     * @param execution job execution
+     * @param batchSize size of the next batch
+     * @param stopped   whether the job has been stopped or abandoned
+     * @return false if job has been cancelled or stopped while waiting
+     */
+    private boolean awaitPace(JobExecution execution, int batchSize, BooleanSupplier stopped)
+            throws InterruptedException {
+        final Instant deadline = execution.getPaceDeadline();
+        final JobProgress progress = execution.getProgress();
+        final long rowsLeft = progress.getEstimatedTotal() - progress.getDeletedCount();
+        if (deadline == null || rowsLeft <= 0) {
+            return true;
+        }
+        final RecycleJob job = execution.getJob();
+        final long openTimeLeft = getMaintenanceWindow(job).getOpenTime(Instant.now(), deadline).toNanos();
+        if (openTimeLeft <= 0) {
+            return true;
+        }
+        log.debug("Job '{}' deletes {} rows left at {} rows per second to finish by '{}'",
+                job.getId(), rowsLeft, rowsLeft * 1e9 / openTimeLeft, deadline);
+        final long batchNanos = (long) ((double) openTimeLeft * batchSize / rowsLeft);
+        final long now = System.nanoTime();
+        final long slot = Math.max(now, execution.getNextBatchNanos()
+                .getAndAccumulate(batchNanos, (next, cost) -> Math.max(next, now) + cost));
+        return sleepUntil(job, slot, stopped);
+    }
+
+    /**
+     * @return end of the last window the job should finish within, null if the job is not paced
+     */
+    private Instant getPaceDeadline(RecycleJob job, JobProgress progress) {
+        final MaintenanceWindow window = getMaintenanceWindow(job);
+        if (job.getFinishWithinWindows() == null || window == null || progress.getStartTime() == null) {
+            return null;
+        }
+        return window.getEndOfWindows(progress.getStartTime(), job.getFinishWithinWindows());
+    }
+
+    private MaintenanceWindow getMaintenanceWindow(RecycleJob job) {
+        return job.getMaintenanceWindow() != null ? job.getMaintenanceWindow() : maintenanceWindow;
+    }
+
+    private boolean isWithinMaintenanceWindow(RecycleJob job) {
+        final MaintenanceWindow window = getMaintenanceWindow(job);
+        return window == null || window.contains(Instant.now());
+    }
+
+    /**
+     * Sleep until the given {@link System#nanoTime()}, periodically checking whether the job has been cancelled
+     *
+     * @return false if job has been cancelled or stopped
+     */
+    private boolean sleepUntil(RecycleJob job, long wakeUpNanos, BooleanSupplier stopped) throws InterruptedException {
+        long sleepNanos;
+        while ((sleepNanos = wakeUpNanos - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(sleepNanos, WAIT_CHECK_NANOS));
+            if (stopped.getAsBoolean()) {
+                return false;
+            }
+            if (jobRepository.getJobStatus(job.getId()) == RecycleJob.Status.CANCELLED) {
+                log.info("Job '{}' has been cancelled while waiting, stop execution", job.getId());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Single job execution context shared by all its shards
+     */
+    @Value
+    private static class JobExecution {
+        private RecycleJob job;
+        private JobProgress progress;
+        /**
+         * Average row size including its share of indexes, used to estimate freed space
+         */
+        private long rowSizeEstimate;
+        /**
+         * Raised when any shard of the job has been stopped
+         */
+        private AtomicBoolean stopped;
+        /**
+         * Raised when the job is not owned by this executor anymore
+         */
+        private AtomicBoolean abandoned;
+        private Counter deletedRows;
+        private Timer batchLatency;
+        /**
+         * Receives deleted rows of all shards, null if archiving is disabled
+         */
+        private CsvArchiveWriter archive;
+        /**
+         * End of the last window the job should finish within, null if the job is not paced
+         */
+        private Instant paceDeadline;
+        /**
+         * {@link System#nanoTime()} the next batch of any shard is allowed to start at to keep the job pace
+         */
+        private AtomicLong nextBatchNanos;
+        /**
+         * Count of rows deleted by the job when the table has been vacuumed last time
+         */
+        private AtomicLong vacuumedCount;
+    }
 }
@@ -0,0 +1,19 @@
+package com.test.datarecycler.exec;
+
+/**
+ * Specifies how expired partitions of the partitioned tables are recycled
+ */
+public enum PartitionRecycleMode {
+    /**
+     * Partitions are not treated specially, all rows are deleted by batches
+     */
+    DISABLED,
+    /**
+     * Expired partitions are detached and dropped
+     */
+    DROP,
+    /**
+     * Expired partitions are detached and kept as standalone tables
+     */
+    DETACH
+}
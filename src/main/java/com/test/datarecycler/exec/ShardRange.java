@@ -0,0 +1,48 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.entity.RecycleJob;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disjoint datetime range of a recycle job, which is deleted independently of the other ranges
+ */
+@Value
+public class ShardRange {
+    /**
+     * Position to start deletion after, null to start from the very beginning
+     */
+    private RecycleJob.Cursor startCursor;
+    /**
+     * Exclusive upper bound of the range
+     */
+    private Instant upperBound;
+
+    /**
+     * Split [from, to) interval into the specified count of equal disjoint ranges. The first range has no lower
+     * bound, so it also covers rows older than the specified lower bound.
+     *
+     * @param from  inclusive lower bound
+     * @param to    exclusive upper bound
+     * @param count count of ranges
+     * @return ordered list of ranges
+     */
+    public static List<ShardRange> split(@NonNull Instant from, @NonNull Instant to, int count) {
+        if (count <= 0) throw new IllegalArgumentException("shards count must be positive");
+        final Duration step = Duration.between(from, to).dividedBy(count);
+        final List<ShardRange> ranges = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final RecycleJob.Cursor startCursor = i == 0
+                    ? null
+                    : new RecycleJob.Cursor(from.plus(step.multipliedBy(i)), Long.MIN_VALUE);
+            final Instant upperBound = i == count - 1 ? to : from.plus(step.multipliedBy(i + 1));
+            ranges.add(new ShardRange(startCursor, upperBound));
+        }
+        return ranges;
+    }
+}
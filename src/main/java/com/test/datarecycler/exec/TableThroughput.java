@@ -0,0 +1,72 @@
+package com.test.datarecycler.exec;
+
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recent deletion throughput of the tables measured by the executed batches. Deleted rows and time spent on them
+ * count with the weight decaying exponentially, so the rate follows the recent batches rather than the whole history.
+ */
+public class TableThroughput {
+
+    /**
+     * Time constant of the exponential decay
+     */
+    private static final long DECAY_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final ConcurrentMap<String, Rate> rates = new ConcurrentHashMap<>();
+
+    /**
+     * Record executed batch
+     * @param tableName    table the rows are deleted from
+     * @param deletedCount count of deleted rows
+     * @param elapsedNanos time spent on the batch, including the throttling delay
+     * @param batchSize    batch size chosen for the next batch
+     */
+    public void record(String tableName, long deletedCount, long elapsedNanos, int batchSize) {
+        rates.computeIfAbsent(tableName, name -> new Rate()).record(deletedCount, elapsedNanos, batchSize);
+    }
+
+    /**
+     * @return recent rate of the deleted rows per second, empty if there were no batches
+     */
+    public OptionalDouble getRowsPerSecond(String tableName) {
+        final Rate rate = rates.get(tableName);
+        return rate == null ? OptionalDouble.empty() : rate.getRowsPerSecond();
+    }
+
+    /**
+     * @return size chosen for the next batch by the last executed batch, empty if there were no batches
+     */
+    public OptionalInt getBatchSize(String tableName) {
+        final Rate rate = rates.get(tableName);
+        return rate == null ? OptionalInt.empty() : OptionalInt.of(rate.getBatchSize());
+    }
+
+    private static class Rate {
+        private double rows;
+        private double nanos;
+        private long lastBatchTime;
+        private int batchSize;
+
+        synchronized void record(long deletedCount, long elapsedNanos, int nextBatchSize) {
+            final long now = System.nanoTime();
+            final double decay = lastBatchTime == 0 ? 0 : Math.exp(-(double) (now - lastBatchTime) / DECAY_NANOS);
+            rows = rows * decay + deletedCount;
+            nanos = nanos * decay + elapsedNanos;
+            lastBatchTime = now;
+            batchSize = nextBatchSize;
+        }
+
+        synchronized OptionalDouble getRowsPerSecond() {
+            return nanos <= 0 ? OptionalDouble.empty() : OptionalDouble.of(rows * TimeUnit.SECONDS.toNanos(1) / nanos);
+        }
+
+        synchronized int getBatchSize() {
+            return batchSize;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.db.TableStats;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vacuums tables bloated by the deleted rows. Autovacuum is triggered by the dead tuples threshold checked once per
+ * naptime, so it lags behind the jobs deleting millions of rows, and the bloat slows down both the later batches and
+ * the application queries. Table is vacuumed only if its dead tuples ratio exceeds the threshold and nobody vacuums it
+ * right now, so the table already processed or being processed by the autovacuum is not vacuumed twice.
+ */
+@Slf4j
+@AllArgsConstructor
+public class TableVacuum {
+
+    private final Database database;
+    /**
+     * Count of rows deleted by the job between vacuums, zero to vacuum only once the job is completed
+     */
+    @Getter
+    private final long everyRows;
+    /**
+     * Min fraction of the dead tuples the table is vacuumed at
+     */
+    private final double minDeadTupleRatio;
+
+    /**
+     * Vacuum the table if it is bloated enough and nobody vacuums it already
+     * @param tableName table to vacuum
+     * @return outcome of the vacuum
+     */
+    public Result vacuum(String tableName) {
+        final TableStats before = database.getTableStats(tableName);
+        if (before.isVacuumRunning() || before.getDeadTupleRatio() < minDeadTupleRatio) {
+            log.debug("Table '{}' is not vacuumed, dead tuples ratio: {}, vacuum running: {}",
+                    tableName, before.getDeadTupleRatio(), before.isVacuumRunning());
+            return new Result(false, before.getDeadTupleRatio(), 0);
+        }
+        log.info("Vacuum table '{}' with {} dead tuples", tableName, before.getDeadTuples());
+        final long start = System.nanoTime();
+        database.vacuumAnalyze(tableName);
+        final TableStats after = database.getTableStats(tableName);
+        final long reclaimedTuples = Math.max(0, before.getDeadTuples() - after.getDeadTuples());
+        log.info("Table '{}' has been vacuumed in {} ms, reclaimed tuples: {}", tableName,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), reclaimedTuples);
+        return new Result(true, after.getDeadTupleRatio(), reclaimedTuples);
+    }
+
+    @Value
+    public static class Result {
+        /**
+         * Whether the table has been vacuumed, false if it has been skipped
+         */
+        private boolean vacuumed;
+        /**
+         * Fraction of the dead tuples left in the table
+         */
+        private double deadTupleRatio;
+        private long reclaimedTuples;
+    }
+}
@@ -0,0 +1,34 @@
+package com.test.datarecycler.exec;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to the virtual threads, which are available since JDK 21. Application is built for JDK 11, so they are looked
+ * up reflectively and used only when the application runs on the newer JVM.
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Create executor starting new virtual thread for each task. Falls back to the cached platform threads pool, if
+     * virtual threads are not supported by the running JVM.
+     * @return thread per task executor
+     */
+    public static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not supported by JVM {}, platform threads are used instead",
+                    System.getProperty("java.version"));
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.BulkRecycleJob;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.exception.BulkJobNotFoundException;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository to maintain bulk jobs and the state of their children
+ */
+public interface BulkJobRepository {
+
+    /**
+     * Create new bulk job with all children pending. Generates id automatically.
+     *
+     * @param datetimeFieldName datetime field name to query old rows, the same for all tables
+     * @param olderThan         specifies how old records should be deleted
+     * @param tableNames        tables to delete rows from, one child per table
+     * @param maxConcurrency    max count of the concurrently running children
+     * @return newly created bulk job
+     */
+    BulkRecycleJob newBulkJob(String datetimeFieldName, Instant olderThan, List<String> tableNames,
+                              int maxConcurrency);
+
+    /**
+     * Get bulk job by id
+     *
+     * @param id existing bulk job id
+     * @return existing bulk job
+     * @throws BulkJobNotFoundException when bulk job is not found
+     */
+    BulkRecycleJob getBulkJobById(String id) throws BulkJobNotFoundException;
+
+    /**
+     * Find bulk job by the job of its child
+     *
+     * @param jobId id of the child job
+     * @return bulk job or empty if the job is not a child of any bulk job
+     */
+    Optional<BulkRecycleJob> findBulkJobByChildJobId(String jobId);
+
+    /**
+     * @return bulk jobs, which are not cancelled and have pending or running children
+     */
+    List<BulkRecycleJob> findActiveBulkJobs();
+
+    /**
+     * Atomically take the next pending child and mark it running, if the bulk job is not cancelled and has less
+     * running children than its concurrency cap
+     *
+     * @param id existing bulk job id
+     * @return table name of the taken child or empty if none could be started
+     * @throws BulkJobNotFoundException when bulk job is not found
+     */
+    Optional<String> takeNextChild(String id) throws BulkJobNotFoundException;
+
+    /**
+     * Record the job created for the running child
+     *
+     * @param id        bulk job id
+     * @param tableName table name of the child
+     * @param jobId     id of the child job
+     */
+    void startChild(String id, String tableName, String jobId);
+
+    /**
+     * Record the final status of the child
+     *
+     * @param id           bulk job id
+     * @param tableName    table name of the child
+     * @param status       final status of the child job
+     * @param deletedCount count of rows deleted by the child job
+     */
+    void completeChild(String id, String tableName, RecycleJob.Status status, long deletedCount);
+
+    /**
+     * Cancel bulk job, so no more children are started. Pending children are cancelled right away.
+     *
+     * @param id existing bulk job id
+     * @throws BulkJobNotFoundException when bulk job is not found
+     */
+    void cancelBulkJob(String id) throws BulkJobNotFoundException;
+}
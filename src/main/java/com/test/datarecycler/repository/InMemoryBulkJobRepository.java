@@ -0,0 +1,128 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.BulkRecycleJob;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.exception.BulkJobNotFoundException;
+import lombok.NonNull;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Threadsafe in memory implementation of {@link BulkJobRepository}. Bulk jobs are immutable and atomically replaced
+ * on every update, so the concurrency cap is checked and the next child is taken by the single atomic step.
+ */
+public class InMemoryBulkJobRepository implements BulkJobRepository {
+
+    private final ConcurrentMap<String, BulkRecycleJob> bulkJobsById = new ConcurrentHashMap<>();
+    /**
+     * Bulk job ids by the ids of their child jobs
+     */
+    private final ConcurrentMap<String, String> childJobs = new ConcurrentHashMap<>();
+
+    @Override
+    public BulkRecycleJob newBulkJob(@NonNull String datetimeFieldName,
+                                     @NonNull Instant olderThan,
+                                     @NonNull List<String> tableNames,
+                                     int maxConcurrency) {
+        final BulkRecycleJob newBulkJob = new BulkRecycleJob(UUID.randomUUID().toString(), datetimeFieldName,
+                olderThan, maxConcurrency, false, tableNames.stream()
+                        .map(tableName -> new BulkRecycleJob.Child(tableName, null, RecycleJob.Status.PENDING, 0))
+                        .collect(Collectors.toList()));
+        bulkJobsById.put(newBulkJob.getId(), newBulkJob);
+        return newBulkJob;
+    }
+
+    @Override
+    public BulkRecycleJob getBulkJobById(@NonNull String id) throws BulkJobNotFoundException {
+        return Optional.ofNullable(bulkJobsById.get(id))
+                .orElseThrow(() -> new BulkJobNotFoundException(id));
+    }
+
+    @Override
+    public Optional<BulkRecycleJob> findBulkJobByChildJobId(@NonNull String jobId) {
+        return Optional.ofNullable(childJobs.get(jobId)).map(bulkJobsById::get);
+    }
+
+    @Override
+    public List<BulkRecycleJob> findActiveBulkJobs() {
+        return bulkJobsById.values().stream()
+                .filter(bulkJob -> !bulkJob.isCancelled() && bulkJob.getChildren().stream()
+                        .anyMatch(child -> child.getStatus().isCancellable()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<String> takeNextChild(@NonNull String id) throws BulkJobNotFoundException {
+        final AtomicReference<String> takenTable = new AtomicReference<>();
+        updateBulkJob(id, bulkJob -> {
+            takenTable.set(null);
+            final long runningCount = bulkJob.getChildren().stream()
+                    .filter(child -> child.getStatus() == RecycleJob.Status.RUNNING)
+                    .count();
+            if (bulkJob.isCancelled() || runningCount >= bulkJob.getMaxConcurrency()) {
+                return bulkJob;
+            }
+            final Optional<BulkRecycleJob.Child> nextChild = bulkJob.getChildren().stream()
+                    .filter(child -> child.getStatus() == RecycleJob.Status.PENDING)
+                    .findFirst();
+            if (!nextChild.isPresent()) {
+                return bulkJob;
+            }
+            takenTable.set(nextChild.get().getTableName());
+            return updateChild(bulkJob, nextChild.get().getTableName(), child ->
+                    new BulkRecycleJob.Child(child.getTableName(), null, RecycleJob.Status.RUNNING, 0));
+        });
+        return Optional.ofNullable(takenTable.get());
+    }
+
+    @Override
+    public void startChild(@NonNull String id, @NonNull String tableName, @NonNull String jobId) {
+        childJobs.put(jobId, id);
+        updateBulkJob(id, bulkJob -> updateChild(bulkJob, tableName, child ->
+                new BulkRecycleJob.Child(tableName, jobId, child.getStatus(), child.getDeletedCount())));
+    }
+
+    @Override
+    public void completeChild(@NonNull String id,
+                              @NonNull String tableName,
+                              @NonNull RecycleJob.Status status,
+                              long deletedCount) {
+        updateBulkJob(id, bulkJob -> updateChild(bulkJob, tableName, child ->
+                new BulkRecycleJob.Child(tableName, child.getJobId(), status, deletedCount)));
+    }
+
+    @Override
+    public void cancelBulkJob(@NonNull String id) throws BulkJobNotFoundException {
+        updateBulkJob(id, bulkJob -> new BulkRecycleJob(bulkJob.getId(), bulkJob.getFieldName(),
+                bulkJob.getOlderThan(), bulkJob.getMaxConcurrency(), true, bulkJob.getChildren().stream()
+                        .map(child -> child.getStatus() != RecycleJob.Status.PENDING ? child
+                                : new BulkRecycleJob.Child(child.getTableName(), null, RecycleJob.Status.CANCELLED, 0))
+                        .collect(Collectors.toList())));
+    }
+
+    private void updateBulkJob(String id, UnaryOperator<BulkRecycleJob> update) throws BulkJobNotFoundException {
+        if (bulkJobsById.computeIfPresent(id, (bulkJobId, bulkJob) -> update.apply(bulkJob)) == null) {
+            throw new BulkJobNotFoundException(id);
+        }
+    }
+
+    private static BulkRecycleJob updateChild(BulkRecycleJob bulkJob,
+                                              String tableName,
+                                              UnaryOperator<BulkRecycleJob.Child> update) {
+        final List<BulkRecycleJob.Child> children = new ArrayList<>(bulkJob.getChildren().size());
+        for (BulkRecycleJob.Child child : bulkJob.getChildren()) {
+            children.add(child.getTableName().equals(tableName) ? update.apply(child) : child);
+        }
+        return new BulkRecycleJob(bulkJob.getId(), bulkJob.getFieldName(), bulkJob.getOlderThan(),
+                bulkJob.getMaxConcurrency(), bulkJob.isCancelled(), children);
+    }
+}
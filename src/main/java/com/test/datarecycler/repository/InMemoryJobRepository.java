@@ -1,31 +1,41 @@
 package com.test.datarecycler.repository;
 
+import com.test.datarecycler.entity.JobProgress;
+import com.test.datarecycler.entity.MaintenanceWindow;
 import com.test.datarecycler.entity.RecycleJob;
 import com.test.datarecycler.exception.JobNotFoundException;
 import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
 import lombok.NonNull;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 /**
- * Threadsafe in memory implementation of {@link RecycleJobRepository}.
+ * Threadsafe in memory implementation of {@link RecycleJobRepository}. Based on concurrent maps, atomically
+ * replaced job statuses and atomic progress counters, so no operation blocks the others: status reads are wait-free,
+ * updates are lock-free and state snapshots retry rather than block progress updates, see {@link JobProgress}.
+ * Uniqueness of the active job per table is ensured by putIfAbsent semantics.
  */
 @Slf4j
 public class InMemoryJobRepository implements RecycleJobRepository {
 
-    private final Map<String, RecycleJob> jobsById;
-    private final Map<String, RecycleJob> tableJobs;
-    private final Map<RecycleJob, RecycleJob.State> jobState;
+    private final ConcurrentMap<String, JobEntry> jobsById;
+    private final ConcurrentMap<String, RecycleJob> tableJobs;
     private final Duration oldJobsRetentionPeriod;
     private final ScheduledExecutorService scheduler;
+    private final List<JobStatusListener> statusListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Create new instance
@@ -35,75 +45,114 @@ public class InMemoryJobRepository implements RecycleJobRepository {
      */
     public InMemoryJobRepository(@NonNull ScheduledExecutorService scheduler,
                                  @NonNull Duration completeJobsRetentionPeriod) {
-        this.jobsById = new HashMap<>();
-        this.tableJobs = new HashMap<>();
-        this.jobState = new HashMap<>();
+        this.jobsById = new ConcurrentHashMap<>();
+        this.tableJobs = new ConcurrentHashMap<>();
         this.scheduler = scheduler;
         this.oldJobsRetentionPeriod = completeJobsRetentionPeriod;
     }
 
     @Override
-    public synchronized RecycleJob newRecycleJob(@NonNull String tableName,
-                                                 @NonNull String datetimeFieldName,
-                                                 @NonNull Instant olderThan,
-                                                 int batchSize) {
-        if (tableJobs.containsKey(tableName)) {
-            throw new JobForTableAlreadyExistsException(tableJobs.get(tableName));
-        }
-
+    public RecycleJob newRecycleJob(@NonNull String tableName,
+                                    @NonNull String datetimeFieldName,
+                                    @NonNull Instant olderThan,
+                                    int batchSize,
+                                    int shards,
+                                    int priority,
+                                    int weight,
+                                    @NonNull RecycleJob.PurgeMode purgeMode,
+                                    RecycleJob.Cursor startCursor,
+                                    MaintenanceWindow maintenanceWindow,
+                                    Integer finishWithinWindows) {
         final RecycleJob newJob = new RecycleJob(
                 UUID.randomUUID().toString(),
                 tableName,
                 datetimeFieldName,
                 olderThan,
-                batchSize);
+                batchSize,
+                shards,
+                priority,
+                weight,
+                purgeMode,
+                maintenanceWindow,
+                finishWithinWindows);
 
-        tableJobs.put(tableName, newJob);
-        jobsById.put(newJob.getId(), newJob);
-        jobState.put(newJob, new RecycleJob.State(RecycleJob.Status.PENDING, 0));
+        final RecycleJob existingJob = tableJobs.putIfAbsent(tableName, newJob);
+        if (existingJob != null) {
+            throw new JobForTableAlreadyExistsException(existingJob);
+        }
+        jobsById.put(newJob.getId(), new JobEntry(newJob, new AtomicReference<>(RecycleJob.Status.PENDING),
+                new JobProgress(batchSize, startCursor)));
 
         return newJob;
     }
 
     @Override
-    public synchronized RecycleJob getJobById(@NonNull String id) throws JobNotFoundException {
-        return Optional.ofNullable(jobsById.get(id))
-                .orElseThrow(() -> new JobNotFoundException(id));
+    public RecycleJob getJobById(@NonNull String id) throws JobNotFoundException {
+        return getJobEntry(id).getJob();
     }
 
     @Override
-    public synchronized RecycleJob.State getJobStateById(@NonNull String id) throws JobNotFoundException {
-        return Optional.ofNullable(jobState.get(getJobById(id)))
-                .orElseThrow(() -> new JobNotFoundException(id));
+    public RecycleJob.State getJobStateById(@NonNull String id) throws JobNotFoundException {
+        final JobEntry jobEntry = getJobEntry(id);
+        return jobEntry.getProgress().snapshot(jobEntry.getStatus().get());
     }
 
     @Override
-    public synchronized void updateJobStatus(@NonNull String id, @NonNull RecycleJob.Status newStatus)
-            throws JobNotFoundException {
-        final RecycleJob.State state = getJobStateById(id);
-        if (state.getStatus().isCancellable()) {
-            jobState.computeIfPresent(getJobById(id),
-                    ($, oldState) -> new RecycleJob.State(newStatus, oldState.getDeletedCount()));
-        }
+    public RecycleJob.Status getJobStatus(@NonNull String id) throws JobNotFoundException {
+        return getJobEntry(id).getStatus().get();
     }
 
     @Override
-    public synchronized void incrementJobDeletedCount(@NonNull String id, int addDeletedCount) {
-        jobState.computeIfPresent(getJobById(id),
-                ($, oldState) -> new RecycleJob.State(
-                        oldState.getStatus(),
-                        oldState.getDeletedCount() + addDeletedCount)
-        );
+    public JobProgress getJobProgress(@NonNull String id) throws JobNotFoundException {
+        return getJobEntry(id).getProgress();
     }
 
     @Override
-    public synchronized void removeJob(@NonNull String id) throws JobNotFoundException {
-        final RecycleJob recycleJob = getJobById(id);
+    public void updateJobStatus(@NonNull String id, @NonNull RecycleJob.Status newStatus)
+            throws JobNotFoundException {
+        final RecycleJob.Status oldStatus = getJobEntry(id).getStatus()
+                .getAndUpdate(status -> status.isCancellable() ? newStatus : status);
+        if (oldStatus.isCancellable() && oldStatus != newStatus) {
+            statusListeners.forEach(listener -> listener.onStatusChanged(id, newStatus));
+        }
+    }
+
+    @Override
+    public void removeJob(@NonNull String id) throws JobNotFoundException {
+        final JobEntry jobEntry = getJobEntry(id);
+        final RecycleJob recycleJob = jobEntry.getJob();
         tableJobs.remove(recycleJob.getTableName(), recycleJob);
         scheduler.schedule(() -> {
             log.info("Remove old job '{}' from the registry", recycleJob.getId());
-            jobsById.remove(recycleJob.getId(), recycleJob);
-            jobState.remove(recycleJob);
+            jobsById.remove(recycleJob.getId(), jobEntry);
         }, oldJobsRetentionPeriod.toMillis(), TimeUnit.MILLISECONDS);
     }
+
+    @Override
+    public List<RecycleJob> findActiveJobs() {
+        return jobsById.values().stream()
+                .filter(jobEntry -> jobEntry.getStatus().get().isCancellable())
+                .map(JobEntry::getJob)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void addStatusListener(@NonNull JobStatusListener listener) {
+        statusListeners.add(listener);
+    }
+
+    private JobEntry getJobEntry(String id) throws JobNotFoundException {
+        return Optional.ofNullable(jobsById.get(id))
+                .orElseThrow(() -> new JobNotFoundException(id));
+    }
+
+    /**
+     * Job along with its current status and progress
+     */
+    @Value
+    private static class JobEntry {
+        private RecycleJob job;
+        private AtomicReference<RecycleJob.Status> status;
+        private JobProgress progress;
+    }
 }
@@ -0,0 +1,99 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.RetentionPolicy;
+import com.test.datarecycler.exception.PolicyForTableAlreadyExistsException;
+import com.test.datarecycler.exception.PolicyNotFoundException;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Threadsafe in memory implementation of {@link RetentionPolicyRepository}. Policies are immutable and atomically
+ * replaced on every update. Uniqueness of the policy per table is ensured by putIfAbsent semantics.
+ */
+public class InMemoryRetentionPolicyRepository implements RetentionPolicyRepository {
+
+    private final ConcurrentMap<String, RetentionPolicy> policiesById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> tablePolicies = new ConcurrentHashMap<>();
+
+    @Override
+    public RetentionPolicy newPolicy(@NonNull String tableName,
+                                     @NonNull String datetimeFieldName,
+                                     @NonNull Duration retention,
+                                     String cron,
+                                     Duration interval,
+                                     Duration maxWindow) {
+        final RetentionPolicy newPolicy = new RetentionPolicy(UUID.randomUUID().toString(), tableName,
+                datetimeFieldName, retention, cron, interval, maxWindow, null, null, null);
+        if (tablePolicies.putIfAbsent(tableName, newPolicy.getId()) != null) {
+            throw new PolicyForTableAlreadyExistsException(tableName);
+        }
+        policiesById.put(newPolicy.getId(), newPolicy);
+        return newPolicy;
+    }
+
+    @Override
+    public RetentionPolicy getPolicyById(@NonNull String id) throws PolicyNotFoundException {
+        return Optional.ofNullable(policiesById.get(id))
+                .orElseThrow(() -> new PolicyNotFoundException(id));
+    }
+
+    @Override
+    public List<RetentionPolicy> findPolicies() {
+        return new ArrayList<>(policiesById.values());
+    }
+
+    @Override
+    public void startRun(@NonNull String id, @NonNull String jobId, @NonNull Instant olderThan)
+            throws PolicyNotFoundException {
+        final RetentionPolicy updatedPolicy = policiesById.computeIfPresent(id, (policyId, policy) ->
+                new RetentionPolicy(policy.getId(), policy.getTableName(), policy.getFieldName(),
+                        policy.getRetention(), policy.getCron(), policy.getInterval(), policy.getMaxWindow(),
+                        policy.getWatermark(), jobId, olderThan));
+        if (updatedPolicy == null) {
+            throw new PolicyNotFoundException(id);
+        }
+    }
+
+    @Override
+    public Optional<RetentionPolicy> completeRun(@NonNull String jobId) {
+        final Optional<RetentionPolicy> runPolicy = policiesById.values().stream()
+                .filter(policy -> jobId.equals(policy.getRunJobId()))
+                .findAny();
+        if (!runPolicy.isPresent()) {
+            return Optional.empty();
+        }
+        final AtomicReference<RetentionPolicy> completedPolicy = new AtomicReference<>();
+        policiesById.computeIfPresent(runPolicy.get().getId(), (id, policy) -> {
+            //run job could be replaced concurrently by the next run
+            if (!jobId.equals(policy.getRunJobId())) {
+                return policy;
+            }
+            final Instant watermark = policy.getWatermark() == null
+                    || policy.getWatermark().isBefore(policy.getRunOlderThan())
+                    ? policy.getRunOlderThan() : policy.getWatermark();
+            completedPolicy.set(new RetentionPolicy(policy.getId(), policy.getTableName(), policy.getFieldName(),
+                    policy.getRetention(), policy.getCron(), policy.getInterval(), policy.getMaxWindow(),
+                    watermark, null, null));
+            return completedPolicy.get();
+        });
+        return Optional.ofNullable(completedPolicy.get());
+    }
+
+    @Override
+    public void removePolicy(@NonNull String id) throws PolicyNotFoundException {
+        final RetentionPolicy policy = policiesById.remove(id);
+        if (policy == null) {
+            throw new PolicyNotFoundException(id);
+        }
+        tablePolicies.remove(policy.getTableName(), id);
+    }
+}
@@ -0,0 +1,272 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.BulkRecycleJob;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.exception.BulkJobNotFoundException;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Durable {@link BulkJobRepository} implementation storing bulk jobs and their children in the postgres tables shared
+ * by all instances, so the child completed on any instance lets any of them start the next one. The next child is
+ * taken under the lock of the bulk job row, so concurrent instances never exceed its concurrency cap.
+ */
+public class JdbcBulkJobRepository implements BulkJobRepository {
+
+    private static final String INSERT_BULK_JOB_QUERY =
+            "INSERT INTO recycler.bulk_job (id, field_name, older_than, max_concurrency) VALUES (?, ?, ?, ?)";
+
+    private static final String INSERT_CHILD_QUERY =
+            "INSERT INTO recycler.bulk_job_child (bulk_job_id, table_name, ordinal, status) VALUES (?, ?, ?, ?)";
+
+    private static final String SELECT_BULK_JOB_QUERY = "SELECT * FROM recycler.bulk_job WHERE id = ?";
+
+    private static final String SELECT_CHILDREN_QUERY =
+            "SELECT * FROM recycler.bulk_job_child WHERE bulk_job_id = ? ORDER BY ordinal";
+
+    private static final String SELECT_CHILD_BULK_JOB_QUERY =
+            "SELECT bulk_job_id FROM recycler.bulk_job_child WHERE job_id = ?";
+
+    private static final String SELECT_ACTIVE_BULK_JOBS_QUERY =
+            "SELECT b.id FROM recycler.bulk_job b WHERE NOT b.cancelled AND EXISTS (" +
+            "  SELECT 1 FROM recycler.bulk_job_child c " +
+            "  WHERE c.bulk_job_id = b.id AND c.status IN ('PENDING', 'RUNNING')" +
+            ") ORDER BY b.created_at";
+
+    private static final String LOCK_BULK_JOB_QUERY =
+            "SELECT cancelled, max_concurrency FROM recycler.bulk_job WHERE id = ? FOR UPDATE";
+
+    private static final String TAKE_NEXT_CHILD_QUERY =
+            "UPDATE recycler.bulk_job_child SET status = 'RUNNING' " +
+            "WHERE bulk_job_id = ? AND ordinal = (" +
+            "  SELECT min(ordinal) FROM recycler.bulk_job_child WHERE bulk_job_id = ? AND status = 'PENDING'" +
+            ") AND (" +
+            "  SELECT count(*) FROM recycler.bulk_job_child WHERE bulk_job_id = ? AND status = 'RUNNING'" +
+            ") < ? RETURNING table_name";
+
+    private static final String START_CHILD_QUERY =
+            "UPDATE recycler.bulk_job_child SET job_id = ? WHERE bulk_job_id = ? AND table_name = ?";
+
+    private static final String COMPLETE_CHILD_QUERY =
+            "UPDATE recycler.bulk_job_child SET status = ?, deleted_count = ? WHERE bulk_job_id = ? AND table_name = ?";
+
+    private static final String CANCEL_BULK_JOB_QUERY = "UPDATE recycler.bulk_job SET cancelled = true WHERE id = ?";
+
+    private static final String CANCEL_PENDING_CHILDREN_QUERY =
+            "UPDATE recycler.bulk_job_child SET status = 'CANCELLED' WHERE bulk_job_id = ? AND status = 'PENDING'";
+
+    private final DataSource dataSource;
+
+    /**
+     * Create new instance
+     * @param dataSource data source of the database with the recycler schema
+     */
+    public JdbcBulkJobRepository(@NonNull DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    @SneakyThrows
+    public BulkRecycleJob newBulkJob(@NonNull String datetimeFieldName,
+                                     @NonNull Instant olderThan,
+                                     @NonNull List<String> tableNames,
+                                     int maxConcurrency) {
+        final String id = UUID.randomUUID().toString();
+        final List<BulkRecycleJob.Child> children = new ArrayList<>(tableNames.size());
+        try (Connection connection = getConnection();
+             PreparedStatement bulkJobStatement = connection.prepareStatement(INSERT_BULK_JOB_QUERY);
+             PreparedStatement childStatement = connection.prepareStatement(INSERT_CHILD_QUERY)) {
+            bulkJobStatement.setString(1, id);
+            bulkJobStatement.setString(2, datetimeFieldName);
+            JdbcTimestamps.setInstant(bulkJobStatement, 3, olderThan);
+            bulkJobStatement.setInt(4, maxConcurrency);
+            bulkJobStatement.executeUpdate();
+            for (int i = 0; i < tableNames.size(); i++) {
+                childStatement.setString(1, id);
+                childStatement.setString(2, tableNames.get(i));
+                childStatement.setInt(3, i);
+                childStatement.setString(4, RecycleJob.Status.PENDING.name());
+                childStatement.addBatch();
+                children.add(new BulkRecycleJob.Child(tableNames.get(i), null, RecycleJob.Status.PENDING, 0));
+            }
+            childStatement.executeBatch();
+            connection.commit();
+        }
+        return new BulkRecycleJob(id, datetimeFieldName, olderThan, maxConcurrency, false, children);
+    }
+
+    @Override
+    @SneakyThrows
+    public BulkRecycleJob getBulkJobById(@NonNull String id) throws BulkJobNotFoundException {
+        try (Connection connection = getConnection()) {
+            final Optional<BulkRecycleJob> bulkJob = loadBulkJob(connection, id);
+            connection.commit();
+            return bulkJob.orElseThrow(() -> new BulkJobNotFoundException(id));
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public Optional<BulkRecycleJob> findBulkJobByChildJobId(@NonNull String jobId) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_CHILD_BULK_JOB_QUERY)) {
+            preparedStatement.setString(1, jobId);
+            final Optional<BulkRecycleJob> bulkJob;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                bulkJob = resultSet.next()
+                        ? loadBulkJob(connection, resultSet.getString("bulk_job_id"))
+                        : Optional.empty();
+            }
+            connection.commit();
+            return bulkJob;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public List<BulkRecycleJob> findActiveBulkJobs() {
+        final List<BulkRecycleJob> activeBulkJobs = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ACTIVE_BULK_JOBS_QUERY)) {
+            final List<String> ids = new ArrayList<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getString("id"));
+                }
+            }
+            for (String id : ids) {
+                loadBulkJob(connection, id).ifPresent(activeBulkJobs::add);
+            }
+            connection.commit();
+        }
+        return activeBulkJobs;
+    }
+
+    @Override
+    @SneakyThrows
+    public Optional<String> takeNextChild(@NonNull String id) throws BulkJobNotFoundException {
+        try (Connection connection = getConnection();
+             PreparedStatement lockStatement = connection.prepareStatement(LOCK_BULK_JOB_QUERY);
+             PreparedStatement takeStatement = connection.prepareStatement(TAKE_NEXT_CHILD_QUERY)) {
+            lockStatement.setString(1, id);
+            final int maxConcurrency;
+            try (ResultSet resultSet = lockStatement.executeQuery()) {
+                if (!resultSet.next()) {
+                    connection.rollback();
+                    throw new BulkJobNotFoundException(id);
+                }
+                if (resultSet.getBoolean("cancelled")) {
+                    connection.rollback();
+                    return Optional.empty();
+                }
+                maxConcurrency = resultSet.getInt("max_concurrency");
+            }
+            takeStatement.setString(1, id);
+            takeStatement.setString(2, id);
+            takeStatement.setString(3, id);
+            takeStatement.setInt(4, maxConcurrency);
+            final Optional<String> tableName;
+            try (ResultSet resultSet = takeStatement.executeQuery()) {
+                tableName = resultSet.next() ? Optional.of(resultSet.getString("table_name")) : Optional.empty();
+            }
+            connection.commit();
+            return tableName;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void startChild(@NonNull String id, @NonNull String tableName, @NonNull String jobId) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(START_CHILD_QUERY)) {
+            preparedStatement.setString(1, jobId);
+            preparedStatement.setString(2, id);
+            preparedStatement.setString(3, tableName);
+            preparedStatement.executeUpdate();
+            connection.commit();
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void completeChild(@NonNull String id,
+                              @NonNull String tableName,
+                              @NonNull RecycleJob.Status status,
+                              long deletedCount) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(COMPLETE_CHILD_QUERY)) {
+            preparedStatement.setString(1, status.name());
+            preparedStatement.setLong(2, deletedCount);
+            preparedStatement.setString(3, id);
+            preparedStatement.setString(4, tableName);
+            preparedStatement.executeUpdate();
+            connection.commit();
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void cancelBulkJob(@NonNull String id) throws BulkJobNotFoundException {
+        try (Connection connection = getConnection();
+             PreparedStatement bulkJobStatement = connection.prepareStatement(CANCEL_BULK_JOB_QUERY);
+             PreparedStatement childrenStatement = connection.prepareStatement(CANCEL_PENDING_CHILDREN_QUERY)) {
+            bulkJobStatement.setString(1, id);
+            if (bulkJobStatement.executeUpdate() == 0) {
+                connection.rollback();
+                throw new BulkJobNotFoundException(id);
+            }
+            childrenStatement.setString(1, id);
+            childrenStatement.executeUpdate();
+            connection.commit();
+        }
+    }
+
+    private static Optional<BulkRecycleJob> loadBulkJob(Connection connection, String id) throws SQLException {
+        try (PreparedStatement bulkJobStatement = connection.prepareStatement(SELECT_BULK_JOB_QUERY);
+             PreparedStatement childrenStatement = connection.prepareStatement(SELECT_CHILDREN_QUERY)) {
+            bulkJobStatement.setString(1, id);
+            try (ResultSet bulkJobResultSet = bulkJobStatement.executeQuery()) {
+                if (!bulkJobResultSet.next()) {
+                    return Optional.empty();
+                }
+                childrenStatement.setString(1, id);
+                final List<BulkRecycleJob.Child> children = new ArrayList<>();
+                try (ResultSet resultSet = childrenStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        children.add(new BulkRecycleJob.Child(
+                                resultSet.getString("table_name"),
+                                resultSet.getString("job_id"),
+                                RecycleJob.Status.valueOf(resultSet.getString("status")),
+                                resultSet.getLong("deleted_count")));
+                    }
+                }
+                return Optional.of(new BulkRecycleJob(
+                        id,
+                        bulkJobResultSet.getString("field_name"),
+                        JdbcTimestamps.getInstant(bulkJobResultSet, "older_than"),
+                        bulkJobResultSet.getInt("max_concurrency"),
+                        bulkJobResultSet.getBoolean("cancelled"),
+                        children));
+            }
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        if (connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+        }
+        return connection;
+    }
+}
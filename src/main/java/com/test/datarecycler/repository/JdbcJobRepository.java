@@ -0,0 +1,618 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.JobProgress;
+import com.test.datarecycler.entity.MaintenanceWindow;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
+import com.test.datarecycler.exception.JobNotFoundException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Durable {@link RecycleJobRepository} implementation storing jobs in the postgres table, so active jobs survive
+ * restarts and could be resumed. Jobs executed by this instance are cached in memory along with their progress, so the
+ * executor never touches the database on the hot path: status changes are written immediately, while progress is
+ * flushed periodically by the single batched update. Each progress write carries increasing version, so the stale write
+ * never overrides the newer one. Status is written separately and never leaves the final state, so status changes made
+ * by any instance are not lost. Final statuses set by other instances, e.g. cancellation, are read back into the cached
+ * jobs along with the progress flush. Uniqueness of the active job per table is ensured by the partial unique index.
+ * <p>
+ * The table is also the {@link JobQueue} shared by all instances: jobs are claimed by {@code FOR UPDATE SKIP LOCKED},
+ * so concurrent instances never wait for each other and never claim the same job. Progress of the leased job is
+ * written by its owner only.
+ */
+@Slf4j
+public class JdbcJobRepository implements RecycleJobRepository, JobQueue, AutoCloseable {
+
+    private static final String UNIQUE_VIOLATION_STATE = "23505";
+
+    private static final String INSERT_JOB_QUERY =
+            "INSERT INTO recycler.recycle_job " +
+            "  (id, table_name, field_name, older_than, batch_size, shards, priority, weight, purge_mode, status, " +
+            "  current_batch_size, cursor_datetime, cursor_id, maintenance_window, finish_within_windows) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_STATUS_QUERY =
+            "UPDATE recycler.recycle_job SET status = ?, updated_at = now() " +
+            "WHERE id = ? AND status IN ('PENDING', 'RUNNING', 'PAUSED')";
+
+    private static final String UPDATE_PROGRESS_QUERY =
+            "UPDATE recycler.recycle_job SET deleted_count = ?, cursor_datetime = ?, cursor_id = ?, " +
+            "  current_batch_size = ?, dropped_partitions = ?, throttled_millis = ?, batches = ?, " +
+            "  bytes_freed_estimate = ?, last_batch_time = ?, started_at = ?, estimated_total = ?, " +
+            "  rows_per_second = ?, last_batch_latency_millis = ?, dead_tuple_ratio = ?, vacuums = ?, " +
+            "  bytes_reclaimed_estimate = ?, retries = ?, lock_timeouts = ?, version = ?, updated_at = now() " +
+            "WHERE id = ? AND version < ? AND (owner IS NULL OR owner = ?)";
+
+    /**
+     * Leases the oldest active jobs which are not leased yet or whose lease has expired. Rows locked by the concurrent
+     * claim are skipped rather than awaited.
+     */
+    private static final String CLAIM_JOBS_QUERY =
+            "UPDATE recycler.recycle_job SET owner = ?, lease_until = now() + make_interval(secs => ?) " +
+            "WHERE id IN (" +
+            "  SELECT id FROM recycler.recycle_job " +
+            "  WHERE status IN ('PENDING', 'RUNNING', 'PAUSED') AND (lease_until IS NULL OR lease_until < now()) " +
+            "  ORDER BY priority DESC, created_at LIMIT ? FOR UPDATE SKIP LOCKED" +
+            ") RETURNING *";
+
+    private static final String RENEW_LEASES_QUERY =
+            "UPDATE recycler.recycle_job SET lease_until = now() + make_interval(secs => ?) " +
+            "WHERE owner = ? AND id = ANY(?) RETURNING id, status";
+
+    private static final String RELEASE_JOB_QUERY =
+            "UPDATE recycler.recycle_job SET owner = NULL, lease_until = NULL WHERE id = ? AND owner = ?";
+
+    private static final String SELECT_FINAL_STATUSES_QUERY =
+            "SELECT id, status FROM recycler.recycle_job " +
+            "WHERE id = ANY(?) AND status NOT IN ('PENDING', 'RUNNING', 'PAUSED')";
+
+    private static final String SELECT_JOB_QUERY = "SELECT * FROM recycler.recycle_job WHERE id = ?";
+
+    private static final String SELECT_ACTIVE_TABLE_JOB_QUERY =
+            "SELECT * FROM recycler.recycle_job " +
+            "WHERE table_name = ? AND status IN ('PENDING', 'RUNNING', 'PAUSED')";
+
+    private static final String SELECT_ACTIVE_JOBS_QUERY =
+            "SELECT * FROM recycler.recycle_job " +
+            "WHERE status IN ('PENDING', 'RUNNING', 'PAUSED') ORDER BY created_at";
+
+    private static final String DELETE_OLD_JOBS_QUERY =
+            "DELETE FROM recycler.recycle_job " +
+            "WHERE status NOT IN ('PENDING', 'RUNNING', 'PAUSED') " +
+            "  AND updated_at < now() - make_interval(secs => ?)";
+
+    private final DataSource dataSource;
+    private final ScheduledExecutorService scheduler;
+    private final Duration completeJobsRetentionPeriod;
+    /**
+     * Unique id of this instance, which owns the leased jobs
+     */
+    private final String nodeId;
+    /**
+     * Jobs executed by this instance
+     */
+    private final ConcurrentMap<String, JobEntry> cachedJobs = new ConcurrentHashMap<>();
+    private final List<JobStatusListener> statusListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create new instance and schedule periodic progress flush and removal of the old jobs
+     * @param dataSource data source of the database with the recycler schema
+     * @param scheduler scheduler to execute periodic and delayed tasks
+     * @param completeJobsRetentionPeriod period of time during which complete tasks won't be deleted, allowing clients
+     *                                    to checks its state
+     * @param progressFlushInterval how often progress of the running jobs is written to the database
+     * @param nodeId unique id of this instance
+     */
+    public JdbcJobRepository(@NonNull DataSource dataSource,
+                             @NonNull ScheduledExecutorService scheduler,
+                             @NonNull Duration completeJobsRetentionPeriod,
+                             @NonNull Duration progressFlushInterval,
+                             @NonNull String nodeId) {
+        this.dataSource = dataSource;
+        this.scheduler = scheduler;
+        this.completeJobsRetentionPeriod = completeJobsRetentionPeriod;
+        this.nodeId = nodeId;
+        scheduler.scheduleWithFixedDelay(this::flushProgress,
+                progressFlushInterval.toMillis(), progressFlushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::removeOldJobs,
+                0, completeJobsRetentionPeriod.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    @SneakyThrows
+    public RecycleJob newRecycleJob(@NonNull String tableName,
+                                    @NonNull String datetimeFieldName,
+                                    @NonNull Instant olderThan,
+                                    int batchSize,
+                                    int shards,
+                                    int priority,
+                                    int weight,
+                                    @NonNull RecycleJob.PurgeMode purgeMode,
+                                    RecycleJob.Cursor startCursor,
+                                    MaintenanceWindow maintenanceWindow,
+                                    Integer finishWithinWindows) {
+        final RecycleJob newJob = new RecycleJob(
+                UUID.randomUUID().toString(),
+                tableName,
+                datetimeFieldName,
+                olderThan,
+                batchSize,
+                shards,
+                priority,
+                weight,
+                purgeMode,
+                maintenanceWindow,
+                finishWithinWindows);
+
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(INSERT_JOB_QUERY)) {
+            preparedStatement.setString(1, newJob.getId());
+            preparedStatement.setString(2, tableName);
+            preparedStatement.setString(3, datetimeFieldName);
+            JdbcTimestamps.setInstant(preparedStatement, 4, olderThan);
+            preparedStatement.setInt(5, batchSize);
+            preparedStatement.setInt(6, shards);
+            preparedStatement.setInt(7, priority);
+            preparedStatement.setInt(8, weight);
+            preparedStatement.setString(9, purgeMode.name());
+            preparedStatement.setString(10, RecycleJob.Status.PENDING.name());
+            preparedStatement.setInt(11, batchSize);
+            if (startCursor == null) {
+                preparedStatement.setNull(12, Types.TIMESTAMP_WITH_TIMEZONE);
+                preparedStatement.setNull(13, Types.BIGINT);
+            } else {
+                JdbcTimestamps.setInstant(preparedStatement, 12, startCursor.getDatetime());
+                preparedStatement.setLong(13, startCursor.getId());
+            }
+            preparedStatement.setString(14, maintenanceWindow == null ? null : maintenanceWindow.toString());
+            if (finishWithinWindows == null) {
+                preparedStatement.setNull(15, Types.INTEGER);
+            } else {
+                preparedStatement.setInt(15, finishWithinWindows);
+            }
+            preparedStatement.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            if (UNIQUE_VIOLATION_STATE.equals(e.getSQLState())) {
+                final Optional<RecycleJob> existingJob = findActiveTableJob(tableName);
+                if (existingJob.isPresent()) {
+                    throw new JobForTableAlreadyExistsException(existingJob.get());
+                }
+            }
+            throw e;
+        }
+        return newJob;
+    }
+
+    @Override
+    public RecycleJob getJobById(@NonNull String id) throws JobNotFoundException {
+        return getJobEntry(id).getJob();
+    }
+
+    @Override
+    public RecycleJob.State getJobStateById(@NonNull String id) throws JobNotFoundException {
+        final JobEntry jobEntry = getJobEntry(id);
+        return jobEntry.getProgress().snapshot(jobEntry.getStatus().get());
+    }
+
+    @Override
+    public RecycleJob.Status getJobStatus(@NonNull String id) throws JobNotFoundException {
+        return getJobEntry(id).getStatus().get();
+    }
+
+    /**
+     * Get progress of the job executed by this instance, caching the job on the first call
+     */
+    @Override
+    public JobProgress getJobProgress(@NonNull String id) throws JobNotFoundException {
+        final JobEntry cachedEntry = cachedJobs.get(id);
+        if (cachedEntry != null) {
+            return cachedEntry.getProgress();
+        }
+        final JobEntry jobEntry = loadJobEntry(SELECT_JOB_QUERY, id)
+                .orElseThrow(() -> new JobNotFoundException(id));
+        return Optional.ofNullable(cachedJobs.putIfAbsent(id, jobEntry)).orElse(jobEntry).getProgress();
+    }
+
+    @Override
+    public void updateJobStatus(@NonNull String id, @NonNull RecycleJob.Status newStatus)
+            throws JobNotFoundException {
+        final JobEntry jobEntry = getJobEntry(id);
+        final RecycleJob.Status oldStatus = jobEntry.getStatus()
+                .getAndUpdate(status -> status.isCancellable() ? newStatus : status);
+        if (oldStatus.isCancellable() && oldStatus != newStatus) {
+            writeStatus(id, newStatus);
+            notifyStatusChanged(id, newStatus);
+        }
+    }
+
+    @Override
+    public void removeJob(@NonNull String id) throws JobNotFoundException {
+        final JobEntry jobEntry = getJobEntry(id);
+        //persist final progress right away
+        writeJobs(Collections.singletonList(jobEntry.prepareWrite()));
+        scheduler.schedule(() -> {
+            log.info("Remove old job '{}' from the cache", id);
+            cachedJobs.remove(id, jobEntry);
+        }, completeJobsRetentionPeriod.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    @SneakyThrows
+    public List<RecycleJob> findActiveJobs() {
+        final List<RecycleJob> activeJobs = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ACTIVE_JOBS_QUERY)) {
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    activeJobs.add(mapJobEntry(resultSet).getJob());
+                }
+            }
+            connection.commit();
+        }
+        return activeJobs;
+    }
+
+    /**
+     * Claim jobs and cache them along with their restored progress, so they could be executed
+     */
+    @Override
+    @SneakyThrows
+    public List<RecycleJob> claimJobs(int limit, @NonNull Duration leaseDuration) {
+        final List<RecycleJob> claimedJobs = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(CLAIM_JOBS_QUERY)) {
+            preparedStatement.setString(1, nodeId);
+            preparedStatement.setLong(2, leaseDuration.getSeconds());
+            preparedStatement.setInt(3, limit);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    final JobEntry jobEntry = mapJobEntry(resultSet);
+                    cachedJobs.putIfAbsent(jobEntry.getJob().getId(), jobEntry);
+                    claimedJobs.add(jobEntry.getJob());
+                }
+            }
+            connection.commit();
+        }
+        return claimedJobs;
+    }
+
+    /**
+     * Renew leases and apply status changes made by other instances, e.g. cancellation, to the cached jobs. Jobs whose
+     * leases are lost are evicted from the cache.
+     */
+    @Override
+    @SneakyThrows
+    public Set<String> renewLeases(@NonNull Collection<String> jobIds, @NonNull Duration leaseDuration) {
+        final Set<String> renewedJobIds = new HashSet<>();
+        if (jobIds.isEmpty()) {
+            return renewedJobIds;
+        }
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(RENEW_LEASES_QUERY)) {
+            preparedStatement.setLong(1, leaseDuration.getSeconds());
+            preparedStatement.setString(2, nodeId);
+            preparedStatement.setArray(3, connection.createArrayOf("varchar", jobIds.toArray()));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    final String id = resultSet.getString("id");
+                    applyFinalStatus(id, RecycleJob.Status.valueOf(resultSet.getString("status")));
+                    renewedJobIds.add(id);
+                }
+            }
+            connection.commit();
+        }
+        for (String id : jobIds) {
+            if (!renewedJobIds.contains(id)) {
+                cachedJobs.remove(id);
+            }
+        }
+        return renewedJobIds;
+    }
+
+    @Override
+    @SneakyThrows
+    public void releaseJob(@NonNull String jobId) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(RELEASE_JOB_QUERY)) {
+            preparedStatement.setString(1, jobId);
+            preparedStatement.setString(2, nodeId);
+            preparedStatement.executeUpdate();
+            connection.commit();
+        }
+    }
+
+    /**
+     * Flush progress of the running jobs
+     */
+    @Override
+    public void close() {
+        flushProgress();
+    }
+
+    /**
+     * Write progress of the cached jobs changed since the last write, then read back final statuses of the active ones
+     */
+    void flushProgress() {
+        try {
+            final List<JobWrite> writes = new ArrayList<>();
+            for (JobEntry jobEntry : cachedJobs.values()) {
+                final JobWrite write = jobEntry.prepareWrite();
+                if (write.isChanged()) {
+                    writes.add(write);
+                }
+            }
+            writeJobs(writes);
+        } catch (Exception e) {
+            log.error("Failed to flush jobs progress", e);
+        }
+        try {
+            refreshStatuses();
+        } catch (Exception e) {
+            log.error("Failed to refresh jobs statuses", e);
+        }
+    }
+
+    /**
+     * Apply final statuses set by other instances to the active cached jobs, since local executor has no leases to
+     * learn them from
+     */
+    @SneakyThrows
+    private void refreshStatuses() {
+        final List<String> activeJobIds = new ArrayList<>();
+        for (JobEntry jobEntry : cachedJobs.values()) {
+            if (jobEntry.getStatus().get().isCancellable()) {
+                activeJobIds.add(jobEntry.getJob().getId());
+            }
+        }
+        if (activeJobIds.isEmpty()) {
+            return;
+        }
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_FINAL_STATUSES_QUERY)) {
+            preparedStatement.setArray(1, connection.createArrayOf("varchar", activeJobIds.toArray()));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    applyFinalStatus(resultSet.getString("id"),
+                            RecycleJob.Status.valueOf(resultSet.getString("status")));
+                }
+            }
+            connection.commit();
+        }
+    }
+
+    private void applyFinalStatus(String id, RecycleJob.Status status) {
+        final JobEntry cachedEntry = cachedJobs.get(id);
+        if (cachedEntry != null && !status.isCancellable() && cachedEntry.getStatus().getAndSet(status) != status) {
+            notifyStatusChanged(id, status);
+        }
+    }
+
+    private void removeOldJobs() {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(DELETE_OLD_JOBS_QUERY)) {
+            preparedStatement.setLong(1, completeJobsRetentionPeriod.getSeconds());
+            final int removedCount = preparedStatement.executeUpdate();
+            connection.commit();
+            log.info("Removed {} old jobs from the database", removedCount);
+        } catch (Exception e) {
+            log.error("Failed to remove old jobs", e);
+        }
+    }
+
+    @SneakyThrows
+    private void writeStatus(String id, RecycleJob.Status status) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_STATUS_QUERY)) {
+            preparedStatement.setString(1, status.name());
+            preparedStatement.setString(2, id);
+            preparedStatement.executeUpdate();
+            connection.commit();
+        }
+    }
+
+    @SneakyThrows
+    private void writeJobs(List<JobWrite> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_PROGRESS_QUERY)) {
+            for (JobWrite write : writes) {
+                final RecycleJob.State state = write.getState();
+                final RecycleJob.Cursor cursor = state.getCursor();
+                preparedStatement.setLong(1, state.getDeletedCount());
+                JdbcTimestamps.setInstant(preparedStatement, 2, cursor == null ? null : cursor.getDatetime());
+                if (cursor == null) {
+                    preparedStatement.setNull(3, Types.BIGINT);
+                } else {
+                    preparedStatement.setLong(3, cursor.getId());
+                }
+                preparedStatement.setInt(4, state.getBatchSize());
+                preparedStatement.setLong(5, state.getDroppedPartitions());
+                preparedStatement.setLong(6, state.getThrottledMillis());
+                preparedStatement.setLong(7, state.getBatches());
+                preparedStatement.setLong(8, state.getBytesFreedEstimate());
+                JdbcTimestamps.setInstant(preparedStatement, 9, state.getLastBatchTime());
+                JdbcTimestamps.setInstant(preparedStatement, 10, state.getStartTime());
+                if (state.getEstimatedTotal() == null) {
+                    preparedStatement.setNull(11, Types.BIGINT);
+                } else {
+                    preparedStatement.setLong(11, state.getEstimatedTotal());
+                }
+                preparedStatement.setDouble(12, state.getRowsPerSecond());
+                preparedStatement.setLong(13, state.getLastBatchLatencyMillis());
+                if (state.getDeadTupleRatio() == null) {
+                    preparedStatement.setNull(14, Types.DOUBLE);
+                } else {
+                    preparedStatement.setDouble(14, state.getDeadTupleRatio());
+                }
+                preparedStatement.setLong(15, state.getVacuums());
+                preparedStatement.setLong(16, state.getBytesReclaimedEstimate());
+                preparedStatement.setLong(17, state.getRetries());
+                preparedStatement.setLong(18, state.getLockTimeouts());
+                preparedStatement.setLong(19, write.getVersion());
+                preparedStatement.setString(20, write.getJobEntry().getJob().getId());
+                preparedStatement.setLong(21, write.getVersion());
+                preparedStatement.setString(22, nodeId);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            connection.commit();
+        }
+        for (JobWrite write : writes) {
+            write.getJobEntry().setWrittenState(write.getState());
+        }
+    }
+
+    private JobEntry getJobEntry(String id) throws JobNotFoundException {
+        final JobEntry cachedEntry = cachedJobs.get(id);
+        if (cachedEntry != null) {
+            return cachedEntry;
+        }
+        return loadJobEntry(SELECT_JOB_QUERY, id)
+                .orElseThrow(() -> new JobNotFoundException(id));
+    }
+
+    private Optional<RecycleJob> findActiveTableJob(String tableName) {
+        return loadJobEntry(SELECT_ACTIVE_TABLE_JOB_QUERY, tableName).map(JobEntry::getJob);
+    }
+
+    @SneakyThrows
+    private Optional<JobEntry> loadJobEntry(String query, String param) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, param);
+            final Optional<JobEntry> jobEntry;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                jobEntry = resultSet.next() ? Optional.of(mapJobEntry(resultSet)) : Optional.empty();
+            }
+            connection.commit();
+            return jobEntry;
+        }
+    }
+
+    private static JobEntry mapJobEntry(ResultSet resultSet) throws SQLException {
+        final String maintenanceWindow = resultSet.getString("maintenance_window");
+        final RecycleJob job = new RecycleJob(
+                resultSet.getString("id"),
+                resultSet.getString("table_name"),
+                resultSet.getString("field_name"),
+                JdbcTimestamps.getInstant(resultSet, "older_than"),
+                resultSet.getInt("batch_size"),
+                resultSet.getInt("shards"),
+                resultSet.getInt("priority"),
+                resultSet.getInt("weight"),
+                RecycleJob.PurgeMode.valueOf(resultSet.getString("purge_mode")),
+                maintenanceWindow == null ? null : MaintenanceWindow.parse(maintenanceWindow),
+                resultSet.getObject("finish_within_windows", Integer.class));
+        final RecycleJob.Status status = RecycleJob.Status.valueOf(resultSet.getString("status"));
+        final Instant cursorDatetime = JdbcTimestamps.getInstant(resultSet, "cursor_datetime");
+        final RecycleJob.State state = new RecycleJob.State(
+                status,
+                resultSet.getLong("deleted_count"),
+                cursorDatetime == null
+                        ? null : new RecycleJob.Cursor(cursorDatetime, resultSet.getLong("cursor_id")),
+                resultSet.getInt("current_batch_size"),
+                resultSet.getLong("dropped_partitions"),
+                resultSet.getLong("throttled_millis"),
+                resultSet.getLong("batches"),
+                resultSet.getLong("bytes_freed_estimate"),
+                JdbcTimestamps.getInstant(resultSet, "last_batch_time"),
+                JdbcTimestamps.getInstant(resultSet, "started_at"),
+                resultSet.getObject("estimated_total", Long.class),
+                resultSet.getDouble("rows_per_second"),
+                resultSet.getLong("last_batch_latency_millis"),
+                resultSet.getObject("dead_tuple_ratio", Double.class),
+                resultSet.getLong("vacuums"),
+                resultSet.getLong("bytes_reclaimed_estimate"),
+                resultSet.getLong("retries"),
+                resultSet.getLong("lock_timeouts"));
+        return new JobEntry(job, new AtomicReference<>(status), new JobProgress(state), resultSet.getLong("version"),
+                state);
+    }
+
+    @Override
+    public void addStatusListener(@NonNull JobStatusListener listener) {
+        statusListeners.add(listener);
+    }
+
+    private void notifyStatusChanged(String id, RecycleJob.Status status) {
+        statusListeners.forEach(listener -> listener.onStatusChanged(id, status));
+    }
+
+    private Connection getConnection() throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        if (connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+        }
+        return connection;
+    }
+
+    /**
+     * Job along with its current status, progress and the last written state
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class JobEntry {
+        private final RecycleJob job;
+        private final AtomicReference<RecycleJob.Status> status;
+        private final JobProgress progress;
+        /**
+         * Version of the last prepared write, guarded by the entry monitor
+         */
+        private long version;
+        @Setter
+        private volatile RecycleJob.State writtenState;
+
+        /**
+         * Take state snapshot along with the next version, so later snapshots always have greater versions
+         */
+        synchronized JobWrite prepareWrite() {
+            return new JobWrite(this, ++version, progress.snapshot(status.get()));
+        }
+    }
+
+    @Value
+    private static class JobWrite {
+        private JobEntry jobEntry;
+        private long version;
+        private RecycleJob.State state;
+
+        /**
+         * Whole state is compared, since any recorder could change it without deleting a batch, e.g. retry or vacuum
+         */
+        boolean isChanged() {
+            return !state.equals(jobEntry.getWrittenState());
+        }
+    }
+}
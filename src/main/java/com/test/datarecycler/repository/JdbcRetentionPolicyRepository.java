@@ -0,0 +1,202 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.RetentionPolicy;
+import com.test.datarecycler.exception.PolicyForTableAlreadyExistsException;
+import com.test.datarecycler.exception.PolicyNotFoundException;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Durable {@link RetentionPolicyRepository} implementation storing policies in the postgres table shared by all
+ * instances, so the watermark advanced by the instance which has executed the run job is seen by all of them.
+ * Uniqueness of the policy per table is ensured by the unique index.
+ */
+public class JdbcRetentionPolicyRepository implements RetentionPolicyRepository {
+
+    private static final String UNIQUE_VIOLATION_STATE = "23505";
+
+    private static final String INSERT_POLICY_QUERY =
+            "INSERT INTO recycler.retention_policy " +
+            "  (id, table_name, field_name, retention_millis, cron, interval_millis, max_window_millis) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_POLICY_QUERY = "SELECT * FROM recycler.retention_policy WHERE id = ?";
+
+    private static final String SELECT_POLICIES_QUERY = "SELECT * FROM recycler.retention_policy ORDER BY created_at";
+
+    private static final String START_RUN_QUERY =
+            "UPDATE recycler.retention_policy SET run_job_id = ?, run_older_than = ? WHERE id = ?";
+
+    /**
+     * GREATEST ignores nulls, so the first finished run sets the watermark
+     */
+    private static final String COMPLETE_RUN_QUERY =
+            "UPDATE recycler.retention_policy " +
+            "SET watermark = GREATEST(watermark, run_older_than), run_job_id = NULL, run_older_than = NULL " +
+            "WHERE run_job_id = ? RETURNING *";
+
+    private static final String DELETE_POLICY_QUERY = "DELETE FROM recycler.retention_policy WHERE id = ?";
+
+    private final DataSource dataSource;
+
+    /**
+     * Create new instance
+     * @param dataSource data source of the database with the recycler schema
+     */
+    public JdbcRetentionPolicyRepository(@NonNull DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    @SneakyThrows
+    public RetentionPolicy newPolicy(@NonNull String tableName,
+                                     @NonNull String datetimeFieldName,
+                                     @NonNull Duration retention,
+                                     String cron,
+                                     Duration interval,
+                                     Duration maxWindow) {
+        final RetentionPolicy newPolicy = new RetentionPolicy(UUID.randomUUID().toString(), tableName,
+                datetimeFieldName, retention, cron, interval, maxWindow, null, null, null);
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(INSERT_POLICY_QUERY)) {
+            preparedStatement.setString(1, newPolicy.getId());
+            preparedStatement.setString(2, tableName);
+            preparedStatement.setString(3, datetimeFieldName);
+            preparedStatement.setLong(4, retention.toMillis());
+            preparedStatement.setString(5, cron);
+            setMillis(preparedStatement, 6, interval);
+            setMillis(preparedStatement, 7, maxWindow);
+            preparedStatement.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            if (UNIQUE_VIOLATION_STATE.equals(e.getSQLState())) {
+                throw new PolicyForTableAlreadyExistsException(tableName);
+            }
+            throw e;
+        }
+        return newPolicy;
+    }
+
+    @Override
+    @SneakyThrows
+    public RetentionPolicy getPolicyById(@NonNull String id) throws PolicyNotFoundException {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_POLICY_QUERY)) {
+            preparedStatement.setString(1, id);
+            final Optional<RetentionPolicy> policy;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                policy = resultSet.next() ? Optional.of(mapPolicy(resultSet)) : Optional.empty();
+            }
+            connection.commit();
+            return policy.orElseThrow(() -> new PolicyNotFoundException(id));
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public List<RetentionPolicy> findPolicies() {
+        final List<RetentionPolicy> policies = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_POLICIES_QUERY)) {
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    policies.add(mapPolicy(resultSet));
+                }
+            }
+            connection.commit();
+        }
+        return policies;
+    }
+
+    @Override
+    @SneakyThrows
+    public void startRun(@NonNull String id, @NonNull String jobId, @NonNull Instant olderThan)
+            throws PolicyNotFoundException {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(START_RUN_QUERY)) {
+            preparedStatement.setString(1, jobId);
+            JdbcTimestamps.setInstant(preparedStatement, 2, olderThan);
+            preparedStatement.setString(3, id);
+            final int updatedCount = preparedStatement.executeUpdate();
+            connection.commit();
+            if (updatedCount == 0) {
+                throw new PolicyNotFoundException(id);
+            }
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public Optional<RetentionPolicy> completeRun(@NonNull String jobId) {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(COMPLETE_RUN_QUERY)) {
+            preparedStatement.setString(1, jobId);
+            final Optional<RetentionPolicy> policy;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                policy = resultSet.next() ? Optional.of(mapPolicy(resultSet)) : Optional.empty();
+            }
+            connection.commit();
+            return policy;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public void removePolicy(@NonNull String id) throws PolicyNotFoundException {
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(DELETE_POLICY_QUERY)) {
+            preparedStatement.setString(1, id);
+            final int removedCount = preparedStatement.executeUpdate();
+            connection.commit();
+            if (removedCount == 0) {
+                throw new PolicyNotFoundException(id);
+            }
+        }
+    }
+
+    private static void setMillis(PreparedStatement preparedStatement, int index, Duration duration)
+            throws SQLException {
+        if (duration == null) {
+            preparedStatement.setNull(index, Types.BIGINT);
+        } else {
+            preparedStatement.setLong(index, duration.toMillis());
+        }
+    }
+
+    private static RetentionPolicy mapPolicy(ResultSet resultSet) throws SQLException {
+        final Long intervalMillis = resultSet.getObject("interval_millis", Long.class);
+        final Long maxWindowMillis = resultSet.getObject("max_window_millis", Long.class);
+        return new RetentionPolicy(
+                resultSet.getString("id"),
+                resultSet.getString("table_name"),
+                resultSet.getString("field_name"),
+                Duration.ofMillis(resultSet.getLong("retention_millis")),
+                resultSet.getString("cron"),
+                intervalMillis == null ? null : Duration.ofMillis(intervalMillis),
+                maxWindowMillis == null ? null : Duration.ofMillis(maxWindowMillis),
+                JdbcTimestamps.getInstant(resultSet, "watermark"),
+                resultSet.getString("run_job_id"),
+                JdbcTimestamps.getInstant(resultSet, "run_older_than"));
+    }
+
+    private Connection getConnection() throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        if (connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+        }
+        return connection;
+    }
+}
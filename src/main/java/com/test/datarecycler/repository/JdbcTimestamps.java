@@ -0,0 +1,36 @@
+package com.test.datarecycler.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Binds and reads timestamptz columns of the recycler schema explicitly in UTC, so the stored instants don't depend
+ * on the time zone of the JVM or the database session
+ */
+final class JdbcTimestamps {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private JdbcTimestamps() {
+    }
+
+    static void setInstant(PreparedStatement preparedStatement, int index, Instant instant) throws SQLException {
+        if (instant == null) {
+            preparedStatement.setNull(index, Types.TIMESTAMP_WITH_TIMEZONE);
+        } else {
+            //calendar is not threadsafe, and the driver may keep it until the statement is executed
+            preparedStatement.setTimestamp(index, Timestamp.from(instant), Calendar.getInstance(UTC));
+        }
+    }
+
+    static Instant getInstant(ResultSet resultSet, String columnName) throws SQLException {
+        final Timestamp timestamp = resultSet.getTimestamp(columnName, Calendar.getInstance(UTC));
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+}
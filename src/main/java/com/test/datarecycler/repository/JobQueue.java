@@ -0,0 +1,37 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.RecycleJob;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Queue of the active jobs shared by all instances of the service. Each job is executed by the single instance, which
+ * holds its lease. Lease not renewed in time expires, so the job could be claimed by another instance.
+ */
+public interface JobQueue {
+
+    /**
+     * Claim active jobs which are not leased by any instance or whose lease has expired
+     * @param limit max count of jobs to claim
+     * @param leaseDuration period of time the jobs are leased for
+     * @return claimed jobs
+     */
+    List<RecycleJob> claimJobs(int limit, Duration leaseDuration);
+
+    /**
+     * Prolong leases of the jobs executed by this instance
+     * @param jobIds ids of the executed jobs
+     * @param leaseDuration period of time the jobs are leased for since now
+     * @return ids of the jobs still leased by this instance
+     */
+    Set<String> renewLeases(Collection<String> jobIds, Duration leaseDuration);
+
+    /**
+     * Release lease of the job, so it could be claimed by any instance right away if it is still active
+     * @param jobId job id
+     */
+    void releaseJob(String jobId);
+}
@@ -0,0 +1,18 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.RecycleJob;
+
+/**
+ * Listener of the job status transitions made through the {@link RecycleJobRepository}. Called by the thread which
+ * has changed the status, so it must not block.
+ */
+@FunctionalInterface
+public interface JobStatusListener {
+
+    /**
+     * Handle job status transition
+     * @param id     job id
+     * @param status new job status
+     */
+    void onStatusChanged(String id, RecycleJob.Status status);
+}
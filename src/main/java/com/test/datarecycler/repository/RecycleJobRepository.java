@@ -1,10 +1,13 @@
 package com.test.datarecycler.repository;
 
+import com.test.datarecycler.entity.JobProgress;
+import com.test.datarecycler.entity.MaintenanceWindow;
 import com.test.datarecycler.entity.RecycleJob;
 import com.test.datarecycler.exception.JobNotFoundException;
 import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
 
 import java.time.Instant;
+import java.util.List;
 
 /**
  * Repository to maintain recycle jobs state
@@ -18,9 +21,18 @@ public interface RecycleJobRepository {
      * @param datetimeFieldName datetime field name to query old rows
      * @param olderThan         specifies how old records should be deleted
      * @param batchSize         data will be deleted by batches in the loop
+     * @param shards            count of datetime ranges deleted concurrently
+     * @param priority          jobs of the higher priority get batch slots first
+     * @param weight            share of the batch slots relative to the other jobs of the same priority
+     * @param purgeMode         how expired rows are removed
+     * @param startCursor       position the job starts deleting after, null to start from the very beginning
+     * @param maintenanceWindow window the job deletes rows within, null for the global one
+     * @param finishWithinWindows count of windows the job is paced to finish within, null for no pacing
      * @return newly created job
      */
-    RecycleJob newRecycleJob(String tableName, String datetimeFieldName, Instant olderThan, int batchSize)
+    RecycleJob newRecycleJob(String tableName, String datetimeFieldName, Instant olderThan, int batchSize, int shards,
+                             int priority, int weight, RecycleJob.PurgeMode purgeMode, RecycleJob.Cursor startCursor,
+                             MaintenanceWindow maintenanceWindow, Integer finishWithinWindows)
             throws JobForTableAlreadyExistsException;
 
     /**
@@ -33,7 +45,7 @@ public interface RecycleJobRepository {
     RecycleJob getJobById(String id) throws JobNotFoundException;
 
     /**
-     * Get job operational state
+     * Get job operational state snapshot
      *
      * @param id job id
      * @return job operational state
@@ -42,21 +54,32 @@ public interface RecycleJobRepository {
     RecycleJob.State getJobStateById(String id) throws JobNotFoundException;
 
     /**
-     * Update job statues
+     * Get actual job status. Unlike {@link #getJobStateById(String)} doesn't produce state snapshot, so it is cheap
+     * enough to be called on every batch.
      *
-     * @param id        id of existing job
-     * @param newStatus new job status
+     * @param id job id
+     * @return job status
      * @throws JobNotFoundException when job is not found
      */
-    void updateJobStatus(String id, RecycleJob.Status newStatus) throws JobNotFoundException;
+    RecycleJob.Status getJobStatus(String id) throws JobNotFoundException;
+
+    /**
+     * Get mutable job progress counters, which are updated by the job executor directly
+     *
+     * @param id job id
+     * @return job progress
+     * @throws JobNotFoundException when job is not found
+     */
+    JobProgress getJobProgress(String id) throws JobNotFoundException;
 
     /**
-     * Increment job deleted count
+     * Update job statues
      *
-     * @param id              id of existing job
-     * @param addDeletedCount amount of deleted rows to add
+     * @param id        id of existing job
+     * @param newStatus new job status
+     * @throws JobNotFoundException when job is not found
      */
-    void incrementJobDeletedCount(String id, int addDeletedCount);
+    void updateJobStatus(String id, RecycleJob.Status newStatus) throws JobNotFoundException;
 
     /**
      * Remove job from the repository. Job operational state will be removed after the configured delay, allowing
@@ -67,4 +90,18 @@ public interface RecycleJobRepository {
      */
     void removeJob(String id) throws JobNotFoundException;
 
+    /**
+     * Find jobs which are not completed yet, i.e. pending and running ones
+     *
+     * @return active jobs
+     */
+    List<RecycleJob> findActiveJobs();
+
+    /**
+     * Register listener notified on every status transition of the jobs known to this instance
+     *
+     * @param listener status listener
+     */
+    void addStatusListener(JobStatusListener listener);
+
 }
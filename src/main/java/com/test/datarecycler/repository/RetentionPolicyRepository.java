@@ -0,0 +1,72 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.RetentionPolicy;
+import com.test.datarecycler.exception.PolicyForTableAlreadyExistsException;
+import com.test.datarecycler.exception.PolicyNotFoundException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository to maintain retention policies and their watermarks
+ */
+public interface RetentionPolicyRepository {
+
+    /**
+     * Create new retention policy without watermark. Generates id automatically.
+     *
+     * @param tableName         table name to delete rows from
+     * @param datetimeFieldName datetime field name to query old rows
+     * @param retention         how long rows are kept
+     * @param cron              cron expression of the runs, null for the interval schedule
+     * @param interval          period of the runs, null for the cron schedule
+     * @param maxWindow         max datetime range deleted by the single run, null for unbounded one
+     * @return newly created policy
+     * @throws PolicyForTableAlreadyExistsException when the table already has the policy
+     */
+    RetentionPolicy newPolicy(String tableName, String datetimeFieldName, Duration retention, String cron,
+                              Duration interval, Duration maxWindow) throws PolicyForTableAlreadyExistsException;
+
+    /**
+     * Get policy by id
+     *
+     * @param id existing policy id
+     * @return existing policy
+     * @throws PolicyNotFoundException when policy is not found
+     */
+    RetentionPolicy getPolicyById(String id) throws PolicyNotFoundException;
+
+    /**
+     * @return all policies
+     */
+    List<RetentionPolicy> findPolicies();
+
+    /**
+     * Record the job materialized by the policy run, replacing the unfinished job of the previous run if any
+     *
+     * @param id        policy id
+     * @param jobId     id of the run job
+     * @param olderThan older than datetime of the run job
+     * @throws PolicyNotFoundException when policy is not found
+     */
+    void startRun(String id, String jobId, Instant olderThan) throws PolicyNotFoundException;
+
+    /**
+     * Advance the watermark of the policy, which has materialized the given job, to the older than datetime of the
+     * job. Watermark never moves backwards.
+     *
+     * @param jobId id of the finished job
+     * @return updated policy or empty if the job has not been materialized by any policy
+     */
+    Optional<RetentionPolicy> completeRun(String jobId);
+
+    /**
+     * Remove policy. Job of its current run, if any, is not affected.
+     *
+     * @param id existing policy id
+     * @throws PolicyNotFoundException when policy is not found
+     */
+    void removePolicy(String id) throws PolicyNotFoundException;
+}
@@ -0,0 +1,55 @@
+package com.test.datarecycler.rest;
+
+import com.test.datarecycler.dto.BulkRecycleJobStateDto;
+import com.test.datarecycler.dto.SubmitBulkRecycleJobRequestDto;
+import com.test.datarecycler.dto.SubmitBulkRecycleJobResponseDto;
+import com.test.datarecycler.entity.BulkRecycleJob;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.service.BulkRecycleJobService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.stream.Collectors;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/v1.0/data/recycler/bulk")
+public class BulkRecycleJobController {
+
+    private final BulkRecycleJobService bulkRecycleJobService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public SubmitBulkRecycleJobResponseDto submitBulkJob(@Valid @RequestBody SubmitBulkRecycleJobRequestDto request) {
+        final BulkRecycleJob bulkJob = bulkRecycleJobService.submitBulkJob(request.getTableNames(),
+                request.getSchemaName(), request.getTableNamePattern(), request.getDatetimeFieldName(),
+                request.getOlderThan(), request.getMaxConcurrency());
+        return new SubmitBulkRecycleJobResponseDto(bulkJob.getId(), bulkJob.getChildren().stream()
+                .map(BulkRecycleJob.Child::getTableName)
+                .collect(Collectors.toList()));
+    }
+
+    @GetMapping("/{bulkJobId}")
+    public BulkRecycleJobStateDto getBulkJobState(@PathVariable String bulkJobId) {
+        return convertToDto(bulkRecycleJobService.getBulkJobState(bulkJobId));
+    }
+
+    @DeleteMapping("/{bulkJobId}")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public BulkRecycleJobStateDto cancelBulkJob(@PathVariable String bulkJobId) {
+        return convertToDto(bulkRecycleJobService.cancelBulkJob(bulkJobId));
+    }
+
+    private BulkRecycleJobStateDto convertToDto(BulkRecycleJob.State state) {
+        return new BulkRecycleJobStateDto(state.getStatus(), state.getDeletedCount(), state.getChildren().size(),
+                state.getChildrenCount(RecycleJob.Status.PENDING), state.getChildrenCount(RecycleJob.Status.RUNNING),
+                state.getChildrenCount(RecycleJob.Status.FINISHED), state.getChildrenCount(RecycleJob.Status.FAILED),
+                state.getChildrenCount(RecycleJob.Status.CANCELLED), state.getChildren().stream()
+                        .map(child -> new BulkRecycleJobStateDto.Child(child.getTableName(), child.getJobId(),
+                                child.getStatus(), child.getDeletedCount()))
+                        .collect(Collectors.toList()));
+    }
+
+}
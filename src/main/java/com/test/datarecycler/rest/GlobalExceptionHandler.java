@@ -1,8 +1,11 @@
 package com.test.datarecycler.rest;
 
 import com.test.datarecycler.dto.ErrorResponseDto;
+import com.test.datarecycler.exception.BulkJobNotFoundException;
 import com.test.datarecycler.exception.JobNotFoundException;
 import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
+import com.test.datarecycler.exception.PolicyForTableAlreadyExistsException;
+import com.test.datarecycler.exception.PolicyNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.FieldError;
@@ -35,6 +38,38 @@ public class GlobalExceptionHandler {
         return new ErrorResponseDto(HttpStatus.NOT_FOUND.value(), e.getMessage());
     }
 
+    @ResponseBody
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(PolicyForTableAlreadyExistsException.class)
+    public ErrorResponseDto handlePolicyAlreadyExists(PolicyForTableAlreadyExistsException e) {
+        log.warn(e.getMessage());
+        return new ErrorResponseDto(HttpStatus.CONFLICT.value(), e.getMessage());
+    }
+
+    @ResponseBody
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(PolicyNotFoundException.class)
+    public ErrorResponseDto handlePolicyNotFound(PolicyNotFoundException e) {
+        log.warn(e.getMessage());
+        return new ErrorResponseDto(HttpStatus.NOT_FOUND.value(), e.getMessage());
+    }
+
+    @ResponseBody
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(BulkJobNotFoundException.class)
+    public ErrorResponseDto handleBulkJobNotFound(BulkJobNotFoundException e) {
+        log.warn(e.getMessage());
+        return new ErrorResponseDto(HttpStatus.NOT_FOUND.value(), e.getMessage());
+    }
+
+    @ResponseBody
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ErrorResponseDto handleIllegalArgument(IllegalArgumentException e) {
+        log.warn(e.getMessage());
+        return new ErrorResponseDto(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+    }
+
     @ResponseBody
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
@@ -1,15 +1,23 @@
 package com.test.datarecycler.rest;
 
+import com.test.datarecycler.config.AppProperties;
+import com.test.datarecycler.dto.RecycleJobEstimateDto;
 import com.test.datarecycler.dto.RecycleJobStateDto;
 import com.test.datarecycler.dto.SubmitRecycleJobRequestDto;
 import com.test.datarecycler.dto.SubmitRecycleJobResponseDto;
+import com.test.datarecycler.entity.MaintenanceWindow;
 import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.service.JobStateNotifier;
 import com.test.datarecycler.service.RecycleJobService;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @AllArgsConstructor
@@ -17,20 +25,74 @@ import javax.validation.Valid;
 public class RecyclerJobController {
 
     private final RecycleJobService recycleJobService;
+    private final JobStateNotifier jobStateNotifier;
+    private final AppProperties appProperties;
 
     @PostMapping
     @ResponseStatus(HttpStatus.ACCEPTED)
     public SubmitRecycleJobResponseDto submitRecycleJob(@Valid @RequestBody SubmitRecycleJobRequestDto request) {
         final RecycleJob createdJob = recycleJobService
-                .submitRecycleJob(request.getTableName(), request.getDatetimeFieldName(), request.getOlderThan());
+                .submitRecycleJob(request.getTableName(), request.getDatetimeFieldName(), request.getOlderThan(),
+                        request.getShards(), request.getPriority(), request.getWeight(), request.getPurgeMode(), null,
+                        request.getMaintenanceWindow() == null
+                                ? null : MaintenanceWindow.parse(request.getMaintenanceWindow()),
+                        request.getFinishWithinWindows());
         return new SubmitRecycleJobResponseDto(createdJob.getId());
     }
 
+    @PostMapping("/estimate")
+    public RecycleJobEstimateDto estimateRecycleJob(@Valid @RequestBody SubmitRecycleJobRequestDto request) {
+        final RecycleJob.Estimate estimate = recycleJobService
+                .estimateRecycleJob(request.getTableName(), request.getDatetimeFieldName(), request.getOlderThan());
+        return new RecycleJobEstimateDto(estimate.getEstimatedRows(), estimate.isIndexScan(), estimate.getPlan(),
+                estimate.getBatchSize(), estimate.getEstimatedBatches(), estimate.getRowsPerSecond(),
+                estimate.getEstimatedDuration() == null ? null : estimate.getEstimatedDuration().getSeconds());
+    }
+
     @GetMapping("/{jobId}")
     public RecycleJobStateDto getRecycleJobStatus(@PathVariable String jobId) {
         return convertToDto(recycleJobService.getRecycleJobState(jobId));
     }
 
+    /**
+     * Stream job state as server-sent events: the current state right away, then status transitions and progress
+     * updates until the job reaches the terminal state
+     */
+    @GetMapping(path = "/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamRecycleJobState(@PathVariable String jobId) {
+        final SseEmitter emitter = new SseEmitter(appProperties.getStream().getTimeout().toMillis());
+        final Runnable subscription = jobStateNotifier.subscribe(jobId, state -> {
+            emitter.send(convertToDto(state));
+            if (!state.getStatus().isCancellable()) {
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(subscription);
+        emitter.onTimeout(emitter::complete);
+        return emitter;
+    }
+
+    /**
+     * Long poll job state: responds as soon as the job reaches the terminal state or with the current state once the
+     * timeout is elapsed
+     */
+    @GetMapping("/{jobId}/wait")
+    public DeferredResult<RecycleJobStateDto> waitRecycleJob(
+            @PathVariable String jobId,
+            @RequestParam(name = "timeout_seconds", required = false) Long timeoutSeconds) {
+        final long maxTimeoutMillis = appProperties.getStream().getTimeout().toMillis();
+        final DeferredResult<RecycleJobStateDto> result = new DeferredResult<>(timeoutSeconds == null
+                ? maxTimeoutMillis : Math.min(maxTimeoutMillis, TimeUnit.SECONDS.toMillis(timeoutSeconds)));
+        final Runnable subscription = jobStateNotifier.subscribe(jobId, state -> {
+            if (!state.getStatus().isCancellable()) {
+                result.setResult(convertToDto(state));
+            }
+        });
+        result.onTimeout(() -> result.setResult(convertToDto(recycleJobService.getRecycleJobState(jobId))));
+        result.onCompletion(subscription);
+        return result;
+    }
+
     @DeleteMapping("/{jobId}")
     @ResponseStatus(HttpStatus.ACCEPTED)
     public RecycleJobStateDto cancelRecycleJob(@PathVariable String jobId) {
@@ -38,7 +100,16 @@ public class RecyclerJobController {
     }
 
     private RecycleJobStateDto convertToDto(RecycleJob.State recycleJobState) {
-        return new RecycleJobStateDto(recycleJobState.getStatus(), recycleJobState.getDeletedCount());
+        return new RecycleJobStateDto(recycleJobState.getStatus(), recycleJobState.getDeletedCount(),
+                recycleJobState.getBatchSize(), recycleJobState.getDroppedPartitions(),
+                recycleJobState.getThrottledMillis(), recycleJobState.getBatches(),
+                recycleJobState.getBytesFreedEstimate(), recycleJobState.getLastBatchTime(),
+                recycleJobState.getStartTime(), recycleJobState.getEstimatedTotal(),
+                recycleJobState.getPercentComplete(), recycleJobState.getRowsPerSecond(),
+                recycleJobState.getEta() == null ? null : recycleJobState.getEta().getSeconds(),
+                recycleJobState.getLastBatchLatencyMillis(), recycleJobState.getDeadTupleRatio(),
+                recycleJobState.getVacuums(), recycleJobState.getBytesReclaimedEstimate(),
+                recycleJobState.getRetries(), recycleJobState.getLockTimeouts());
     }
 
 }
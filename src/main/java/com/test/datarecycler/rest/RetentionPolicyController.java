@@ -0,0 +1,56 @@
+package com.test.datarecycler.rest;
+
+import com.test.datarecycler.dto.CreateRetentionPolicyRequestDto;
+import com.test.datarecycler.dto.RetentionPolicyDto;
+import com.test.datarecycler.entity.RetentionPolicy;
+import com.test.datarecycler.service.RetentionPolicyService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/v1.0/data/recycler/policy")
+public class RetentionPolicyController {
+
+    private final RetentionPolicyService retentionPolicyService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public RetentionPolicyDto createPolicy(@Valid @RequestBody CreateRetentionPolicyRequestDto request) {
+        return convertToDto(retentionPolicyService.createPolicy(request.getTableName(),
+                request.getDatetimeFieldName(), request.getRetention(), request.getCron(), request.getInterval(),
+                request.getMaxWindow()));
+    }
+
+    @GetMapping
+    public List<RetentionPolicyDto> findPolicies() {
+        return retentionPolicyService.findPolicies().stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/{policyId}")
+    public RetentionPolicyDto getPolicy(@PathVariable String policyId) {
+        return convertToDto(retentionPolicyService.getPolicy(policyId));
+    }
+
+    @DeleteMapping("/{policyId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void removePolicy(@PathVariable String policyId) {
+        retentionPolicyService.removePolicy(policyId);
+    }
+
+    private RetentionPolicyDto convertToDto(RetentionPolicy policy) {
+        return new RetentionPolicyDto(policy.getId(), policy.getTableName(), policy.getFieldName(),
+                policy.getRetention().getSeconds(), policy.getCron(),
+                policy.getInterval() == null ? null : policy.getInterval().getSeconds(),
+                policy.getMaxWindow() == null ? null : policy.getMaxWindow().getSeconds(),
+                policy.getWatermark(), policy.getRunJobId());
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.test.datarecycler.service;
+
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.entity.BulkRecycleJob;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.exception.BulkJobNotFoundException;
+import com.test.datarecycler.exception.JobNotFoundException;
+import com.test.datarecycler.repository.BulkJobRepository;
+import com.test.datarecycler.repository.JobStatusListener;
+import com.test.datarecycler.repository.RecycleJobRepository;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recycles many tables of the same structure by the single bulk job. Each table is recycled by its own child job,
+ * started only while the bulk job has less running children than its concurrency cap, so hundreds of tables don't
+ * flood the jobs executor at once. The next child is started as soon as any running one is complete.
+ * <p>
+ * Children are started and completed by the scheduler thread rather than the request or job threads. Completion
+ * missed because of the restart or the job executed by another instance is picked up by the periodic reconciliation.
+ */
+@Slf4j
+public class BulkRecycleJobService implements JobStatusListener, AutoCloseable {
+
+    private final BulkJobRepository bulkJobRepository;
+    private final RecycleJobService recycleJobService;
+    private final RecycleJobRepository jobRepository;
+    private final Database database;
+    private final ScheduledExecutorService scheduler;
+    private final int defaultMaxConcurrency;
+    private final ScheduledFuture<?> reconcileTask;
+
+    /**
+     * Create new instance and schedule periodic reconciliation of the active bulk jobs
+     * @param bulkJobRepository     repository of the bulk jobs
+     * @param recycleJobService     service to submit and cancel child jobs by
+     * @param jobRepository         repository to take child job states from and to listen status transitions of
+     * @param database              database to resolve table name patterns against
+     * @param scheduler             scheduler to start and complete children by
+     * @param defaultMaxConcurrency max count of the concurrently running children, unless specified by the request
+     * @param reconcileInterval     how often complete children, which have been missed, are looked up
+     */
+    public BulkRecycleJobService(@NonNull BulkJobRepository bulkJobRepository,
+                                 @NonNull RecycleJobService recycleJobService,
+                                 @NonNull RecycleJobRepository jobRepository,
+                                 @NonNull Database database,
+                                 @NonNull ScheduledExecutorService scheduler,
+                                 int defaultMaxConcurrency,
+                                 @NonNull Duration reconcileInterval) {
+        if (defaultMaxConcurrency <= 0) throw new IllegalArgumentException("max concurrency must be positive");
+        this.bulkJobRepository = bulkJobRepository;
+        this.recycleJobService = recycleJobService;
+        this.jobRepository = jobRepository;
+        this.database = database;
+        this.scheduler = scheduler;
+        this.defaultMaxConcurrency = defaultMaxConcurrency;
+        jobRepository.addStatusListener(this);
+        reconcileTask = scheduler.scheduleWithFixedDelay(this::reconcile,
+                reconcileInterval.toMillis(), reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Submit new bulk job, whose children will be executed asynchronously. Tables are either listed explicitly or
+     * looked up in the schema by the name pattern.
+     * @param tableNames        tables to delete rows from, null to look them up by the pattern
+     * @param schemaName        schema to look up tables in, if they are not listed
+     * @param tableNamePattern  SQL LIKE pattern of the table names, if they are not listed
+     * @param datetimeFieldName datetime field name to query old rows, the same for all tables
+     * @param olderThan         specifies how old data should be deleted
+     * @param maxConcurrency    max count of the concurrently running children, null for the default one
+     * @return newly created bulk job
+     */
+    public BulkRecycleJob submitBulkJob(List<String> tableNames,
+                                        String schemaName,
+                                        String tableNamePattern,
+                                        @NonNull String datetimeFieldName,
+                                        @NonNull Instant olderThan,
+                                        Integer maxConcurrency) {
+        if (maxConcurrency != null && maxConcurrency <= 0) {
+            throw new IllegalArgumentException("max concurrency must be positive");
+        }
+        final List<String> tables;
+        if (tableNames != null) {
+            tables = new ArrayList<>(new LinkedHashSet<>(tableNames));
+        } else if (schemaName != null && tableNamePattern != null) {
+            tables = database.findTables(schemaName, tableNamePattern);
+        } else {
+            throw new IllegalArgumentException("either table names or schema and table name pattern must be set");
+        }
+        if (tables.isEmpty()) {
+            throw new IllegalArgumentException("no tables to recycle");
+        }
+        final BulkRecycleJob bulkJob = bulkJobRepository.newBulkJob(datetimeFieldName, olderThan, tables,
+                maxConcurrency == null ? defaultMaxConcurrency : maxConcurrency);
+        log.info("Created bulk job '{}' to delete all records older than {} from {} tables",
+                bulkJob.getId(), olderThan, tables.size());
+        scheduler.execute(() -> startChildren(bulkJob.getId()));
+        return bulkJob;
+    }
+
+    /**
+     * Get bulk job state aggregated over its children
+     * @param bulkJobId id of existing bulk job
+     * @return current state
+     * @throws BulkJobNotFoundException when bulk job is not found
+     */
+    public BulkRecycleJob.State getBulkJobState(@NonNull String bulkJobId) throws BulkJobNotFoundException {
+        final BulkRecycleJob bulkJob = bulkJobRepository.getBulkJobById(bulkJobId);
+        final List<BulkRecycleJob.Child> children = new ArrayList<>(bulkJob.getChildren().size());
+        long deletedCount = 0;
+        boolean active = false;
+        boolean started = false;
+        boolean failed = false;
+        boolean cancelled = bulkJob.isCancelled();
+        for (BulkRecycleJob.Child child : bulkJob.getChildren()) {
+            final BulkRecycleJob.Child actualChild = child.getStatus() == RecycleJob.Status.RUNNING
+                    && child.getJobId() != null
+                    ? new BulkRecycleJob.Child(child.getTableName(), child.getJobId(), child.getStatus(),
+                            getDeletedCount(child.getJobId()))
+                    : child;
+            children.add(actualChild);
+            deletedCount += actualChild.getDeletedCount();
+            active |= actualChild.getStatus().isCancellable();
+            started |= actualChild.getStatus() != RecycleJob.Status.PENDING;
+            failed |= actualChild.getStatus() == RecycleJob.Status.FAILED;
+            cancelled |= actualChild.getStatus() == RecycleJob.Status.CANCELLED;
+        }
+        final RecycleJob.Status status;
+        if (bulkJob.isCancelled()) {
+            status = RecycleJob.Status.CANCELLED;
+        } else if (active) {
+            status = started ? RecycleJob.Status.RUNNING : RecycleJob.Status.PENDING;
+        } else if (failed) {
+            status = RecycleJob.Status.FAILED;
+        } else {
+            status = cancelled ? RecycleJob.Status.CANCELLED : RecycleJob.Status.FINISHED;
+        }
+        return new BulkRecycleJob.State(status, deletedCount, children);
+    }
+
+    /**
+     * Cancel bulk job along with all its running children
+     * @param bulkJobId id of existing bulk job
+     * @return last state
+     * @throws BulkJobNotFoundException when bulk job is not found
+     */
+    public BulkRecycleJob.State cancelBulkJob(@NonNull String bulkJobId) throws BulkJobNotFoundException {
+        log.info("Cancel bulk job '{}'", bulkJobId);
+        bulkJobRepository.cancelBulkJob(bulkJobId);
+        for (BulkRecycleJob.Child child : bulkJobRepository.getBulkJobById(bulkJobId).getChildren()) {
+            if (child.getStatus() != RecycleJob.Status.RUNNING || child.getJobId() == null) {
+                continue;
+            }
+            try {
+                recycleJobService.cancelRecycleJob(child.getJobId());
+            } catch (JobNotFoundException e) {
+                log.warn("Child job '{}' of the bulk job '{}' is not found", child.getJobId(), bulkJobId);
+            }
+        }
+        return getBulkJobState(bulkJobId);
+    }
+
+    /**
+     * Resume active bulk jobs interrupted by the restart. Children, which had been taken but whose jobs had not been
+     * created before the restart, are failed.
+     * @return count of resumed bulk jobs
+     */
+    public int resumeBulkJobs() {
+        final List<BulkRecycleJob> activeBulkJobs = bulkJobRepository.findActiveBulkJobs();
+        for (BulkRecycleJob bulkJob : activeBulkJobs) {
+            log.info("Resume bulk job '{}'", bulkJob.getId());
+            for (BulkRecycleJob.Child child : bulkJob.getChildren()) {
+                if (child.getStatus() == RecycleJob.Status.RUNNING && child.getJobId() == null) {
+                    bulkJobRepository.completeChild(bulkJob.getId(), child.getTableName(),
+                            RecycleJob.Status.FAILED, 0);
+                }
+            }
+        }
+        scheduler.execute(this::reconcile);
+        return activeBulkJobs.size();
+    }
+
+    /**
+     * Complete the child and start the next one, if the child job has reached the final status
+     */
+    @Override
+    public void onStatusChanged(String id, RecycleJob.Status status) {
+        if (!status.isCancellable()) {
+            scheduler.execute(() -> completeChild(id, status));
+        }
+    }
+
+    @Override
+    public void close() {
+        reconcileTask.cancel(false);
+    }
+
+    /**
+     * Complete children whose jobs have reached the final status and start the next ones
+     */
+    void reconcile() {
+        try {
+            for (BulkRecycleJob bulkJob : bulkJobRepository.findActiveBulkJobs()) {
+                for (BulkRecycleJob.Child child : bulkJob.getChildren()) {
+                    if (child.getStatus() != RecycleJob.Status.RUNNING || child.getJobId() == null) {
+                        continue;
+                    }
+                    RecycleJob.Status status;
+                    try {
+                        status = jobRepository.getJobStatus(child.getJobId());
+                    } catch (JobNotFoundException e) {
+                        status = RecycleJob.Status.FAILED;
+                    }
+                    if (!status.isCancellable()) {
+                        bulkJobRepository.completeChild(bulkJob.getId(), child.getTableName(), status,
+                                getDeletedCount(child.getJobId()));
+                    }
+                }
+                startChildren(bulkJob.getId());
+            }
+        } catch (Exception e) {
+            log.error("Failed to reconcile bulk jobs", e);
+        }
+    }
+
+    void startChildren(String bulkJobId) {
+        try {
+            final BulkRecycleJob bulkJob = bulkJobRepository.getBulkJobById(bulkJobId);
+            Optional<String> tableName;
+            while ((tableName = bulkJobRepository.takeNextChild(bulkJobId)).isPresent()) {
+                startChild(bulkJob, tableName.get());
+            }
+        } catch (Exception e) {
+            log.error("Failed to start children of the bulk job '{}'", bulkJobId, e);
+        }
+    }
+
+    private void startChild(BulkRecycleJob bulkJob, String tableName) {
+        try {
+            final RecycleJob job = recycleJobService.submitRecycleJob(tableName, bulkJob.getFieldName(),
+                    bulkJob.getOlderThan(), null, null, null, null, null, null, null);
+            bulkJobRepository.startChild(bulkJob.getId(), tableName, job.getId());
+        } catch (Exception e) {
+            log.error("Bulk job '{}' has failed to start the child job of the table '{}'",
+                    bulkJob.getId(), tableName, e);
+            bulkJobRepository.completeChild(bulkJob.getId(), tableName, RecycleJob.Status.FAILED, 0);
+        }
+    }
+
+    private void completeChild(String jobId, RecycleJob.Status status) {
+        try {
+            final Optional<BulkRecycleJob> bulkJob = bulkJobRepository.findBulkJobByChildJobId(jobId);
+            if (!bulkJob.isPresent()) {
+                return;
+            }
+            final Optional<BulkRecycleJob.Child> child = bulkJob.get().getChildren().stream()
+                    .filter(bulkJobChild -> jobId.equals(bulkJobChild.getJobId()))
+                    .findAny();
+            if (child.isPresent() && child.get().getStatus() == RecycleJob.Status.RUNNING) {
+                log.info("Child job '{}' of the bulk job '{}' is complete with the status {}",
+                        jobId, bulkJob.get().getId(), status);
+                bulkJobRepository.completeChild(bulkJob.get().getId(), child.get().getTableName(), status,
+                        getDeletedCount(jobId));
+            }
+            startChildren(bulkJob.get().getId());
+        } catch (Exception e) {
+            log.error("Failed to complete child job '{}'", jobId, e);
+        }
+    }
+
+    private long getDeletedCount(String jobId) {
+        try {
+            return jobRepository.getJobStateById(jobId).getDeletedCount();
+        } catch (JobNotFoundException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.test.datarecycler.service;
+
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.exception.JobNotFoundException;
+import com.test.datarecycler.repository.JobStatusListener;
+import com.test.datarecycler.repository.RecycleJobRepository;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes job state to the subscribers, so clients don't have to poll it. State of each watched job is taken once per
+ * publish interval and fanned out to all its subscribers, and only if the job has made any progress since the last
+ * publish. Status transitions are published right away. Subscribers are unsubscribed once the job reaches the
+ * terminal state.
+ */
+@Slf4j
+public class JobStateNotifier implements JobStatusListener, AutoCloseable {
+
+    /**
+     * Subscriber of the job state, called by the publishing thread
+     */
+    @FunctionalInterface
+    public interface Subscriber {
+        /**
+         * Handle actual job state. Subscriber failing to handle the state is unsubscribed.
+         * @param state job state, the last one is terminal
+         */
+        void onState(RecycleJob.State state) throws Exception;
+    }
+
+    private final RecycleJobRepository jobRepository;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Topic> topics = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> publishTask;
+
+    /**
+     * Create new instance and schedule periodic publish
+     * @param jobRepository   repository to take job states from and to listen status transitions of
+     * @param scheduler       dedicated scheduler to publish states by, so slow subscribers delay no other tasks
+     * @param publishInterval how often progress of the watched jobs is published
+     */
+    public JobStateNotifier(@NonNull RecycleJobRepository jobRepository,
+                            @NonNull ScheduledExecutorService scheduler,
+                            @NonNull Duration publishInterval) {
+        this.jobRepository = jobRepository;
+        this.scheduler = scheduler;
+        jobRepository.addStatusListener(this);
+        publishTask = scheduler.scheduleWithFixedDelay(this::publishAll,
+                publishInterval.toMillis(), publishInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Subscribe to the job state. Current state is passed to the subscriber right away.
+     * @param jobId      id of existing job
+     * @param subscriber job state subscriber
+     * @return subscription, which should be cancelled once the subscriber is not interested anymore
+     * @throws JobNotFoundException when job is not found
+     */
+    public Runnable subscribe(@NonNull String jobId, @NonNull Subscriber subscriber) throws JobNotFoundException {
+        final RecycleJob.State state = jobRepository.getJobStateById(jobId);
+        if (!deliver(subscriber, state) || !state.getStatus().isCancellable()) {
+            return () -> { };
+        }
+        //terminal state reached concurrently is published by the next periodic publish
+        topics.compute(jobId, (id, topic) -> {
+            final Topic actualTopic = topic == null ? new Topic() : topic;
+            actualTopic.subscribers.add(subscriber);
+            return actualTopic;
+        });
+        return () -> unsubscribe(jobId, subscriber);
+    }
+
+    @Override
+    public void onStatusChanged(String id, RecycleJob.Status status) {
+        if (topics.containsKey(id)) {
+            scheduler.execute(() -> publish(id));
+        }
+    }
+
+    @Override
+    public void close() {
+        publishTask.cancel(false);
+    }
+
+    int getSubscribersCount(String jobId) {
+        final Topic topic = topics.get(jobId);
+        return topic == null ? 0 : topic.subscribers.size();
+    }
+
+    void publishAll() {
+        for (String jobId : topics.keySet()) {
+            publish(jobId);
+        }
+    }
+
+    private void publish(String jobId) {
+        final Topic topic = topics.get(jobId);
+        if (topic == null) {
+            return;
+        }
+        final RecycleJob.State state;
+        try {
+            state = jobRepository.getJobStateById(jobId);
+        } catch (JobNotFoundException e) {
+            log.warn("Job '{}' is not found anymore, drop its subscribers", jobId);
+            topics.remove(jobId, topic);
+            return;
+        } catch (Exception e) {
+            log.error("Failed to get state of the job '{}'", jobId, e);
+            return;
+        }
+        final boolean terminal = !state.getStatus().isCancellable();
+        if (terminal) {
+            topics.remove(jobId, topic);
+        }
+        final RecycleJob.State lastState = topic.lastState;
+        if (state.equals(lastState)) {
+            return;
+        }
+        topic.lastState = state;
+        topic.subscribers.removeIf(subscriber -> !deliver(subscriber, state));
+    }
+
+    private void unsubscribe(String jobId, Subscriber subscriber) {
+        topics.computeIfPresent(jobId, (id, topic) -> {
+            topic.subscribers.remove(subscriber);
+            return topic.subscribers.isEmpty() ? null : topic;
+        });
+    }
+
+    /**
+     * @return false if subscriber has failed
+     */
+    private static boolean deliver(Subscriber subscriber, RecycleJob.State state) {
+        try {
+            subscriber.onState(state);
+            return true;
+        } catch (Exception e) {
+            log.debug("Subscriber has failed to handle job state: {}", e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Subscribers of the single job along with the last published state, which is accessed by the publishing thread
+     * only
+     */
+    private static class Topic {
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private RecycleJob.State lastState;
+    }
+}
@@ -1,14 +1,21 @@
 package com.test.datarecycler.service;
 
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.db.DeleteEstimate;
+import com.test.datarecycler.entity.MaintenanceWindow;
 import com.test.datarecycler.entity.RecycleJob;
 import com.test.datarecycler.exception.JobNotFoundException;
 import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
 import com.test.datarecycler.exec.RecycleJobExecutor;
+import com.test.datarecycler.exec.TableThroughput;
 import com.test.datarecycler.repository.RecycleJobRepository;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.OptionalDouble;
 
 /**
  * Service providing functionality to work with data recycle jobs.
@@ -18,34 +25,64 @@ public class RecycleJobService {
 
     private final RecycleJobRepository jobRepository;
     private final RecycleJobExecutor jobExecutor;
+    private final Database database;
+    private final TableThroughput tableThroughput;
     private final int batchSize;
 
     /**
      * Construct new instance
      * @param jobRepository repository to maintain recycle jobs state
      * @param recycleJobExecutor recycle jobs execution strategy
+     * @param database database to estimate jobs by
+     * @param tableThroughput recent deletion rate of the tables
      * @param batchSize batch size to delete records
      */
     public RecycleJobService(@NonNull RecycleJobRepository jobRepository,
                              @NonNull RecycleJobExecutor recycleJobExecutor,
+                             @NonNull Database database,
+                             @NonNull TableThroughput tableThroughput,
                              int batchSize) {
         if (batchSize <= 0) throw new IllegalArgumentException("batch size must be positive");
         this.batchSize = batchSize;
         this.jobRepository = jobRepository;
         this.jobExecutor = recycleJobExecutor;
+        this.database = database;
+        this.tableThroughput = tableThroughput;
     }
 
     /**
      * Submit new data recycle job, which will executed asynchronously. Only one active job per table is allowed.
      * @param tableName table name where data should deleted from
      * @param olderThan  specifies how old data should be deleted
+     * @param shards count of datetime ranges to be deleted concurrently, null for sequential deletion
+     * @param priority jobs of the higher priority get batch slots first, null for the default zero priority
+     * @param weight share of the batch slots relative to the other jobs of the same priority, null for 1
+     * @param purgeMode how expired rows are removed, null to delete by batches
+     * @param startCursor position to start deleting after, null to start from the very beginning
+     * @param maintenanceWindow window to delete rows within, null for the global one
+     * @param finishWithinWindows count of maintenance windows to finish within, null to delete at full speed
      * @return newly created recycle job
      * @throws JobForTableAlreadyExistsException when table job aready exists
      */
     public RecycleJob submitRecycleJob(@NonNull String tableName,
                                        @NonNull String datetimeFieldName,
-                                       @NonNull Instant olderThan) throws JobForTableAlreadyExistsException {
-        final RecycleJob newJob = jobRepository.newRecycleJob(tableName, datetimeFieldName, olderThan, batchSize);
+                                       @NonNull Instant olderThan,
+                                       Integer shards,
+                                       Integer priority,
+                                       Integer weight,
+                                       RecycleJob.PurgeMode purgeMode,
+                                       RecycleJob.Cursor startCursor,
+                                       MaintenanceWindow maintenanceWindow,
+                                       Integer finishWithinWindows) throws JobForTableAlreadyExistsException {
+        if (shards != null && shards <= 0) throw new IllegalArgumentException("shards count must be positive");
+        if (weight != null && weight <= 0) throw new IllegalArgumentException("weight must be positive");
+        if (finishWithinWindows != null && finishWithinWindows <= 0) {
+            throw new IllegalArgumentException("windows count must be positive");
+        }
+        final RecycleJob newJob = jobRepository.newRecycleJob(tableName, datetimeFieldName, olderThan, batchSize,
+                shards == null ? 1 : shards, priority == null ? 0 : priority, weight == null ? 1 : weight,
+                purgeMode == null ? RecycleJob.PurgeMode.BATCH : purgeMode, startCursor, maintenanceWindow,
+                finishWithinWindows);
         jobExecutor.submitJob(newJob);
 
         log.info("Created recycle job '{}' to delete all records older than {} from the table '{}'",
@@ -54,6 +91,30 @@ public class RecycleJobService {
         return newJob;
     }
 
+    /**
+     * Estimate recycle job by the planner statistics without deleting anything. Batch size and duration are estimated
+     * by the recent batches of the table, if any.
+     * @param tableName table name where data should deleted from
+     * @param olderThan specifies how old data should be deleted
+     * @return job estimate
+     */
+    public RecycleJob.Estimate estimateRecycleJob(@NonNull String tableName,
+                                                  @NonNull String datetimeFieldName,
+                                                  @NonNull Instant olderThan) {
+        final int estimatedBatchSize = tableThroughput.getBatchSize(tableName).orElse(batchSize);
+        final DeleteEstimate estimate = database
+                .estimateDelete(tableName, datetimeFieldName, olderThan, estimatedBatchSize);
+        //the last batch is the one deleting less rows than the batch size
+        final long estimatedBatches = estimate.getRows() / estimatedBatchSize + 1;
+        final OptionalDouble rowsPerSecond = tableThroughput.getRowsPerSecond(tableName);
+        return new RecycleJob.Estimate(estimate.getRows(), estimate.isIndexScan(), estimate.getPlan(),
+                estimatedBatchSize, estimatedBatches,
+                rowsPerSecond.isPresent() ? rowsPerSecond.getAsDouble() : null,
+                rowsPerSecond.isPresent() && rowsPerSecond.getAsDouble() > 0
+                        ? Duration.ofMillis((long) (estimate.getRows() * 1000 / rowsPerSecond.getAsDouble()))
+                        : null);
+    }
+
     /**
      * Get recycle job operational state
      * @param jobId of existing job
@@ -76,5 +137,18 @@ public class RecycleJobService {
         return jobRepository.getJobStateById(jobId);
     }
 
+    /**
+     * Resume active jobs, e.g. the ones interrupted by the restart of the durable repository owner
+     * @return count of resumed jobs
+     */
+    public int resumeActiveJobs() {
+        final List<RecycleJob> activeJobs = jobRepository.findActiveJobs();
+        for (RecycleJob job : activeJobs) {
+            log.info("Resume recycle job '{}' to delete all records older than {} from the table '{}'",
+                    job.getId(), job.getOlderThan(), job.getTableName());
+            jobExecutor.submitJob(job);
+        }
+        return activeJobs.size();
+    }
 
 }
@@ -0,0 +1,289 @@
+package com.test.datarecycler.service;
+
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.entity.RetentionPolicy;
+import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
+import com.test.datarecycler.exception.PolicyForTableAlreadyExistsException;
+import com.test.datarecycler.exception.PolicyNotFoundException;
+import com.test.datarecycler.repository.JobStatusListener;
+import com.test.datarecycler.repository.RecycleJobRepository;
+import com.test.datarecycler.repository.RetentionPolicyRepository;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Materializes retention policies into recycle jobs on their schedules. Run of the policy submits the job deleting
+ * rows older than the run time minus retention, starting right after the watermark left by the previous finished run,
+ * so only the newly expired slice is deleted. Watermark is advanced once the run job is finished, failed or cancelled
+ * runs leave it in place, so the next run retries the same slice. Rows inserted with the datetime older than the
+ * watermark are not deleted by the later runs.
+ * <p>
+ * Runs of each policy are shifted by the deterministic jitter derived from the policy id, so the policies sharing the
+ * same schedule start at different times, while all instances run the same policy at the same time. Duplicate runs of
+ * the other instances are rejected by the unique active job per table. Policies added or removed by other instances
+ * are picked up by the periodic refresh.
+ */
+@Slf4j
+public class RetentionPolicyService implements JobStatusListener, AutoCloseable {
+
+    private static final TimeZone CRON_TIME_ZONE = TimeZone.getTimeZone("UTC");
+
+    private final RetentionPolicyRepository policyRepository;
+    private final RecycleJobService recycleJobService;
+    private final Database database;
+    private final ScheduledExecutorService scheduler;
+    private final long maxJitterMillis;
+    private final ConcurrentMap<String, ScheduledFuture<?>> scheduledRuns = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> refreshTask;
+
+    /**
+     * Create new instance and schedule periodic refresh of the policies, the first one right away
+     * @param policyRepository  repository of the retention policies
+     * @param recycleJobService service to submit run jobs by
+     * @param jobRepository     repository to listen status transitions of the run jobs
+     * @param database          database to find the oldest row of the table without watermark
+     * @param scheduler         scheduler to execute policy runs and refresh by
+     * @param maxJitter         max shift of the policy runs, zero to run them exactly on schedule
+     * @param refreshInterval   how often policies added or removed by other instances are picked up
+     */
+    public RetentionPolicyService(@NonNull RetentionPolicyRepository policyRepository,
+                                  @NonNull RecycleJobService recycleJobService,
+                                  @NonNull RecycleJobRepository jobRepository,
+                                  @NonNull Database database,
+                                  @NonNull ScheduledExecutorService scheduler,
+                                  @NonNull Duration maxJitter,
+                                  @NonNull Duration refreshInterval) {
+        this.policyRepository = policyRepository;
+        this.recycleJobService = recycleJobService;
+        this.database = database;
+        this.scheduler = scheduler;
+        this.maxJitterMillis = maxJitter.toMillis();
+        jobRepository.addStatusListener(this);
+        refreshTask = scheduler.scheduleWithFixedDelay(this::refresh,
+                0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create new retention policy and schedule its runs. Only one policy per table is allowed.
+     * @param tableName         table name where data should deleted from
+     * @param datetimeFieldName datetime field name to query old rows
+     * @param retention         how long rows are kept
+     * @param cron              cron expression of the runs in UTC, null for the interval schedule
+     * @param interval          period of the runs, null for the cron schedule
+     * @param maxWindow         max datetime range deleted by the single run, null for unbounded one
+     * @return newly created policy
+     * @throws PolicyForTableAlreadyExistsException when table policy already exists
+     */
+    public RetentionPolicy createPolicy(@NonNull String tableName,
+                                        @NonNull String datetimeFieldName,
+                                        @NonNull Duration retention,
+                                        String cron,
+                                        Duration interval,
+                                        Duration maxWindow) throws PolicyForTableAlreadyExistsException {
+        if (retention.isNegative() || retention.isZero()) {
+            throw new IllegalArgumentException("retention must be positive");
+        }
+        if ((cron == null) == (interval == null)) {
+            throw new IllegalArgumentException("either cron or interval must be specified");
+        }
+        if (cron != null && !CronSequenceGenerator.isValidExpression(cron)) {
+            throw new IllegalArgumentException("invalid cron expression " + cron);
+        }
+        if (interval != null && (interval.isNegative() || interval.isZero())) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        if (maxWindow != null && (maxWindow.isNegative() || maxWindow.isZero())) {
+            throw new IllegalArgumentException("max window must be positive");
+        }
+        final RetentionPolicy policy = policyRepository
+                .newPolicy(tableName, datetimeFieldName, retention, cron, interval, maxWindow);
+        log.info("Created retention policy '{}' to keep records of the table '{}' for {}",
+                policy.getId(), tableName, retention);
+        scheduledRuns.computeIfAbsent(policy.getId(), id -> scheduleRun(policy));
+        return policy;
+    }
+
+    /**
+     * Get retention policy
+     * @param policyId id of existing policy
+     * @return policy along with its watermark
+     * @throws PolicyNotFoundException when policy is not found
+     */
+    public RetentionPolicy getPolicy(@NonNull String policyId) throws PolicyNotFoundException {
+        return policyRepository.getPolicyById(policyId);
+    }
+
+    /**
+     * @return all retention policies
+     */
+    public List<RetentionPolicy> findPolicies() {
+        return policyRepository.findPolicies();
+    }
+
+    /**
+     * Remove retention policy and cancel its future runs. Job of the current run, if any, keeps running.
+     * @param policyId id of existing policy
+     * @throws PolicyNotFoundException when policy is not found
+     */
+    public void removePolicy(@NonNull String policyId) throws PolicyNotFoundException {
+        log.info("Remove retention policy '{}'", policyId);
+        policyRepository.removePolicy(policyId);
+        cancelRuns(policyId);
+    }
+
+    /**
+     * Advance watermark of the policy which has materialized the finished job. Repository is not touched by the
+     * thread which has finished the job.
+     */
+    @Override
+    public void onStatusChanged(String id, RecycleJob.Status status) {
+        if (status == RecycleJob.Status.FINISHED) {
+            scheduler.execute(() -> completeRun(id));
+        }
+    }
+
+    @Override
+    public void close() {
+        refreshTask.cancel(false);
+        scheduledRuns.keySet().forEach(this::cancelRuns);
+    }
+
+    /**
+     * Schedule runs of the new policies and cancel runs of the removed ones
+     */
+    void refresh() {
+        try {
+            final List<RetentionPolicy> policies = policyRepository.findPolicies();
+            for (RetentionPolicy policy : policies) {
+                scheduledRuns.computeIfAbsent(policy.getId(), id -> scheduleRun(policy));
+            }
+            final Set<String> policyIds = policies.stream().map(RetentionPolicy::getId).collect(Collectors.toSet());
+            scheduledRuns.keySet().stream()
+                    .filter(id -> !policyIds.contains(id))
+                    .collect(Collectors.toList())
+                    .forEach(this::cancelRuns);
+        } catch (Exception e) {
+            log.error("Failed to refresh retention policies", e);
+        }
+    }
+
+    /**
+     * Submit the job of the policy run, if anything has expired since the watermark, and schedule the next run
+     */
+    void runPolicy(String policyId) {
+        final RetentionPolicy policy;
+        try {
+            policy = policyRepository.getPolicyById(policyId);
+        } catch (PolicyNotFoundException e) {
+            log.info("Retention policy '{}' has been removed, stop its runs", policyId);
+            cancelRuns(policyId);
+            return;
+        } catch (Exception e) {
+            log.error("Failed to get retention policy '{}'", policyId, e);
+            //the next refresh schedules the run once again
+            scheduledRuns.remove(policyId);
+            return;
+        }
+        try {
+            final Optional<Instant> olderThan = getRunOlderThan(policy, Instant.now());
+            if (olderThan.isPresent()) {
+                final RecycleJob job = recycleJobService.submitRecycleJob(policy.getTableName(),
+                        policy.getFieldName(), olderThan.get(), null, null, null, null,
+                        policy.getWatermark() == null ? null : new RecycleJob.Cursor(policy.getWatermark(),
+                                Long.MIN_VALUE), null, null);
+                policyRepository.startRun(policyId, job.getId(), olderThan.get());
+                log.info("Retention policy '{}' has submitted job '{}' to delete records of the table '{}' "
+                        + "since {} older than {}", policyId, job.getId(), policy.getTableName(),
+                        policy.getWatermark(), olderThan.get());
+            } else {
+                log.info("Retention policy '{}' has nothing expired since {}, skip the run",
+                        policyId, policy.getWatermark());
+            }
+        } catch (JobForTableAlreadyExistsException e) {
+            log.info("Retention policy '{}' skips the run, table '{}' is being recycled by the job '{}'",
+                    policyId, policy.getTableName(), e.getRecycleJob().getId());
+        } catch (Exception e) {
+            log.error("Retention policy '{}' has failed to run", policyId, e);
+        }
+        scheduledRuns.computeIfPresent(policyId, (id, run) -> scheduleRun(policy));
+    }
+
+    /**
+     * Get older than datetime of the policy run: the run time minus retention, but no more than the max window after
+     * the watermark or, if there is no watermark yet, after the oldest row of the table
+     * @return older than datetime or empty if nothing has expired since the watermark
+     */
+    Optional<Instant> getRunOlderThan(RetentionPolicy policy, Instant now) {
+        final Instant expiredBefore = now.minus(policy.getRetention());
+        final Optional<Instant> since = policy.getWatermark() != null
+                ? Optional.of(policy.getWatermark())
+                : database.findMinDatetime(policy.getTableName(), policy.getFieldName());
+        if (!since.isPresent() || !since.get().isBefore(expiredBefore)) {
+            return Optional.empty();
+        }
+        if (policy.getMaxWindow() != null && since.get().plus(policy.getMaxWindow()).isBefore(expiredBefore)) {
+            return Optional.of(since.get().plus(policy.getMaxWindow()));
+        }
+        return Optional.of(expiredBefore);
+    }
+
+    /**
+     * Get time of the next policy run after the given time. Schedule is shifted by the jitter, interval runs are
+     * aligned to the epoch, so the runs times survive restarts.
+     */
+    Instant getNextRunTime(RetentionPolicy policy, Instant now) {
+        final long jitterMillis = maxJitterMillis > 0 ? Math.floorMod(policy.getId().hashCode(), maxJitterMillis) : 0;
+        final Instant shiftedNow = now.minusMillis(jitterMillis);
+        final Instant nextRunTime;
+        if (policy.getCron() != null) {
+            nextRunTime = new CronSequenceGenerator(policy.getCron(), CRON_TIME_ZONE)
+                    .next(Date.from(shiftedNow)).toInstant();
+        } else {
+            final long intervalMillis = policy.getInterval().toMillis();
+            nextRunTime = Instant.ofEpochMilli(
+                    (Math.floorDiv(shiftedNow.toEpochMilli(), intervalMillis) + 1) * intervalMillis);
+        }
+        return nextRunTime.plusMillis(jitterMillis);
+    }
+
+    private ScheduledFuture<?> scheduleRun(RetentionPolicy policy) {
+        final Instant now = Instant.now();
+        final Instant nextRunTime = getNextRunTime(policy, now);
+        log.debug("Next run of the retention policy '{}' is scheduled at {}", policy.getId(), nextRunTime);
+        return scheduler.schedule(() -> runPolicy(policy.getId()),
+                Duration.between(now, nextRunTime).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelRuns(String policyId) {
+        final ScheduledFuture<?> run = scheduledRuns.remove(policyId);
+        if (run != null) {
+            run.cancel(false);
+        }
+    }
+
+    private void completeRun(String jobId) {
+        try {
+            policyRepository.completeRun(jobId).ifPresent(policy ->
+                    log.info("Retention policy '{}' has advanced its watermark to {}",
+                            policy.getId(), policy.getWatermark()));
+        } catch (Exception e) {
+            log.error("Failed to advance watermark of the policy run job '{}'", jobId, e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.test.datarecycler.archive;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvArchiveWriterTest {
+
+    private static final String[] COLUMNS = {"id", "payload"};
+
+    private Path directory;
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("archive");
+        executorService = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void shutdown() throws IOException {
+        executorService.shutdownNow();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testRollingFiles() throws Exception {
+        //given writer limited to 2 rows per file
+        final CsvArchiveWriter writer = new CsvArchiveWriter(directory, "job", 2, 1, executorService);
+
+        //when 3 rows are archived by two batches
+        writer.accept(COLUMNS, Arrays.asList(new String[]{"1", "plain"}, new String[]{"2", "with, \"quotes\""}));
+        writer.accept(COLUMNS, Collections.singletonList(new String[]{"3", null}));
+        writer.close();
+
+        //then they are written into two complete files with headers, values are escaped
+        assertEquals(Arrays.asList("job-00001" + CsvArchiveWriter.FILE_SUFFIX,
+                "job-00002" + CsvArchiveWriter.FILE_SUFFIX), listFiles());
+        assertEquals(Arrays.asList("id,payload", "1,plain", "2,\"with, \"\"quotes\"\"\""),
+                readLines("job-00001" + CsvArchiveWriter.FILE_SUFFIX));
+        assertEquals(Arrays.asList("id,payload", "3,"), readLines("job-00002" + CsvArchiveWriter.FILE_SUFFIX));
+    }
+
+    @Test
+    public void testResumedJobKeepsFiles() throws Exception {
+        //given file written by the previous execution of the job
+        final CsvArchiveWriter writer = new CsvArchiveWriter(directory, "job", 10, 1, executorService);
+        writer.accept(COLUMNS, Collections.singletonList(new String[]{"1", ""}));
+        writer.close();
+
+        //when the job is resumed
+        final CsvArchiveWriter resumedWriter = new CsvArchiveWriter(directory, "job", 10, 1, executorService);
+        resumedWriter.accept(COLUMNS, Collections.singletonList(new String[]{"2", ""}));
+        resumedWriter.close();
+
+        //then the next file is written
+        assertEquals(Arrays.asList("id,payload", "1,\"\""), readLines("job-00001" + CsvArchiveWriter.FILE_SUFFIX));
+        assertEquals(Arrays.asList("id,payload", "2,\"\""), readLines("job-00002" + CsvArchiveWriter.FILE_SUFFIX));
+    }
+
+    @Test
+    public void testWriterFailure() throws Exception {
+        //given archive directory, which can't be created
+        final Path file = Files.createFile(directory.resolve("file"));
+        final CsvArchiveWriter writer = new CsvArchiveWriter(file.resolve("archive"), "job", 10, 1, executorService);
+
+        //when rows are archived, then the writer fails on close at the latest
+        writer.accept(COLUMNS, Collections.singletonList(new String[]{"1", "value"}));
+        assertThrows(IOException.class, writer::close);
+    }
+
+    private List<String> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private List<String> readLines(String fileName) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(directory.resolve(fileName))), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+}
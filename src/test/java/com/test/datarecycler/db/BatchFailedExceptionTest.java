@@ -0,0 +1,37 @@
+package com.test.datarecycler.db;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+class BatchFailedExceptionTest {
+
+    @Test
+    public void testFailuresClassified() {
+        //when failures are classified, then transient ones are told apart by their SQLState
+        Assertions.assertEquals(BatchFailedException.Kind.LOCK_TIMEOUT,
+                BatchFailedException.of(new SQLException("lock timeout", "55P03")).getKind());
+        Assertions.assertEquals(BatchFailedException.Kind.STATEMENT_TIMEOUT,
+                BatchFailedException.of(new SQLException("statement timeout", "57014")).getKind());
+        Assertions.assertEquals(BatchFailedException.Kind.SERIALIZATION_FAILURE,
+                BatchFailedException.of(new SQLException("serialization failure", "40001")).getKind());
+        Assertions.assertEquals(BatchFailedException.Kind.DEADLOCK,
+                BatchFailedException.of(new SQLException("deadlock detected", "40P01")).getKind());
+        Assertions.assertEquals(BatchFailedException.Kind.CONNECTION_LOST,
+                BatchFailedException.of(new SQLException("terminating connection", "57P01")).getKind());
+        //wrapped database error is classified by its SQLState as well
+        Assertions.assertEquals(BatchFailedException.Kind.CONNECTION_LOST,
+                BatchFailedException.of(new RuntimeException(new SQLException("connection reset", "08006"))).getKind());
+        Assertions.assertEquals(BatchFailedException.Kind.FATAL,
+                BatchFailedException.of(new IllegalStateException("unexpected")).getKind());
+    }
+
+    @Test
+    public void testFatalFailureNotTransient() {
+        //when failure is not caused by the transient database error, then it is fatal
+        Assertions.assertFalse(BatchFailedException.of(new SQLException("no such table", "42P01")).isTransient());
+        Assertions.assertFalse(BatchFailedException.of(new SQLException("no state")).isTransient());
+        Assertions.assertTrue(BatchFailedException.of(new SQLException("deadlock", "40P01")).isTransient());
+    }
+}
@@ -0,0 +1,189 @@
+package com.test.datarecycler.db;
+
+import com.test.datarecycler.entity.RecycleJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(MockitoExtension.class)
+class PipelinedDatabaseSessionTest {
+
+    @Mock
+    private DataSource dataSourceMock;
+
+    @Mock
+    private Connection readerConnectionMock;
+
+    @Mock
+    private Connection connectionMock;
+
+    @Mock
+    private PreparedStatement firstKeysStatementMock;
+
+    @Mock
+    private PreparedStatement nextKeysStatementMock;
+
+    @Mock
+    private PreparedStatement deleteStatementMock;
+
+    @Mock
+    private ResultSet firstKeysMock;
+
+    @Mock
+    private ResultSet nextKeysMock;
+
+    @Mock
+    private Array idsMock;
+
+    private final Instant olderThan = Instant.now();
+    private final Instant datetime = olderThan.minusSeconds(60);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    public void init() throws SQLException {
+        meterRegistry = new SimpleMeterRegistry();
+        executorService = Executors.newCachedThreadPool();
+        //reader acquires its connection before the first key set is deleted
+        Mockito.when(dataSourceMock.getConnection()).thenReturn(readerConnectionMock, connectionMock);
+        Mockito.when(readerConnectionMock.prepareStatement(Mockito.anyString()))
+                .thenReturn(firstKeysStatementMock)
+                .thenReturn(nextKeysStatementMock);
+        Mockito.when(firstKeysStatementMock.executeQuery()).thenReturn(firstKeysMock);
+        Mockito.when(firstKeysMock.next()).thenReturn(true, true, false);
+        Mockito.when(firstKeysMock.getLong("id")).thenReturn(1L, 2L);
+        Mockito.when(firstKeysMock.getTimestamp("cursor_ts")).thenReturn(Timestamp.from(datetime));
+        Mockito.when(connectionMock.getAutoCommit()).thenReturn(false);
+        Mockito.when(connectionMock.prepareStatement(Mockito.anyString())).thenReturn(deleteStatementMock);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    private PipelinedDatabaseSession createSession() {
+        return new PipelinedDatabaseSession(dataSourceMock, "table", "field", Duration.ofHours(1),
+                meterRegistry.timer("delete"), meterRegistry.counter("errors"), executorService, 1, null);
+    }
+
+    @Test
+    public void testKeysPrefetched() throws SQLException {
+        //given table with 3 expired rows, keys are selected by 2
+        final PipelinedDatabaseSession session = createSession();
+        Mockito.when(nextKeysStatementMock.executeQuery()).thenReturn(nextKeysMock);
+        Mockito.when(nextKeysMock.next()).thenReturn(true, false);
+        Mockito.when(nextKeysMock.getLong("id")).thenReturn(3L);
+        Mockito.when(nextKeysMock.getTimestamp("cursor_ts")).thenReturn(Timestamp.from(datetime));
+        Mockito.when(connectionMock.createArrayOf(Mockito.eq("bigint"), Mockito.any())).thenReturn(idsMock);
+        Mockito.when(deleteStatementMock.executeUpdate()).thenReturn(2, 1);
+
+        //when two batches are deleted
+        final DeleteResult firstResult = session.deleteData(olderThan, null, 2);
+        final DeleteResult secondResult = session.deleteData(olderThan, firstResult.getCursor(), 2);
+        session.close();
+
+        //then keys are selected by the reader connection and deleted by the session connection
+        assertEquals(new DeleteResult(2, new RecycleJob.Cursor(datetime, 2)), firstResult);
+        assertEquals(new DeleteResult(1, new RecycleJob.Cursor(datetime, 3)), secondResult);
+        Mockito.verify(connectionMock).createArrayOf("bigint", new Long[]{1L, 2L});
+        Mockito.verify(connectionMock).createArrayOf("bigint", new Long[]{3L});
+        Mockito.verify(connectionMock).prepareStatement(Mockito.anyString());
+        Mockito.verify(connectionMock, Mockito.times(2)).commit();
+        assertEquals(2, meterRegistry.get("delete").timer().count());
+
+        //and the reader stops after the short key set
+        Mockito.verify(readerConnectionMock, Mockito.times(2)).commit();
+        Mockito.verify(readerConnectionMock, Mockito.timeout(1000)).close();
+        Mockito.verify(connectionMock).close();
+    }
+
+    @Test
+    public void testStaleKeysDontEndDeletion() throws SQLException {
+        //given full key set, one row of which has been deleted by someone else after selection
+        final PipelinedDatabaseSession session = createSession();
+        Mockito.when(connectionMock.createArrayOf(Mockito.eq("bigint"), Mockito.any())).thenReturn(idsMock);
+        Mockito.when(deleteStatementMock.executeUpdate()).thenReturn(1);
+
+        //when batch is deleted
+        final DeleteResult result = session.deleteData(olderThan, null, 2);
+        session.close();
+
+        //then the batch is not reported as the last one, since the full key set has been selected
+        assertEquals(new DeleteResult(1, 2, new RecycleJob.Cursor(datetime, 2)), result);
+    }
+
+    @Test
+    public void testPrefetchedKeysSplitToBatchSize() throws SQLException {
+        //given key set of 3 rows selected before the batch size has been changed, and the last key set of 1 row
+        final PipelinedDatabaseSession session = createSession();
+        Mockito.when(firstKeysMock.next()).thenReturn(true, true, true, false);
+        Mockito.when(firstKeysMock.getLong("id")).thenReturn(1L, 2L, 3L);
+        Mockito.when(nextKeysStatementMock.executeQuery()).thenReturn(nextKeysMock);
+        Mockito.when(nextKeysMock.next()).thenReturn(true, false);
+        Mockito.when(nextKeysMock.getLong("id")).thenReturn(4L);
+        Mockito.when(nextKeysMock.getTimestamp("cursor_ts")).thenReturn(Timestamp.from(datetime));
+        Mockito.when(connectionMock.createArrayOf(Mockito.eq("bigint"), Mockito.any())).thenReturn(idsMock);
+        Mockito.when(deleteStatementMock.executeUpdate()).thenReturn(2, 1, 1);
+
+        //when batch size is shrunk and then grown back by the adaptive sizing
+        final DeleteResult firstResult = session.deleteData(olderThan, null, 2);
+        final DeleteResult secondResult = session.deleteData(olderThan, firstResult.getCursor(), 1);
+        final DeleteResult thirdResult = session.deleteData(olderThan, secondResult.getCursor(), 2);
+        session.close();
+
+        //then prefetched keys are split and joined to the requested batch sizes
+        Mockito.verify(connectionMock).createArrayOf("bigint", new Long[]{1L, 2L});
+        Mockito.verify(connectionMock).createArrayOf("bigint", new Long[]{3L});
+        Mockito.verify(connectionMock).createArrayOf("bigint", new Long[]{4L});
+        assertEquals(new DeleteResult(1, new RecycleJob.Cursor(datetime, 3)), secondResult);
+
+        //and only the last batch is short
+        assertEquals(new DeleteResult(1, new RecycleJob.Cursor(datetime, 4)), thirdResult);
+
+        //and the reader is not restarted
+        Mockito.verify(dataSourceMock, Mockito.times(2)).getConnection();
+    }
+
+    @Test
+    public void testConnectionReleasedOnError() throws SQLException {
+        //given session failing to delete the first batch
+        final PipelinedDatabaseSession session = createSession();
+        Mockito.when(connectionMock.createArrayOf(Mockito.eq("bigint"), Mockito.any()))
+                .thenThrow(new SQLException("connection reset", "08006"));
+
+        //when batch is deleted, then it fails with the transient error
+        final BatchFailedException failure = assertThrows(BatchFailedException.class,
+                () -> session.deleteData(olderThan, null, 2));
+        session.close();
+        assertEquals(BatchFailedException.Kind.CONNECTION_LOST, failure.getKind());
+
+        //and transaction is rolled back and connection is released, so the batch could be retried from the same
+        //cursor on another connection
+        Mockito.verify(connectionMock).rollback();
+        Mockito.verify(connectionMock).close();
+        assertEquals(1, meterRegistry.get("errors").counter().count());
+    }
+}
@@ -0,0 +1,269 @@
+package com.test.datarecycler.db;
+
+import com.test.datarecycler.entity.RecycleJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class PostgresDatabaseSessionTest {
+
+    @Mock
+    private DataSource dataSourceMock;
+
+    @Mock
+    private Connection connectionMock;
+
+    @Mock
+    private PreparedStatement firstBatchStatementMock;
+
+    @Mock
+    private PreparedStatement nextBatchStatementMock;
+
+    @Mock
+    private Statement timeoutsStatementMock;
+
+    @Mock
+    private ResultSet resultSetMock;
+
+    @Mock
+    private ResultSetMetaData metaDataMock;
+
+    private final Instant olderThan = Instant.now();
+    private final RecycleJob.Cursor cursor = new RecycleJob.Cursor(Instant.now(), 1000);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() throws SQLException {
+        meterRegistry = new SimpleMeterRegistry();
+        Mockito.when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        Mockito.when(connectionMock.getAutoCommit()).thenReturn(false);
+    }
+
+    private PostgresDatabaseSession createSession(Duration connectionMaxLifetime) {
+        return createSession(connectionMaxLifetime, null);
+    }
+
+    private PostgresDatabaseSession createSession(Duration connectionMaxLifetime, DeletedRowsSink sink) {
+        return new PostgresDatabaseSession(dataSourceMock, "table", "field", connectionMaxLifetime,
+                meterRegistry.timer("delete"), meterRegistry.counter("errors"), sink, null);
+    }
+
+    @Test
+    public void testStatementsReusedAcrossBatches() throws SQLException {
+        //given session with long connection lifetime
+        final PostgresDatabaseSession session = createSession(Duration.ofHours(1));
+        Mockito.when(connectionMock.prepareStatement(Mockito.anyString()))
+                .thenReturn(firstBatchStatementMock)
+                .thenReturn(nextBatchStatementMock);
+        Mockito.when(firstBatchStatementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(nextBatchStatementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true);
+        Mockito.when(resultSetMock.getInt("deleted_count")).thenReturn(1000);
+        Mockito.when(resultSetMock.getInt("selected_count")).thenReturn(1000);
+        Mockito.when(resultSetMock.getTimestamp("cursor_ts")).thenReturn(Timestamp.from(cursor.getDatetime()));
+        Mockito.when(resultSetMock.getLong("cursor_id")).thenReturn(cursor.getId());
+
+        //when three batches are deleted
+        final DeleteResult result = session.deleteData(olderThan, null, 1000);
+        session.deleteData(olderThan, result.getCursor(), 1000);
+        session.deleteData(olderThan, result.getCursor(), 1000);
+        session.close();
+
+        //then connection is acquired once, each statement is prepared once and every batch is committed
+        assertEquals(new DeleteResult(1000, cursor), result);
+        Mockito.verify(dataSourceMock).getConnection();
+        Mockito.verify(connectionMock, Mockito.times(2)).prepareStatement(Mockito.anyString());
+        Mockito.verify(firstBatchStatementMock).executeQuery();
+        Mockito.verify(nextBatchStatementMock, Mockito.times(2)).executeQuery();
+        Mockito.verify(connectionMock, Mockito.times(3)).commit();
+        assertEquals(3, meterRegistry.get("delete").timer().count());
+
+        //and connection is released on close
+        Mockito.verify(connectionMock).close();
+    }
+
+    @Test
+    public void testRowsNotExpiredAnymoreSkipped() throws SQLException {
+        //given batch, whose 10 of 1000 selected rows have been updated concurrently and are not expired anymore
+        final PostgresDatabaseSession session = createSession(Duration.ofHours(1));
+        Mockito.when(connectionMock.prepareStatement(Mockito.anyString())).thenReturn(firstBatchStatementMock);
+        Mockito.when(firstBatchStatementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true);
+        Mockito.when(resultSetMock.getInt("deleted_count")).thenReturn(990);
+        Mockito.when(resultSetMock.getInt("selected_count")).thenReturn(1000);
+        Mockito.when(resultSetMock.getTimestamp("cursor_ts")).thenReturn(Timestamp.from(cursor.getDatetime()));
+        Mockito.when(resultSetMock.getLong("cursor_id")).thenReturn(cursor.getId());
+
+        //when the batch is deleted
+        final DeleteResult result = session.deleteData(olderThan, null, 1000);
+
+        //then expiration is checked again by the delete itself
+        final ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(connectionMock).prepareStatement(query.capture());
+        assertTrue(query.getValue().contains("AND t.field < ?"));
+        Mockito.verify(firstBatchStatementMock).setTimestamp(1, Timestamp.from(olderThan));
+        Mockito.verify(firstBatchStatementMock).setInt(2, 1000);
+        Mockito.verify(firstBatchStatementMock).setTimestamp(3, Timestamp.from(olderThan));
+
+        //and skipped rows don't end the job, while the cursor is the last selected row
+        assertEquals(new DeleteResult(990, 1000, cursor), result);
+    }
+
+    @Test
+    public void testConnectionReleasedOnError() throws SQLException {
+        //given session failing to execute the batch
+        final PostgresDatabaseSession session = createSession(Duration.ofHours(1));
+        Mockito.when(connectionMock.prepareStatement(Mockito.anyString())).thenReturn(nextBatchStatementMock);
+        Mockito.when(nextBatchStatementMock.executeQuery()).thenThrow(new SQLException("connection reset", "08006"));
+
+        //when batch is deleted, then it fails with the transient error
+        final BatchFailedException failure = assertThrows(BatchFailedException.class,
+                () -> session.deleteData(olderThan, cursor, 1000));
+        assertEquals(BatchFailedException.Kind.CONNECTION_LOST, failure.getKind());
+
+        //and transaction is rolled back and connection is released
+        Mockito.verify(connectionMock).rollback();
+        Mockito.verify(connectionMock).close();
+        assertEquals(1, meterRegistry.get("errors").counter().count());
+
+        //and the next batch acquires connection again
+        assertThrows(BatchFailedException.class, () -> session.deleteData(olderThan, cursor, 1000));
+        Mockito.verify(dataSourceMock, Mockito.times(2)).getConnection();
+        Mockito.verify(connectionMock, Mockito.times(2)).prepareStatement(Mockito.anyString());
+    }
+
+    @Test
+    public void testBatchLimitedByTimeouts() throws SQLException {
+        //given session limiting lock waits of the batches, the second of which fails to take its locks in time
+        final PostgresDatabaseSession session = new PostgresDatabaseSession(dataSourceMock, "table", "field",
+                Duration.ofHours(1), meterRegistry.timer("delete"), meterRegistry.counter("errors"), null,
+                BatchTimeouts.of(Duration.ofSeconds(5), Duration.ZERO));
+        Mockito.when(connectionMock.prepareStatement(Mockito.anyString()))
+                .thenReturn(firstBatchStatementMock)
+                .thenReturn(nextBatchStatementMock);
+        Mockito.when(connectionMock.createStatement()).thenReturn(timeoutsStatementMock);
+        Mockito.when(firstBatchStatementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true);
+        Mockito.when(resultSetMock.getInt("deleted_count")).thenReturn(1000);
+        Mockito.when(resultSetMock.getTimestamp("cursor_ts")).thenReturn(Timestamp.from(cursor.getDatetime()));
+        Mockito.when(resultSetMock.getLong("cursor_id")).thenReturn(cursor.getId());
+        Mockito.when(nextBatchStatementMock.executeQuery())
+                .thenThrow(new SQLException("canceling statement due to lock timeout", "55P03"));
+
+        //when two batches are deleted, then the second one fails by the lock timeout
+        session.deleteData(olderThan, null, 1000);
+        final BatchFailedException failure = assertThrows(BatchFailedException.class,
+                () -> session.deleteData(olderThan, cursor, 1000));
+        assertEquals(BatchFailedException.Kind.LOCK_TIMEOUT, failure.getKind());
+        assertTrue(failure.isTransient());
+
+        //and timeouts are set once for the pinned connection rather than before each batch
+        final InOrder inOrder = Mockito.inOrder(timeoutsStatementMock, firstBatchStatementMock,
+                nextBatchStatementMock, connectionMock);
+        inOrder.verify(timeoutsStatementMock).execute("SET lock_timeout = 5000");
+        inOrder.verify(firstBatchStatementMock).executeQuery();
+        inOrder.verify(nextBatchStatementMock).executeQuery();
+        inOrder.verify(connectionMock, Mockito.atLeastOnce()).rollback();
+
+        //and they are reset before the connection is returned to the pool
+        inOrder.verify(timeoutsStatementMock).execute("RESET lock_timeout");
+        inOrder.verify(connectionMock).commit();
+        inOrder.verify(connectionMock).close();
+    }
+
+    @Test
+    public void testConnectionReleasedAfterLifetime() throws SQLException {
+        //given session with zero connection lifetime
+        final PostgresDatabaseSession session = createSession(Duration.ZERO);
+        Mockito.when(connectionMock.prepareStatement(Mockito.anyString())).thenReturn(firstBatchStatementMock);
+        Mockito.when(firstBatchStatementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(false);
+
+        //when batch is deleted
+        session.deleteData(olderThan, null, 1000);
+
+        //then connection is returned to the pool right after the commit
+        Mockito.verify(connectionMock).commit();
+        Mockito.verify(connectionMock).close();
+    }
+
+    @Test
+    public void testArchivedRowsPassedToSink() throws Exception {
+        //given archiving session deleting two selected rows
+        final List<String[]> archivedRows = new ArrayList<>();
+        final PostgresDatabaseSession session = createSession(Duration.ofHours(1),
+                (columns, rows) -> {
+                    assertArrayEquals(new String[]{"id", "field"}, columns);
+                    archivedRows.addAll(rows);
+                });
+        mockArchivedRows();
+
+        //when the batch is deleted
+        final DeleteResult result = session.deleteData(olderThan, null, 1000);
+
+        //then deleted rows are passed to the sink before commit and the cursor points to the last selected row
+        assertEquals(new DeleteResult(2, cursor), result);
+        assertEquals(2, archivedRows.size());
+        assertArrayEquals(new String[]{"1000", null}, archivedRows.get(1));
+        Mockito.verify(connectionMock).commit();
+    }
+
+    @Test
+    public void testBatchRolledBackOnSinkFailure() throws Exception {
+        //given archiving session, which rows could not be archived
+        final PostgresDatabaseSession session = createSession(Duration.ofHours(1),
+                (columns, rows) -> {
+                    throw new IOException("disk full");
+                });
+        mockArchivedRows();
+
+        //when the batch is deleted, then it fails and is rolled back
+        assertThrows(IOException.class, () -> session.deleteData(olderThan, null, 1000));
+        Mockito.verify(connectionMock).rollback();
+        Mockito.verify(connectionMock, Mockito.never()).commit();
+        Mockito.verify(connectionMock).close();
+    }
+
+    private void mockArchivedRows() throws SQLException {
+        Mockito.when(connectionMock.prepareStatement(Mockito.anyString())).thenReturn(firstBatchStatementMock);
+        Mockito.when(firstBatchStatementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.getMetaData()).thenReturn(metaDataMock);
+        Mockito.when(metaDataMock.getColumnCount()).thenReturn(6);
+        Mockito.when(metaDataMock.getColumnName(1)).thenReturn("id");
+        Mockito.when(metaDataMock.getColumnName(2)).thenReturn("field");
+        Mockito.when(resultSetMock.next()).thenReturn(true, true, false);
+        Mockito.when(resultSetMock.getString(1)).thenReturn("999", "1000");
+        Mockito.when(resultSetMock.getString(2)).thenReturn("2020-01-01 00:00:00", null);
+        Mockito.when(resultSetMock.getObject(3)).thenReturn(true);
+        Mockito.when(resultSetMock.getTimestamp(4)).thenReturn(Timestamp.from(cursor.getDatetime()));
+        Mockito.when(resultSetMock.getLong(5)).thenReturn(cursor.getId());
+        Mockito.when(resultSetMock.getInt(6)).thenReturn(2);
+    }
+}
@@ -0,0 +1,59 @@
+package com.test.datarecycler.entity;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+class JobProgressTest {
+
+    @Test
+    public void testSnapshotConsistentWhileRecording() throws Exception {
+        //given progress recorded by several shards concurrently
+        final JobProgress progress = new JobProgress(100);
+        final int shards = 4;
+        final int batchesPerShard = 2000;
+        final ExecutorService executorService = Executors.newFixedThreadPool(shards);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final Future<?>[] recorders = new Future<?>[shards];
+            for (int i = 0; i < shards; i++) {
+                recorders[i] = executorService.submit(() -> {
+                    start.await();
+                    for (int batch = 0; batch < batchesPerShard; batch++) {
+                        progress.recordBatch(100, 1000, 1, 100, null);
+                        LockSupport.parkNanos(1000);
+                    }
+                    return null;
+                });
+            }
+
+            //when snapshots are taken meanwhile
+            start.countDown();
+            boolean recording = true;
+            while (recording) {
+                final RecycleJob.State state = progress.snapshot(RecycleJob.Status.RUNNING);
+
+                //then every snapshot observes whole batches only
+                Assertions.assertEquals(state.getBatches() * 100, state.getDeletedCount());
+                Assertions.assertEquals(state.getBatches() * 1000, state.getBytesFreedEstimate());
+                recording = false;
+                for (Future<?> recorder : recorders) {
+                    recording |= !recorder.isDone();
+                }
+            }
+            for (Future<?> recorder : recorders) {
+                recorder.get(10, TimeUnit.SECONDS);
+            }
+            Assertions.assertEquals((long) shards * batchesPerShard,
+                    progress.snapshot(RecycleJob.Status.RUNNING).getBatches());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.test.datarecycler.entity;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+
+class MaintenanceWindowTest {
+
+    @Test
+    public void testParse() {
+        //when window is parsed, then its bounds are known
+        final MaintenanceWindow window = MaintenanceWindow.parse("01:00-05:00");
+        Assertions.assertEquals(LocalTime.of(1, 0), window.getStart());
+        Assertions.assertEquals(LocalTime.of(5, 0), window.getEnd());
+        Assertions.assertEquals(Duration.ofHours(4), window.getDuration());
+        Assertions.assertEquals("01:00-05:00", window.toString());
+
+        //and malformed or empty window is rejected
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MaintenanceWindow.parse("01:00"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MaintenanceWindow.parse("1 am-5 am"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MaintenanceWindow.parse("01:00-01:00"));
+    }
+
+    @Test
+    public void testContains() {
+        //given night window
+        final MaintenanceWindow window = MaintenanceWindow.parse("01:00-05:00");
+
+        //then start is inclusive and end is exclusive
+        Assertions.assertTrue(window.contains(Instant.parse("2021-04-26T01:00:00Z")));
+        Assertions.assertTrue(window.contains(Instant.parse("2021-04-26T04:59:59Z")));
+        Assertions.assertFalse(window.contains(Instant.parse("2021-04-26T05:00:00Z")));
+        Assertions.assertFalse(window.contains(Instant.parse("2021-04-26T00:59:59Z")));
+    }
+
+    @Test
+    public void testWindowWrappingMidnight() {
+        //given window wrapping midnight
+        final MaintenanceWindow window = MaintenanceWindow.parse("22:00-02:00");
+
+        //then it is open on both sides of midnight
+        Assertions.assertEquals(Duration.ofHours(4), window.getDuration());
+        Assertions.assertTrue(window.contains(Instant.parse("2021-04-26T23:00:00Z")));
+        Assertions.assertTrue(window.contains(Instant.parse("2021-04-27T01:00:00Z")));
+        Assertions.assertFalse(window.contains(Instant.parse("2021-04-27T02:00:00Z")));
+        Assertions.assertEquals(Instant.parse("2021-04-27T22:00:00Z"),
+                window.getNextOpening(Instant.parse("2021-04-27T12:00:00Z")));
+    }
+
+    @Test
+    public void testNextOpening() {
+        //given night window
+        final MaintenanceWindow window = MaintenanceWindow.parse("01:00-05:00");
+
+        //then the window opens today before its start, the next day after its end and right away within it
+        Assertions.assertEquals(Instant.parse("2021-04-26T01:00:00Z"),
+                window.getNextOpening(Instant.parse("2021-04-26T00:00:00Z")));
+        Assertions.assertEquals(Instant.parse("2021-04-27T01:00:00Z"),
+                window.getNextOpening(Instant.parse("2021-04-26T05:00:00Z")));
+        Assertions.assertEquals(Instant.parse("2021-04-26T03:00:00Z"),
+                window.getNextOpening(Instant.parse("2021-04-26T03:00:00Z")));
+    }
+
+    @Test
+    public void testEndOfWindows() {
+        //given night window
+        final MaintenanceWindow window = MaintenanceWindow.parse("01:00-05:00");
+
+        //then the window open at the given instant is the first one, otherwise the next one is
+        Assertions.assertEquals(Instant.parse("2021-04-27T05:00:00Z"),
+                window.getEndOfWindows(Instant.parse("2021-04-26T03:00:00Z"), 2));
+        Assertions.assertEquals(Instant.parse("2021-04-28T05:00:00Z"),
+                window.getEndOfWindows(Instant.parse("2021-04-26T06:00:00Z"), 2));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> window.getEndOfWindows(Instant.parse("2021-04-26T03:00:00Z"), 0));
+    }
+
+    @Test
+    public void testOpenTime() {
+        //given night window
+        final MaintenanceWindow window = MaintenanceWindow.parse("01:00-05:00");
+
+        //then open time counts only the time within the windows
+        Assertions.assertEquals(Duration.ofHours(2), window.getOpenTime(
+                Instant.parse("2021-04-26T03:00:00Z"), Instant.parse("2021-04-26T12:00:00Z")));
+        Assertions.assertEquals(Duration.ofHours(6), window.getOpenTime(
+                Instant.parse("2021-04-26T03:00:00Z"), Instant.parse("2021-04-27T05:00:00Z")));
+        Assertions.assertEquals(Duration.ZERO, window.getOpenTime(
+                Instant.parse("2021-04-26T06:00:00Z"), Instant.parse("2021-04-27T00:00:00Z")));
+    }
+}
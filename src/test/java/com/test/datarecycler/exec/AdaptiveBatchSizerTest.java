@@ -0,0 +1,81 @@
+package com.test.datarecycler.exec;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+class AdaptiveBatchSizerTest {
+
+    private static final Duration TARGET_LATENCY = Duration.ofMillis(200);
+
+    @Test
+    public void testGrowOnFastBatches() {
+        //given sizer with plenty of room to grow
+        final AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 100, 10000, TARGET_LATENCY);
+
+        //when batch is completed twice as fast as the target
+        final int nextSize = sizer.onBatchCompleted(TimeUnit.MILLISECONDS.toNanos(100));
+
+        //then batch size is doubled
+        Assertions.assertEquals(2000, nextSize);
+        Assertions.assertEquals(2000, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testShrinkOnSlowBatches() {
+        //given sizer with plenty of room to shrink
+        final AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 100, 10000, TARGET_LATENCY);
+
+        //when batch is completed ten times slower than the target, e.g. due to lock waits
+        final int nextSize = sizer.onBatchCompleted(TimeUnit.MILLISECONDS.toNanos(2000));
+
+        //then batch size is decreased by no more than half at once
+        Assertions.assertEquals(500, nextSize);
+    }
+
+    @Test
+    public void testKeepSizeWithinTolerance() {
+        //given sizer
+        final AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 100, 10000, TARGET_LATENCY);
+
+        //when batch latency is close to the target, then batch size is not changed
+        Assertions.assertEquals(1000, sizer.onBatchCompleted(TimeUnit.MILLISECONDS.toNanos(210)));
+        Assertions.assertEquals(1000, sizer.onBatchCompleted(TimeUnit.MILLISECONDS.toNanos(190)));
+    }
+
+    @Test
+    public void testRespectBounds() {
+        //given sizer near its bounds
+        final AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 800, 1500, TARGET_LATENCY);
+
+        //when batches are very fast, then batch size is limited by max size
+        Assertions.assertEquals(1500, sizer.onBatchCompleted(TimeUnit.MILLISECONDS.toNanos(1)));
+
+        //when batches are very slow, then batch size is limited by min size
+        Assertions.assertEquals(800, sizer.onBatchCompleted(TimeUnit.SECONDS.toNanos(10)));
+        Assertions.assertEquals(800, sizer.onBatchCompleted(TimeUnit.SECONDS.toNanos(10)));
+    }
+
+    @Test
+    public void testShrinkOnTimeout() {
+        //given sizer with some room below the current size
+        final AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 300, 5000, TARGET_LATENCY);
+
+        //when batches time out, then batch size is halved down to the min size
+        Assertions.assertEquals(500, sizer.onBatchTimedOut());
+        Assertions.assertEquals(300, sizer.onBatchTimedOut());
+    }
+
+    @Test
+    public void testFixedSize() {
+        //given fixed sizer
+        final AdaptiveBatchSizer sizer = AdaptiveBatchSizer.fixed(1000);
+
+        //when batches latency varies, then batch size is not changed
+        Assertions.assertEquals(1000, sizer.onBatchCompleted(TimeUnit.MILLISECONDS.toNanos(1)));
+        Assertions.assertEquals(1000, sizer.onBatchCompleted(TimeUnit.SECONDS.toNanos(10)));
+    }
+
+}
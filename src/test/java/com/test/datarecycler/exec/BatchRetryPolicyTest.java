@@ -0,0 +1,44 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.db.BatchFailedException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+class BatchRetryPolicyTest {
+
+    @Test
+    public void testTransientFailuresRetried() {
+        //given policy retrying the batch twice
+        final BatchRetryPolicy policy = new BatchRetryPolicy(2, Duration.ofSeconds(1), Duration.ofMinutes(1));
+        final BatchFailedException lockTimeout = BatchFailedException.of(new SQLException("lock timeout", "55P03"));
+        final BatchFailedException fatal = BatchFailedException.of(new SQLException("no such table", "42P01"));
+
+        //then transient failure is retried until the retries are exhausted, and fatal one is never retried
+        Assertions.assertTrue(policy.isRetryable(lockTimeout, 1));
+        Assertions.assertTrue(policy.isRetryable(lockTimeout, 2));
+        Assertions.assertFalse(policy.isRetryable(lockTimeout, 3));
+        Assertions.assertFalse(policy.isRetryable(fatal, 1));
+        Assertions.assertFalse(BatchRetryPolicy.NONE.isRetryable(lockTimeout, 1));
+    }
+
+    @Test
+    public void testExponentialBackoff() {
+        //given policy backing off from 1 second up to 5 seconds
+        final BatchRetryPolicy policy = new BatchRetryPolicy(10, Duration.ofSeconds(1), Duration.ofSeconds(5));
+
+        //then backoff is doubled on every retry within its upper half and limited by the max backoff
+        assertBetween(Duration.ofMillis(500), Duration.ofSeconds(1), policy.getBackoffNanos(1));
+        assertBetween(Duration.ofSeconds(1), Duration.ofSeconds(2), policy.getBackoffNanos(2));
+        assertBetween(Duration.ofSeconds(2), Duration.ofSeconds(4), policy.getBackoffNanos(3));
+        assertBetween(Duration.ofMillis(2500), Duration.ofSeconds(5), policy.getBackoffNanos(4));
+        assertBetween(Duration.ofMillis(2500), Duration.ofSeconds(5), policy.getBackoffNanos(100));
+    }
+
+    private static void assertBetween(Duration min, Duration max, long actualNanos) {
+        Assertions.assertTrue(actualNanos >= min.toNanos() && actualNanos <= max.toNanos(),
+                () -> actualNanos + " is not within [" + min + ", " + max + "]");
+    }
+}
@@ -0,0 +1,68 @@
+package com.test.datarecycler.exec;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class BoundedConcurrencyExecutorServiceTest {
+
+    private BoundedConcurrencyExecutorService executorService;
+
+    @BeforeEach
+    public void init() {
+        executorService = new BoundedConcurrencyExecutorService(VirtualThreads.newThreadPerTaskExecutor(), 2);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws InterruptedException, ExecutionException, TimeoutException {
+        //given tasks blocked until released
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<Future<?>> tasks = new ArrayList<>();
+
+        //when more tasks than the limit are submitted
+        for (int i = 0; i < 5; i++) {
+            tasks.add(executorService.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                release.await();
+                running.decrementAndGet();
+                return null;
+            }));
+        }
+
+        //then only two of them are running while the rest wait for the permit
+        while (executorService.getWaitingCount() < 3 || running.get() < 2) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(2, running.get());
+
+        //and all of them complete once released
+        release.countDown();
+        for (Future<?> task : tasks) {
+            task.get(5, TimeUnit.SECONDS);
+        }
+        Assertions.assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void testInvalidConcurrency() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new BoundedConcurrencyExecutorService(VirtualThreads.newThreadPerTaskExecutor(), 0));
+    }
+}
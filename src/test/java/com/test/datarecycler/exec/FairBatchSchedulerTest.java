@@ -0,0 +1,138 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.entity.RecycleJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FairBatchSchedulerTest {
+
+    private final RecycleJob blockingJob = new RecycleJob("1", "blocking", "field", Instant.now(),
+            1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ExecutorService executorService;
+
+    private final List<String> grantedTables = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        executorService = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testHigherPriorityGrantedFirst() throws Exception {
+        //given the only slot taken by the running batch
+        final FairBatchScheduler scheduler = new FairBatchScheduler(BatchThrottle.NONE, 1, 0, meterRegistry);
+        scheduler.awaitBatch(blockingJob);
+
+        //when low priority batch and then high priority batch wait for the slot
+        final Future<?> lowPriorityBatch = submitBatch(scheduler,
+                new RecycleJob("2", "low", "field", Instant.now(), 1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO), 1);
+        final Future<?> highPriorityBatch = submitBatch(scheduler,
+                new RecycleJob("3", "high", "field", Instant.now(), 1000, 1, 1, 1, RecycleJob.PurgeMode.AUTO), 2);
+        scheduler.onBatchCompleted(blockingJob, 1000);
+        lowPriorityBatch.get(5, TimeUnit.SECONDS);
+        highPriorityBatch.get(5, TimeUnit.SECONDS);
+
+        //then high priority batch takes the slot first
+        assertEquals(Arrays.asList("high", "low"), grantedTables);
+    }
+
+    @Test
+    public void testWeightedFairness() throws Exception {
+        //given two jobs of the same priority which have deleted the same count of rows, but the second one has 3 times
+        //greater weight
+        final FairBatchScheduler scheduler = new FairBatchScheduler(BatchThrottle.NONE, 1, 0, meterRegistry);
+        final RecycleJob lightJob = new RecycleJob("2", "light", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final RecycleJob heavyJob = new RecycleJob("3", "heavy", "field", Instant.now(),
+                1000, 1, 0, 3, RecycleJob.PurgeMode.AUTO);
+        scheduler.awaitBatch(lightJob);
+        scheduler.onBatchCompleted(lightJob, 300);
+        scheduler.awaitBatch(heavyJob);
+        scheduler.onBatchCompleted(heavyJob, 300);
+
+        //when their next batches wait for the slot
+        scheduler.awaitBatch(blockingJob);
+        final Future<?> lightBatch = submitBatch(scheduler, lightJob, 1);
+        final Future<?> heavyBatch = submitBatch(scheduler, heavyJob, 2);
+        scheduler.onBatchCompleted(blockingJob, 0);
+        lightBatch.get(5, TimeUnit.SECONDS);
+        heavyBatch.get(5, TimeUnit.SECONDS);
+
+        //then the heavier job is behind its fair share and takes the slot first
+        assertEquals(Arrays.asList("heavy", "light"), grantedTables);
+    }
+
+    @Test
+    public void testShares() throws InterruptedException {
+        //given two jobs which have deleted 300 and 100 rows
+        final FairBatchScheduler scheduler = new FairBatchScheduler(BatchThrottle.NONE, 2, 0, meterRegistry);
+        final RecycleJob firstJob = new RecycleJob("2", "first", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final RecycleJob secondJob = new RecycleJob("3", "second", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        scheduler.awaitBatch(firstJob);
+        scheduler.awaitBatch(secondJob);
+        assertEquals(2.0, meterRegistry.get(FairBatchScheduler.IN_FLIGHT_METRIC).gauge().value());
+        scheduler.onBatchCompleted(firstJob, 300);
+        scheduler.onBatchCompleted(secondJob, 100);
+
+        //when shares are requested, then they are proportional to the deleted rows
+        assertEquals(0.75, meterRegistry.get(FairBatchScheduler.SHARE_METRIC)
+                .tag("table", "first").gauge().value(), 0.01);
+        assertEquals(0.25, meterRegistry.get(FairBatchScheduler.SHARE_METRIC)
+                .tag("table", "second").gauge().value(), 0.01);
+        assertEquals(0.0, meterRegistry.get(FairBatchScheduler.IN_FLIGHT_METRIC).gauge().value());
+    }
+
+    @Test
+    public void testRowsPerSecondBudget() throws InterruptedException {
+        //given rows budget overdrawn by the half of second
+        final FairBatchScheduler scheduler = new FairBatchScheduler(BatchThrottle.NONE, 1, 1000, meterRegistry);
+        scheduler.awaitBatch(blockingJob);
+        scheduler.onBatchCompleted(blockingJob, 1500);
+
+        //when the next batch is requested, then it waits until the budget is refilled
+        final long waitedNanos = scheduler.awaitBatch(blockingJob);
+        assertTrue(waitedNanos >= TimeUnit.MILLISECONDS.toNanos(400));
+    }
+
+    /**
+     * Submit batch, which records its table once granted, and wait until it is queued
+     */
+    private Future<?> submitBatch(FairBatchScheduler scheduler, RecycleJob job, int expectedWaitingCount)
+            throws InterruptedException {
+        final Future<?> batch = executorService.submit(() -> {
+            scheduler.awaitBatch(job);
+            grantedTables.add(job.getTableName());
+            scheduler.onBatchCompleted(job, 100);
+            return null;
+        });
+        while (scheduler.getWaitingCount() < expectedWaitingCount) {
+            Thread.sleep(10);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,137 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.repository.JobQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class LeasedRecycleJobExecutorTest {
+
+    private static final Duration LEASE_DURATION = Duration.ofSeconds(30);
+
+    @Mock
+    private LocalRecycleJobExecutor localExecutorMock;
+
+    @Mock
+    private JobQueue jobQueueMock;
+
+    @Mock
+    private ExecutorService executorServiceMock;
+
+    @Mock
+    private ScheduledExecutorService schedulerMock;
+
+    private LeasedRecycleJobExecutor jobExecutor;
+
+    private final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+            1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+
+    @BeforeEach
+    public void init() {
+        jobExecutor = new LeasedRecycleJobExecutor(localExecutorMock, jobQueueMock, executorServiceMock,
+                schedulerMock, 2, LEASE_DURATION, Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testSubmitJob() {
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then it is not executed right away, but claiming is triggered
+        Mockito.verify(schedulerMock).execute(Mockito.any());
+        Mockito.verifyZeroInteractions(jobQueueMock, executorServiceMock);
+    }
+
+    @Test
+    public void testClaimedJobExecution() {
+        //given job in the queue
+        Mockito.when(jobQueueMock.claimJobs(2, LEASE_DURATION)).thenReturn(Collections.singletonList(job));
+
+        //when jobs are claimed
+        jobExecutor.claimJobs();
+        final Runnable execution = captureExecution();
+
+        //then claimed job takes one of the free threads
+        Mockito.when(jobQueueMock.claimJobs(1, LEASE_DURATION)).thenReturn(Collections.emptyList());
+        jobExecutor.claimJobs();
+
+        //and when job is executed
+        execution.run();
+
+        //then it is released for the case it is still active and the next job is claimed
+        final ArgumentCaptor<AtomicBoolean> abandoned = ArgumentCaptor.forClass(AtomicBoolean.class);
+        Mockito.verify(localExecutorMock).executeJob(Mockito.eq(job), abandoned.capture());
+        assertFalse(abandoned.getValue().get());
+        Mockito.verify(jobQueueMock).releaseJob(job.getId());
+        Mockito.verify(schedulerMock).execute(Mockito.any());
+    }
+
+    @Test
+    public void testLostLeaseAbandonsJob() {
+        //given executed job
+        Mockito.when(jobQueueMock.claimJobs(2, LEASE_DURATION)).thenReturn(Collections.singletonList(job));
+        jobExecutor.claimJobs();
+        final Runnable execution = captureExecution();
+
+        //when its lease is not renewed
+        Mockito.when(jobQueueMock.renewLeases(Collections.singletonList(job.getId()), LEASE_DURATION))
+                .thenReturn(Collections.emptySet());
+        jobExecutor.renewLeases();
+        execution.run();
+
+        //then the job is abandoned and not released, since it is owned by another instance
+        final ArgumentCaptor<AtomicBoolean> abandoned = ArgumentCaptor.forClass(AtomicBoolean.class);
+        Mockito.verify(localExecutorMock).executeJob(Mockito.eq(job), abandoned.capture());
+        assertTrue(abandoned.getValue().get());
+        Mockito.verify(jobQueueMock, Mockito.never()).releaseJob(job.getId());
+    }
+
+    @Test
+    public void testPausedJobKeepsLeaseAndFreesThread() {
+        //given executed job paused until its maintenance window opens
+        Mockito.when(jobQueueMock.claimJobs(2, LEASE_DURATION)).thenReturn(Collections.singletonList(job));
+        Mockito.when(localExecutorMock.executeJob(Mockito.eq(job), Mockito.any())).thenReturn(true);
+        jobExecutor.claimJobs();
+
+        //when job is executed
+        captureExecution().run();
+
+        //then it is not released and waits for its window
+        Mockito.verify(jobQueueMock, Mockito.never()).releaseJob(job.getId());
+        final ArgumentCaptor<Runnable> resume = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(localExecutorMock).resumeInMaintenanceWindow(Mockito.eq(job), Mockito.any(), resume.capture());
+
+        //and its lease is renewed, while its thread could take another job
+        Mockito.when(jobQueueMock.renewLeases(Collections.singletonList(job.getId()), LEASE_DURATION))
+                .thenReturn(Collections.singleton(job.getId()));
+        jobExecutor.renewLeases();
+        jobExecutor.claimJobs();
+        Mockito.verify(jobQueueMock, Mockito.times(2)).claimJobs(2, LEASE_DURATION);
+
+        //and once the window opens the job is executed again
+        resume.getValue().run();
+        Mockito.verify(executorServiceMock, Mockito.times(2)).submit(Mockito.any(Runnable.class));
+    }
+
+    private Runnable captureExecution() {
+        final ArgumentCaptor<Runnable> execution = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(executorServiceMock).submit(execution.capture());
+        return execution.getValue();
+    }
+}
@@ -0,0 +1,101 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.db.DatabaseLoad;
+import com.test.datarecycler.entity.RecycleJob;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@ExtendWith(MockitoExtension.class)
+class LoadAwareBatchThrottleTest {
+
+    private static final long MAX_LAG_BYTES = 1000;
+    private static final int MAX_ACTIVE_BACKENDS = 10;
+
+    @Mock
+    private Database databaseMock;
+
+    private LoadAwareBatchThrottle throttle;
+
+    private final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+            1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+
+    @BeforeEach
+    public void init() {
+        throttle = new LoadAwareBatchThrottle(databaseMock, MAX_LAG_BYTES, MAX_ACTIVE_BACKENDS, 0,
+                Duration.ofMillis(10), Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testNoDelayWithinThresholds() throws InterruptedException {
+        //given database load is within thresholds
+        Mockito.when(databaseMock.getLoad()).thenReturn(new DatabaseLoad(MAX_LAG_BYTES, MAX_ACTIVE_BACKENDS, 0));
+
+        //when batch permission is requested, then batch is not delayed
+        Assertions.assertEquals(0, throttle.awaitBatch(job));
+    }
+
+    @Test
+    public void testDelayUntilReplicationCatchesUp() throws InterruptedException {
+        //given replicas lag behind at first and then catch up
+        Mockito.when(databaseMock.getLoad())
+                .thenReturn(new DatabaseLoad(MAX_LAG_BYTES * 10, 1, 0))
+                .thenReturn(new DatabaseLoad(MAX_LAG_BYTES * 5, 1, 0))
+                .thenReturn(new DatabaseLoad(0, 1, 0));
+
+        //when batch permission is requested
+        final long throttledNanos = throttle.awaitBatch(job);
+
+        //then batch is delayed until the load is back to normal
+        Assertions.assertTrue(throttledNanos > 0);
+        Mockito.verify(databaseMock, Mockito.times(3)).getLoad();
+    }
+
+    @Test
+    public void testDelayIsLimitedByMaxPause() throws InterruptedException {
+        //given database is permanently overloaded with active backends
+        throttle = new LoadAwareBatchThrottle(databaseMock, MAX_LAG_BYTES, MAX_ACTIVE_BACKENDS, 0,
+                Duration.ofMillis(10), Duration.ofMillis(50));
+        Mockito.when(databaseMock.getLoad()).thenReturn(new DatabaseLoad(0, MAX_ACTIVE_BACKENDS * 2, 0));
+
+        //when batch permission is requested, then batch is delayed no longer than max pause
+        final long throttledNanos = throttle.awaitBatch(job);
+        Assertions.assertTrue(throttledNanos >= Duration.ofMillis(50).toNanos());
+        Assertions.assertTrue(throttledNanos < Duration.ofSeconds(5).toNanos());
+    }
+
+    @Test
+    public void testFailedSampleDoesNotFailBatch() throws InterruptedException {
+        //given database load can't be sampled
+        Mockito.when(databaseMock.getLoad()).thenThrow(new RuntimeException("connection refused"));
+
+        //when batch permission is requested, then batch is neither failed nor delayed
+        Assertions.assertEquals(0, throttle.awaitBatch(job));
+    }
+
+    @Test
+    public void testPreviousSampleKeptOnFailure() throws InterruptedException {
+        //given database is overloaded and then load can't be sampled anymore
+        throttle = new LoadAwareBatchThrottle(databaseMock, MAX_LAG_BYTES, MAX_ACTIVE_BACKENDS, 0,
+                Duration.ofMillis(10), Duration.ofMillis(50));
+        Mockito.when(databaseMock.getLoad())
+                .thenReturn(new DatabaseLoad(MAX_LAG_BYTES * 10, 1, 0))
+                .thenThrow(new RuntimeException("connection refused"));
+
+        //when batch permission is requested
+        final long throttledNanos = throttle.awaitBatch(job);
+
+        //then batch is delayed by the previous sample and sampling is retried
+        Assertions.assertTrue(throttledNanos >= Duration.ofMillis(50).toNanos());
+        Mockito.verify(databaseMock, Mockito.atLeast(2)).getLoad();
+    }
+
+}
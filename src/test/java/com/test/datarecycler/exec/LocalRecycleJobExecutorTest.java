@@ -1,9 +1,18 @@
 package com.test.datarecycler.exec;
 
+import com.test.datarecycler.archive.CsvArchiveWriter;
+import com.test.datarecycler.db.BatchFailedException;
 import com.test.datarecycler.db.Database;
+import com.test.datarecycler.db.DatabaseSession;
+import com.test.datarecycler.db.DeleteResult;
+import com.test.datarecycler.db.TableStats;
+import com.test.datarecycler.entity.JobProgress;
+import com.test.datarecycler.entity.MaintenanceWindow;
 import com.test.datarecycler.entity.RecycleJob;
 import com.test.datarecycler.repository.RecycleJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.tomcat.util.threads.InlineExecutorService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,7 +21,25 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(MockitoExtension.class)
 class LocalRecycleJobExecutorTest {
@@ -20,94 +47,796 @@ class LocalRecycleJobExecutorTest {
     @Mock
     private Database databaseMock;
 
+    @Mock
+    private DatabaseSession databaseSessionMock;
+
     @Mock
     private RecycleJobRepository recycleJobRepositoryMock;
 
+    @Mock
+    private CsvArchiveWriter archiveWriterMock;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TableThroughput tableThroughput;
+
+    private ScheduledExecutorService scheduler;
+
     private LocalRecycleJobExecutor jobExecutor;
 
     @BeforeEach
     public void init() {
-        jobExecutor = new LocalRecycleJobExecutor(databaseMock,
-                recycleJobRepositoryMock, new InlineExecutorService());
+        meterRegistry = new SimpleMeterRegistry();
+        tableThroughput = new TableThroughput();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        jobExecutor = createJobExecutor(PartitionRecycleMode.DISABLED);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private LocalRecycleJobExecutor createJobExecutor(PartitionRecycleMode partitionRecycleMode) {
+        return createJobExecutor(partitionRecycleMode, 0, null);
+    }
+
+    private LocalRecycleJobExecutor createJobExecutor(PartitionRecycleMode partitionRecycleMode,
+                                                      int prefetchBatches,
+                                                      Function<RecycleJob, CsvArchiveWriter> archiveWriterFactory) {
+        return new LocalRecycleJobExecutor(databaseMock,
+                recycleJobRepositoryMock, new InlineExecutorService(), new InlineExecutorService(), 4,
+                job -> AdaptiveBatchSizer.fixed(job.getBatchSize()), prefetchBatches, partitionRecycleMode, 0.9,
+                BatchThrottle.NONE, tableThroughput, archiveWriterFactory, null, scheduler, null,
+                new BatchRetryPolicy(2, Duration.ZERO, Duration.ZERO), meterRegistry);
     }
 
     @Test
     public void testJobExecution() {
         //given some records in the table
-        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(), 1000);
-        Mockito.when(recycleJobRepositoryMock.getJobStateById(job.getId()))
-                .thenReturn(new RecycleJob.State(RecycleJob.Status.PENDING, 0))
-                .thenReturn(new RecycleJob.State(RecycleJob.Status.RUNNING, 1000));
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final RecycleJob.Cursor firstCursor = new RecycleJob.Cursor(Instant.now(), 1000);
+        final RecycleJob.Cursor secondCursor = new RecycleJob.Cursor(Instant.now(), 1537);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId()))
+                .thenReturn(RecycleJob.Status.PENDING)
+                .thenReturn(RecycleJob.Status.RUNNING);
+        Mockito.when(databaseMock.estimateRowSize(job.getTableName())).thenReturn(100L);
+        Mockito.when(databaseMock.estimateExpiredCount(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenReturn(1500L);
 
-        Mockito.when(databaseMock.deleteData(job.getTableName(), job.getFieldName(), job.getOlderThan(),
-                job.getBatchSize())).thenReturn(1000).thenReturn(537);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(),
+                null, job.getBatchSize())).thenReturn(new DeleteResult(1000, firstCursor));
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(),
+                firstCursor, job.getBatchSize())).thenReturn(new DeleteResult(537, secondCursor));
 
-        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseMock);
+        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseSessionMock);
 
         //when job is submitted
         jobExecutor.submitJob(job);
 
         //and on the first iteration status is toggled to RUNNING and 1000 records are deleted
-        inOrder.verify(recycleJobRepositoryMock).getJobStateById(job.getId());
+        inOrder.verify(recycleJobRepositoryMock).getJobStatus(job.getId());
         inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.RUNNING);
-        inOrder.verify(databaseMock).deleteData(job.getTableName(), job.getFieldName(), job.getOlderThan(), job.getBatchSize());
-        inOrder.verify(recycleJobRepositoryMock).incrementJobDeletedCount(job.getId(), 1000);
+        inOrder.verify(databaseSessionMock).deleteData(job.getOlderThan(), null, job.getBatchSize());
 
-        //and on the next iteration 537 records are deleted and job status is toggled to FINISHED
-        inOrder.verify(recycleJobRepositoryMock).getJobStateById(job.getId());
-        inOrder.verify(databaseMock).deleteData(job.getTableName(), job.getFieldName(), job.getOlderThan(), job.getBatchSize());
-        inOrder.verify(recycleJobRepositoryMock).incrementJobDeletedCount(job.getId(), 537);
+        //and on the next iteration 537 records are deleted after the cursor and job status is toggled to FINISHED
+        inOrder.verify(recycleJobRepositoryMock).getJobStatus(job.getId());
+        inOrder.verify(databaseSessionMock).deleteData(job.getOlderThan(), firstCursor, job.getBatchSize());
+        inOrder.verify(databaseSessionMock).close();
         inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+
+        //and progress counters are updated
+        final RecycleJob.State state = progress.snapshot(RecycleJob.Status.FINISHED);
+        assertEquals(1537, state.getDeletedCount());
+        assertEquals(2, state.getBatches());
+        assertEquals(153700, state.getBytesFreedEstimate());
+        assertEquals(secondCursor, state.getCursor());
+        assertEquals(1500L, state.getEstimatedTotal());
+        assertNotNull(state.getStartTime());
+
+        //and metrics are recorded
+        assertEquals(1537, meterRegistry.get(LocalRecycleJobExecutor.ROWS_DELETED_METRIC)
+                .tag("table", job.getTableName()).counter().count());
+        assertEquals(2, meterRegistry.get(LocalRecycleJobExecutor.BATCH_LATENCY_METRIC)
+                .tag("table", job.getTableName()).timer().count());
+        assertEquals(1, meterRegistry.get(LocalRecycleJobExecutor.JOB_DURATION_METRIC)
+                .tag("status", RecycleJob.Status.FINISHED.name()).timer().count());
+
+        //and the table throughput is known
+        assertTrue(tableThroughput.getRowsPerSecond(job.getTableName()).isPresent());
+        assertEquals(job.getBatchSize(), tableThroughput.getBatchSize(job.getTableName()).getAsInt());
+    }
+
+    @Test
+    public void testJobNotFinishedBySkippedRows() {
+        //given full batch, some rows of which have been deleted by someone else after selection
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final RecycleJob.Cursor firstCursor = new RecycleJob.Cursor(Instant.now(), 1000);
+        final RecycleJob.Cursor secondCursor = new RecycleJob.Cursor(Instant.now(), 1537);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId()))
+                .thenReturn(RecycleJob.Status.PENDING)
+                .thenReturn(RecycleJob.Status.RUNNING);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(),
+                null, job.getBatchSize())).thenReturn(new DeleteResult(990, 1000, firstCursor));
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(),
+                firstCursor, job.getBatchSize())).thenReturn(new DeleteResult(537, secondCursor));
+
+        //when job is executed
+        jobExecutor.submitJob(job);
+
+        //then it keeps deleting after the batch with skipped rows until the short batch is selected
+        Mockito.verify(databaseSessionMock).deleteData(job.getOlderThan(), firstCursor, job.getBatchSize());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        assertEquals(1527, progress.getDeletedCount());
     }
 
     @Test
     public void testCancelledJobExecution() {
         //given job will be cancelled in the middle of the process
-        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(), 1000);
-        Mockito.when(recycleJobRepositoryMock.getJobStateById(job.getId()))
-                .thenReturn(new RecycleJob.State(RecycleJob.Status.CANCELLED, 0));
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId()))
+                .thenReturn(new JobProgress(job.getBatchSize()));
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.CANCELLED);
 
-        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseMock);
+        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseSessionMock);
 
         //when job is submitted
         jobExecutor.submitJob(job);
 
-        //then current state is checked and job is removed
-        inOrder.verify(recycleJobRepositoryMock).getJobStateById(job.getId());
+        //then current status is checked and job is removed
+        inOrder.verify(recycleJobRepositoryMock).getJobStatus(job.getId());
         inOrder.verify(recycleJobRepositoryMock).removeJob(job.getId());
         inOrder.verify(recycleJobRepositoryMock, Mockito.never()).updateJobStatus(Mockito.eq(job.getId()), Mockito.any());
-        inOrder.verify(databaseMock, Mockito.never()).deleteData(job.getTableName(), job.getFieldName(), job.getOlderThan(), job.getBatchSize());
+        Mockito.verify(databaseMock, Mockito.never()).openSession(job.getTableName(), job.getFieldName());
+        assertEquals(1, meterRegistry.get(LocalRecycleJobExecutor.JOB_DURATION_METRIC)
+                .tag("status", RecycleJob.Status.CANCELLED.name()).timer().count());
     }
 
     @Test
     public void testCancelJobInProgress() {
         //given job will be cancelled in the middle of the process
-        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(), 1000);
-        Mockito.when(recycleJobRepositoryMock.getJobStateById(job.getId()))
-                .thenReturn(new RecycleJob.State(RecycleJob.Status.PENDING, 0))
-                .thenReturn(new RecycleJob.State(RecycleJob.Status.CANCELLED, 1000));
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final RecycleJob.Cursor cursor = new RecycleJob.Cursor(Instant.now(), 1000);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId()))
+                .thenReturn(RecycleJob.Status.PENDING)
+                .thenReturn(RecycleJob.Status.CANCELLED);
 
-        Mockito.when(databaseMock.deleteData(job.getTableName(), job.getFieldName(), job.getOlderThan(),
-                job.getBatchSize())).thenReturn(1000);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(),
+                null, job.getBatchSize())).thenReturn(new DeleteResult(1000, cursor));
 
-        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseMock);
+        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseSessionMock);
 
         //when job is submitted
         jobExecutor.submitJob(job);
 
         //and on the first iteration status is toggled to RUNNING and 1000 records are deleted
-        inOrder.verify(recycleJobRepositoryMock).getJobStateById(job.getId());
+        inOrder.verify(recycleJobRepositoryMock).getJobStatus(job.getId());
         inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.RUNNING);
-        inOrder.verify(databaseMock).deleteData(job.getTableName(), job.getFieldName(), job.getOlderThan(), job.getBatchSize());
-        inOrder.verify(recycleJobRepositoryMock).incrementJobDeletedCount(job.getId(), 1000);
+        inOrder.verify(databaseSessionMock).deleteData(job.getOlderThan(), null, job.getBatchSize());
 
         //and on the next iteration job cancellation is detected, status is toggled to FINISHED and no more records are deleted
-        inOrder.verify(recycleJobRepositoryMock).getJobStateById(job.getId());
-        inOrder.verify(databaseMock, Mockito.never()).deleteData(job.getTableName(), job.getFieldName(), job.getOlderThan(), job.getBatchSize());
-        inOrder.verify(recycleJobRepositoryMock, Mockito.never()).incrementJobDeletedCount(job.getId(), 537);
+        inOrder.verify(recycleJobRepositoryMock).getJobStatus(job.getId());
+        inOrder.verify(databaseSessionMock, Mockito.never()).deleteData(job.getOlderThan(), cursor, job.getBatchSize());
+        Mockito.verify(databaseSessionMock).close();
         inOrder.verify(recycleJobRepositoryMock, Mockito.never()).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        assertEquals(1000, progress.getDeletedCount());
+        assertEquals(cursor, progress.getCursor());
+    }
+
+    @Test
+    public void testAbandonJobInProgress() {
+        //given job will be abandoned in the middle of the process
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final RecycleJob.Cursor cursor = new RecycleJob.Cursor(Instant.now(), 1000);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        final AtomicBoolean abandoned = new AtomicBoolean();
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.RUNNING);
+
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenAnswer(invocation -> {
+                    abandoned.set(true);
+                    return new DeleteResult(1000, cursor);
+                });
+
+        //when job is executed
+        jobExecutor.executeJob(job, abandoned);
+
+        //then no more records are deleted after the first batch
+        Mockito.verify(databaseSessionMock).deleteData(job.getOlderThan(), null, job.getBatchSize());
+        Mockito.verify(databaseSessionMock).close();
+        assertEquals(1000, progress.getDeletedCount());
+
+        //and the job is left as is
+        Mockito.verify(recycleJobRepositoryMock, Mockito.never()).updateJobStatus(Mockito.eq(job.getId()), Mockito.any());
+        Mockito.verify(recycleJobRepositoryMock, Mockito.never()).removeJob(job.getId());
+    }
+
+    @Test
+    public void testDropExpiredPartitions() {
+        //given partitioned table with two expired partitions
+        jobExecutor = createJobExecutor(PartitionRecycleMode.DROP);
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final RecycleJob.Cursor cursor = new RecycleJob.Cursor(Instant.now(), 10);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId()))
+                .thenReturn(RecycleJob.Status.PENDING)
+                .thenReturn(RecycleJob.Status.RUNNING);
+        Mockito.when(databaseMock.findExpiredPartitions(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenReturn(Arrays.asList("table_p1", "table_p2"));
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(),
+                null, job.getBatchSize())).thenReturn(new DeleteResult(10, cursor));
+
+        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseMock, databaseSessionMock);
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then expired partitions are dropped one by one
+        inOrder.verify(databaseMock).dropPartition(job.getTableName(), "table_p1", false);
+        inOrder.verify(databaseMock).dropPartition(job.getTableName(), "table_p2", false);
+
+        //and the rest of rows in the boundary partition are deleted by batches
+        inOrder.verify(databaseSessionMock).deleteData(job.getOlderThan(), null, job.getBatchSize());
+        inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        final RecycleJob.State state = progress.snapshot(RecycleJob.Status.FINISHED);
+        assertEquals(2, state.getDroppedPartitions());
+        assertEquals(10, state.getDeletedCount());
+    }
+
+    @Test
+    public void testShardedJobExecution() {
+        //given job split into two shards over the two hours range
+        final Instant minDatetime = Instant.now().minus(Duration.ofHours(2));
+        final Instant olderThan = minDatetime.plus(Duration.ofHours(2));
+        final Instant shardsBoundary = minDatetime.plus(Duration.ofHours(1));
+        final RecycleJob job = new RecycleJob("123", "table", "field", olderThan,
+                1000, 2, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        Mockito.when(databaseMock.findMinDatetime(job.getTableName(), job.getFieldName()))
+                .thenReturn(Optional.of(minDatetime));
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(shardsBoundary, null,
+                job.getBatchSize())).thenReturn(new DeleteResult(10, new RecycleJob.Cursor(minDatetime, 10)));
+        final RecycleJob.Cursor secondShardStart = new RecycleJob.Cursor(shardsBoundary, Long.MIN_VALUE);
+        Mockito.when(databaseSessionMock.deleteData(olderThan, secondShardStart,
+                job.getBatchSize())).thenReturn(new DeleteResult(20, new RecycleJob.Cursor(olderThan, 30)));
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then both shards are deleted within the single worker session and progress is aggregated into the job state
+        //without cursor
+        Mockito.verify(databaseMock).openSession(job.getTableName(), job.getFieldName());
+        Mockito.verify(databaseSessionMock).close();
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        final RecycleJob.State state = progress.snapshot(RecycleJob.Status.FINISHED);
+        assertEquals(30, state.getDeletedCount());
+        assertEquals(2, state.getBatches());
+        assertNull(state.getCursor());
+    }
+
+    @Test
+    public void testSwapMostlyExpiredTable() {
+        //given table, most of which rows are expired
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        Mockito.when(databaseMock.estimateRowSize(job.getTableName())).thenReturn(100L);
+        Mockito.when(databaseMock.estimateExpiredFraction(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenReturn(0.95);
+        Mockito.when(databaseMock.isSwappable(job.getTableName())).thenReturn(true);
+        Mockito.when(databaseMock.copyAndSwap(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenReturn(95000L);
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then the table is swapped instead of deleting batches
+        Mockito.verify(databaseMock, Mockito.never()).openSession(job.getTableName(), job.getFieldName());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        final RecycleJob.State state = progress.snapshot(RecycleJob.Status.FINISHED);
+        assertEquals(95000, state.getDeletedCount());
+        assertEquals(9500000, state.getBytesFreedEstimate());
+        assertEquals(95000, meterRegistry.get(LocalRecycleJobExecutor.ROWS_DELETED_METRIC)
+                .tag("table", job.getTableName()).counter().count());
+    }
+
+    @Test
+    public void testFailedSwapFallsBackToBatches() {
+        //given mostly expired table, which fails to be swapped
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        Mockito.when(databaseMock.estimateExpiredFraction(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenReturn(0.95);
+        Mockito.when(databaseMock.isSwappable(job.getTableName())).thenReturn(true);
+        Mockito.when(databaseMock.copyAndSwap(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenThrow(new IllegalStateException("lock timeout"));
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenReturn(new DeleteResult(10, new RecycleJob.Cursor(Instant.now(), 10)));
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then rows are deleted by batches
+        Mockito.verify(databaseSessionMock).deleteData(job.getOlderThan(), null, job.getBatchSize());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        assertEquals(10, progress.getDeletedCount());
+    }
+
+    @Test
+    public void testForcedSwapOfNotSwappableTable() {
+        //given job forced to swap the table, which can't be swapped
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.SWAP);
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId()))
+                .thenReturn(new JobProgress(job.getBatchSize()));
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then job fails without deleting anything
+        Mockito.verify(databaseMock, Mockito.never()).copyAndSwap(job.getTableName(), job.getFieldName(),
+                job.getOlderThan());
+        Mockito.verify(databaseMock, Mockito.never()).openSession(job.getTableName(), job.getFieldName());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FAILED);
+    }
+
+    @Test
+    public void testArchivingJobExecution() throws Exception {
+        //given archiving executor, which would drop expired partitions otherwise
+        jobExecutor = createJobExecutor(PartitionRecycleMode.DROP, 0, job -> archiveWriterMock);
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        Mockito.when(databaseMock.openArchivingSession(job.getTableName(), job.getFieldName(), archiveWriterMock))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenReturn(new DeleteResult(10, new RecycleJob.Cursor(Instant.now(), 10)));
+        final InOrder inOrder = Mockito.inOrder(databaseSessionMock, archiveWriterMock, recycleJobRepositoryMock);
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then rows are deleted by batches within the archiving session, neither partitions are dropped nor the table
+        //is swapped, since their rows would not be archived
+        Mockito.verify(databaseMock, Mockito.never()).findExpiredPartitions(job.getTableName(), job.getFieldName(),
+                job.getOlderThan());
+        Mockito.verify(databaseMock, Mockito.never()).estimateExpiredFraction(job.getTableName(), job.getFieldName(),
+                job.getOlderThan());
+        Mockito.verify(databaseMock, Mockito.never()).openSession(job.getTableName(), job.getFieldName());
+
+        //and all archived rows are written before the job is finished
+        inOrder.verify(databaseSessionMock).deleteData(job.getOlderThan(), null, job.getBatchSize());
+        inOrder.verify(archiveWriterMock).close();
+        inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        assertEquals(10, progress.getDeletedCount());
+    }
+
+    @Test
+    public void testPipelinedJobExecution() {
+        //given executor prefetching keys of the next batch
+        jobExecutor = createJobExecutor(PartitionRecycleMode.DISABLED, 2, null);
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.BATCH);
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId()))
+                .thenReturn(new JobProgress(job.getBatchSize()));
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        Mockito.when(databaseMock.openPipelinedSession(job.getTableName(), job.getFieldName(), 2))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenReturn(new DeleteResult(0, null));
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then batches are deleted within the pipelined session
+        Mockito.verify(databaseSessionMock).close();
+        Mockito.verify(databaseMock, Mockito.never()).openSession(job.getTableName(), job.getFieldName());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+    }
+
+    @Test
+    public void testTableVacuumedDuringJobExecution() {
+        //given executor vacuuming the table after every 1000 deleted rows
+        jobExecutor = new LocalRecycleJobExecutor(databaseMock,
+                recycleJobRepositoryMock, new InlineExecutorService(), new InlineExecutorService(), 4,
+                job -> AdaptiveBatchSizer.fixed(job.getBatchSize()), 0, PartitionRecycleMode.DISABLED, 0.9,
+                BatchThrottle.NONE, tableThroughput, null, null, scheduler,
+                new TableVacuum(databaseMock, 1000, 0.1), BatchRetryPolicy.NONE, meterRegistry);
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.BATCH);
+        final RecycleJob.Cursor cursor = new RecycleJob.Cursor(Instant.now(), 1000);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        Mockito.when(databaseMock.estimateRowSize(job.getTableName())).thenReturn(100L);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenReturn(new DeleteResult(1000, cursor));
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), cursor, job.getBatchSize()))
+                .thenReturn(new DeleteResult(500, null));
+        //bloated after the first batch and slightly bloated once the job is completed
+        Mockito.when(databaseMock.getTableStats(job.getTableName()))
+                .thenReturn(new TableStats(1000, 1000, false))
+                .thenReturn(new TableStats(1000, 0, false))
+                .thenReturn(new TableStats(1000, 50, false));
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then table is vacuumed after the first batch only, since it is not bloated enough once the job is completed
+        Mockito.verify(databaseMock, Mockito.times(1)).vacuumAnalyze(job.getTableName());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+
+        //and vacuum outcome is recorded into the job state
+        final RecycleJob.State state = progress.snapshot(RecycleJob.Status.FINISHED);
+        assertEquals(1, state.getVacuums());
+        assertEquals(100000, state.getBytesReclaimedEstimate());
+        assertEquals(50.0 / 1050, state.getDeadTupleRatio(), 0.001);
+    }
+
+    @Test
+    public void testTransientFailureRetried() {
+        //given batch failing to take its locks in time once
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.BATCH);
+        final RecycleJob.Cursor cursor = new RecycleJob.Cursor(Instant.now(), 500);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenThrow(BatchFailedException.of(new SQLException("lock timeout", "55P03")))
+                .thenReturn(new DeleteResult(500, cursor));
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then the batch is retried from the same cursor and the job is finished
+        Mockito.verify(databaseSessionMock, Mockito.times(2)).deleteData(job.getOlderThan(), null,
+                job.getBatchSize());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+
+        //and the retry is recorded into the job state
+        final RecycleJob.State state = progress.snapshot(RecycleJob.Status.FINISHED);
+        assertEquals(500, state.getDeletedCount());
+        assertEquals(1, state.getRetries());
+        assertEquals(1, state.getLockTimeouts());
+    }
+
+    @Test
+    public void testJobFailedWhenRetriesExhausted() {
+        //given batch failing due to the lost connection again and again
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.BATCH);
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId()))
+                .thenReturn(new JobProgress(job.getBatchSize()));
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenThrow(BatchFailedException.of(new SQLException("connection reset", "08006")));
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then the batch is retried twice and the job is failed rather than finished
+        Mockito.verify(databaseSessionMock, Mockito.times(3)).deleteData(job.getOlderThan(), null,
+                job.getBatchSize());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FAILED);
+        Mockito.verify(recycleJobRepositoryMock, Mockito.never())
+                .updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+    }
+
+    @Test
+    public void testFatalFailureNotRetried() {
+        //given batch failing due to the missing table
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.BATCH);
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId()))
+                .thenReturn(new JobProgress(job.getBatchSize()));
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenThrow(BatchFailedException.of(new SQLException("relation does not exist", "42P01")));
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then the job is failed right away
+        Mockito.verify(databaseSessionMock).deleteData(job.getOlderThan(), null, job.getBatchSize());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FAILED);
+    }
+
+    @Test
+    public void testBackingOffJobReleasesBatchSlot() throws Exception {
+        //given the only batch slot shared by two jobs, and the batch of the first job failing to take its locks
+        final FairBatchScheduler batchScheduler = new FairBatchScheduler(BatchThrottle.NONE, 1, 0, meterRegistry);
+        final ExecutorService executorService = Executors.newCachedThreadPool();
+        final LocalRecycleJobExecutor jobExecutor = new LocalRecycleJobExecutor(databaseMock,
+                recycleJobRepositoryMock, executorService, new InlineExecutorService(), 4,
+                anyJob -> AdaptiveBatchSizer.fixed(anyJob.getBatchSize()), 0, PartitionRecycleMode.DISABLED, 0.9,
+                batchScheduler, tableThroughput, null, null, scheduler, null,
+                new BatchRetryPolicy(1, Duration.ofMinutes(1), Duration.ofMinutes(1)), meterRegistry);
+        final RecycleJob lockedJob = new RecycleJob("1", "locked", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.BATCH);
+        final RecycleJob job = new RecycleJob("2", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.BATCH);
+        final AtomicReference<RecycleJob.Status> lockedJobStatus = new AtomicReference<>(RecycleJob.Status.PENDING);
+        final JobProgress lockedJobProgress = new JobProgress(lockedJob.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(lockedJob.getId())).thenReturn(lockedJobProgress);
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId()))
+                .thenReturn(new JobProgress(job.getBatchSize()));
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(lockedJob.getId()))
+                .thenAnswer(invocation -> lockedJobStatus.get());
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.PENDING);
+        final DatabaseSession lockedSessionMock = Mockito.mock(DatabaseSession.class);
+        Mockito.when(databaseMock.openSession(lockedJob.getTableName(), lockedJob.getFieldName()))
+                .thenReturn(lockedSessionMock);
+        Mockito.when(lockedSessionMock.deleteData(lockedJob.getOlderThan(), null, lockedJob.getBatchSize()))
+                .thenThrow(BatchFailedException.of(new SQLException("lock timeout", "55P03")));
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenReturn(new DeleteResult(10, new RecycleJob.Cursor(Instant.now(), 10)));
+
+        try {
+            //when the first job backs off before the retry
+            jobExecutor.submitJob(lockedJob);
+            while (lockedJobProgress.snapshot(RecycleJob.Status.RUNNING).getRetries() == 0) {
+                Thread.sleep(10);
+            }
+
+            //and the second job is submitted meanwhile
+            jobExecutor.submitJob(job);
+
+            //then the second job takes the slot and is finished without waiting for the backoff
+            Mockito.verify(recycleJobRepositoryMock, Mockito.timeout(5000))
+                    .updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+            assertEquals(0, batchScheduler.getInFlight());
+        } finally {
+            lockedJobStatus.set(RecycleJob.Status.CANCELLED);
+            executorService.shutdown();
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testJobPausedOutsideMaintenanceWindow() throws InterruptedException {
+        //given job, whose maintenance window opens in a second
+        final LocalTime opening = LocalTime.now(ZoneOffset.UTC).plusSeconds(1);
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(), 1000, 1, 0, 1,
+                RecycleJob.PurgeMode.BATCH, new MaintenanceWindow(opening, opening.plusHours(1)), null);
+        final RecycleJob.Cursor cursor = new RecycleJob.Cursor(Instant.now(), 10);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId()))
+                .thenReturn(RecycleJob.Status.PENDING)
+                .thenReturn(RecycleJob.Status.PAUSED);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenReturn(new DeleteResult(10, cursor));
+
+        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseSessionMock);
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then it is paused and handed back without touching the database
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.PAUSED);
+        Mockito.verifyZeroInteractions(databaseMock);
+
+        //and it is resubmitted once the window opens and finished
+        Mockito.verify(recycleJobRepositoryMock, Mockito.timeout(5000))
+                .updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.PAUSED);
+        inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.RUNNING);
+        inOrder.verify(databaseSessionMock).deleteData(job.getOlderThan(), null, job.getBatchSize());
+        inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        assertEquals(10, progress.getDeletedCount());
+
+        //and job duration is recorded once it is finished, but not on pause
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        assertNull(meterRegistry.find(LocalRecycleJobExecutor.JOB_DURATION_METRIC)
+                .tag("status", RecycleJob.Status.PAUSED.name()).timer());
+        assertEquals(1, meterRegistry.get(LocalRecycleJobExecutor.JOB_DURATION_METRIC)
+                .tag("status", RecycleJob.Status.FINISHED.name()).timer().count());
+    }
+
+    @Test
+    public void testResumedJobDurationMeasuredFromFirstStart() {
+        //given job, which has been started an hour ago and has been resumed
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.BATCH);
+        final JobProgress progress = new JobProgress(new RecycleJob.State(RecycleJob.Status.RUNNING, 10, null, 1000,
+                0, 0, 1, 0, null, Instant.now().minus(Duration.ofHours(1)), null, 0, 0, null, 0, 0, 0, 0));
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.RUNNING);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenReturn(new DeleteResult(0, null));
+
+        //when job is executed
+        jobExecutor.submitJob(job);
+
+        //then its duration includes the previous executions
+        assertTrue(meterRegistry.get(LocalRecycleJobExecutor.JOB_DURATION_METRIC)
+                .tag("status", RecycleJob.Status.FINISHED.name()).timer()
+                .totalTime(TimeUnit.MINUTES) >= 60);
     }
 
+    @Test
+    public void testNothingDroppedOrSwappedOutsideMaintenanceWindow() {
+        //given partitioned and mostly expired table, and job, whose maintenance window opens in a second
+        jobExecutor = createJobExecutor(PartitionRecycleMode.DROP);
+        final LocalTime opening = LocalTime.now(ZoneOffset.UTC).plusSeconds(1);
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(), 1000, 1, 0, 1,
+                RecycleJob.PurgeMode.AUTO, new MaintenanceWindow(opening, opening.plusHours(1)), null);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId()))
+                .thenReturn(RecycleJob.Status.PENDING)
+                .thenReturn(RecycleJob.Status.PAUSED);
+        Mockito.when(databaseMock.findExpiredPartitions(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenReturn(Arrays.asList("table_p1"));
+        Mockito.when(databaseMock.estimateExpiredFraction(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenReturn(0.95);
+        Mockito.when(databaseMock.isSwappable(job.getTableName())).thenReturn(true);
+        Mockito.when(databaseMock.copyAndSwap(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenReturn(95000L);
 
+        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseMock);
 
-}
\ No newline at end of file
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then neither partitions are dropped nor the table is swapped or even estimated until the window opens
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.PAUSED);
+        Mockito.verifyZeroInteractions(databaseMock);
+
+        //and once the window opens the expired partition is dropped and the rest of the table is swapped
+        Mockito.verify(recycleJobRepositoryMock, Mockito.timeout(5000))
+                .updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.PAUSED);
+        inOrder.verify(databaseMock).dropPartition(job.getTableName(), "table_p1", false);
+        inOrder.verify(databaseMock).copyAndSwap(job.getTableName(), job.getFieldName(), job.getOlderThan());
+        inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        assertEquals(95000, progress.getDeletedCount());
+    }
+
+    @Test
+    public void testJobPausedOnceWindowCloses() {
+        //given job, whose maintenance window closes in a second, and the batch taking longer than that
+        final LocalTime now = LocalTime.now(ZoneOffset.UTC);
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(), 1000, 1, 0, 1,
+                RecycleJob.PurgeMode.BATCH, new MaintenanceWindow(now.minusHours(1), now.plusSeconds(1)), null);
+        final RecycleJob.Cursor cursor = new RecycleJob.Cursor(Instant.now(), 1000);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId()))
+                .thenReturn(RecycleJob.Status.PENDING)
+                .thenReturn(RecycleJob.Status.RUNNING);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(1500);
+                    return new DeleteResult(1000, cursor);
+                });
+
+        final InOrder inOrder = Mockito.inOrder(recycleJobRepositoryMock, databaseSessionMock);
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then its session is closed before it is paused, and no more batches are deleted
+        inOrder.verify(databaseSessionMock).deleteData(job.getOlderThan(), null, job.getBatchSize());
+        inOrder.verify(databaseSessionMock).close();
+        inOrder.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.PAUSED);
+        Mockito.verify(databaseSessionMock, Mockito.never()).deleteData(job.getOlderThan(), cursor, job.getBatchSize());
+        Mockito.verify(recycleJobRepositoryMock, Mockito.never()).removeJob(job.getId());
+        assertEquals(cursor, progress.getCursor());
+    }
+
+    @Test
+    public void testJobCancelledWhilePaused() {
+        //given job, whose maintenance window opens in an hour
+        final LocalTime opening = LocalTime.now(ZoneOffset.UTC).plusHours(1);
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(), 1000, 1, 0, 1,
+                RecycleJob.PurgeMode.BATCH, new MaintenanceWindow(opening, opening.plusHours(1)), null);
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId()))
+                .thenReturn(new JobProgress(job.getBatchSize()));
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId()))
+                .thenReturn(RecycleJob.Status.PENDING)
+                .thenReturn(RecycleJob.Status.CANCELLED);
+
+        //when job is submitted and cancelled while paused
+        jobExecutor.submitJob(job);
+
+        //then it is removed without waiting for the window and without touching the database
+        Mockito.verify(recycleJobRepositoryMock, Mockito.timeout(5000)).removeJob(job.getId());
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.PAUSED);
+        Mockito.verifyZeroInteractions(databaseMock);
+    }
+
+    @Test
+    public void testJobPacedToFinishWithinWindow() {
+        //given job to finish 2000 rows within the window closing in 3 seconds
+        final LocalTime now = LocalTime.now(ZoneOffset.UTC);
+        final RecycleJob job = new RecycleJob("123", "table", "field", Instant.now(), 1000, 1, 0, 1,
+                RecycleJob.PurgeMode.BATCH, new MaintenanceWindow(now.minusHours(1), now.plusSeconds(3)), 1);
+        final RecycleJob.Cursor firstCursor = new RecycleJob.Cursor(Instant.now(), 1000);
+        final RecycleJob.Cursor secondCursor = new RecycleJob.Cursor(Instant.now(), 2000);
+        final JobProgress progress = new JobProgress(job.getBatchSize());
+        Mockito.when(recycleJobRepositoryMock.getJobProgress(job.getId())).thenReturn(progress);
+        Mockito.when(recycleJobRepositoryMock.getJobStatus(job.getId())).thenReturn(RecycleJob.Status.RUNNING);
+        Mockito.when(databaseMock.estimateExpiredCount(job.getTableName(), job.getFieldName(), job.getOlderThan()))
+                .thenReturn(2000L);
+        Mockito.when(databaseMock.openSession(job.getTableName(), job.getFieldName()))
+                .thenReturn(databaseSessionMock);
+        final long[] batchTimes = new long[2];
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), null, job.getBatchSize()))
+                .thenAnswer(invocation -> {
+                    batchTimes[0] = System.nanoTime();
+                    return new DeleteResult(1000, firstCursor);
+                });
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), firstCursor, job.getBatchSize()))
+                .thenAnswer(invocation -> {
+                    batchTimes[1] = System.nanoTime();
+                    return new DeleteResult(1000, secondCursor);
+                });
+        Mockito.when(databaseSessionMock.deleteData(job.getOlderThan(), secondCursor, job.getBatchSize()))
+                .thenReturn(new DeleteResult(0, secondCursor));
+
+        //when job is submitted
+        jobExecutor.submitJob(job);
+
+        //then the half of rows is deleted per the half of the window time left
+        assertTrue(Duration.ofNanos(batchTimes[1] - batchTimes[0]).compareTo(Duration.ofMillis(1400)) >= 0);
+        Mockito.verify(recycleJobRepositoryMock).updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        assertEquals(2000, progress.getDeletedCount());
+    }
+}
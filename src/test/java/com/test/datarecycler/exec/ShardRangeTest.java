@@ -0,0 +1,47 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.entity.RecycleJob;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+class ShardRangeTest {
+
+    @Test
+    public void testSplit() {
+        //given three hours interval
+        final Instant from = Instant.parse("2021-04-26T00:00:00Z");
+        final Instant to = from.plus(Duration.ofHours(3));
+
+        //when it is split into three shards
+        final List<ShardRange> ranges = ShardRange.split(from, to, 3);
+
+        //then ranges are disjoint and cover the whole interval
+        Assertions.assertEquals(3, ranges.size());
+        Assertions.assertNull(ranges.get(0).getStartCursor());
+        Assertions.assertEquals(from.plus(Duration.ofHours(1)), ranges.get(0).getUpperBound());
+        Assertions.assertEquals(new RecycleJob.Cursor(from.plus(Duration.ofHours(1)), Long.MIN_VALUE),
+                ranges.get(1).getStartCursor());
+        Assertions.assertEquals(from.plus(Duration.ofHours(2)), ranges.get(1).getUpperBound());
+        Assertions.assertEquals(new RecycleJob.Cursor(from.plus(Duration.ofHours(2)), Long.MIN_VALUE),
+                ranges.get(2).getStartCursor());
+        Assertions.assertEquals(to, ranges.get(2).getUpperBound());
+    }
+
+    @Test
+    public void testSplitSingleShard() {
+        //given interval
+        final Instant from = Instant.parse("2021-04-26T00:00:00Z");
+        final Instant to = from.plus(Duration.ofHours(3));
+
+        //when it is split into the single shard, then the only range covers the whole interval
+        final List<ShardRange> ranges = ShardRange.split(from, to, 1);
+        Assertions.assertEquals(1, ranges.size());
+        Assertions.assertNull(ranges.get(0).getStartCursor());
+        Assertions.assertEquals(to, ranges.get(0).getUpperBound());
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.test.datarecycler.exec;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class TableThroughputTest {
+
+    @Test
+    public void testRowsPerSecond() {
+        //given two batches of the table executed one after another
+        final TableThroughput throughput = new TableThroughput();
+        throughput.record("table", 1000, Duration.ofSeconds(1).toNanos(), 1500);
+        throughput.record("table", 3000, Duration.ofSeconds(1).toNanos(), 3000);
+
+        //when the table rate is requested, then it is averaged over both batches
+        Assertions.assertEquals(2000, throughput.getRowsPerSecond("table").getAsDouble(), 1);
+        Assertions.assertEquals(3000, throughput.getBatchSize("table").getAsInt());
+
+        //and the rate of the table without batches is unknown
+        Assertions.assertFalse(throughput.getRowsPerSecond("other").isPresent());
+        Assertions.assertFalse(throughput.getBatchSize("other").isPresent());
+    }
+}
@@ -0,0 +1,61 @@
+package com.test.datarecycler.exec;
+
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.db.TableStats;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TableVacuumTest {
+
+    @Mock
+    private Database databaseMock;
+
+    @Test
+    public void testBloatedTableVacuumed() {
+        //given table with 30% of dead tuples
+        final TableVacuum tableVacuum = new TableVacuum(databaseMock, 1000, 0.1);
+        Mockito.when(databaseMock.getTableStats("table"))
+                .thenReturn(new TableStats(700, 300, false))
+                .thenReturn(new TableStats(700, 0, false));
+
+        //when table is vacuumed
+        final TableVacuum.Result result = tableVacuum.vacuum("table");
+
+        //then dead tuples are reclaimed
+        Mockito.verify(databaseMock).vacuumAnalyze("table");
+        Assertions.assertTrue(result.isVacuumed());
+        Assertions.assertEquals(300, result.getReclaimedTuples());
+        Assertions.assertEquals(0, result.getDeadTupleRatio());
+    }
+
+    @Test
+    public void testSlightlyBloatedTableSkipped() {
+        //given table with 5% of dead tuples
+        final TableVacuum tableVacuum = new TableVacuum(databaseMock, 1000, 0.1);
+        Mockito.when(databaseMock.getTableStats("table")).thenReturn(new TableStats(950, 50, false));
+
+        //when table is vacuumed, then it is skipped
+        final TableVacuum.Result result = tableVacuum.vacuum("table");
+        Mockito.verify(databaseMock, Mockito.never()).vacuumAnalyze("table");
+        Assertions.assertFalse(result.isVacuumed());
+        Assertions.assertEquals(0.05, result.getDeadTupleRatio(), 0.001);
+    }
+
+    @Test
+    public void testTableVacuumedByAutovacuumSkipped() {
+        //given bloated table, which is being vacuumed by the autovacuum
+        final TableVacuum tableVacuum = new TableVacuum(databaseMock, 1000, 0.1);
+        Mockito.when(databaseMock.getTableStats("table")).thenReturn(new TableStats(700, 300, true));
+
+        //when table is vacuumed, then it is not vacuumed twice
+        final TableVacuum.Result result = tableVacuum.vacuum("table");
+        Mockito.verify(databaseMock, Mockito.never()).vacuumAnalyze("table");
+        Assertions.assertFalse(result.isVacuumed());
+        Assertions.assertEquals(0, result.getReclaimedTuples());
+    }
+}
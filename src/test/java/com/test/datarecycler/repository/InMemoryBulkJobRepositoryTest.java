@@ -0,0 +1,85 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.BulkRecycleJob;
+import com.test.datarecycler.entity.RecycleJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InMemoryBulkJobRepositoryTest {
+
+    private InMemoryBulkJobRepository bulkJobRepository;
+
+    @BeforeEach
+    public void init() {
+        bulkJobRepository = new InMemoryBulkJobRepository();
+    }
+
+    @Test
+    public void testTakeChildrenConcurrently() throws Exception {
+        //given bulk job of many tables limited to three running children
+        final List<String> tables = IntStream.range(0, 100).mapToObj(i -> "table" + i).collect(Collectors.toList());
+        final BulkRecycleJob bulkJob = bulkJobRepository.newBulkJob("field", Instant.now(), tables, 3);
+
+        //when many threads take children at once
+        final int threadsCount = 16;
+        final ExecutorService executorService = Executors.newFixedThreadPool(threadsCount);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final List<Future<Optional<String>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threadsCount; i++) {
+                results.add(executorService.submit(() -> {
+                    startLatch.await();
+                    return bulkJobRepository.takeNextChild(bulkJob.getId());
+                }));
+            }
+            startLatch.countDown();
+            final List<String> takenTables = new ArrayList<>();
+            for (Future<Optional<String>> result : results) {
+                result.get().ifPresent(takenTables::add);
+            }
+
+            //then only the first three children are taken
+            takenTables.sort(null);
+            assertEquals(Arrays.asList("table0", "table1", "table2"), takenTables);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testChildLifecycle() {
+        //given bulk job of two tables limited to one running child
+        final BulkRecycleJob bulkJob = bulkJobRepository.newBulkJob("field", Instant.now(),
+                Arrays.asList("a", "b"), 1);
+
+        //when the first child is started and finished
+        assertEquals(Optional.of("a"), bulkJobRepository.takeNextChild(bulkJob.getId()));
+        assertEquals(Optional.empty(), bulkJobRepository.takeNextChild(bulkJob.getId()));
+        bulkJobRepository.startChild(bulkJob.getId(), "a", "job");
+        assertEquals(bulkJob.getId(), bulkJobRepository.findBulkJobByChildJobId("job").get().getId());
+        bulkJobRepository.completeChild(bulkJob.getId(), "a", RecycleJob.Status.FINISHED, 10);
+
+        //and when the bulk job is cancelled, then the pending child is cancelled rather than taken
+        bulkJobRepository.cancelBulkJob(bulkJob.getId());
+        assertEquals(Optional.empty(), bulkJobRepository.takeNextChild(bulkJob.getId()));
+        assertEquals(Arrays.asList(
+                new BulkRecycleJob.Child("a", "job", RecycleJob.Status.FINISHED, 10),
+                new BulkRecycleJob.Child("b", null, RecycleJob.Status.CANCELLED, 0)),
+                bulkJobRepository.getBulkJobById(bulkJob.getId()).getChildren());
+        assertEquals(0, bulkJobRepository.findActiveBulkJobs().size());
+    }
+}
@@ -1,5 +1,6 @@
 package com.test.datarecycler.repository;
 
+import com.test.datarecycler.entity.JobProgress;
 import com.test.datarecycler.entity.RecycleJob;
 import com.test.datarecycler.exception.JobNotFoundException;
 import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
@@ -8,12 +9,20 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -39,11 +48,48 @@ class InMemoryJobRepositoryTest {
         final Instant instant = Instant.now();
         final int batchSize = 1000;
 
-        final RecycleJob job = jobRepository.newRecycleJob(tableName, fieldName, instant, batchSize);
+        final RecycleJob job = jobRepository.newRecycleJob(tableName, fieldName, instant,
+                batchSize, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
 
         //when another job for the same table is requested, then exception is thrown
         Assertions.assertThrows(JobForTableAlreadyExistsException.class,
-                () -> jobRepository.newRecycleJob(tableName, fieldName, instant, batchSize));
+                () -> jobRepository.newRecycleJob(tableName, fieldName, instant,
+                        batchSize, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null));
+    }
+
+    @Test
+    public void testCreateSameTableConcurrently() throws Exception {
+        //given many threads trying to create job for the same table at once
+        final int threadsCount = 16;
+        final ExecutorService executorService = Executors.newFixedThreadPool(threadsCount);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final List<Future<RecycleJob>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threadsCount; i++) {
+                results.add(executorService.submit(() -> {
+                    startLatch.await();
+                    return jobRepository.newRecycleJob("table", "field", Instant.now(),
+                            1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
+                }));
+            }
+
+            //when they are started simultaneously
+            startLatch.countDown();
+
+            //then exactly one job is created and all the others are rejected
+            int createdCount = 0;
+            for (Future<RecycleJob> result : results) {
+                try {
+                    result.get();
+                    createdCount++;
+                } catch (ExecutionException e) {
+                    Assertions.assertTrue(e.getCause() instanceof JobForTableAlreadyExistsException);
+                }
+            }
+            Assertions.assertEquals(1, createdCount);
+        } finally {
+            executorService.shutdownNow();
+        }
     }
 
     @Test
@@ -55,7 +101,8 @@ class InMemoryJobRepositoryTest {
         final int batchSize = 1000;
 
         //when job is created
-        final RecycleJob newJob = jobRepository.newRecycleJob(tableName, fieldName, instant, batchSize);
+        final RecycleJob newJob = jobRepository.newRecycleJob(tableName, fieldName, instant,
+                batchSize, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
 
         //then it could be retrieved using getById and all fields match
         final RecycleJob job = jobRepository.getJobById(newJob.getId());
@@ -64,6 +111,7 @@ class InMemoryJobRepositoryTest {
         Assertions.assertEquals(fieldName, job.getFieldName());
         Assertions.assertEquals(batchSize, job.getBatchSize());
         Assertions.assertEquals(instant, job.getOlderThan());
+        Assertions.assertEquals(1, job.getShards());
     }
 
     @Test
@@ -78,7 +126,8 @@ class InMemoryJobRepositoryTest {
     @Test
     public void testGetJobState() {
         //given just created job
-        final RecycleJob createdJob = jobRepository.newRecycleJob("table", "field", Instant.now(), 1000);
+        final RecycleJob createdJob = jobRepository.newRecycleJob("table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
 
         //when job state is requested
         final RecycleJob.State state = jobRepository.getJobStateById(createdJob.getId());
@@ -87,6 +136,7 @@ class InMemoryJobRepositoryTest {
         Assertions.assertNotNull(state);
         Assertions.assertEquals(RecycleJob.Status.PENDING, state.getStatus());
         Assertions.assertEquals(0, state.getDeletedCount());
+        Assertions.assertEquals(1000, state.getBatchSize());
     }
 
     @Test
@@ -101,7 +151,8 @@ class InMemoryJobRepositoryTest {
     @Test
     public void testUpdateJobStatus() {
         //given just created job
-        final RecycleJob job = jobRepository.newRecycleJob("table", "field", Instant.now(), 1000);
+        final RecycleJob job = jobRepository.newRecycleJob("table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
 
         //when status update is requested
         jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.RUNNING);
@@ -111,6 +162,25 @@ class InMemoryJobRepositoryTest {
         Assertions.assertEquals(RecycleJob.Status.RUNNING, state.getStatus());
     }
 
+    @Test
+    public void testStatusListener() {
+        //given just created job and registered listener
+        final RecycleJob job = jobRepository.newRecycleJob("table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
+        final JobStatusListener listenerMock = Mockito.mock(JobStatusListener.class);
+        jobRepository.addStatusListener(listenerMock);
+
+        //when status is updated, then the listener is notified of the actual transitions only
+        jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.RUNNING);
+        jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.RUNNING);
+        jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.CANCELLED);
+        jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        final InOrder inOrder = Mockito.inOrder(listenerMock);
+        inOrder.verify(listenerMock).onStatusChanged(job.getId(), RecycleJob.Status.RUNNING);
+        inOrder.verify(listenerMock).onStatusChanged(job.getId(), RecycleJob.Status.CANCELLED);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
     @Test
     public void testUpdateUnknownJobStatus() {
         //given unknown job id
@@ -122,48 +192,122 @@ class InMemoryJobRepositoryTest {
     }
 
     @Test
-    public void testIncrementDeletedCount() {
+    public void testRecordBatch() {
         //given just created job
-        final RecycleJob job = jobRepository.newRecycleJob("table", "field", Instant.now(), 1000);
+        final RecycleJob job = jobRepository.newRecycleJob("table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
 
-        //when increment deleted count is requested
-        jobRepository.incrementJobDeletedCount(job.getId(), 100500);
+        //when batch is recorded
+        final RecycleJob.Cursor cursor = new RecycleJob.Cursor(Instant.now(), 100500);
+        jobRepository.getJobProgress(job.getId()).recordBatch(100500, 1005000, 150_000_000, 2000, cursor);
 
-        //then counter is incremented actually
+        //then counters are incremented actually and cursor is stored
         final RecycleJob.State state = jobRepository.getJobStateById(job.getId());
         Assertions.assertEquals(100500, state.getDeletedCount());
-
-        //when counter is request to be incremented again
-        jobRepository.incrementJobDeletedCount(job.getId(), 500);
-
-        //then counter is incremented actually and state remains untouched
+        Assertions.assertEquals(1005000, state.getBytesFreedEstimate());
+        Assertions.assertEquals(1, state.getBatches());
+        Assertions.assertEquals(cursor, state.getCursor());
+        Assertions.assertEquals(2000, state.getBatchSize());
+        Assertions.assertNotNull(state.getLastBatchTime());
+        Assertions.assertEquals(150, state.getLastBatchLatencyMillis());
+        Assertions.assertTrue(state.getRowsPerSecond() > 0);
+
+        //when another batch is recorded
+        final RecycleJob.Cursor cursor2 = new RecycleJob.Cursor(Instant.now(), 101000);
+        jobRepository.getJobProgress(job.getId()).recordBatch(500, 5000, 0, 4000, cursor2);
+
+        //then counters are incremented actually, cursor is moved and status remains untouched
         final RecycleJob.State state2 = jobRepository.getJobStateById(job.getId());
         Assertions.assertEquals(101000, state2.getDeletedCount());
+        Assertions.assertEquals(1010000, state2.getBytesFreedEstimate());
+        Assertions.assertEquals(2, state2.getBatches());
+        Assertions.assertEquals(cursor2, state2.getCursor());
+        Assertions.assertEquals(4000, state2.getBatchSize());
         Assertions.assertEquals(state.getStatus(), state2.getStatus());
     }
 
     @Test
-    public void testIncrementDeletedCountForUnknownJob() {
+    public void testProgressEstimates() {
+        //given job started to delete estimated 10000 rows
+        final RecycleJob job = jobRepository.newRecycleJob("table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
+        final JobProgress progress = jobRepository.getJobProgress(job.getId());
+        Assertions.assertNull(jobRepository.getJobStateById(job.getId()).getPercentComplete());
+        progress.start(10000);
+
+        //when the quarter of rows is deleted
+        progress.recordBatch(2500, 0, 0, 1000, null);
+
+        //then percent complete and ETA are derived from the estimate and the rate
+        final RecycleJob.State state = jobRepository.getJobStateById(job.getId());
+        Assertions.assertNotNull(state.getStartTime());
+        Assertions.assertEquals(10000L, state.getEstimatedTotal());
+        Assertions.assertEquals(25.0, state.getPercentComplete(), 0.01);
+        Assertions.assertTrue(state.getRowsPerSecond() > 0);
+        Assertions.assertEquals(Duration.ofMillis((long) (7500 * 1000 / state.getRowsPerSecond())), state.getEta());
+
+        //and the finished job is complete regardless of the estimate
+        jobRepository.updateJobStatus(job.getId(), RecycleJob.Status.FINISHED);
+        final RecycleJob.State finishedState = jobRepository.getJobStateById(job.getId());
+        Assertions.assertEquals(100.0, finishedState.getPercentComplete(), 0.01);
+        Assertions.assertEquals(Duration.ZERO, finishedState.getEta());
+    }
+
+    @Test
+    public void testDeletedCountBeyondIntRange() {
+        //given just created job
+        final RecycleJob job = jobRepository.newRecycleJob("table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
+
+        //when deleted count exceeds int range
+        jobRepository.getJobProgress(job.getId()).recordBatch(Integer.MAX_VALUE, 0, 0, 1000, null);
+        jobRepository.getJobProgress(job.getId()).recordBatch(Integer.MAX_VALUE, 0, 0, 1000, null);
+
+        //then counter does not overflow
+        Assertions.assertEquals(2L * Integer.MAX_VALUE, jobRepository.getJobStateById(job.getId()).getDeletedCount());
+    }
+
+    @Test
+    public void testGetProgressForUnknownJob() {
         //given unknown job id
         final String unknownJobId = "123";
 
         //when repository is requested for unknown job, then exception is thrown
-        Assertions.assertThrows(JobNotFoundException.class,
-                () -> jobRepository.incrementJobDeletedCount(unknownJobId, 100500));
+        Assertions.assertThrows(JobNotFoundException.class, () -> jobRepository.getJobProgress(unknownJobId));
+    }
+
+    @Test
+    public void testIncrementDroppedPartitions() {
+        //given just created job with some progress
+        final RecycleJob job = jobRepository.newRecycleJob("table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
+        final JobProgress progress = jobRepository.getJobProgress(job.getId());
+        progress.recordBatch(500, 0, 0, 1000, new RecycleJob.Cursor(Instant.now(), 500));
+
+        //when dropped partitions count is incremented twice
+        progress.incrementDroppedPartitions();
+        progress.incrementDroppedPartitions();
+
+        //then counter is incremented actually and the rest of the state remains untouched
+        final RecycleJob.State state = jobRepository.getJobStateById(job.getId());
+        Assertions.assertEquals(2, state.getDroppedPartitions());
+        Assertions.assertEquals(500, state.getDeletedCount());
     }
 
     @Test
     public void testRemoveJob() {
         //given just created job
         final String tableName = "table";
-        final RecycleJob job = jobRepository.newRecycleJob(tableName, "field", Instant.now(), 1000);
+        final RecycleJob job = jobRepository.newRecycleJob(tableName, "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
         final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
 
         //when job removal is request
         jobRepository.removeJob(job.getId());
 
         //then job won't interfere to create new job for this table
-        jobRepository.newRecycleJob(tableName, "field", Instant.now(), 1000);
+        jobRepository.newRecycleJob(tableName, "field", Instant.now(), 1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO,
+                null, null, null);
 
         //but still job could retrieved by id
         Assertions.assertSame(job, jobRepository.getJobById(job.getId()));
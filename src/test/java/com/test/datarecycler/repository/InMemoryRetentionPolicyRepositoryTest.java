@@ -0,0 +1,75 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.RetentionPolicy;
+import com.test.datarecycler.exception.PolicyForTableAlreadyExistsException;
+import com.test.datarecycler.exception.PolicyNotFoundException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InMemoryRetentionPolicyRepositoryTest {
+
+    private InMemoryRetentionPolicyRepository policyRepository;
+
+    @BeforeEach
+    public void init() {
+        policyRepository = new InMemoryRetentionPolicyRepository();
+    }
+
+    @Test
+    public void testCreateExistingTable() {
+        //given there is policy for the table already
+        final RetentionPolicy policy = policyRepository.newPolicy("table", "field", Duration.ofDays(30), null,
+                Duration.ofHours(1), null);
+
+        //when another policy for the same table is requested, then exception is thrown
+        Assertions.assertThrows(PolicyForTableAlreadyExistsException.class,
+                () -> policyRepository.newPolicy("table", "field", Duration.ofDays(7), null, Duration.ofHours(1),
+                        null));
+
+        //and the table could get another policy once the existing one is removed
+        policyRepository.removePolicy(policy.getId());
+        Assertions.assertThrows(PolicyNotFoundException.class, () -> policyRepository.getPolicyById(policy.getId()));
+        policyRepository.newPolicy("table", "field", Duration.ofDays(7), null, Duration.ofHours(1), null);
+    }
+
+    @Test
+    public void testCompleteRun() {
+        //given policy with the started run
+        final RetentionPolicy policy = policyRepository.newPolicy("table", "field", Duration.ofDays(30), null,
+                Duration.ofHours(1), null);
+        final Instant olderThan = Instant.now();
+        policyRepository.startRun(policy.getId(), "job", olderThan);
+
+        //when job of another run is finished, then the watermark is not advanced
+        assertEquals(Optional.empty(), policyRepository.completeRun("another"));
+        assertNull(policyRepository.getPolicyById(policy.getId()).getWatermark());
+
+        //and when the run job is finished, then the watermark is advanced to the run datetime
+        final RetentionPolicy completedPolicy = policyRepository.completeRun("job").get();
+        assertEquals(olderThan, completedPolicy.getWatermark());
+        assertNull(completedPolicy.getRunJobId());
+        assertEquals(completedPolicy, policyRepository.getPolicyById(policy.getId()));
+    }
+
+    @Test
+    public void testWatermarkNeverMovesBackwards() {
+        //given policy with the watermark
+        final RetentionPolicy policy = policyRepository.newPolicy("table", "field", Duration.ofDays(30), null,
+                Duration.ofHours(1), null);
+        final Instant watermark = Instant.now();
+        policyRepository.startRun(policy.getId(), "job", watermark);
+        policyRepository.completeRun("job");
+
+        //when older run is finished, then the watermark is kept
+        policyRepository.startRun(policy.getId(), "older", watermark.minusSeconds(60));
+        assertEquals(watermark, policyRepository.completeRun("older").get().getWatermark());
+    }
+}
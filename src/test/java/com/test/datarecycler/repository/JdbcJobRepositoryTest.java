@@ -0,0 +1,294 @@
+package com.test.datarecycler.repository;
+
+import com.test.datarecycler.entity.JobProgress;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ScheduledExecutorService;
+
+@ExtendWith(MockitoExtension.class)
+class JdbcJobRepositoryTest {
+
+    @Mock
+    private DataSource dataSourceMock;
+
+    @Mock
+    private Connection connectionMock;
+
+    @Mock
+    private PreparedStatement statementMock;
+
+    @Mock
+    private ResultSet resultSetMock;
+
+    @Mock
+    private ResultSet leasesResultSetMock;
+
+    @Mock
+    private ResultSet statusesResultSetMock;
+
+    @Mock
+    private ScheduledExecutorService scheduledExecutorServiceMock;
+
+    private JdbcJobRepository jobRepository;
+
+    @BeforeEach
+    public void init() throws SQLException {
+        Mockito.when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        Mockito.when(connectionMock.getAutoCommit()).thenReturn(false);
+        Mockito.when(connectionMock.prepareStatement(Mockito.anyString())).thenReturn(statementMock);
+        jobRepository = new JdbcJobRepository(dataSourceMock, scheduledExecutorServiceMock, Duration.ofMinutes(10),
+                Duration.ofSeconds(5), "node");
+    }
+
+    @Test
+    public void testCreateJob() throws SQLException {
+        //when job is created
+        final RecycleJob job = jobRepository.newRecycleJob("table", "field", Instant.now(),
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
+
+        //then it is inserted into the database as pending
+        Mockito.verify(statementMock).setString(1, job.getId());
+        Mockito.verify(statementMock).setString(10, RecycleJob.Status.PENDING.name());
+        Mockito.verify(statementMock).executeUpdate();
+        Mockito.verify(connectionMock).commit();
+    }
+
+    @Test
+    public void testTimestampsBoundInUtc() throws SQLException {
+        //given JVM running in the non-UTC time zone
+        final TimeZone defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Vladivostok"));
+        try {
+            final Instant olderThan = Instant.parse("2020-03-01T00:30:00Z");
+
+            //when job is created
+            jobRepository.newRecycleJob("table", "field", olderThan,
+                    1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null);
+
+            //then its timestamp is bound in UTC regardless of the JVM time zone
+            final ArgumentCaptor<Timestamp> timestampCaptor = ArgumentCaptor.forClass(Timestamp.class);
+            final ArgumentCaptor<Calendar> calendarCaptor = ArgumentCaptor.forClass(Calendar.class);
+            Mockito.verify(statementMock).setTimestamp(Mockito.eq(4), timestampCaptor.capture(),
+                    calendarCaptor.capture());
+            Assertions.assertEquals(olderThan, timestampCaptor.getValue().toInstant());
+            Assertions.assertEquals(0, calendarCaptor.getValue().getTimeZone().getRawOffset());
+
+            //and timestamps are read back in UTC as well
+            Mockito.when(statementMock.executeQuery()).thenReturn(resultSetMock);
+            Mockito.when(resultSetMock.next()).thenReturn(true).thenReturn(false);
+            mockJobRow("running", RecycleJob.Status.RUNNING, 500);
+            jobRepository.findActiveJobs();
+            Mockito.verify(resultSetMock).getTimestamp(Mockito.eq("older_than"), calendarCaptor.capture());
+            Assertions.assertEquals(0, calendarCaptor.getValue().getTimeZone().getRawOffset());
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void testCreateExistingTable() throws SQLException {
+        //given there is active job for the table in the database
+        Mockito.when(statementMock.executeUpdate()).thenThrow(new SQLException("duplicate key", "23505"));
+        Mockito.when(statementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true);
+        mockJobRow("existing", RecycleJob.Status.RUNNING, 500);
+
+        //when another job for the same table is requested, then exception with the existing job is thrown
+        final JobForTableAlreadyExistsException exception = Assertions.assertThrows(
+                JobForTableAlreadyExistsException.class,
+                () -> jobRepository.newRecycleJob("table", "field", Instant.now(),
+                        1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO, null, null, null));
+        Assertions.assertEquals("existing", exception.getRecycleJob().getId());
+    }
+
+    @Test
+    public void testFlushOnlyChangedProgress() throws SQLException {
+        //given executed job with some progress
+        Mockito.when(statementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true).thenReturn(false);
+        mockJobRow("running", RecycleJob.Status.RUNNING, 500);
+        jobRepository.getJobProgress("running")
+                .recordBatch(1000, 0, 0, 1000, new RecycleJob.Cursor(Instant.now(), 1000));
+
+        //when progress is flushed twice
+        jobRepository.flushProgress();
+        jobRepository.flushProgress();
+
+        //then progress is written by the batch update only once
+        Mockito.verify(statementMock).addBatch();
+        Mockito.verify(statementMock).executeBatch();
+    }
+
+    @Test
+    public void testFlushRetryOnlyProgress() throws SQLException {
+        //given executed job, which progress has been flushed
+        Mockito.when(statementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true).thenReturn(false);
+        mockJobRow("running", RecycleJob.Status.RUNNING, 500);
+        final JobProgress progress = jobRepository.getJobProgress("running");
+        progress.recordBatch(1000, 0, 0, 1000, new RecycleJob.Cursor(Instant.now(), 1000));
+        jobRepository.flushProgress();
+
+        //when the next batch is retried without deleting anything and progress is flushed again
+        progress.recordRetry(true);
+        jobRepository.flushProgress();
+
+        //then the retry is written as well
+        Mockito.verify(statementMock, Mockito.times(2)).addBatch();
+        Mockito.verify(statementMock).setLong(17, 1);
+        Mockito.verify(statementMock).setLong(18, 1);
+    }
+
+    @Test
+    public void testFindActiveJobs() throws SQLException {
+        //given running job in the database
+        Mockito.when(statementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true).thenReturn(false).thenReturn(true);
+        final Instant cursorDatetime = mockJobRow("running", RecycleJob.Status.RUNNING, 500);
+
+        //when active jobs are requested
+        final List<RecycleJob> activeJobs = jobRepository.findActiveJobs();
+
+        //then job is returned and its progress is restored to be resumed
+        Assertions.assertEquals(1, activeJobs.size());
+        Assertions.assertEquals("running", activeJobs.get(0).getId());
+        final JobProgress progress = jobRepository.getJobProgress("running");
+        Assertions.assertEquals(500, progress.getDeletedCount());
+        Assertions.assertEquals(new RecycleJob.Cursor(cursorDatetime, 500), progress.getCursor());
+        Assertions.assertEquals(RecycleJob.Status.RUNNING, jobRepository.getJobStatus("running"));
+    }
+
+    @Test
+    public void testClaimJobs() throws SQLException {
+        //given leasable job in the database
+        Mockito.when(statementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true).thenReturn(false);
+        mockJobRow("running", RecycleJob.Status.RUNNING, 500);
+
+        //when jobs are claimed
+        final List<RecycleJob> claimedJobs = jobRepository.claimJobs(2, Duration.ofSeconds(30));
+
+        //then job is leased by this instance
+        Assertions.assertEquals(1, claimedJobs.size());
+        Mockito.verify(statementMock).setString(1, "node");
+        Mockito.verify(statementMock).setLong(2, 30);
+        Mockito.verify(statementMock).setInt(3, 2);
+        Mockito.verify(connectionMock).commit();
+
+        //and its progress is cached to be executed
+        Assertions.assertEquals(500, jobRepository.getJobProgress("running").getDeletedCount());
+        Mockito.verify(statementMock).executeQuery();
+    }
+
+    @Test
+    public void testRenewLeasesAppliesCancellation() throws SQLException {
+        //given claimed job cancelled by another instance
+        Mockito.when(statementMock.executeQuery()).thenReturn(resultSetMock).thenReturn(leasesResultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true).thenReturn(false);
+        mockJobRow("running", RecycleJob.Status.RUNNING, 500);
+        Mockito.when(leasesResultSetMock.next()).thenReturn(true).thenReturn(false);
+        Mockito.when(leasesResultSetMock.getString("id")).thenReturn("running");
+        Mockito.when(leasesResultSetMock.getString("status")).thenReturn(RecycleJob.Status.CANCELLED.name());
+        jobRepository.claimJobs(1, Duration.ofSeconds(30));
+
+        //when lease is renewed
+        final Set<String> renewedJobIds = jobRepository
+                .renewLeases(Collections.singletonList("running"), Duration.ofSeconds(30));
+
+        //then lease is kept and cancellation is visible to the executor
+        Assertions.assertEquals(Collections.singleton("running"), renewedJobIds);
+        Assertions.assertEquals(RecycleJob.Status.CANCELLED, jobRepository.getJobStatus("running"));
+        Mockito.verify(connectionMock).createArrayOf("varchar", new Object[]{"running"});
+    }
+
+    @Test
+    public void testFlushAppliesCancellation() throws SQLException {
+        //given executed job cancelled through another instance
+        Mockito.when(statementMock.executeQuery()).thenReturn(resultSetMock).thenReturn(statusesResultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true);
+        mockJobRow("running", RecycleJob.Status.RUNNING, 500);
+        Mockito.when(statusesResultSetMock.next()).thenReturn(true).thenReturn(false);
+        Mockito.when(statusesResultSetMock.getString("id")).thenReturn("running");
+        Mockito.when(statusesResultSetMock.getString("status")).thenReturn(RecycleJob.Status.CANCELLED.name());
+        jobRepository.getJobProgress("running");
+
+        //when progress is flushed
+        jobRepository.flushProgress();
+
+        //then cancellation is visible to the executor
+        Assertions.assertEquals(RecycleJob.Status.CANCELLED, jobRepository.getJobStatus("running"));
+        Mockito.verify(connectionMock).createArrayOf("varchar", new Object[]{"running"});
+
+        //and the finished job is not checked anymore
+        jobRepository.flushProgress();
+        Mockito.verify(statementMock, Mockito.times(2)).executeQuery();
+    }
+
+    @Test
+    public void testLostLeaseEvictsJob() throws SQLException {
+        //given claimed job leased by another instance after the lease has expired
+        Mockito.when(statementMock.executeQuery()).thenReturn(resultSetMock);
+        Mockito.when(resultSetMock.next()).thenReturn(true).thenReturn(false).thenReturn(false).thenReturn(true);
+        mockJobRow("running", RecycleJob.Status.RUNNING, 500);
+        jobRepository.claimJobs(1, Duration.ofSeconds(30));
+
+        //when lease is renewed
+        final Set<String> renewedJobIds = jobRepository
+                .renewLeases(Collections.singletonList("running"), Duration.ofSeconds(30));
+
+        //then lease is lost and the job is evicted, so its progress is loaded from the database again
+        Assertions.assertTrue(renewedJobIds.isEmpty());
+        jobRepository.getJobProgress("running");
+        Mockito.verify(statementMock, Mockito.times(3)).executeQuery();
+    }
+
+    private Instant mockJobRow(String id, RecycleJob.Status status, long deletedCount) throws SQLException {
+        final Instant cursorDatetime = Instant.now();
+        Mockito.when(resultSetMock.getString("id")).thenReturn(id);
+        Mockito.when(resultSetMock.getString("table_name")).thenReturn("table");
+        Mockito.when(resultSetMock.getString("field_name")).thenReturn("field");
+        Mockito.when(resultSetMock.getString("status")).thenReturn(status.name());
+        Mockito.when(resultSetMock.getTimestamp(Mockito.eq("older_than"), Mockito.any(Calendar.class)))
+                .thenReturn(Timestamp.from(Instant.now()));
+        Mockito.when(resultSetMock.getTimestamp(Mockito.eq("cursor_datetime"), Mockito.any(Calendar.class)))
+                .thenReturn(Timestamp.from(cursorDatetime));
+        Mockito.when(resultSetMock.getTimestamp(Mockito.eq("last_batch_time"), Mockito.any(Calendar.class)))
+                .thenReturn(Timestamp.from(Instant.now()));
+        Mockito.when(resultSetMock.getInt("batch_size")).thenReturn(1000);
+        Mockito.when(resultSetMock.getInt("shards")).thenReturn(1);
+        Mockito.when(resultSetMock.getInt("priority")).thenReturn(0);
+        Mockito.when(resultSetMock.getInt("weight")).thenReturn(1);
+        Mockito.when(resultSetMock.getString("purge_mode")).thenReturn(RecycleJob.PurgeMode.AUTO.name());
+        Mockito.when(resultSetMock.getInt("current_batch_size")).thenReturn(1000);
+        Mockito.when(resultSetMock.getLong("deleted_count")).thenReturn(deletedCount);
+        Mockito.when(resultSetMock.getLong("cursor_id")).thenReturn(deletedCount);
+        Mockito.when(resultSetMock.getLong("dropped_partitions")).thenReturn(0L);
+        Mockito.when(resultSetMock.getLong("throttled_millis")).thenReturn(0L);
+        Mockito.when(resultSetMock.getLong("batches")).thenReturn(1L);
+        Mockito.when(resultSetMock.getLong("bytes_freed_estimate")).thenReturn(0L);
+        Mockito.when(resultSetMock.getLong("version")).thenReturn(1L);
+        return cursorDatetime;
+    }
+}
@@ -0,0 +1,167 @@
+package com.test.datarecycler.service;
+
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.entity.BulkRecycleJob;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
+import com.test.datarecycler.repository.InMemoryBulkJobRepository;
+import com.test.datarecycler.repository.RecycleJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+class BulkRecycleJobServiceTest {
+
+    @Mock
+    private RecycleJobService recycleJobServiceMock;
+
+    @Mock
+    private RecycleJobRepository recycleJobRepositoryMock;
+
+    @Mock
+    private Database databaseMock;
+
+    @Mock
+    private ScheduledExecutorService schedulerMock;
+
+    private BulkRecycleJobService bulkJobService;
+
+    private final Instant olderThan = Instant.now();
+
+    @BeforeEach
+    public void init() {
+        bulkJobService = new BulkRecycleJobService(new InMemoryBulkJobRepository(), recycleJobServiceMock,
+                recycleJobRepositoryMock, databaseMock, schedulerMock, 2, Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void testChildrenStartedUnderCap() {
+        //given bulk job of three tables limited to two running children
+        runScheduledTasks();
+        mockChildJob("a");
+        mockChildJob("b");
+        mockChildJob("c");
+        mockDeletedCount("job-a", 10);
+        mockDeletedCount("job-b", 20);
+        mockDeletedCount("job-c", 30);
+
+        //when bulk job is submitted
+        final BulkRecycleJob bulkJob = bulkJobService.submitBulkJob(Arrays.asList("a", "b", "c", "a"), null, null,
+                "field", olderThan, null);
+
+        //then only two children are started
+        Mockito.verify(recycleJobServiceMock, Mockito.times(2)).submitRecycleJob(Mockito.anyString(),
+                Mockito.eq("field"), Mockito.eq(olderThan), Mockito.isNull(), Mockito.isNull(), Mockito.isNull(),
+                Mockito.isNull(), Mockito.isNull(), Mockito.isNull(), Mockito.isNull());
+        BulkRecycleJob.State state = bulkJobService.getBulkJobState(bulkJob.getId());
+        assertEquals(RecycleJob.Status.RUNNING, state.getStatus());
+        assertEquals(2, state.getChildrenCount(RecycleJob.Status.RUNNING));
+        assertEquals(1, state.getChildrenCount(RecycleJob.Status.PENDING));
+
+        //and when the first child is finished, then the last one is started
+        bulkJobService.onStatusChanged("job-a", RecycleJob.Status.RUNNING);
+        bulkJobService.onStatusChanged("job-a", RecycleJob.Status.FINISHED);
+        Mockito.verify(recycleJobServiceMock)
+                .submitRecycleJob("c", "field", olderThan, null, null, null, null, null, null, null);
+
+        //and when all children are finished, then their deleted counts are summed up
+        bulkJobService.onStatusChanged("job-b", RecycleJob.Status.FINISHED);
+        bulkJobService.onStatusChanged("job-c", RecycleJob.Status.FINISHED);
+        state = bulkJobService.getBulkJobState(bulkJob.getId());
+        assertEquals(RecycleJob.Status.FINISHED, state.getStatus());
+        assertEquals(60, state.getDeletedCount());
+    }
+
+    @Test
+    public void testCancelStopsAllChildren() {
+        //given bulk job of two tables with one running child
+        runScheduledTasks();
+        mockChildJob("a");
+        mockDeletedCount("job-a", 10);
+        final BulkRecycleJob bulkJob = bulkJobService.submitBulkJob(Arrays.asList("a", "b"), null, null,
+                "field", olderThan, 1);
+
+        //when bulk job is cancelled
+        final BulkRecycleJob.State state = bulkJobService.cancelBulkJob(bulkJob.getId());
+
+        //then running child is cancelled and pending one is never started
+        Mockito.verify(recycleJobServiceMock).cancelRecycleJob("job-a");
+        assertEquals(RecycleJob.Status.CANCELLED, state.getStatus());
+        assertEquals(1, state.getChildrenCount(RecycleJob.Status.CANCELLED));
+        bulkJobService.onStatusChanged("job-a", RecycleJob.Status.CANCELLED);
+        Mockito.verify(recycleJobServiceMock, Mockito.never())
+                .submitRecycleJob("b", "field", olderThan, null, null, null, null, null, null, null);
+        assertEquals(2, bulkJobService.getBulkJobState(bulkJob.getId())
+                .getChildrenCount(RecycleJob.Status.CANCELLED));
+    }
+
+    @Test
+    public void testTablesResolvedByPattern() {
+        //given schema with the tenant tables
+        Mockito.when(databaseMock.findTables("tenants", "events\\_%"))
+                .thenReturn(Arrays.asList("tenants.events_1", "tenants.events_2"));
+
+        //when bulk job is submitted by the pattern, then a child is created for each matching table
+        final BulkRecycleJob bulkJob = bulkJobService.submitBulkJob(null, "tenants", "events\\_%", "field",
+                olderThan, null);
+        assertEquals(Arrays.asList("tenants.events_1", "tenants.events_2"), bulkJob.getChildren().stream()
+                .map(BulkRecycleJob.Child::getTableName)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testChildFailedToStart() {
+        //given table which is already being recycled
+        final RecycleJob existingJob = new RecycleJob("existing", "a", "field", olderThan, 1000, 1, 0, 1,
+                RecycleJob.PurgeMode.AUTO);
+        Mockito.when(recycleJobServiceMock
+                .submitRecycleJob("a", "field", olderThan, null, null, null, null, null, null, null))
+                .thenThrow(new JobForTableAlreadyExistsException(existingJob));
+        runScheduledTasks();
+        mockChildJob("b");
+        mockDeletedCount("job-b", 0);
+
+        //when bulk job is submitted
+        final BulkRecycleJob bulkJob = bulkJobService.submitBulkJob(Arrays.asList("a", "b"), null, null,
+                "field", olderThan, 1);
+
+        //then the child is failed and the next one takes its slot
+        final BulkRecycleJob.State state = bulkJobService.getBulkJobState(bulkJob.getId());
+        assertEquals(1, state.getChildrenCount(RecycleJob.Status.FAILED));
+        assertEquals(1, state.getChildrenCount(RecycleJob.Status.RUNNING));
+    }
+
+    private void mockChildJob(String tableName) {
+        Mockito.when(recycleJobServiceMock.submitRecycleJob(tableName, "field", olderThan, null, null, null, null,
+                null, null, null)).thenReturn(new RecycleJob("job-" + tableName, tableName, "field", olderThan,
+                1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO));
+    }
+
+    private void mockDeletedCount(String jobId, long deletedCount) {
+        final RecycleJob.State state = Mockito.mock(RecycleJob.State.class);
+        Mockito.when(state.getDeletedCount()).thenReturn(deletedCount);
+        Mockito.when(recycleJobRepositoryMock.getJobStateById(jobId)).thenReturn(state);
+    }
+
+    /**
+     * Run tasks passed to the scheduler right away
+     */
+    private void runScheduledTasks() {
+        Mockito.doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(schedulerMock).execute(Mockito.any());
+    }
+}
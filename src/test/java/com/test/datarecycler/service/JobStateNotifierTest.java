@@ -0,0 +1,142 @@
+package com.test.datarecycler.service;
+
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.repository.RecycleJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+class JobStateNotifierTest {
+
+    private static final String JOB_ID = "123";
+
+    @Mock
+    private RecycleJobRepository recycleJobRepositoryMock;
+
+    @Mock
+    private ScheduledExecutorService schedulerMock;
+
+    private JobStateNotifier notifier;
+
+    private final List<Long> receivedBatches = new ArrayList<>();
+
+    @BeforeEach
+    public void init() {
+        notifier = new JobStateNotifier(recycleJobRepositoryMock, schedulerMock, Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void testProgressUpdates() {
+        //given running job which makes progress and then finishes
+        Mockito.when(recycleJobRepositoryMock.getJobStateById(JOB_ID))
+                .thenReturn(state(RecycleJob.Status.RUNNING, 1))
+                .thenReturn(state(RecycleJob.Status.RUNNING, 1))
+                .thenReturn(state(RecycleJob.Status.RUNNING, 2))
+                .thenReturn(state(RecycleJob.Status.RUNNING, 2))
+                .thenReturn(state(RecycleJob.Status.FINISHED, 3));
+        final List<Long> otherReceivedBatches = new ArrayList<>();
+
+        //when two clients subscribe to the job state and states are published three times
+        notifier.subscribe(JOB_ID, state -> receivedBatches.add(state.getBatches()));
+        notifier.subscribe(JOB_ID, state -> otherReceivedBatches.add(state.getBatches()));
+        assertEquals(2, notifier.getSubscribersCount(JOB_ID));
+        notifier.publishAll();
+        notifier.publishAll();
+        notifier.publishAll();
+
+        //then each state is taken once per publish and fanned out to both clients, unchanged state is skipped and
+        //clients are unsubscribed on the terminal state
+        assertEquals(Arrays.asList(1L, 2L, 3L), receivedBatches);
+        assertEquals(Arrays.asList(1L, 2L, 3L), otherReceivedBatches);
+        assertEquals(0, notifier.getSubscribersCount(JOB_ID));
+        Mockito.verify(recycleJobRepositoryMock, Mockito.times(5)).getJobStateById(JOB_ID);
+    }
+
+    @Test
+    public void testStatusTransitionPublishedRightAway() {
+        //given subscribed client
+        Mockito.when(recycleJobRepositoryMock.getJobStateById(JOB_ID))
+                .thenReturn(state(RecycleJob.Status.RUNNING, 1))
+                .thenReturn(state(RecycleJob.Status.CANCELLED, 1));
+        notifier.subscribe(JOB_ID, state -> receivedBatches.add(state.getBatches()));
+
+        //when job is cancelled
+        notifier.onStatusChanged(JOB_ID, RecycleJob.Status.CANCELLED);
+        final ArgumentCaptor<Runnable> publish = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(schedulerMock).execute(publish.capture());
+        publish.getValue().run();
+
+        //then the new state is published without waiting for the periodic publish
+        assertEquals(Arrays.asList(1L, 1L), receivedBatches);
+        assertEquals(0, notifier.getSubscribersCount(JOB_ID));
+    }
+
+    @Test
+    public void testStateChangeWithinBatchPublished() {
+        //given running job which is throttled while the same batch is awaited
+        Mockito.when(recycleJobRepositoryMock.getJobStateById(JOB_ID))
+                .thenReturn(state(RecycleJob.Status.RUNNING, 1, 0))
+                .thenReturn(state(RecycleJob.Status.RUNNING, 1, 500));
+        final List<Long> receivedThrottledMillis = new ArrayList<>();
+        notifier.subscribe(JOB_ID, state -> receivedThrottledMillis.add(state.getThrottledMillis()));
+
+        //when states are published twice
+        notifier.publishAll();
+        notifier.publishAll();
+
+        //then the state is published again, though status and batches count are unchanged
+        assertEquals(Arrays.asList(0L, 500L), receivedThrottledMillis);
+    }
+
+    @Test
+    public void testFailedSubscriberUnsubscribed() {
+        //given subscribed client, which disconnects after the first state
+        Mockito.when(recycleJobRepositoryMock.getJobStateById(JOB_ID))
+                .thenReturn(state(RecycleJob.Status.RUNNING, 1))
+                .thenReturn(state(RecycleJob.Status.RUNNING, 2));
+        notifier.subscribe(JOB_ID, state -> {
+            if (state.getBatches() > 1) {
+                throw new IllegalStateException("disconnected");
+            }
+        });
+
+        //when the next state is published, then the client is unsubscribed
+        notifier.publishAll();
+        assertEquals(0, notifier.getSubscribersCount(JOB_ID));
+    }
+
+    @Test
+    public void testCancelSubscription() {
+        //given subscribed client
+        Mockito.when(recycleJobRepositoryMock.getJobStateById(JOB_ID)).thenReturn(state(RecycleJob.Status.RUNNING, 1));
+        final Runnable subscription = notifier.subscribe(JOB_ID, state -> receivedBatches.add(state.getBatches()));
+
+        //when subscription is cancelled, then nothing is published anymore
+        subscription.run();
+        notifier.publishAll();
+        assertEquals(0, notifier.getSubscribersCount(JOB_ID));
+        Mockito.verify(recycleJobRepositoryMock).getJobStateById(JOB_ID);
+    }
+
+    private static RecycleJob.State state(RecycleJob.Status status, long batches) {
+        return state(status, batches, 0);
+    }
+
+    private static RecycleJob.State state(RecycleJob.Status status, long batches, long throttledMillis) {
+        return new RecycleJob.State(status, batches * 1000, null, 1000, 0, throttledMillis, batches, 0, null, null,
+                null, 0, 0, null, 0, 0, 0, 0);
+    }
+}
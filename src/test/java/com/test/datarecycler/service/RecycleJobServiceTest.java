@@ -1,8 +1,11 @@
 package com.test.datarecycler.service;
 
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.db.DeleteEstimate;
 import com.test.datarecycler.entity.RecycleJob;
 import com.test.datarecycler.exception.JobForTableAlreadyExistsException;
 import com.test.datarecycler.exec.RecycleJobExecutor;
+import com.test.datarecycler.exec.TableThroughput;
 import com.test.datarecycler.repository.RecycleJobRepository;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,7 +15,9 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 
 @ExtendWith(MockitoExtension.class)
 class RecycleJobServiceTest {
@@ -24,11 +29,18 @@ class RecycleJobServiceTest {
     @Mock
     private RecycleJobExecutor recycleJobExecutorMock;
 
+    @Mock
+    private Database databaseMock;
+
+    private TableThroughput tableThroughput;
+
     private RecycleJobService recycleJobService;
 
     @BeforeEach
     public void init() {
-        recycleJobService = new RecycleJobService(recycleJobRepositoryMock, recycleJobExecutorMock, BATCH_SIZE);
+        tableThroughput = new TableThroughput();
+        recycleJobService = new RecycleJobService(recycleJobRepositoryMock, recycleJobExecutorMock, databaseMock,
+                tableThroughput, BATCH_SIZE);
     }
 
     @Test
@@ -40,11 +52,13 @@ class RecycleJobServiceTest {
 
         final RecycleJob jobMock = Mockito.mock(RecycleJob.class);
 
-        Mockito.when(recycleJobRepositoryMock.newRecycleJob(tableName, field, olderThan, BATCH_SIZE))
+        Mockito.when(recycleJobRepositoryMock.newRecycleJob(tableName, field, olderThan,
+                BATCH_SIZE, 1, 0, 1, RecycleJob.PurgeMode.BATCH, null, null, null))
                 .thenReturn(jobMock);
 
         //when client attempts to submit the job
-        final RecycleJob recycleJob = recycleJobService.submitRecycleJob(tableName, field, olderThan);
+        final RecycleJob recycleJob = recycleJobService.submitRecycleJob(tableName, field, olderThan,
+                null, null, null, null, null, null, null);
 
         //then new job is created in the repository and is submitted for execution
         Assertions.assertSame(jobMock, recycleJob);
@@ -60,11 +74,12 @@ class RecycleJobServiceTest {
 
         final RecycleJob existingJob = Mockito.mock(RecycleJob.class);
         Mockito.doThrow(new JobForTableAlreadyExistsException(existingJob))
-                .when(recycleJobRepositoryMock).newRecycleJob(tableName, field, olderThan, BATCH_SIZE);
+                .when(recycleJobRepositoryMock).newRecycleJob(tableName, field, olderThan,
+                        BATCH_SIZE, 1, 0, 1, RecycleJob.PurgeMode.BATCH, null, null, null);
 
         //when client attempts to submit another job for the same table
         try {
-            recycleJobService.submitRecycleJob(tableName, "field", olderThan);
+            recycleJobService.submitRecycleJob(tableName, "field", olderThan, null, null, null, null, null, null, null);
         } catch (JobForTableAlreadyExistsException e) {
             //then exception is thrown
             Assertions.assertSame(existingJob, e.getRecycleJob());
@@ -103,5 +118,63 @@ class RecycleJobServiceTest {
         Assertions.assertSame(existingJobState, recycleJobState);
     }
 
+    @Test
+    public void testResumeActiveJobs() {
+        //given there are jobs interrupted by the restart
+        final RecycleJob pendingJob = new RecycleJob("1", "table1", "field", Instant.now(),
+                BATCH_SIZE, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        final RecycleJob runningJob = new RecycleJob("2", "table2", "field", Instant.now(),
+                BATCH_SIZE, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+        Mockito.when(recycleJobRepositoryMock.findActiveJobs()).thenReturn(Arrays.asList(pendingJob, runningJob));
+
+        //when active jobs are resumed
+        final int resumedCount = recycleJobService.resumeActiveJobs();
+
+        //then all of them are submitted for execution
+        Assertions.assertEquals(2, resumedCount);
+        Mockito.verify(recycleJobExecutorMock).submitJob(pendingJob);
+        Mockito.verify(recycleJobExecutorMock).submitJob(runningJob);
+    }
+
+    @Test
+    public void testEstimateJob() {
+        //given table with known deletion rate and 10500 expired rows
+        final String tableName = "table";
+        final String field = "field";
+        final Instant olderThan = Instant.now();
+        tableThroughput.record(tableName, 2000, Duration.ofSeconds(1).toNanos(), 2000);
+        Mockito.when(databaseMock.estimateDelete(tableName, field, olderThan, 2000))
+                .thenReturn(new DeleteEstimate(10500, true, "Limit"));
+
+        //when client requests the estimate
+        final RecycleJob.Estimate estimate = recycleJobService.estimateRecycleJob(tableName, field, olderThan);
+
+        //then batches are estimated by the recent batch size and duration by the recent rate
+        Assertions.assertEquals(10500, estimate.getEstimatedRows());
+        Assertions.assertTrue(estimate.isIndexScan());
+        Assertions.assertEquals(2000, estimate.getBatchSize());
+        Assertions.assertEquals(6, estimate.getEstimatedBatches());
+        Assertions.assertEquals(2000, estimate.getRowsPerSecond(), 0.01);
+        Assertions.assertEquals(Duration.ofMillis(5250), estimate.getEstimatedDuration());
+        Mockito.verifyZeroInteractions(recycleJobRepositoryMock, recycleJobExecutorMock);
+    }
+
+    @Test
+    public void testEstimateJobOfNewTable() {
+        //given table without deletion history
+        final String tableName = "table";
+        final String field = "field";
+        final Instant olderThan = Instant.now();
+        Mockito.when(databaseMock.estimateDelete(tableName, field, olderThan, BATCH_SIZE))
+                .thenReturn(new DeleteEstimate(500, false, "Seq Scan"));
 
-}
\ No newline at end of file
+        //when client requests the estimate
+        final RecycleJob.Estimate estimate = recycleJobService.estimateRecycleJob(tableName, field, olderThan);
+
+        //then the configured batch size is used and duration is unknown
+        Assertions.assertEquals(BATCH_SIZE, estimate.getBatchSize());
+        Assertions.assertEquals(1, estimate.getEstimatedBatches());
+        Assertions.assertNull(estimate.getRowsPerSecond());
+        Assertions.assertNull(estimate.getEstimatedDuration());
+    }
+}
@@ -0,0 +1,159 @@
+package com.test.datarecycler.service;
+
+import com.test.datarecycler.db.Database;
+import com.test.datarecycler.entity.RecycleJob;
+import com.test.datarecycler.entity.RetentionPolicy;
+import com.test.datarecycler.exception.PolicyNotFoundException;
+import com.test.datarecycler.repository.RecycleJobRepository;
+import com.test.datarecycler.repository.RetentionPolicyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionPolicyServiceTest {
+
+    private static final String POLICY_ID = "policy";
+    private static final Duration RETENTION = Duration.ofDays(30);
+    private static final Duration MAX_JITTER = Duration.ofMinutes(15);
+
+    @Mock
+    private RetentionPolicyRepository policyRepositoryMock;
+
+    @Mock
+    private RecycleJobService recycleJobServiceMock;
+
+    @Mock
+    private RecycleJobRepository recycleJobRepositoryMock;
+
+    @Mock
+    private Database databaseMock;
+
+    @Mock
+    private ScheduledExecutorService schedulerMock;
+
+    private RetentionPolicyService policyService;
+
+    private final RecycleJob job = new RecycleJob("job", "table", "field", Instant.now(),
+            1000, 1, 0, 1, RecycleJob.PurgeMode.AUTO);
+
+    @BeforeEach
+    public void init() {
+        policyService = new RetentionPolicyService(policyRepositoryMock, recycleJobServiceMock,
+                recycleJobRepositoryMock, databaseMock, schedulerMock, MAX_JITTER, Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void testRunContinuesFromWatermark() {
+        //given policy whose previous run has deleted everything older than the watermark
+        final Instant watermark = Instant.now().minus(RETENTION).minus(Duration.ofDays(1));
+        final RetentionPolicy policy = policy(null, watermark);
+        Mockito.when(policyRepositoryMock.getPolicyById(POLICY_ID)).thenReturn(policy);
+        Mockito.when(recycleJobServiceMock.submitRecycleJob(Mockito.eq("table"), Mockito.eq("field"),
+                Mockito.any(), Mockito.isNull(), Mockito.isNull(), Mockito.isNull(), Mockito.isNull(),
+                Mockito.any(), Mockito.isNull(), Mockito.isNull())).thenReturn(job);
+
+        //when policy is run
+        final Instant before = Instant.now();
+        policyService.runPolicy(POLICY_ID);
+        final Instant after = Instant.now();
+
+        //then the job deletes the slice expired since the watermark and the run is recorded
+        final ArgumentCaptor<Instant> olderThan = ArgumentCaptor.forClass(Instant.class);
+        Mockito.verify(recycleJobServiceMock).submitRecycleJob(Mockito.eq("table"), Mockito.eq("field"),
+                olderThan.capture(), Mockito.isNull(), Mockito.isNull(), Mockito.isNull(), Mockito.isNull(),
+                Mockito.eq(new RecycleJob.Cursor(watermark, Long.MIN_VALUE)), Mockito.isNull(), Mockito.isNull());
+        assertFalse(olderThan.getValue().isBefore(before.minus(RETENTION)));
+        assertFalse(olderThan.getValue().isAfter(after.minus(RETENTION)));
+        Mockito.verify(policyRepositoryMock).startRun(POLICY_ID, job.getId(), olderThan.getValue());
+        Mockito.verifyZeroInteractions(databaseMock);
+    }
+
+    @Test
+    public void testFirstRunLimitedByMaxWindow() {
+        //given policy without watermark and the table with rows expired a year ago
+        final Instant minDatetime = Instant.now().minus(Duration.ofDays(365));
+        final RetentionPolicy policy = policy(Duration.ofDays(7), null);
+        Mockito.when(databaseMock.findMinDatetime("table", "field")).thenReturn(Optional.of(minDatetime));
+
+        //when run datetime range is computed, then it is no wider than the max window since the oldest row
+        assertEquals(Optional.of(minDatetime.plus(Duration.ofDays(7))),
+                policyService.getRunOlderThan(policy, Instant.now()));
+    }
+
+    @Test
+    public void testRunSkippedWhenNothingExpired() {
+        //given policy whose watermark is younger than the retention
+        final RetentionPolicy policy = policy(null, Instant.now().minus(RETENTION).plusSeconds(60));
+        Mockito.when(policyRepositoryMock.getPolicyById(POLICY_ID)).thenReturn(policy);
+
+        //when policy is run
+        policyService.runPolicy(POLICY_ID);
+
+        //then no job is submitted
+        Mockito.verifyZeroInteractions(recycleJobServiceMock);
+        Mockito.verify(policyRepositoryMock, Mockito.never())
+                .startRun(Mockito.anyString(), Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    public void testRemovedPolicyIsNotRun() {
+        //given policy removed by another instance
+        Mockito.when(policyRepositoryMock.getPolicyById(POLICY_ID)).thenThrow(new PolicyNotFoundException(POLICY_ID));
+
+        //when policy is run, then no job is submitted
+        policyService.runPolicy(POLICY_ID);
+        Mockito.verifyZeroInteractions(recycleJobServiceMock);
+    }
+
+    @Test
+    public void testWatermarkAdvancedOnFinish() {
+        //given running job of the policy run
+        policyService.onStatusChanged(job.getId(), RecycleJob.Status.RUNNING);
+        Mockito.verify(schedulerMock, Mockito.never()).execute(Mockito.any());
+
+        //when job is finished
+        policyService.onStatusChanged(job.getId(), RecycleJob.Status.FINISHED);
+        final ArgumentCaptor<Runnable> completion = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(schedulerMock).execute(completion.capture());
+        completion.getValue().run();
+
+        //then the run is completed by the scheduler rather than the job thread
+        Mockito.verify(policyRepositoryMock).completeRun(job.getId());
+    }
+
+    @Test
+    public void testNextRunTimeShiftedByJitter() {
+        //given policies of the same schedule
+        final Instant now = Instant.parse("2020-01-01T12:34:56Z");
+        final long jitterMillis = Math.floorMod(POLICY_ID.hashCode(), MAX_JITTER.toMillis());
+        final RetentionPolicy intervalPolicy = policy(null, null);
+        final RetentionPolicy cronPolicy = new RetentionPolicy(POLICY_ID, "table", "field", RETENTION,
+                "0 0 3 * * *", null, null, null, null, null);
+
+        //when next runs are computed, then they are shifted by the same jitter
+        assertEquals(Instant.parse("2020-01-01T13:00:00Z").plusMillis(jitterMillis),
+                policyService.getNextRunTime(intervalPolicy, now));
+        assertEquals(Instant.parse("2020-01-02T03:00:00Z").plusMillis(jitterMillis),
+                policyService.getNextRunTime(cronPolicy, now));
+        assertTrue(jitterMillis < MAX_JITTER.toMillis());
+    }
+
+    private static RetentionPolicy policy(Duration maxWindow, Instant watermark) {
+        return new RetentionPolicy(POLICY_ID, "table", "field", RETENTION, null, Duration.ofHours(1), maxWindow,
+                watermark, null, null);
+    }
+}